@@ -0,0 +1,71 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.standin.StandInSeatReservationService;
+import uk.gov.dwp.uc.pairtest.standin.StandInTicketPaymentService;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Purchase throughput under per-account serialisation.
+ * <p>
+ * {@code distinctAccounts} gives every benchmark thread its own account, which should scale almost
+ * linearly with cores; {@code sameAccount} has every thread buy for one account, which is serialised by
+ * design. Run once per thread count, e.g. {@code java -jar target/benchmarks.jar AccountContention -t 1}
+ * then {@code -t 2}, {@code -t 4}, {@code -t 8}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountContentionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Service {
+        @Param({"0", "20000"})
+        public long gatewayLatencyNanos;
+
+        TicketServiceImpl ticketService;
+        final AtomicLong nextAccount = new AtomicLong();
+
+        @Setup
+        public void setUp() {
+            ticketService = new TicketServiceImpl(
+                new StandInTicketPaymentService(gatewayLatencyNanos),
+                new StandInSeatReservationService(gatewayLatencyNanos));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Account {
+        long accountId;
+
+        @Setup
+        public void setUp(Service service) {
+            accountId = service.nextAccount.incrementAndGet();
+        }
+    }
+
+    @Benchmark
+    public void distinctAccounts(Service service, Account account) {
+        service.ticketService.purchaseTickets(account.accountId, 2, 1, 1);
+    }
+
+    @Benchmark
+    public void sameAccount(Service service) {
+        service.ticketService.purchaseTickets(1L, 2, 1, 1);
+    }
+}
@@ -0,0 +1,37 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+
+/**
+ * Builds valid orders of a given size for the benchmarks.
+ */
+final class BenchmarkOrders {
+
+    private static final TicketTypeRequest.Type[] PATTERN = {
+        TicketTypeRequest.Type.ADULT, TicketTypeRequest.Type.CHILD, TicketTypeRequest.Type.INFANT
+    };
+
+    private BenchmarkOrders() {
+        // utility
+    }
+
+    // One request per ticket cycling adult, child, infant, so the walk grows with the order size
+    // and every prefix keeps at least as many adults as infants
+    static TicketTypeRequest[] ofSize(int tickets) {
+        TicketTypeRequest[] requests = new TicketTypeRequest[tickets];
+        for (int i = 0; i < tickets; i++) {
+            requests[i] = new TicketTypeRequest(PATTERN[i % PATTERN.length], 1);
+        }
+        return requests;
+    }
+
+    static int countOf(TicketTypeRequest[] requests, TicketTypeRequest.Type type) {
+        int count = 0;
+        for (TicketTypeRequest request : requests) {
+            if (request.getTicketType() == type) {
+                count += request.getNoOfTickets();
+            }
+        }
+        return count;
+    }
+}
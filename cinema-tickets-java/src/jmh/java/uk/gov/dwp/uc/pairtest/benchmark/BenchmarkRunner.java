@@ -0,0 +1,50 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import uk.gov.dwp.uc.pairtest.util.TicketingConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Entry point of benchmarks.jar.
+ * <p>
+ * Runs the benchmarks with the gc profiler, so the allocation rate is reported alongside
+ * throughput and average latency, and sweeps the order size up to {@code max.tickets}.
+ * Any standard JMH command line options (e.g. a benchmark name regex) are passed through.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+        // utility
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder()
+            .parent(commandLine)
+            .addProfiler(GCProfiler.class);
+
+        if (!commandLine.getParameter("orderSize").hasValue()) {
+            options.param("orderSize", orderSizes(TicketingConfig.getMaxTickets()));
+        }
+
+        new Runner(options.build()).run();
+    }
+
+    // 1, then doubling up to and including the maximum
+    private static String[] orderSizes(int maxTickets) {
+        List<String> sizes = new ArrayList<>();
+        for (int size = 1; size < maxTickets; size *= 2) {
+            sizes.add(String.valueOf(size));
+        }
+        sizes.add(String.valueOf(maxTickets));
+        return sizes.toArray(new String[0]);
+    }
+}
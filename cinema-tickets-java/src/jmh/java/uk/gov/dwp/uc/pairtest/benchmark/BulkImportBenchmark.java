@@ -0,0 +1,76 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.bulk.BulkImportSummary;
+import uk.gov.dwp.uc.pairtest.bulk.BulkPurchaseImporter;
+import uk.gov.dwp.uc.pairtest.standin.StandInSeatReservationService;
+import uk.gov.dwp.uc.pairtest.standin.StandInTicketPaymentService;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to import a generated file of orders with the no-op stand-in services, i.e. the cost of
+ * streaming, parsing, validating, pricing and writing the results. Run with {@code -prof gc} to
+ * check that the heap stays flat whatever the number of rows.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkImportBenchmark {
+
+    @Param({"1000000"})
+    public int rows;
+
+    @Param({"4"})
+    public int workers;
+
+    private Path directory;
+    private Path orders;
+    private BulkPurchaseImporter importer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("bulk-import-benchmark");
+        orders = directory.resolve("orders.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(orders)) {
+            writer.write("accountId,adults,children,infants\n");
+            for (int row = 0; row < rows; row++) {
+                writer.write((row % 100_000 + 1) + "," + (row % 4 + 1) + "," + (row % 3) + "," + (row % 2) + "\n");
+            }
+        }
+        importer = new BulkPurchaseImporter(new TicketServiceImpl(new StandInTicketPaymentService(),
+            new StandInSeatReservationService()), workers);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(directory.resolve("results.csv"));
+        Files.deleteIfExists(orders);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public BulkImportSummary importCsv() throws IOException {
+        return importer.importFile(orders, directory.resolve("results.csv"));
+    }
+}
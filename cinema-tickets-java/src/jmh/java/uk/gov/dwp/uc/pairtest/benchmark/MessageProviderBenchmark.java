@@ -0,0 +1,36 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.util.MessageProvider;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageProviderBenchmark {
+
+    @Benchmark
+    public String getMessage() {
+        return MessageProvider.getMessage("error.adult.required");
+    }
+
+    @Benchmark
+    public String getFormattedMessage() {
+        return MessageProvider.getMessage("error.max.tickets", 25);
+    }
+
+    @Benchmark
+    public String getRejectionMessage() {
+        return MessageProvider.getRejectionMessage(PurchaseOutcome.MAX_TICKETS_EXCEEDED);
+    }
+}
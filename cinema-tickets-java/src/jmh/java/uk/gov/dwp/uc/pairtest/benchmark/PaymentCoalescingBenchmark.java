@@ -0,0 +1,103 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.dwp.uc.pairtest.payment.CoalescingTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.spi.BatchTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.standin.StandInTicketPaymentService;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Payment throughput against a gateway with a high fixed latency per call and a limited number of
+ * connections, paying directly versus through the {@link CoalescingTicketPaymentService}.
+ * Both run with the same number of callers.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+@State(Scope.Benchmark)
+public class PaymentCoalescingBenchmark {
+
+    @Param({"1000"})
+    public long gatewayLatencyMicros;
+
+    @Param({"4"})
+    public int connections;
+
+    @Param({"32"})
+    public int maxBatchSize;
+
+    private ConnectionLimitedGateway gateway;
+    private CoalescingTicketPaymentService coalescer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        gateway = new ConnectionLimitedGateway(
+            new StandInTicketPaymentService(TimeUnit.MICROSECONDS.toNanos(gatewayLatencyMicros)), connections);
+        coalescer = CoalescingTicketPaymentService.wrap(gateway, maxBatchSize, Duration.ofMillis(1));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        coalescer.close();
+    }
+
+    @Benchmark
+    public void direct() {
+        gateway.makePayment(1L, 25);
+    }
+
+    @Benchmark
+    public void coalesced() {
+        coalescer.makePayment(1L, 25);
+    }
+
+    // Gateway that serves at most the given number of calls at a time, like a pool of connections
+    private static final class ConnectionLimitedGateway implements BatchTicketPaymentService {
+        private final BatchTicketPaymentService gateway;
+        private final Semaphore connections;
+
+        ConnectionLimitedGateway(BatchTicketPaymentService gateway, int connections) {
+            this.gateway = gateway;
+            this.connections = new Semaphore(connections);
+        }
+
+        @Override
+        public void makePayment(long accountId, int totalAmountToPay) {
+            connections.acquireUninterruptibly();
+            try {
+                gateway.makePayment(accountId, totalAmountToPay);
+            } finally {
+                connections.release();
+            }
+        }
+
+        @Override
+        public void makePayments(long[] accountIds, int[] totalAmountsToPay, boolean[] paid, int count) {
+            connections.acquireUninterruptibly();
+            try {
+                gateway.makePayments(accountIds, totalAmountsToPay, paid, count);
+            } finally {
+                connections.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.pricing.PriceTable;
+import uk.gov.dwp.uc.pairtest.pricing.PriceTier;
+import uk.gov.dwp.uc.pairtest.pricing.PricingEngine;
+import uk.gov.dwp.uc.pairtest.pricing.QuoteTable;
+import uk.gov.dwp.uc.pairtest.util.TicketingConfig;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Precomputed quote lookup against pricing the counts directly.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PricingBenchmark {
+
+    @Param({"1", "5", "10", "25"})
+    public int orderSize;
+
+    private PriceTable priceTable;
+    private QuoteTable quoteTable;
+    private PricingEngine pricingEngine;
+    private int adults;
+    private int children;
+    private int infants;
+
+    @Setup
+    public void setUp() {
+        priceTable = PriceTable.standard();
+        quoteTable = new QuoteTable(priceTable, TicketingConfig.getMaxTickets());
+        pricingEngine = PricingEngine.load();
+
+        TicketTypeRequest[] requests = BenchmarkOrders.ofSize(orderSize);
+        adults = BenchmarkOrders.countOf(requests, TicketTypeRequest.Type.ADULT);
+        children = BenchmarkOrders.countOf(requests, TicketTypeRequest.Type.CHILD);
+        infants = BenchmarkOrders.countOf(requests, TicketTypeRequest.Type.INFANT);
+    }
+
+    @Benchmark
+    public long priceTable() {
+        return priceTable.quote(adults, children, infants);
+    }
+
+    @Benchmark
+    public long quoteTable() {
+        return quoteTable.quote(adults, children, infants);
+    }
+
+    @Benchmark
+    public long pricingEngineTier() {
+        return pricingEngine.quote(PriceTier.PEAK, adults, children, infants);
+    }
+}
@@ -0,0 +1,147 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.engine.PurchaseEngine;
+import uk.gov.dwp.uc.pairtest.pricing.TicketPricing;
+import uk.gov.dwp.uc.pairtest.spi.BatchSeatReservationService;
+import uk.gov.dwp.uc.pairtest.spi.BatchTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.standin.StandInSeatReservationService;
+import uk.gov.dwp.uc.pairtest.standin.StandInTicketPaymentService;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Purchases against a payment gateway and seat service with a fixed latency per call and a limited
+ * number of connections, through {@link TicketServiceImpl} directly versus through the sharded
+ * {@link PurchaseEngine}. Both run with the same number of callers, each blocking on its purchase.
+ * <p>
+ * Throughput mode gives purchases per millisecond; sample time mode gives the latency percentiles,
+ * including p0.999.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+@State(Scope.Benchmark)
+public class PurchaseEngineBenchmark {
+
+    @Param({"1000"})
+    public long paymentLatencyMicros;
+
+    @Param({"500"})
+    public long reservationLatencyMicros;
+
+    @Param({"4"})
+    public int connections;
+
+    @Param({"4"})
+    public int shards;
+
+    private TicketServiceImpl direct;
+    private PurchaseEngine engine;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ConnectionLimitedGateway gateway = new ConnectionLimitedGateway(
+            new StandInTicketPaymentService(TimeUnit.MICROSECONDS.toNanos(paymentLatencyMicros)), connections);
+        ConnectionLimitedSeats seats = new ConnectionLimitedSeats(
+            new StandInSeatReservationService(TimeUnit.MICROSECONDS.toNanos(reservationLatencyMicros)), connections);
+        direct = new TicketServiceImpl(gateway, seats);
+        engine = new PurchaseEngine(gateway, seats, TicketPricing.standard(), shards, 1024, 64);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Benchmark
+    public void direct() {
+        direct.purchaseTickets(ThreadLocalRandom.current().nextLong(1, 1_000_000), 2, 1, 0);
+    }
+
+    @Benchmark
+    public void engine() {
+        engine.purchaseTickets(ThreadLocalRandom.current().nextLong(1, 1_000_000), 2, 1, 0);
+    }
+
+    // Gateway that serves at most the given number of calls at a time, like a pool of connections
+    private static final class ConnectionLimitedGateway implements BatchTicketPaymentService {
+        private final BatchTicketPaymentService gateway;
+        private final Semaphore connections;
+
+        ConnectionLimitedGateway(BatchTicketPaymentService gateway, int connections) {
+            this.gateway = gateway;
+            this.connections = new Semaphore(connections);
+        }
+
+        @Override
+        public void makePayment(long accountId, int totalAmountToPay) {
+            connections.acquireUninterruptibly();
+            try {
+                gateway.makePayment(accountId, totalAmountToPay);
+            } finally {
+                connections.release();
+            }
+        }
+
+        @Override
+        public void makePayments(long[] accountIds, int[] totalAmountsToPay, boolean[] paid, int count) {
+            connections.acquireUninterruptibly();
+            try {
+                gateway.makePayments(accountIds, totalAmountsToPay, paid, count);
+            } finally {
+                connections.release();
+            }
+        }
+    }
+
+    // Seat service that serves at most the given number of calls at a time
+    private static final class ConnectionLimitedSeats implements BatchSeatReservationService {
+        private final BatchSeatReservationService seats;
+        private final Semaphore connections;
+
+        ConnectionLimitedSeats(BatchSeatReservationService seats, int connections) {
+            this.seats = seats;
+            this.connections = new Semaphore(connections);
+        }
+
+        @Override
+        public void reserveSeat(long accountId, int totalSeatsToAllocate) {
+            connections.acquireUninterruptibly();
+            try {
+                seats.reserveSeat(accountId, totalSeatsToAllocate);
+            } finally {
+                connections.release();
+            }
+        }
+
+        @Override
+        public void reserveSeats(long[] accountIds, int[] totalSeatsToAllocate, boolean[] reserved, int count) {
+            connections.acquireUninterruptibly();
+            try {
+                seats.reserveSeats(accountIds, totalSeatsToAllocate, reserved, count);
+            } finally {
+                connections.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseMetrics;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseStage;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of recording metrics on the purchase path, which should stay well below a microsecond
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PurchaseMetricsBenchmark {
+
+    private final PurchaseMetrics metrics = new PurchaseMetrics();
+
+    @Benchmark
+    public long recordStage() {
+        return metrics.recordStage(PurchaseStage.PAYMENT, System.nanoTime());
+    }
+
+    @Benchmark
+    public void recordAccepted() {
+        metrics.recordAccepted(2, 1, 1, 50, 15, 0);
+    }
+
+    @Benchmark
+    public void recordRejection() {
+        metrics.recordRejection(PurchaseOutcome.ADULT_REQUIRED);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long recordStageContended() {
+        return metrics.recordStage(PurchaseStage.PAYMENT, System.nanoTime());
+    }
+}
@@ -0,0 +1,71 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.standin.StandInSeatReservationService;
+import uk.gov.dwp.uc.pairtest.standin.StandInTicketPaymentService;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end purchase through TicketServiceImpl, with no-op (0) or latency-simulating stand-in gateways.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PurchaseTicketsBenchmark {
+
+    @Param({"1", "5", "10", "25"})
+    public int orderSize;
+
+    @Param({"0", "50000"})
+    public long gatewayLatencyNanos;
+
+    private TicketServiceImpl ticketService;
+    private TicketTypeRequest[] requests;
+    private int adults;
+    private int children;
+    private int infants;
+
+    @Setup
+    public void setUp() {
+        ticketService = new TicketServiceImpl(
+            new StandInTicketPaymentService(gatewayLatencyNanos),
+            new StandInSeatReservationService(gatewayLatencyNanos));
+        requests = BenchmarkOrders.ofSize(orderSize);
+        adults = BenchmarkOrders.countOf(requests, TicketTypeRequest.Type.ADULT);
+        children = BenchmarkOrders.countOf(requests, TicketTypeRequest.Type.CHILD);
+        infants = BenchmarkOrders.countOf(requests, TicketTypeRequest.Type.INFANT);
+    }
+
+    @Benchmark
+    public void purchaseTickets() {
+        ticketService.purchaseTickets(1L, requests);
+    }
+
+    // Counts per type: no request objects, varargs array or boxed account id
+    @Benchmark
+    public void purchaseTicketsPrimitive() {
+        ticketService.purchaseTickets(1L, adults, children, infants);
+    }
+
+    // Payment and reservation issued concurrently on virtual threads
+    @Benchmark
+    public void purchaseTicketsAsync() {
+        ticketService.purchaseTicketsAsync(1L, requests).join();
+    }
+}
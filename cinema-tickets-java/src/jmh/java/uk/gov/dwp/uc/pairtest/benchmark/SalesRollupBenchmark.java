@@ -0,0 +1,48 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.dwp.uc.pairtest.pricing.TicketPricing;
+import uk.gov.dwp.uc.pairtest.sales.SalesRollup;
+import uk.gov.dwp.uc.pairtest.sales.SalesTotals;
+import uk.gov.dwp.uc.pairtest.spi.PurchaseListener;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// Cost of adding a purchase to the sales rollup, which should allocate nothing, and of a dashboard query
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SalesRollupBenchmark {
+
+    private final SalesRollup rollup = new SalesRollup(16, Duration.ofHours(24), TicketPricing.standard());
+    private final PurchaseListener evening = rollup.forScreening("evening");
+
+    @Benchmark
+    public void record() {
+        evening.onPurchaseCompleted(1L, 1L, 2, 1, 1, 65);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordContended() {
+        evening.onPurchaseCompleted(1L, 1L, 2, 1, 1, 65);
+    }
+
+    @Benchmark
+    public SalesTotals lastHour() {
+        return rollup.lastMinutes("evening", 60);
+    }
+}
@@ -0,0 +1,88 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.inventory.ScreeningInventory;
+import uk.gov.dwp.uc.pairtest.inventory.ScreeningSeatReservationService;
+import uk.gov.dwp.uc.pairtest.inventory.SeatInventory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reserve-and-release throughput of the seat inventory, and hold-and-release throughput of its seat holds.
+ * <p>
+ * {@code distinctScreening} gives every benchmark thread its own screening and {@code sharedScreening}
+ * puts all threads on one popular screening. Run with increasing thread counts to see the scaling, e.g.
+ * {@code java -jar target/benchmarks.jar SeatInventory -t 1 -t 2 -t 4 -t 8} (one run per count).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SeatInventoryBenchmark {
+
+    private static final int CAPACITY = 400;
+
+    @State(Scope.Benchmark)
+    public static class Inventory {
+        final SeatInventory seatInventory = new SeatInventory();
+        final ScreeningInventory shared = seatInventory.addScreening("shared", CAPACITY);
+        final ScreeningSeatReservationService sharedHolds = seatInventory.forScreening("shared");
+        final AtomicInteger nextScreening = new AtomicInteger();
+    }
+
+    @State(Scope.Thread)
+    public static class Buyer {
+        @Param({"1", "4"})
+        public int seats;
+
+        ScreeningInventory own;
+
+        @Setup
+        public void setUp(Inventory inventory) {
+            own = inventory.seatInventory.addScreening("screening-" + inventory.nextScreening.incrementAndGet(), CAPACITY);
+        }
+    }
+
+    @Benchmark
+    public int[] distinctScreening(Buyer buyer) {
+        return reserveAndRelease(buyer.own, buyer.seats);
+    }
+
+    @Benchmark
+    public int[] sharedScreening(Inventory inventory, Buyer buyer) {
+        return reserveAndRelease(inventory.shared, buyer.seats);
+    }
+
+    // A hold that is abandoned: scheduled on the expiry wheel, then cancelled and its seats released
+    @Benchmark
+    public long holdAndRelease(Inventory inventory, Buyer buyer) {
+        try {
+            long holdId = inventory.sharedHolds.holdSeats(1L, buyer.seats);
+            inventory.sharedHolds.releaseHold(holdId);
+            return holdId;
+        } catch (InvalidPurchaseException e) {
+            return -1;
+        }
+    }
+
+    private static int[] reserveAndRelease(ScreeningInventory screening, int seats) {
+        int[] reserved = screening.tryReserve(seats);
+        if (reserved != null) {
+            screening.release(reserved);
+        }
+        return reserved;
+    }
+}
@@ -0,0 +1,46 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.util.TicketCalculationUtils;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TicketCalculationUtilsBenchmark {
+
+    @Param({"1", "5", "10", "25"})
+    public int orderSize;
+
+    private TicketTypeRequest[] requests;
+
+    @Setup
+    public void setUp() {
+        requests = BenchmarkOrders.ofSize(orderSize);
+    }
+
+    @Benchmark
+    public int calculateTotalAmount() {
+        return TicketCalculationUtils.calculateTotalAmount(requests);
+    }
+
+    @Benchmark
+    public int calculateTotalSeats() {
+        return TicketCalculationUtils.calculateTotalSeats(requests);
+    }
+}
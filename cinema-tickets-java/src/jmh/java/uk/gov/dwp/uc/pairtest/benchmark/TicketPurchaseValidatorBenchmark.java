@@ -0,0 +1,106 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.util.TicketPurchaseValidator;
+import uk.gov.dwp.uc.pairtest.util.TicketingConfig;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TicketPurchaseValidator on valid orders of each size, and on each rejection reason.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TicketPurchaseValidatorBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class ValidOrder {
+        @Param({"1", "5", "10", "25"})
+        public int orderSize;
+
+        TicketTypeRequest[] requests;
+
+        @Setup
+        public void setUp() {
+            requests = BenchmarkOrders.ofSize(orderSize);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class RejectedOrder {
+        @Param({"INVALID_ACCOUNT", "NO_TICKETS", "INVALID_TICKET_REQUEST", "MAX_TICKETS",
+            "ADULT_REQUIRED", "INFANT_EXCEEDS_ADULT"})
+        public String reason;
+
+        Long accountId;
+        TicketTypeRequest[] requests;
+
+        @Setup
+        public void setUp() {
+            accountId = 1L;
+            switch (reason) {
+                case "INVALID_ACCOUNT":
+                    accountId = 0L;
+                    requests = BenchmarkOrders.ofSize(1);
+                    break;
+                case "NO_TICKETS":
+                    requests = new TicketTypeRequest[0];
+                    break;
+                case "INVALID_TICKET_REQUEST":
+                    requests = new TicketTypeRequest[] {new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 0)};
+                    break;
+                case "MAX_TICKETS":
+                    requests = BenchmarkOrders.ofSize(TicketingConfig.getMaxTickets() + 1);
+                    break;
+                case "ADULT_REQUIRED":
+                    requests = new TicketTypeRequest[] {new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1)};
+                    break;
+                case "INFANT_EXCEEDS_ADULT":
+                    requests = new TicketTypeRequest[] {
+                        new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1),
+                        new TicketTypeRequest(TicketTypeRequest.Type.INFANT, 2)
+                    };
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown rejection reason: " + reason);
+            }
+        }
+    }
+
+    @Benchmark
+    public void validate(ValidOrder order) {
+        TicketPurchaseValidator.validate(1L, order.requests);
+    }
+
+    @Benchmark
+    public Object reject(RejectedOrder order) {
+        try {
+            TicketPurchaseValidator.validate(order.accountId, order.requests);
+            throw new IllegalStateException("Order was expected to be rejected: " + order.reason);
+        } catch (InvalidPurchaseException e) {
+            return e;
+        }
+    }
+
+    // Same rejections through the non-throwing outcome check
+    @Benchmark
+    public PurchaseOutcome check(RejectedOrder order) {
+        return TicketPurchaseValidator.check(order.accountId, order.requests);
+    }
+}
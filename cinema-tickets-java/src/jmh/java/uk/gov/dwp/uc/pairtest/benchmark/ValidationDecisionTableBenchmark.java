@@ -0,0 +1,80 @@
+package uk.gov.dwp.uc.pairtest.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.dwp.uc.pairtest.util.TicketPurchaseEvaluator;
+import uk.gov.dwp.uc.pairtest.util.TicketingConfig;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TicketPurchaseEvaluator on a random mix of accepted and rejected ticket counts, checking the rules
+ * one by one and through the compiled ValidationDecisionTable.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ValidationDecisionTableBenchmark {
+
+    private static final int ORDERS = 1024;
+
+    @Param({"false", "true"})
+    public boolean decisionTable;
+
+    @Param({"25", "100"})
+    public int maxTickets;
+
+    private final int[] adults = new int[ORDERS];
+    private final int[] children = new int[ORDERS];
+    private final int[] infants = new int[ORDERS];
+    private int next;
+    private Path overrideFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        overrideFile = Files.createTempFile("ticketing", ".properties");
+        Files.writeString(overrideFile, "max.tickets=" + maxTickets + "\nvalidation.decision.table=" + decisionTable + "\n");
+        System.setProperty(TicketingConfig.OVERRIDE_FILE_PROPERTY, overrideFile.toString());
+        TicketingConfig.reload();
+
+        // Counts up to a little over the maximum, so every rule rejects some orders
+        SplittableRandom random = new SplittableRandom(42);
+        int bound = maxTickets / 2 + 2;
+        for (int i = 0; i < ORDERS; i++) {
+            adults[i] = random.nextInt(bound);
+            children[i] = random.nextInt(bound);
+            infants[i] = random.nextInt(bound / 2 + 1);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.clearProperty(TicketingConfig.OVERRIDE_FILE_PROPERTY);
+        TicketingConfig.reload();
+        Files.deleteIfExists(overrideFile);
+    }
+
+    @Benchmark
+    public long evaluate() {
+        int i = next++ & (ORDERS - 1);
+        return TicketPurchaseEvaluator.tryEvaluate(1L, adults[i], children[i], infants[i]);
+    }
+}
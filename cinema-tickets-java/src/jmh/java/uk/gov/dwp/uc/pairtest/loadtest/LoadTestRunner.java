@@ -0,0 +1,148 @@
+package uk.gov.dwp.uc.pairtest.loadtest;
+
+import uk.gov.dwp.uc.pairtest.TicketService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.engine.PurchaseEngine;
+import uk.gov.dwp.uc.pairtest.standin.FaultInjector;
+import uk.gov.dwp.uc.pairtest.standin.LatencyDistribution;
+import uk.gov.dwp.uc.pairtest.standin.StandInSeatReservationService;
+import uk.gov.dwp.uc.pairtest.standin.StandInTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.util.TicketingConfig;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Capacity-planning harness: finds how many purchases per second one node sustains end to end.
+ * <p>
+ * Drives a {@link TicketServiceImpl} (or, with {@code --service=engine}, a {@link PurchaseEngine})
+ * wired to the local stand-ins, whose calls take log-normal latencies and fail at the given rates.
+ * Starting at {@code --rate}, each step runs an {@link OpenLoopLoadGenerator} for {@code --duration}
+ * seconds and then raises the rate by {@code --step}, until the throughput falls behind the rate or
+ * the p99 response time exceeds {@code --p99-ms}. With {@code --require-rate} it exits with status 1
+ * if that rate was not sustained, so it can gate a release.
+ * <p>
+ * Run with: {@code java -cp target/benchmarks.jar uk.gov.dwp.uc.pairtest.loadtest.LoadTestRunner --rate=500}
+ */
+public final class LoadTestRunner {
+
+    private static final Map<String, String> DEFAULTS = Map.ofEntries(
+        Map.entry("service", "direct"),
+        Map.entry("rate", "250"),
+        Map.entry("max-rate", "1000000"),
+        Map.entry("step", "2"),
+        Map.entry("duration", "10"),
+        Map.entry("warmup", "5"),
+        Map.entry("p99-ms", "100"),
+        Map.entry("require-rate", "0"),
+        Map.entry("order-sizes", "5,3,2,1"),
+        Map.entry("rejection-share", "0.05"),
+        Map.entry("accounts", "1000000"),
+        Map.entry("payment-median-ms", "2"),
+        Map.entry("payment-p99-ms", "20"),
+        Map.entry("payment-error-rate", "0.001"),
+        Map.entry("reservation-median-ms", "1"),
+        Map.entry("reservation-p99-ms", "10"),
+        Map.entry("reservation-error-rate", "0.001"));
+
+    private LoadTestRunner() {
+        // utility
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = parse(args);
+
+        FaultInjector paymentFaults = new FaultInjector()
+            .setExtraLatency(latency(options, "payment"))
+            .setFailureRate(doubleOption(options, "payment-error-rate"));
+        FaultInjector reservationFaults = new FaultInjector()
+            .setExtraLatency(latency(options, "reservation"))
+            .setFailureRate(doubleOption(options, "reservation-error-rate"));
+        StandInTicketPaymentService payments = new StandInTicketPaymentService(0L, paymentFaults);
+        StandInSeatReservationService reservations = new StandInSeatReservationService(0L, reservationFaults);
+
+        OrderMix orderMix = OrderMix.weighted(intList(options.get("order-sizes")))
+            .withRejectionShare(doubleOption(options, "rejection-share"))
+            .withAccounts(Long.parseLong(options.get("accounts")));
+        if (orderMix.getMaxTickets() > TicketingConfig.getMaxTickets()) {
+            System.out.println("Orders over max.tickets=" + TicketingConfig.getMaxTickets() + " will be rejected");
+        }
+
+        double rate = doubleOption(options, "rate");
+        double maxRate = doubleOption(options, "max-rate");
+        double step = doubleOption(options, "step");
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.get("duration")));
+        Duration p99Objective = Duration.ofMillis(Long.parseLong(options.get("p99-ms")));
+        double requiredRate = doubleOption(options, "require-rate");
+        if (step <= 1) {
+            throw new IllegalArgumentException("--step must be above 1: " + step);
+        }
+
+        double sustained = 0;
+        TicketService ticketService = "engine".equals(options.get("service"))
+            ? new PurchaseEngine(payments, reservations)
+            : new TicketServiceImpl(payments, reservations);
+        try {
+            OpenLoopLoadGenerator generator = new OpenLoopLoadGenerator(ticketService, orderMix);
+            long warmup = Long.parseLong(options.get("warmup"));
+            if (warmup > 0) {
+                generator.run(rate, Duration.ofSeconds(warmup));
+            }
+
+            System.out.println("Response times from when each order was due; p99 objective " + p99Objective.toMillis() + " ms");
+            System.out.println(LoadTestReport.header());
+            for (; rate <= maxRate; rate *= step) {
+                LoadTestReport report = generator.run(rate, duration);
+                System.out.println(report.format());
+                if (!report.isSustained(p99Objective)) {
+                    break;
+                }
+                sustained = rate;
+            }
+        } finally {
+            if (ticketService instanceof PurchaseEngine engine) {
+                engine.close();
+            }
+        }
+
+        System.out.printf("Highest rate sustained: %.0f/s%n", sustained);
+        if (sustained < requiredRate) {
+            System.out.printf("Required rate of %.0f/s not sustained%n", requiredRate);
+            System.exit(1);
+        }
+    }
+
+    private static LatencyDistribution latency(Map<String, String> options, String service) {
+        Duration median = Duration.ofNanos((long) (doubleOption(options, service + "-median-ms") * 1e6));
+        Duration p99 = Duration.ofNanos((long) (doubleOption(options, service + "-p99-ms") * 1e6));
+        return median.isZero() ? LatencyDistribution.fixed(p99) : LatencyDistribution.logNormal(median, p99);
+    }
+
+    // --name=value options, over the defaults
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0 || !DEFAULTS.containsKey(arg.substring(2, equals))) {
+                throw new IllegalArgumentException("Unknown option " + arg + ", expected --name=value with a name of "
+                    + DEFAULTS.keySet());
+            }
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        return options;
+    }
+
+    private static double doubleOption(Map<String, String> options, String name) {
+        return Double.parseDouble(options.get(name));
+    }
+
+    private static int[] intList(String value) {
+        String[] parts = value.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,138 @@
+package uk.gov.dwp.uc.pairtest;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.util.IdempotencyCache;
+import uk.gov.dwp.uc.pairtest.util.TicketPurchaseEvaluator;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * {@link TicketService} decorator that makes purchases idempotent by a client supplied key.
+ * <p>
+ * The first purchase with a key runs normally and its outcome is kept for the time-to-live, if it is a
+ * success or a rejection of the order itself. A retry with the same key gets that outcome back without
+ * running the purchase, or calling the payment and seat services, again. Duplicates that arrive while the
+ * first purchase is still running wait for it rather than starting their own. Any other failure, such as
+ * a busy or unavailable service or a gateway error, is not kept: the key is given up, so the next retry
+ * runs the purchase again. Keys must be unique across accounts, e.g. UUIDs;
+ * a key reused for a different account or ticket counts is rejected with IDEMPOTENCY_KEY_REUSED.
+ * Purchases without a key are passed straight through.
+ */
+public class IdempotentTicketService implements TicketService {
+
+    private final TicketService ticketService;
+    private final IdempotencyCache<Void> results;
+
+    public IdempotentTicketService(TicketService ticketService, int maxEntries, Duration ttl) {
+        this.ticketService = ticketService;
+        this.results = new IdempotencyCache<>(maxEntries, ttl);
+    }
+
+    @Override
+    public void purchaseTickets(Long accountId, TicketTypeRequest... ticketTypeRequests) throws InvalidPurchaseException {
+        ticketService.purchaseTickets(accountId, ticketTypeRequests);
+    }
+
+    @Override
+    public void purchaseTickets(long accountId, int adults, int children, int infants) throws InvalidPurchaseException {
+        ticketService.purchaseTickets(accountId, adults, children, infants);
+    }
+
+    public void purchaseTickets(String idempotencyKey, Long accountId, TicketTypeRequest... ticketTypeRequests)
+            throws InvalidPurchaseException {
+        if (idempotencyKey == null) {
+            ticketService.purchaseTickets(accountId, ticketTypeRequests);
+            return;
+        }
+
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        CompletableFuture<Void> original = claim(idempotencyKey, Order.of(accountId, ticketTypeRequests), result);
+        if (original != null) {
+            replay(original);
+            return;
+        }
+
+        try {
+            ticketService.purchaseTickets(accountId, ticketTypeRequests);
+            result.complete(null);
+        } catch (RuntimeException | Error e) {
+            fail(idempotencyKey, result, e);
+            throw e;
+        }
+    }
+
+    public void purchaseTickets(String idempotencyKey, long accountId, int adults, int children, int infants)
+            throws InvalidPurchaseException {
+        if (idempotencyKey == null) {
+            ticketService.purchaseTickets(accountId, adults, children, infants);
+            return;
+        }
+
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        CompletableFuture<Void> original = claim(idempotencyKey, new Order(accountId, adults, children, infants), result);
+        if (original != null) {
+            replay(original);
+            return;
+        }
+
+        try {
+            ticketService.purchaseTickets(accountId, adults, children, infants);
+            result.complete(null);
+        } catch (RuntimeException | Error e) {
+            fail(idempotencyKey, result, e);
+            throw e;
+        }
+    }
+
+    private CompletableFuture<Void> claim(String idempotencyKey, Order order, CompletableFuture<Void> result) {
+        try {
+            return results.claim(idempotencyKey, order, result);
+        } catch (IllegalArgumentException e) {
+            throw TicketPurchaseEvaluator.rejection(PurchaseOutcome.IDEMPOTENCY_KEY_REUSED);
+        }
+    }
+
+    // Keeps a rejection of the order for replay; gives the key up on any other failure, which a retry may not meet
+    private void fail(String idempotencyKey, CompletableFuture<Void> result, Throwable failure) {
+        if (!(failure instanceof InvalidPurchaseException e) || e.getOutcome() == null || e.getOutcome().isTransient()) {
+            results.release(idempotencyKey, result);
+        }
+        result.completeExceptionally(failure);
+    }
+
+    // Waits for the original purchase and rethrows its exception, if it failed
+    private static void replay(CompletableFuture<Void> original) {
+        try {
+            original.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // What a key is claimed for: the account and ticket counts, however the request was expressed
+    private record Order(Long accountId, long adults, long children, long infants) {
+
+        static Order of(Long accountId, TicketTypeRequest... ticketTypeRequests) {
+            long[] counts = new long[TicketTypeRequest.Type.values().length];
+            if (ticketTypeRequests != null) {
+                for (TicketTypeRequest request : ticketTypeRequests) {
+                    if (request != null) {
+                        counts[request.getTicketType().ordinal()] += request.getNoOfTickets();
+                    }
+                }
+            }
+            return new Order(accountId, counts[TicketTypeRequest.Type.ADULT.ordinal()],
+                counts[TicketTypeRequest.Type.CHILD.ordinal()], counts[TicketTypeRequest.Type.INFANT.ordinal()]);
+        }
+    }
+}
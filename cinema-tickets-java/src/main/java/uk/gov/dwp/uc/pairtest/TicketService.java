@@ -7,4 +7,24 @@ public interface TicketService {
 
     void purchaseTickets(Long accountId, TicketTypeRequest... ticketTypeRequests) throws InvalidPurchaseException;
 
+    /**
+     * Purchases tickets given as a count per type. Counts of zero are allowed for any type.
+     * Implementations can override this to avoid building request objects altogether.
+     */
+    default void purchaseTickets(long accountId, int adults, int children, int infants) throws InvalidPurchaseException {
+        // Types with no tickets are left out; negative counts are kept so they are rejected as invalid requests
+        TicketTypeRequest[] requests = new TicketTypeRequest[(adults != 0 ? 1 : 0) + (children != 0 ? 1 : 0) + (infants != 0 ? 1 : 0)];
+        int i = 0;
+        if (adults != 0) {
+            requests[i++] = TicketTypeRequest.of(TicketTypeRequest.Type.ADULT, adults);
+        }
+        if (children != 0) {
+            requests[i++] = TicketTypeRequest.of(TicketTypeRequest.Type.CHILD, children);
+        }
+        if (infants != 0) {
+            requests[i] = TicketTypeRequest.of(TicketTypeRequest.Type.INFANT, infants);
+        }
+        purchaseTickets(accountId, requests);
+    }
+
 }
@@ -4,41 +4,460 @@ import thirdparty.paymentgateway.TicketPaymentService;
 import thirdparty.paymentgateway.TicketPaymentServiceImpl;
 import thirdparty.seatbooking.SeatReservationService;
 import thirdparty.seatbooking.SeatReservationServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
 import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
 import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.limits.PurchaseLimiter;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseMetrics;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseStage;
+import uk.gov.dwp.uc.pairtest.pricing.TicketPricing;
+import uk.gov.dwp.uc.pairtest.spi.PurchaseIds;
+import uk.gov.dwp.uc.pairtest.spi.PurchaseListener;
+import uk.gov.dwp.uc.pairtest.spi.RefundableTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.spi.ReleasableSeatReservationService;
+import uk.gov.dwp.uc.pairtest.spi.SeatHoldService;
 // Utility class for fetching i18n messages
+import uk.gov.dwp.uc.pairtest.util.AccountLocks;
 import uk.gov.dwp.uc.pairtest.util.MessageProvider;
-import uk.gov.dwp.uc.pairtest.util.TicketCalculationUtils;
-import uk.gov.dwp.uc.pairtest.util.TicketPurchaseValidator;
+import uk.gov.dwp.uc.pairtest.util.TicketPurchaseEvaluator;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 public class TicketServiceImpl implements TicketService {
 
+    private static final System.Logger LOGGER = System.getLogger(TicketServiceImpl.class.getName());
+
+    // One virtual thread per async purchase step, so in-flight purchases do not need a platform thread each
+    private static final Executor ASYNC_EXECUTOR =
+        Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ticket-purchase-", 0).factory());
+
     private final TicketPaymentService ticketPaymentService;
     private final SeatReservationService seatReservationService;
+    private final TicketPricing ticketPricing;
+    private final PurchaseListener purchaseListener;
+    private final PurchaseLimiter purchaseLimiter;
+    // Serialises purchases of the same account, while different accounts run in parallel
+    private final AccountLocks accountLocks = AccountLocks.forAvailableProcessors();
+    private final PurchaseMetrics metrics = new PurchaseMetrics();
 
     public TicketServiceImpl() {
-        this.ticketPaymentService = new TicketPaymentServiceImpl();
-        this.seatReservationService = new SeatReservationServiceImpl();
+        this(new TicketPaymentServiceImpl(), new SeatReservationServiceImpl());
+    }
+
+    // Constructor for testing with mock services, or wiring in other gateways such as local stand-ins
+    public TicketServiceImpl(TicketPaymentService ticketPaymentService, SeatReservationService seatReservationService) {
+        this(ticketPaymentService, seatReservationService, TicketPricing.standard());
+    }
+
+    // Constructor for selling at other prices, e.g. a tier or screening of the PricingEngine
+    public TicketServiceImpl(TicketPaymentService ticketPaymentService, SeatReservationService seatReservationService,
+                             TicketPricing ticketPricing) {
+        this(ticketPaymentService, seatReservationService, ticketPricing, PurchaseListener.NONE);
+    }
+
+    // Constructor for observing each settlement step, e.g. with a PurchaseJournal
+    public TicketServiceImpl(TicketPaymentService ticketPaymentService, SeatReservationService seatReservationService,
+                             TicketPricing ticketPricing, PurchaseListener purchaseListener) {
+        this(ticketPaymentService, seatReservationService, ticketPricing, purchaseListener, PurchaseLimiter.NONE);
     }
 
-    // Constructor for testing with mock services
-    TicketServiceImpl(TicketPaymentService ticketPaymentService, SeatReservationService seatReservationService) {
+    // Constructor for limiting the tickets each account buys over time, e.g. with PurchaseLimits.forScreening
+    public TicketServiceImpl(TicketPaymentService ticketPaymentService, SeatReservationService seatReservationService,
+                             TicketPricing ticketPricing, PurchaseListener purchaseListener, PurchaseLimiter purchaseLimiter) {
         this.ticketPaymentService = ticketPaymentService;
         this.seatReservationService = seatReservationService;
+        this.ticketPricing = ticketPricing;
+        this.purchaseListener = purchaseListener;
+        this.purchaseLimiter = purchaseLimiter;
     }
 
     @Override
     public void purchaseTickets(Long accountId, TicketTypeRequest... ticketTypeRequests) throws InvalidPurchaseException {
-        TicketPurchaseValidator.validate(accountId, ticketTypeRequests);
+        // Validate and calculate total amount and seats to reserve in one pass
+        long start = System.nanoTime();
+        long evaluation = TicketPurchaseEvaluator.tryEvaluate(accountId, ticketTypeRequests);
+        long evaluated = metrics.recordStage(PurchaseStage.VALIDATION, start);
+        orThrow(evaluation);
+        settle(accountId, evaluation, evaluated);
+    }
+
+    // Primitive path: no request objects, no varargs array and no boxed account id
+    @Override
+    public void purchaseTickets(long accountId, int adults, int children, int infants) throws InvalidPurchaseException {
+        long start = System.nanoTime();
+        long evaluation = TicketPurchaseEvaluator.tryEvaluate(accountId, adults, children, infants);
+        long evaluated = metrics.recordStage(PurchaseStage.VALIDATION, start);
+        orThrow(evaluation);
+        settle(accountId, evaluation, evaluated);
+    }
+
+    // Metrics of this service's purchases: counters and per-stage latencies
+    public PurchaseMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Make payment and reserve seats, one purchase per account at a time
+    private void settle(long accountId, long evaluation, long start) {
+        int totalAmount = totalAmount(evaluation);
+        metrics.recordStage(PurchaseStage.PRICING, start);
+        acquireLimits(accountId, evaluation);
+        long purchaseId = PurchaseIds.next();
+        boolean settled = false;
+        accountLocks.lock(accountId);
+        try {
+            if (seatReservationService instanceof SeatHoldService seatHolds) {
+                holdPayAndConfirm(purchaseId, accountId, evaluation, totalAmount, seatHolds);
+            } else {
+                payAndReserve(purchaseId, accountId, evaluation, totalAmount);
+            }
+            settled = true;
+        } finally {
+            accountLocks.unlock(accountId);
+            if (!settled) {
+                releaseLimits(accountId, evaluation);
+            }
+        }
+        recordAccepted(evaluation);
+    }
+
+    private void payAndReserve(long purchaseId, long accountId, long evaluation, int totalAmount) {
+        boolean paid = false;
+        try {
+            // Time spent waiting for the account lock is not part of either stage
+            long stageStart = System.nanoTime();
+            ticketPaymentService.makePayment(accountId, totalAmount);
+            paid = true;
+            notifyPaymentTaken(purchaseId, accountId, evaluation, totalAmount);
+            stageStart = metrics.recordStage(PurchaseStage.PAYMENT, stageStart);
+            seatReservationService.reserveSeat(accountId, TicketPurchaseEvaluator.totalSeats(evaluation));
+            metrics.recordStage(PurchaseStage.RESERVATION, stageStart);
+        } catch (RuntimeException e) {
+            PurchaseOutcome outcome = e instanceof InvalidPurchaseException rejection ? rejection.getOutcome() : null;
+            recordRejection(outcome);
+            if (paid) {
+                // The seats were not reserved, so they are not paid for
+                boolean refunded = refundIfRefundable(accountId, totalAmount, e);
+                notifyPurchaseFailed(purchaseId, accountId, evaluation, totalAmount, outcome, refunded);
+            }
+            throw e;
+        }
+        notifyPurchaseCompleted(purchaseId, accountId, evaluation, totalAmount);
+    }
+
+    // Holds the seats before taking the payment, so a sold-out screening is never charged
+    private void holdPayAndConfirm(long purchaseId, long accountId, long evaluation, int totalAmount,
+                                   SeatHoldService seatHolds) {
+        long holdId = 0;
+        boolean held = false;
+        boolean paid = false;
+        boolean confirmed = false;
+        try {
+            long stageStart = System.nanoTime();
+            holdId = seatHolds.holdSeats(accountId, TicketPurchaseEvaluator.totalSeats(evaluation));
+            held = true;
+            long holdNanos = System.nanoTime() - stageStart;
+            stageStart += holdNanos;
+            ticketPaymentService.makePayment(accountId, totalAmount);
+            paid = true;
+            notifyPaymentTaken(purchaseId, accountId, evaluation, totalAmount);
+            stageStart = metrics.recordStage(PurchaseStage.PAYMENT, stageStart);
+            seatHolds.confirmHold(holdId);
+            confirmed = true;
+            // The hold and its confirmation together make up the reservation stage
+            metrics.recordStage(PurchaseStage.RESERVATION, stageStart - holdNanos);
+        } catch (RuntimeException e) {
+            PurchaseOutcome outcome = e instanceof InvalidPurchaseException rejection ? rejection.getOutcome() : null;
+            recordRejection(outcome);
+            if (held && !confirmed) {
+                try {
+                    seatHolds.releaseHold(holdId);
+                } catch (RuntimeException releaseFailure) {
+                    e.addSuppressed(releaseFailure);
+                }
+            }
+            // Seats that were not sold are not paid for, e.g. when the hold expired during the payment
+            boolean refunded = paid && !confirmed && refundIfRefundable(accountId, totalAmount, e);
+            if (paid) {
+                notifyPurchaseFailed(purchaseId, accountId, evaluation, totalAmount, outcome, refunded);
+            }
+            throw e;
+        }
+        notifyPurchaseCompleted(purchaseId, accountId, evaluation, totalAmount);
+    }
+
+    // Refunds the payment where the gateway allows it; a failed refund is added to the purchase's failure
+    private boolean refundIfRefundable(long accountId, int totalAmount, RuntimeException failure) {
+        if (!(ticketPaymentService instanceof RefundableTicketPaymentService refundable)) {
+            return false;
+        }
+        try {
+            refundable.refundPayment(accountId, totalAmount);
+            return true;
+        } catch (RuntimeException refundFailure) {
+            failure.addSuppressed(refundFailure);
+            return false;
+        }
+    }
+
+    /**
+     * Purchases tickets for many orders in one call.
+     * All orders are validated and priced first; only the accepted ones are then settled
+     * with the payment and seat reservation services. A rejected or failed order does not stop the batch.
+     *
+     * @param orders the orders to purchase
+     * @return one result per order, in the same order as the input
+     */
+    public List<PurchaseResult> purchaseTickets(List<PurchaseOrder> orders) {
+        if (orders == null || orders.isEmpty()) {
+            return List.of();
+        }
+
+        int size = orders.size();
+        PurchaseResult[] results = new PurchaseResult[size];
+        long[] evaluations = new long[size];
+
+        // Validate and price every order before touching the external services, without throwing
+        for (int i = 0; i < size; i++) {
+            PurchaseOrder order = orders.get(i);
+            if (order == null) {
+                results[i] = rejected(null, PurchaseOutcome.INVALID_TICKET_REQUEST);
+                continue;
+            }
+
+            long start = System.nanoTime();
+            evaluations[i] = TicketPurchaseEvaluator.tryEvaluate(order.getAccountId(), order.getTicketTypeRequests());
+            metrics.recordStage(PurchaseStage.VALIDATION, start);
+            if (!TicketPurchaseEvaluator.isAccepted(evaluations[i])) {
+                PurchaseOutcome outcome = TicketPurchaseEvaluator.outcomeOf(evaluations[i]);
+                metrics.recordRejection(outcome);
+                results[i] = rejected(order.getAccountId(), outcome);
+            }
+        }
+
+        // Settle the accepted orders
+        for (int i = 0; i < size; i++) {
+            if (results[i] != null) {
+                continue;
+            }
+
+            Long accountId = orders.get(i).getAccountId();
+            try {
+                settle(accountId, evaluations[i], System.nanoTime());
+                results[i] = PurchaseResult.accepted(accountId);
+            } catch (InvalidPurchaseException e) {
+                results[i] = PurchaseResult.rejected(accountId, e.getOutcome(), e.getMessage());
+            } catch (RuntimeException e) {
+                // e.g. a gateway error, or a total beyond the gateway's int amount; the batch carries on
+                results[i] = PurchaseResult.rejected(accountId, String.valueOf(e.getMessage()));
+            }
+        }
+
+        return List.of(results);
+    }
+
+    // The payment gateway takes an int amount, so a total beyond it fails with an ArithmeticException
+    private int totalAmount(long evaluation) {
+        return Math.toIntExact(ticketPricing.quote(TicketPurchaseEvaluator.adults(evaluation),
+            TicketPurchaseEvaluator.children(evaluation), TicketPurchaseEvaluator.infants(evaluation)));
+    }
+
+    // Counts the purchase against the account's limits, or rejects it if that would exceed one
+    private void acquireLimits(long accountId, long evaluation) {
+        if (!purchaseLimiter.tryAcquire(accountId, tickets(evaluation))) {
+            metrics.recordRejection(PurchaseOutcome.PURCHASE_LIMIT_EXCEEDED);
+            throw TicketPurchaseEvaluator.rejection(PurchaseOutcome.PURCHASE_LIMIT_EXCEEDED);
+        }
+    }
+
+    // A purchase that failed does not count against the limits
+    private void releaseLimits(long accountId, long evaluation) {
+        purchaseLimiter.release(accountId, tickets(evaluation));
+    }
+
+    private static int tickets(long evaluation) {
+        return TicketPurchaseEvaluator.adults(evaluation) + TicketPurchaseEvaluator.children(evaluation)
+            + TicketPurchaseEvaluator.infants(evaluation);
+    }
+
+    private void orThrow(long evaluation) {
+        if (!TicketPurchaseEvaluator.isAccepted(evaluation)) {
+            PurchaseOutcome outcome = TicketPurchaseEvaluator.outcomeOf(evaluation);
+            metrics.recordRejection(outcome);
+            throw TicketPurchaseEvaluator.rejection(outcome);
+        }
+    }
+
+    private void recordRejection(PurchaseOutcome outcome) {
+        if (outcome != null) {
+            metrics.recordRejection(outcome);
+        } else {
+            metrics.recordFailure();
+        }
+    }
+
+    // Revenue per type is quoted for each type on its own, which matches the total for per-ticket pricing
+    private void recordAccepted(long evaluation) {
+        int adults = TicketPurchaseEvaluator.adults(evaluation);
+        int children = TicketPurchaseEvaluator.children(evaluation);
+        int infants = TicketPurchaseEvaluator.infants(evaluation);
+        metrics.recordAccepted(adults, children, infants,
+            ticketPricing.quote(adults, 0, 0), ticketPricing.quote(0, children, 0), ticketPricing.quote(0, 0, infants));
+    }
+
+    private static PurchaseResult rejected(Long accountId, PurchaseOutcome outcome) {
+        return PurchaseResult.rejected(accountId, outcome, MessageProvider.getRejectionMessage(outcome));
+    }
+
+    /**
+     * Purchases tickets without blocking the caller.
+     * <p>
+     * Validation happens on the calling thread, so an invalid purchase returns an already failed future.
+     * The payment and the seat reservation then run on virtual threads. When both services can undo
+     * their step ({@link RefundableTicketPaymentService} and {@link ReleasableSeatReservationService}),
+     * the two calls are issued concurrently and, if one of them fails, the step that succeeded is
+     * compensated. Otherwise, and always for a {@link SeatHoldService}, whose seats are held before the
+     * payment, they run one after the other, as in {@link #purchaseTickets(Long, TicketTypeRequest...)}.
+     *
+     * @return a future that completes when the purchase is settled, or exceptionally with the failure
+     */
+    public CompletableFuture<Void> purchaseTicketsAsync(Long accountId, TicketTypeRequest... ticketTypeRequests) {
+        long start = System.nanoTime();
+        long evaluation = TicketPurchaseEvaluator.tryEvaluate(accountId, ticketTypeRequests);
+        long evaluated = metrics.recordStage(PurchaseStage.VALIDATION, start);
+        if (!TicketPurchaseEvaluator.isAccepted(evaluation)) {
+            PurchaseOutcome outcome = TicketPurchaseEvaluator.outcomeOf(evaluation);
+            metrics.recordRejection(outcome);
+            return CompletableFuture.failedFuture(TicketPurchaseEvaluator.rejection(outcome));
+        }
 
-        // Calculate total amount and seats to reserve
-        int totalAmount = TicketCalculationUtils.calculateTotalAmount(ticketTypeRequests);
-        int totalSeats = TicketCalculationUtils.calculateTotalSeats(ticketTypeRequests);
+        long account = accountId;
+        if (seatReservationService instanceof SeatHoldService
+                || !(ticketPaymentService instanceof RefundableTicketPaymentService refundable)
+                || !(seatReservationService instanceof ReleasableSeatReservationService releasable)) {
+            // Without compensation a failed reservation must not follow a payment that cannot be undone
+            return CompletableFuture.runAsync(() -> settle(account, evaluation, System.nanoTime()), ASYNC_EXECUTOR);
+        }
+
+        // The account stays locked until both steps, and any compensation, have finished
+        int totalAmount = totalAmount(evaluation);
+        metrics.recordStage(PurchaseStage.PRICING, evaluated);
+        int totalSeats = TicketPurchaseEvaluator.totalSeats(evaluation);
+        try {
+            acquireLimits(account, evaluation);
+        } catch (InvalidPurchaseException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        long purchaseId = PurchaseIds.next();
+        return CompletableFuture.runAsync(() -> accountLocks.lock(account), ASYNC_EXECUTOR)
+            .thenCompose(locked -> settleConcurrently(purchaseId, account, evaluation, totalAmount, totalSeats,
+                refundable, releasable))
+            .whenComplete((ignored, failure) -> {
+                accountLocks.unlock(account);
+                if (failure == null) {
+                    recordAccepted(evaluation);
+                } else {
+                    releaseLimits(account, evaluation);
+                    Throwable cause = unwrap(failure);
+                    recordRejection(cause instanceof InvalidPurchaseException e ? e.getOutcome() : null);
+                }
+            });
+    }
+
+    private CompletableFuture<Void> settleConcurrently(long purchaseId, long account, long evaluation, int totalAmount,
+                                                      int totalSeats,
+                                                      RefundableTicketPaymentService refundable,
+                                                      ReleasableSeatReservationService releasable) {
+        CompletableFuture<Throwable> payment = CompletableFuture
+            .runAsync(() -> {
+                long start = System.nanoTime();
+                refundable.makePayment(account, totalAmount);
+                metrics.recordStage(PurchaseStage.PAYMENT, start);
+                notifyPaymentTaken(purchaseId, account, evaluation, totalAmount);
+            }, ASYNC_EXECUTOR)
+            .handle((ignored, failure) -> unwrap(failure));
+        CompletableFuture<Throwable> reservation = CompletableFuture
+            .runAsync(() -> {
+                long start = System.nanoTime();
+                releasable.reserveSeat(account, totalSeats);
+                metrics.recordStage(PurchaseStage.RESERVATION, start);
+            }, ASYNC_EXECUTOR)
+            .handle((ignored, failure) -> unwrap(failure));
+
+        return payment.thenCombineAsync(reservation, (paymentFailure, reservationFailure) -> {
+            if (paymentFailure == null && reservationFailure == null) {
+                notifyPurchaseCompleted(purchaseId, account, evaluation, totalAmount);
+                return null;
+            }
+
+            Throwable failure = paymentFailure != null ? paymentFailure : reservationFailure;
+            if (paymentFailure != null && reservationFailure != null) {
+                failure.addSuppressed(reservationFailure);
+            }
+
+            // Undo whichever step succeeded
+            boolean refunded = false;
+            try {
+                if (paymentFailure == null) {
+                    refundable.refundPayment(account, totalAmount);
+                    refunded = true;
+                }
+                if (reservationFailure == null) {
+                    releasable.releaseSeat(account, totalSeats);
+                }
+            } catch (RuntimeException compensationFailure) {
+                failure.addSuppressed(compensationFailure);
+            }
+            if (paymentFailure == null) {
+                PurchaseOutcome outcome = failure instanceof InvalidPurchaseException e ? e.getOutcome() : null;
+                notifyPurchaseFailed(purchaseId, account, evaluation, totalAmount, outcome, refunded);
+            }
+
+            throw new CompletionException(failure);
+        }, ASYNC_EXECUTOR);
+    }
+
+    // Listener calls sit outside the settlement: a failing listener is logged and never changes the outcome
+
+    private void notifyPaymentTaken(long purchaseId, long accountId, long evaluation, int totalAmount) {
+        try {
+            purchaseListener.onPaymentTaken(purchaseId, accountId, TicketPurchaseEvaluator.adults(evaluation),
+                TicketPurchaseEvaluator.children(evaluation), TicketPurchaseEvaluator.infants(evaluation), totalAmount);
+        } catch (RuntimeException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Purchase listener failed on payment taken", e);
+        }
+    }
+
+    private void notifyPurchaseCompleted(long purchaseId, long accountId, long evaluation, int totalAmount) {
+        try {
+            purchaseListener.onPurchaseCompleted(purchaseId, accountId, TicketPurchaseEvaluator.adults(evaluation),
+                TicketPurchaseEvaluator.children(evaluation), TicketPurchaseEvaluator.infants(evaluation), totalAmount);
+        } catch (RuntimeException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Purchase listener failed on purchase completed", e);
+        }
+    }
+
+    private void notifyPurchaseFailed(long purchaseId, long accountId, long evaluation, int totalAmount,
+                                      PurchaseOutcome outcome, boolean refunded) {
+        try {
+            purchaseListener.onPurchaseFailed(purchaseId, accountId, TicketPurchaseEvaluator.adults(evaluation),
+                TicketPurchaseEvaluator.children(evaluation), TicketPurchaseEvaluator.infants(evaluation), totalAmount,
+                outcome, refunded);
+        } catch (RuntimeException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Purchase listener failed on purchase failed", e);
+        }
+    }
 
-        // Make payment and reserve seats
-        ticketPaymentService.makePayment(accountId, totalAmount);
-        seatReservationService.reserveSeat(accountId, totalSeats);
+    private static Throwable unwrap(Throwable failure) {
+        if (failure instanceof CompletionException && failure.getCause() != null) {
+            return failure.getCause();
+        }
+        return failure;
     }
 
 }
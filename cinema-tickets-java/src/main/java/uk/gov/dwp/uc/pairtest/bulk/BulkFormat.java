@@ -0,0 +1,29 @@
+package uk.gov.dwp.uc.pairtest.bulk;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Formats of bulk order files. Every line is one order, with the ticket counts per type.
+ * <ul>
+ *     <li>CSV: {@code accountId,adults,children,infants}, with an optional header line</li>
+ *     <li>NDJSON: {@code {"accountId":1,"adults":2,"children":1,"infants":0}}, missing counts being 0</li>
+ * </ul>
+ */
+public enum BulkFormat {
+    CSV, NDJSON;
+
+    /**
+     * @throws IllegalArgumentException if the extension is neither .csv nor .ndjson/.jsonl
+     */
+    public static BulkFormat fromFileName(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        throw new IllegalArgumentException("Unknown bulk order format: " + file);
+    }
+}
@@ -0,0 +1,51 @@
+package uk.gov.dwp.uc.pairtest.bulk;
+
+/**
+ * Immutable Object
+ *
+ * Counts of the rows of a bulk import by result.
+ */
+public final class BulkImportSummary {
+
+    private final long accepted;
+    private final long rejected;
+    private final long failed;
+    private final long invalid;
+
+    BulkImportSummary(long accepted, long rejected, long failed, long invalid) {
+        this.accepted = accepted;
+        this.rejected = rejected;
+        this.failed = failed;
+        this.invalid = invalid;
+    }
+
+    // Orders processed, blank lines and the CSV header not included
+    public long getRows() {
+        return accepted + rejected + failed + invalid;
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    // Orders that broke a business rule
+    public long getRejected() {
+        return rejected;
+    }
+
+    // Orders that failed for another reason, e.g. a gateway error
+    public long getFailed() {
+        return failed;
+    }
+
+    // Lines that could not be parsed
+    public long getInvalid() {
+        return invalid;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkImportSummary{rows=" + getRows() + ", accepted=" + accepted + ", rejected=" + rejected
+            + ", failed=" + failed + ", invalid=" + invalid + "}";
+    }
+}
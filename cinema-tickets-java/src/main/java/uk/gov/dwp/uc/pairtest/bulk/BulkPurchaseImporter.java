@@ -0,0 +1,484 @@
+package uk.gov.dwp.uc.pairtest.bulk;
+
+import uk.gov.dwp.uc.pairtest.TicketService;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.util.MessageProvider;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Purchases the orders of a bulk file, such as a group booking or a partner channel's export,
+ * and writes one result line per order.
+ * <p>
+ * The file is streamed through a fixed-size buffer and every line is parsed in place, so memory stays
+ * flat whatever the size of the file. Orders are partitioned by account id across the workers, each
+ * fed by a bounded queue, so the orders of one account are purchased in file order while different
+ * accounts are purchased in parallel. Each order goes through
+ * {@link TicketService#purchaseTickets(long, int, int, int)}, i.e. the usual validation and pricing.
+ * <p>
+ * The results file is CSV, {@code row,accountId,outcome,message}, where {@code row} is the line number
+ * of the order. As the workers run in parallel, the lines are not in row order. The outcome is the
+ * {@link PurchaseOutcome} name, {@code FAILED} for an error that is not a rejection, or
+ * {@code INVALID_ROW} for a line that cannot be parsed.
+ */
+public final class BulkPurchaseImporter {
+
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+    private static final int BATCH_SIZE = 512;
+    private static final int QUEUE_DEPTH = 4;
+    private static final int MAX_MESSAGE_LENGTH = 1024;
+
+    private static final byte[] RESULTS_HEADER = "row,accountId,outcome,message\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FAILED = "FAILED".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] INVALID_ROW = "INVALID_ROW".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] INVALID_ROW_MESSAGE = "Malformed order".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LINE_TOO_LONG_MESSAGE = "Line too long".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] NO_MESSAGE = new byte[0];
+
+    // Outcome names, encoded once
+    private static final byte[][] OUTCOME_NAMES;
+
+    static {
+        PurchaseOutcome[] outcomes = PurchaseOutcome.values();
+        OUTCOME_NAMES = new byte[outcomes.length][];
+        for (PurchaseOutcome outcome : outcomes) {
+            OUTCOME_NAMES[outcome.getCode()] = outcome.name().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private static final byte STATUS_ORDER = 0;
+    private static final byte STATUS_MALFORMED = 1;
+    private static final byte STATUS_TOO_LONG = 2;
+
+    private final TicketService ticketService;
+    private final int workers;
+
+    /**
+     * @param workers the number of partitions purchased in parallel
+     */
+    public BulkPurchaseImporter(TicketService ticketService, int workers) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("workers must be positive: " + workers);
+        }
+        this.ticketService = ticketService;
+        this.workers = workers;
+    }
+
+    // Imports the orders in the format given by the file extension
+    public BulkImportSummary importFile(Path orders, Path results) throws IOException {
+        return importFile(orders, BulkFormat.fromFileName(orders), results);
+    }
+
+    /**
+     * Purchases every order in the file and writes the results file, replacing any existing one.
+     *
+     * @return the counts of orders by result
+     * @throws IOException if a file cannot be read or written
+     */
+    public BulkImportSummary importFile(Path orders, BulkFormat format, Path results) throws IOException {
+        try (FileChannel in = FileChannel.open(orders, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(results, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                 StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(out, ByteBuffer.wrap(RESULTS_HEADER));
+
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            Worker[] partitions = new Worker[workers];
+            Thread[] threads = new Thread[workers];
+            for (int i = 0; i < workers; i++) {
+                partitions[i] = new Worker(out, failure);
+                threads[i] = Thread.ofVirtual().name("bulk-import-" + i).start(partitions[i]);
+            }
+
+            try {
+                read(in, format, partitions, failure);
+            } finally {
+                for (Worker worker : partitions) {
+                    worker.finish();
+                }
+                for (Thread thread : threads) {
+                    joinUninterruptibly(thread);
+                }
+            }
+
+            Throwable error = failure.get();
+            if (error instanceof IOException e) {
+                throw e;
+            }
+            if (error != null) {
+                throw new IOException("Bulk import failed", error);
+            }
+
+            long accepted = 0, rejected = 0, failed = 0, invalid = 0;
+            for (Worker worker : partitions) {
+                accepted += worker.accepted;
+                rejected += worker.rejected;
+                failed += worker.failed;
+                invalid += worker.invalid;
+            }
+            return new BulkImportSummary(accepted, rejected, failed, invalid);
+        }
+    }
+
+    private void read(FileChannel in, BulkFormat format, Worker[] partitions, AtomicReference<Throwable> failure)
+            throws IOException {
+        OrderReader reader = new OrderReader(format, partitions);
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        boolean eof = false;
+        while (!eof && failure.get() == null) {
+            eof = in.read(buffer) < 0;
+            buffer.flip();
+            int limit = buffer.limit();
+            int lineStart = 0;
+            for (int i = 0; i < limit; i++) {
+                if (buffer.get(i) == '\n') {
+                    reader.line(buffer, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+            if (eof && lineStart < limit) {
+                // last line without a newline
+                reader.line(buffer, lineStart, limit);
+                lineStart = limit;
+            }
+
+            buffer.position(lineStart);
+            buffer.compact();
+            if (!buffer.hasRemaining()) {
+                reader.lineTooLong();
+                buffer.clear();
+            }
+        }
+        reader.submitRemaining();
+    }
+
+    private int partitionOf(long accountId) {
+        long hash = accountId * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(hash ^ (hash >>> 32), (long) workers);
+    }
+
+    private static boolean isBlank(ByteBuffer buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b != ' ' && b != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void write(FileChannel out, ByteBuffer bytes) throws IOException {
+        // Workers share the results file; each flush is written as one block
+        synchronized (out) {
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Escapes a message as one CSV field, cut short so that a result line always fits the write buffer
+    private static byte[] csvField(String message) {
+        String field = message.length() > MAX_MESSAGE_LENGTH ? message.substring(0, MAX_MESSAGE_LENGTH) : message;
+        field = field.replace('\n', ' ').replace('\r', ' ');
+        if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0) {
+            field = '"' + field.replace("\"", "\"\"") + '"';
+        }
+        return field.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Parses the lines of the file, in order, into the batches of their partitions
+    private final class OrderReader {
+        private final BulkFormat format;
+        private final Worker[] partitions;
+        private final RowBatch[] batches = new RowBatch[workers];
+        private final long[] values = new long[4];
+        private long row;
+        private boolean firstLine = true;
+        private boolean skippingLongLine;
+
+        OrderReader(BulkFormat format, Worker[] partitions) {
+            this.format = format;
+            this.partitions = partitions;
+            for (int i = 0; i < workers; i++) {
+                batches[i] = new RowBatch();
+            }
+        }
+
+        void line(ByteBuffer buffer, int start, int end) throws InterruptedIOException {
+            if (skippingLongLine) {
+                // the rest of a line already reported as too long
+                skippingLongLine = false;
+                return;
+            }
+
+            row++;
+            if (end > start && buffer.get(end - 1) == '\r') {
+                end--;
+            }
+            if (isBlank(buffer, start, end)) {
+                return;
+            }
+            boolean header = firstLine && format == BulkFormat.CSV && OrderParser.isCsvHeader(buffer, start, end);
+            firstLine = false;
+            if (header) {
+                return;
+            }
+
+            boolean parsed = format == BulkFormat.CSV
+                ? OrderParser.parseCsv(buffer, start, end, values)
+                : OrderParser.parseJson(buffer, start, end, values);
+            if (parsed) {
+                add(values[OrderParser.ACCOUNT_ID], (int) values[OrderParser.ADULTS],
+                    (int) values[OrderParser.CHILDREN], (int) values[OrderParser.INFANTS], STATUS_ORDER);
+            } else {
+                add(0, 0, 0, 0, STATUS_MALFORMED);
+            }
+        }
+
+        // A line longer than the read buffer cannot be an order
+        void lineTooLong() throws InterruptedIOException {
+            if (!skippingLongLine) {
+                row++;
+                firstLine = false;
+                skippingLongLine = true;
+                add(0, 0, 0, 0, STATUS_TOO_LONG);
+            }
+        }
+
+        void submitRemaining() throws InterruptedIOException {
+            for (int i = 0; i < workers; i++) {
+                if (batches[i].count > 0) {
+                    partitions[i].submit(batches[i]);
+                    batches[i] = new RowBatch();
+                }
+            }
+        }
+
+        private void add(long accountId, int adults, int children, int infants, byte status)
+                throws InterruptedIOException {
+            int partition = partitionOf(accountId);
+            RowBatch batch = batches[partition];
+            batch.add(row, accountId, adults, children, infants, status);
+            if (batch.count == BATCH_SIZE) {
+                partitions[partition].submit(batch);
+                batches[partition] = new RowBatch();
+            }
+        }
+    }
+
+    // Orders of one partition, in primitive columns
+    private static final class RowBatch {
+        final long[] rows = new long[BATCH_SIZE];
+        final long[] accountIds = new long[BATCH_SIZE];
+        final int[] adults = new int[BATCH_SIZE];
+        final int[] children = new int[BATCH_SIZE];
+        final int[] infants = new int[BATCH_SIZE];
+        final byte[] statuses = new byte[BATCH_SIZE];
+        int count;
+
+        void add(long row, long accountId, int adults, int children, int infants, byte status) {
+            rows[count] = row;
+            accountIds[count] = accountId;
+            this.adults[count] = adults;
+            this.children[count] = children;
+            this.infants[count] = infants;
+            statuses[count] = status;
+            count++;
+        }
+    }
+
+    private final class Worker implements Runnable {
+        // An empty batch tells the worker that the file has been read
+        private final RowBatch endOfFile = new RowBatch();
+        private final BlockingQueue<RowBatch> queue = new ArrayBlockingQueue<>(QUEUE_DEPTH);
+        private final ByteBuffer results = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+        private final FileChannel out;
+        private final AtomicReference<Throwable> failure;
+        // Rejection messages last encoded, re-encoded only when MessageProvider hands out a new one
+        private final String[] messages = new String[OUTCOME_NAMES.length];
+        private final byte[][] encodedMessages = new byte[OUTCOME_NAMES.length][];
+
+        // Only read after the worker thread has been joined
+        long accepted;
+        long rejected;
+        long failed;
+        long invalid;
+
+        Worker(FileChannel out, AtomicReference<Throwable> failure) {
+            this.out = out;
+            this.failure = failure;
+        }
+
+        void submit(RowBatch batch) throws InterruptedIOException {
+            try {
+                queue.put(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while queueing orders");
+            }
+        }
+
+        void finish() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    queue.put(endOfFile);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                RowBatch batch = takeUninterruptibly();
+                if (batch == endOfFile) {
+                    break;
+                }
+                // After a failure keep draining, so the reader is never blocked on a full queue
+                if (failure.get() == null) {
+                    try {
+                        purchase(batch);
+                    } catch (IOException | RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            }
+            if (failure.get() == null) {
+                try {
+                    flush();
+                } catch (IOException e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        }
+
+        private RowBatch takeUninterruptibly() {
+            while (true) {
+                try {
+                    return queue.take();
+                } catch (InterruptedException e) {
+                    // the reader decides when the import ends
+                }
+            }
+        }
+
+        private void purchase(RowBatch batch) throws IOException {
+            for (int i = 0; i < batch.count; i++) {
+                long row = batch.rows[i];
+                long accountId = batch.accountIds[i];
+                if (batch.statuses[i] != STATUS_ORDER) {
+                    invalid++;
+                    writeResult(row, accountId, false, INVALID_ROW,
+                        batch.statuses[i] == STATUS_TOO_LONG ? LINE_TOO_LONG_MESSAGE : INVALID_ROW_MESSAGE);
+                    continue;
+                }
+
+                try {
+                    ticketService.purchaseTickets(accountId, batch.adults[i], batch.children[i], batch.infants[i]);
+                    accepted++;
+                    writeResult(row, accountId, true, OUTCOME_NAMES[PurchaseOutcome.ACCEPTED.getCode()],
+                        NO_MESSAGE);
+                } catch (InvalidPurchaseException e) {
+                    PurchaseOutcome outcome = e.getOutcome();
+                    if (outcome != null) {
+                        rejected++;
+                        writeResult(row, accountId, true, OUTCOME_NAMES[outcome.getCode()],
+                            rejectionMessage(outcome));
+                    } else {
+                        failed++;
+                        writeResult(row, accountId, true, FAILED, csvField(String.valueOf(e.getMessage())));
+                    }
+                } catch (RuntimeException e) {
+                    failed++;
+                    writeResult(row, accountId, true, FAILED, csvField(String.valueOf(e.getMessage())));
+                }
+            }
+        }
+
+        // The message in force for the outcome, e.g. with the limit of a reloaded configuration
+        private byte[] rejectionMessage(PurchaseOutcome outcome) {
+            int code = outcome.getCode();
+            String message = MessageProvider.getRejectionMessage(outcome);
+            if (message != messages[code]) {
+                encodedMessages[code] = csvField(message);
+                messages[code] = message;
+            }
+            return encodedMessages[code];
+        }
+
+        private void writeResult(long row, long accountId, boolean hasAccount, byte[] outcome, byte[] message)
+                throws IOException {
+            // two numbers of at most 20 digits, three commas and a newline
+            int length = 46 + outcome.length + message.length;
+            if (results.remaining() < length) {
+                flush();
+            }
+            putNumber(row);
+            results.put((byte) ',');
+            if (hasAccount) {
+                putNumber(accountId);
+            }
+            results.put((byte) ',').put(outcome).put((byte) ',').put(message).put((byte) '\n');
+        }
+
+        private void putNumber(long value) {
+            if (value < 0) {
+                results.put((byte) '-');
+                if (value == Long.MIN_VALUE) {
+                    results.put("9223372036854775808".getBytes(StandardCharsets.US_ASCII));
+                    return;
+                }
+                value = -value;
+            }
+            int start = results.position();
+            do {
+                results.put((byte) ('0' + value % 10));
+                value /= 10;
+            } while (value != 0);
+            // digits were written least significant first
+            for (int i = start, j = results.position() - 1; i < j; i++, j--) {
+                byte digit = results.get(i);
+                results.put(i, results.get(j));
+                results.put(j, digit);
+            }
+        }
+
+        private void flush() throws IOException {
+            results.flip();
+            write(out, results);
+            results.clear();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package uk.gov.dwp.uc.pairtest.bulk;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses one order line straight from the read buffer, without decoding it into a String.
+ */
+final class OrderParser {
+
+    static final int ACCOUNT_ID = 0;
+    static final int ADULTS = 1;
+    static final int CHILDREN = 2;
+    static final int INFANTS = 3;
+
+    private static final byte[][] JSON_KEYS = {
+        "accountId".getBytes(StandardCharsets.US_ASCII),
+        "adults".getBytes(StandardCharsets.US_ASCII),
+        "children".getBytes(StandardCharsets.US_ASCII),
+        "infants".getBytes(StandardCharsets.US_ASCII)
+    };
+
+    private OrderParser() {
+        // utility
+    }
+
+    // Whether the line starts like a CSV header rather than an order
+    static boolean isCsvHeader(ByteBuffer buffer, int start, int end) {
+        int pos = skipSpaces(buffer, start, end);
+        if (pos == end) {
+            return false;
+        }
+        byte first = buffer.get(pos);
+        return first != '-' && (first < '0' || first > '9');
+    }
+
+    /**
+     * Parses {@code accountId,adults,children,infants} into the values array.
+     *
+     * @return whether the line is well formed
+     */
+    static boolean parseCsv(ByteBuffer buffer, int start, int end, long[] values) {
+        int pos = start;
+        for (int field = ACCOUNT_ID; field <= INFANTS; field++) {
+            pos = skipSpaces(buffer, pos, end);
+            pos = parseNumber(buffer, pos, end, values, field);
+            if (pos < 0) {
+                return false;
+            }
+            pos = skipSpaces(buffer, pos, end);
+            if (field < INFANTS) {
+                if (pos == end || buffer.get(pos) != ',') {
+                    return false;
+                }
+                pos++;
+            }
+        }
+        return pos == end && countsFitInt(values);
+    }
+
+    /**
+     * Parses a flat JSON object with numeric {@code accountId}, {@code adults}, {@code children} and
+     * {@code infants} members into the values array. Other members with string, number or literal
+     * values are ignored.
+     *
+     * @return whether the line is well formed and has an account id
+     */
+    static boolean parseJson(ByteBuffer buffer, int start, int end, long[] values) {
+        values[ACCOUNT_ID] = Long.MIN_VALUE;
+        values[ADULTS] = 0;
+        values[CHILDREN] = 0;
+        values[INFANTS] = 0;
+
+        int pos = skipSpaces(buffer, start, end);
+        if (pos == end || buffer.get(pos++) != '{') {
+            return false;
+        }
+        pos = skipSpaces(buffer, pos, end);
+        if (pos < end && buffer.get(pos) == '}') {
+            pos++;
+        } else {
+            while (true) {
+                if (pos == end || buffer.get(pos) != '"') {
+                    return false;
+                }
+                int keyStart = pos + 1;
+                int keyEnd = keyStart;
+                while (keyEnd < end && buffer.get(keyEnd) != '"') {
+                    if (buffer.get(keyEnd) == '\\') {
+                        return false;
+                    }
+                    keyEnd++;
+                }
+                if (keyEnd == end) {
+                    return false;
+                }
+                pos = skipSpaces(buffer, keyEnd + 1, end);
+                if (pos == end || buffer.get(pos++) != ':') {
+                    return false;
+                }
+                pos = skipSpaces(buffer, pos, end);
+
+                int field = fieldOf(buffer, keyStart, keyEnd);
+                pos = field >= 0 ? parseNumber(buffer, pos, end, values, field) : skipValue(buffer, pos, end);
+                if (pos < 0) {
+                    return false;
+                }
+
+                pos = skipSpaces(buffer, pos, end);
+                if (pos == end) {
+                    return false;
+                }
+                byte next = buffer.get(pos++);
+                if (next == '}') {
+                    break;
+                }
+                if (next != ',') {
+                    return false;
+                }
+                pos = skipSpaces(buffer, pos, end);
+            }
+        }
+        return skipSpaces(buffer, pos, end) == end && values[ACCOUNT_ID] != Long.MIN_VALUE && countsFitInt(values);
+    }
+
+    private static int fieldOf(ByteBuffer buffer, int keyStart, int keyEnd) {
+        for (int field = 0; field < JSON_KEYS.length; field++) {
+            byte[] key = JSON_KEYS[field];
+            if (key.length == keyEnd - keyStart && matches(buffer, keyStart, key)) {
+                return field;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matches(ByteBuffer buffer, int start, byte[] key) {
+        for (int i = 0; i < key.length; i++) {
+            if (buffer.get(start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Parses an optionally negative integer into values[field]; returns the position after it, or -1
+    private static int parseNumber(ByteBuffer buffer, int pos, int end, long[] values, int field) {
+        boolean negative = pos < end && buffer.get(pos) == '-';
+        if (negative) {
+            pos++;
+        }
+        int digitsStart = pos;
+        long value = 0;
+        while (pos < end) {
+            int digit = buffer.get(pos) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            if (value > (Long.MAX_VALUE - digit) / 10) {
+                return -1;
+            }
+            value = value * 10 + digit;
+            pos++;
+        }
+        if (pos == digitsStart) {
+            return -1;
+        }
+        values[field] = negative ? -value : value;
+        return pos;
+    }
+
+    // Skips a string, number or literal value; returns the position after it, or -1
+    private static int skipValue(ByteBuffer buffer, int pos, int end) {
+        if (pos == end) {
+            return -1;
+        }
+        if (buffer.get(pos) == '"') {
+            pos++;
+            while (pos < end) {
+                byte b = buffer.get(pos++);
+                if (b == '\\') {
+                    pos++;
+                } else if (b == '"') {
+                    return pos;
+                }
+            }
+            return -1;
+        }
+        int valueStart = pos;
+        while (pos < end) {
+            byte b = buffer.get(pos);
+            if (b == ',' || b == '}' || b == ' ' || b == '\t') {
+                break;
+            }
+            if (b == '{' || b == '[') {
+                // nested values are not part of an order
+                return -1;
+            }
+            pos++;
+        }
+        return pos == valueStart ? -1 : pos;
+    }
+
+    private static boolean countsFitInt(long[] values) {
+        for (int field = ADULTS; field <= INFANTS; field++) {
+            if (values[field] < Integer.MIN_VALUE || values[field] > Integer.MAX_VALUE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipSpaces(ByteBuffer buffer, int pos, int end) {
+        while (pos < end && (buffer.get(pos) == ' ' || buffer.get(pos) == '\t')) {
+            pos++;
+        }
+        return pos;
+    }
+}
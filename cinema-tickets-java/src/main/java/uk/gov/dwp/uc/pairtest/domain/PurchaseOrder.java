@@ -0,0 +1,27 @@
+package uk.gov.dwp.uc.pairtest.domain;
+
+/**
+ * Immutable Object
+ *
+ * A single purchase (account plus requested tickets) submitted as part of a batch.
+ */
+
+public final class PurchaseOrder {
+
+    private final Long accountId;
+    private final TicketTypeRequest[] ticketTypeRequests;
+
+    public PurchaseOrder(Long accountId, TicketTypeRequest... ticketTypeRequests) {
+        this.accountId = accountId;
+        this.ticketTypeRequests = ticketTypeRequests == null ? null : ticketTypeRequests.clone();
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public TicketTypeRequest[] getTicketTypeRequests() {
+        return ticketTypeRequests == null ? null : ticketTypeRequests.clone();
+    }
+
+}
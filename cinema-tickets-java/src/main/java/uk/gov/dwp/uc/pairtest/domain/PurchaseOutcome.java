@@ -0,0 +1,54 @@
+package uk.gov.dwp.uc.pairtest.domain;
+
+/**
+ * Compact outcome of evaluating a ticket purchase.
+ * Every rejection maps to its error message key in messages.properties.
+ */
+public enum PurchaseOutcome {
+    ACCEPTED(null),
+    INVALID_ACCOUNT_ID("error.invalid.accountId"),
+    NO_TICKETS("error.no.tickets"),
+    INVALID_TICKET_REQUEST("error.invalid.ticket.request"),
+    MAX_TICKETS_EXCEEDED("error.max.tickets"),
+    ADULT_REQUIRED("error.adult.required"),
+    INFANT_EXCEEDS_ADULT("error.infant.exceeds.adult"),
+    SEATS_UNAVAILABLE("error.seats.unavailable"),
+    SERVICE_TIMEOUT("error.service.timeout"),
+    SERVICE_BUSY("error.service.busy"),
+    SERVICE_UNAVAILABLE("error.service.unavailable"),
+    HOLD_EXPIRED("error.hold.expired"),
+    PURCHASE_LIMIT_EXCEEDED("error.purchase.limit"),
+    IDEMPOTENCY_KEY_REUSED("error.idempotency.key.reused");
+
+    private static final PurchaseOutcome[] VALUES = values();
+
+    private final String messageKey;
+
+    PurchaseOutcome(String messageKey) {
+        this.messageKey = messageKey;
+    }
+
+    // Outcome for a code returned by getCode()
+    public static PurchaseOutcome fromCode(int code) {
+        return VALUES[code];
+    }
+
+    public int getCode() {
+        return ordinal();
+    }
+
+    // Key of the error message in messages.properties, or null when the purchase was accepted
+    public String getMessageKey() {
+        return messageKey;
+    }
+
+    public boolean isAccepted() {
+        return this == ACCEPTED;
+    }
+
+    // Whether the rejection is down to the service's state rather than the order, so a retry may succeed
+    public boolean isTransient() {
+        return this == SERVICE_TIMEOUT || this == SERVICE_BUSY || this == SERVICE_UNAVAILABLE
+            || this == PURCHASE_LIMIT_EXCEEDED;
+    }
+}
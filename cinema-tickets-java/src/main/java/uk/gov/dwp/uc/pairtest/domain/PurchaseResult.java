@@ -0,0 +1,53 @@
+package uk.gov.dwp.uc.pairtest.domain;
+
+/**
+ * Immutable Object
+ *
+ * Outcome of one order in a batch purchase: either accepted, or rejected with the reason.
+ */
+
+public final class PurchaseResult {
+
+    private final Long accountId;
+    private final boolean accepted;
+    private final PurchaseOutcome outcome;
+    private final String reason;
+
+    private PurchaseResult(Long accountId, boolean accepted, PurchaseOutcome outcome, String reason) {
+        this.accountId = accountId;
+        this.accepted = accepted;
+        this.outcome = outcome;
+        this.reason = reason;
+    }
+
+    public static PurchaseResult accepted(Long accountId) {
+        return new PurchaseResult(accountId, true, PurchaseOutcome.ACCEPTED, null);
+    }
+
+    public static PurchaseResult rejected(Long accountId, String reason) {
+        return new PurchaseResult(accountId, false, null, reason);
+    }
+
+    public static PurchaseResult rejected(Long accountId, PurchaseOutcome outcome, String reason) {
+        return new PurchaseResult(accountId, false, outcome, reason);
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public boolean isAccepted() {
+        return accepted;
+    }
+
+    // Outcome code, or null when the rejection did not come from a known outcome (e.g. a gateway failure)
+    public PurchaseOutcome getOutcome() {
+        return outcome;
+    }
+
+    // Rejection message, or null when the order was accepted
+    public String getReason() {
+        return reason;
+    }
+
+}
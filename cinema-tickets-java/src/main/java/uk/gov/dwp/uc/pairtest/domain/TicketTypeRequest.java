@@ -6,6 +6,12 @@ package uk.gov.dwp.uc.pairtest.domain;
 
 public final class TicketTypeRequest {
 
+    // Highest count with a shared instance: the default max.tickets, fixed so it does not depend on the configuration
+    static final int MAX_CACHED_TICKETS = 25;
+
+    // Shared instances for every type and count from 1 to MAX_CACHED_TICKETS, indexed by [type ordinal][count]
+    private static final TicketTypeRequest[][] CACHE = createCache(MAX_CACHED_TICKETS);
+
     private final int noOfTickets;
     private final Type type;
 
@@ -18,6 +24,33 @@ public final class TicketTypeRequest {
         this.noOfTickets = noOfTickets;
     }
 
+    /**
+     * Returns a request for the given type and count, reusing a shared instance when the count
+     * is between 1 and 25, the default {@code max.tickets}. Any other count gets a new instance.
+     */
+    public static TicketTypeRequest of(Type type, int noOfTickets) {
+        if (type == null) {
+            throw new IllegalArgumentException("Type cannot be null");
+        }
+
+        TicketTypeRequest[] cached = CACHE[type.ordinal()];
+        if (noOfTickets > 0 && noOfTickets < cached.length) {
+            return cached[noOfTickets];
+        }
+        return new TicketTypeRequest(type, noOfTickets);
+    }
+
+    private static TicketTypeRequest[][] createCache(int maxTickets) {
+        Type[] types = Type.values();
+        TicketTypeRequest[][] cache = new TicketTypeRequest[types.length][maxTickets + 1];
+        for (Type type : types) {
+            for (int count = 1; count <= maxTickets; count++) {
+                cache[type.ordinal()][count] = new TicketTypeRequest(type, count);
+            }
+        }
+        return cache;
+    }
+
     public int getNoOfTickets() {
         return noOfTickets;
     }
@@ -0,0 +1,25 @@
+package uk.gov.dwp.uc.pairtest.engine;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+
+/**
+ * Receives the result of a purchase submitted to the {@link PurchaseEngine}.
+ */
+@FunctionalInterface
+public interface PurchaseCallback {
+
+    /**
+     * Called once per purchase on the worker thread of the purchase's shard, so it must return quickly
+     * and must not block.
+     *
+     * @param accountId the account of the purchase
+     * @param tag       the value passed to {@link PurchaseEngine#submit}
+     * @param outcome   ACCEPTED, the reason the purchase was rejected, or null if it failed unexpectedly
+     * @param failure   the exception the settlement failed with, or null if the purchase was accepted
+     *                  or rejected by the business rules; a
+     *                  {@link uk.gov.dwp.uc.pairtest.exception.RefundFailedException} if it failed after
+     *                  payment and could not be refunded
+     */
+    void settled(long accountId, long tag, PurchaseOutcome outcome, RuntimeException failure);
+
+}
@@ -0,0 +1,207 @@
+package uk.gov.dwp.uc.pairtest.engine;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.TicketService;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.limits.PurchaseLimiter;
+import uk.gov.dwp.uc.pairtest.pricing.TicketPricing;
+import uk.gov.dwp.uc.pairtest.spi.PurchaseListener;
+import uk.gov.dwp.uc.pairtest.util.TicketPurchaseEvaluator;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Purchase engine for peak on-sales: purchases are sharded by account across single-threaded
+ * workers, instead of many threads contending inside {@code TicketServiceImpl}.
+ * <p>
+ * Each shard has a {@link PurchaseRing} of preallocated slots and one {@link PurchaseWorker}.
+ * {@link #submit} only claims a slot of the account's shard, copies the purchase into it and
+ * publishes it; nothing is allocated per purchase. The worker validates, prices and settles the
+ * purchases in batches, calling the downstream services once per batch where they support it, and
+ * reports each result to its {@link PurchaseCallback}. A purchase whose seats cannot be reserved
+ * after payment is refunded when the gateway is a
+ * {@link uk.gov.dwp.uc.pairtest.spi.RefundableTicketPaymentService}; if the refund fails too, the
+ * callback gets a {@link uk.gov.dwp.uc.pairtest.exception.RefundFailedException}. A
+ * {@link PurchaseListener}, e.g. a {@code PurchaseJournal}, is told of every settlement step, and a
+ * {@link PurchaseLimiter} counts each account's tickets as in {@code TicketServiceImpl}.
+ * <p>
+ * The engine is also a {@link TicketService} whose calls block until the purchase is settled.
+ */
+public final class PurchaseEngine implements TicketService, AutoCloseable {
+
+    private final PurchaseRing[] rings;
+    private final Thread[] workers;
+    private volatile boolean closed;
+
+    // One shard per core, with 1024 slots and batches of up to 64 purchases each
+    public PurchaseEngine(TicketPaymentService ticketPaymentService, SeatReservationService seatReservationService) {
+        this(ticketPaymentService, seatReservationService, TicketPricing.standard(),
+            Runtime.getRuntime().availableProcessors(), 1024, 64);
+    }
+
+    /**
+     * @param shards       the number of workers, each settling the purchases of its share of the accounts
+     * @param ringSize     the purchases each shard can queue, a power of two
+     * @param maxBatchSize the most purchases a worker settles in one batch
+     */
+    public PurchaseEngine(TicketPaymentService ticketPaymentService, SeatReservationService seatReservationService,
+                          TicketPricing ticketPricing, int shards, int ringSize, int maxBatchSize) {
+        this(ticketPaymentService, seatReservationService, ticketPricing, PurchaseListener.NONE,
+            shards, ringSize, maxBatchSize);
+    }
+
+    // Engine observing each settlement step, e.g. with a PurchaseJournal
+    public PurchaseEngine(TicketPaymentService ticketPaymentService, SeatReservationService seatReservationService,
+                          TicketPricing ticketPricing, PurchaseListener purchaseListener,
+                          int shards, int ringSize, int maxBatchSize) {
+        this(ticketPaymentService, seatReservationService, ticketPricing, purchaseListener, PurchaseLimiter.NONE,
+            shards, ringSize, maxBatchSize);
+    }
+
+    // Engine also limiting the tickets each account buys over time, e.g. with PurchaseLimits.forScreening
+    public PurchaseEngine(TicketPaymentService ticketPaymentService, SeatReservationService seatReservationService,
+                          TicketPricing ticketPricing, PurchaseListener purchaseListener, PurchaseLimiter purchaseLimiter,
+                          int shards, int ringSize, int maxBatchSize) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("shards must be positive: " + shards);
+        }
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize must be positive: " + maxBatchSize);
+        }
+
+        this.rings = new PurchaseRing[shards];
+        this.workers = new Thread[shards];
+        for (int i = 0; i < shards; i++) {
+            rings[i] = new PurchaseRing(ringSize);
+            workers[i] = new Thread(new PurchaseWorker(rings[i], maxBatchSize, ticketPaymentService,
+                seatReservationService, ticketPricing, purchaseListener, purchaseLimiter, this), "purchase-engine-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Queues the purchase on its account's shard, waiting only if that shard's ring is full.
+     * Counts of zero are allowed for any type, as long as the rules are met overall.
+     *
+     * @param tag      any value of the caller's, e.g. a request id or the submit time, passed back to the callback
+     * @param callback told the result on the worker thread once the purchase is settled
+     * @throws IllegalStateException if the engine is closed
+     */
+    public void submit(long accountId, int adults, int children, int infants, long tag, PurchaseCallback callback) {
+        if (closed) {
+            throw new IllegalStateException("Purchase engine is closed");
+        }
+        enqueue(accountId, adults, children, infants, tag, callback);
+    }
+
+    // Claims, fills and publishes the purchase's slot, for a producer that found the engine open
+    void enqueue(long accountId, int adults, int children, int infants, long tag, PurchaseCallback callback) {
+        PurchaseRing ring = rings[shard(accountId)];
+        long sequence = ring.claim();
+        PurchaseSlot slot = ring.get(sequence);
+        // A worker only stops once closed is set and every claimed slot is published, so if close()
+        // came after the first check, the claim must still be published, cancelled, for the worker to step over
+        if (closed) {
+            slot.cancelled = true;
+            ring.publish(sequence);
+            throw new IllegalStateException("Purchase engine is closed");
+        }
+        slot.accountId = accountId;
+        slot.adults = adults;
+        slot.children = children;
+        slot.infants = infants;
+        slot.tag = tag;
+        slot.callback = callback;
+        ring.publish(sequence);
+    }
+
+    /**
+     * Queues the purchase as {@link #submit} does.
+     *
+     * @return a future that completes when the purchase is settled, or exceptionally with the rejection or failure
+     */
+    public CompletableFuture<Void> purchaseAsync(long accountId, int adults, int children, int infants) {
+        PurchaseFuture purchase = new PurchaseFuture();
+        submit(accountId, adults, children, infants, 0L, purchase);
+        return purchase;
+    }
+
+    @Override
+    public void purchaseTickets(Long accountId, TicketTypeRequest... ticketTypeRequests) throws InvalidPurchaseException {
+        // The requests are tallied here so the workers only ever see counts; they validate them again
+        long evaluation = TicketPurchaseEvaluator.evaluate(accountId, ticketTypeRequests);
+        purchaseTickets(accountId, TicketPurchaseEvaluator.adults(evaluation),
+            TicketPurchaseEvaluator.children(evaluation), TicketPurchaseEvaluator.infants(evaluation));
+    }
+
+    @Override
+    public void purchaseTickets(long accountId, int adults, int children, int infants) throws InvalidPurchaseException {
+        try {
+            purchaseAsync(accountId, adults, children, infants).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException failure) {
+                throw failure;
+            }
+            throw e;
+        }
+    }
+
+    public int getShardCount() {
+        return rings.length;
+    }
+
+    /**
+     * Stops accepting purchases and waits for the workers to settle those already submitted.
+     * A purchase submitted while the engine closes is either settled or refused with an
+     * {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        boolean interrupted = false;
+        for (Thread worker : workers) {
+            while (worker.isAlive()) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    // Spreads sequential account ids across the shards (the 64-bit finaliser of MurmurHash3)
+    int shard(long accountId) {
+        long h = accountId;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) Long.remainderUnsigned(h, rings.length);
+    }
+
+    // Callback completing a future, for callers that do not bring their own
+    private static final class PurchaseFuture extends CompletableFuture<Void> implements PurchaseCallback {
+        @Override
+        public void settled(long accountId, long tag, PurchaseOutcome outcome, RuntimeException failure) {
+            if (outcome == PurchaseOutcome.ACCEPTED) {
+                complete(null);
+            } else {
+                completeExceptionally(failure != null ? failure : TicketPurchaseEvaluator.rejection(outcome));
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package uk.gov.dwp.uc.pairtest.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded ring of preallocated {@link PurchaseSlot}s, written by many producers and read by one worker.
+ * <p>
+ * A producer claims the next sequence with a single atomic increment, fills in the slot at that
+ * sequence and publishes it by writing the sequence into the slot. The worker reads the published
+ * slots in sequence order and hands them back by advancing its consumed sequence. When the ring is
+ * full, producers wait for the worker, so a slow downstream service applies back pressure.
+ */
+final class PurchaseRing {
+
+    // Spins before a waiting thread parks
+    private static final int SPIN_LIMIT = 64;
+
+    private final PurchaseSlot[] slots;
+    private final int mask;
+    private final AtomicLong nextSequence = new AtomicLong();
+    // Sequence of the last purchase the worker is done with; its slot and those before it can be reused
+    private volatile long consumed = -1;
+    // The worker while it is parked waiting for purchases, so producers know to wake it
+    private volatile Thread waitingWorker;
+
+    PurchaseRing(int size) {
+        if (size <= 0 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Ring size must be a power of two: " + size);
+        }
+
+        this.slots = new PurchaseSlot[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            slots[i] = new PurchaseSlot();
+        }
+    }
+
+    // Claims the next slot, waiting while the ring is full
+    long claim() {
+        long sequence = nextSequence.getAndIncrement();
+        int spins = 0;
+        while (sequence - consumed > slots.length) {
+            spins = backOff(spins);
+        }
+        return sequence;
+    }
+
+    PurchaseSlot get(long sequence) {
+        return slots[(int) sequence & mask];
+    }
+
+    void publish(long sequence) {
+        get(sequence).published = sequence;
+        Thread worker = waitingWorker;
+        if (worker != null) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    boolean isPublished(long sequence) {
+        return get(sequence).published == sequence;
+    }
+
+    // Sequence the next claim will get
+    long getNextSequence() {
+        return nextSequence.get();
+    }
+
+    // Called by the worker when it is done with the purchases up to and including the sequence
+    void release(long sequence) {
+        consumed = sequence;
+    }
+
+    // Called by the worker: waits until the sequence is published, or at most the timeout
+    void awaitPublished(long sequence, long timeoutNanos) {
+        for (int spins = 0; spins < SPIN_LIMIT; spins++) {
+            if (isPublished(sequence)) {
+                return;
+            }
+            Thread.onSpinWait();
+        }
+
+        // Announce the wait before the last check, so a producer publishing now sees it and unparks
+        waitingWorker = Thread.currentThread();
+        if (!isPublished(sequence)) {
+            LockSupport.parkNanos(this, timeoutNanos);
+        }
+        waitingWorker = null;
+    }
+
+    private static int backOff(int spins) {
+        if (spins < SPIN_LIMIT) {
+            Thread.onSpinWait();
+            return spins + 1;
+        }
+        LockSupport.parkNanos(1_000L);
+        return spins;
+    }
+}
@@ -0,0 +1,47 @@
+package uk.gov.dwp.uc.pairtest.engine;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+
+/**
+ * Reusable entry of a {@link PurchaseRing}: the purchase written by its producer, and the state of its
+ * settlement kept by the worker.
+ */
+final class PurchaseSlot {
+
+    // Sequence of the purchase last published into this slot
+    volatile long published = -1;
+
+    // Written by the producer before publishing
+    // Set for a slot claimed after the engine closed: published only so the worker steps over it
+    boolean cancelled;
+    long accountId;
+    int adults;
+    int children;
+    int infants;
+    long tag;
+    PurchaseCallback callback;
+
+    // Settlement state, only touched by the worker
+    long purchaseId;
+    int totalAmount;
+    int totalSeats;
+    long holdId;
+    // Whether the seats are held and neither confirmed nor released yet
+    boolean held;
+    PurchaseOutcome outcome;
+    RuntimeException failure;
+
+    void fail(RuntimeException failure, PurchaseOutcome outcome) {
+        this.failure = failure;
+        this.outcome = outcome;
+    }
+
+    // Drops the references of a settled purchase so they do not outlive it
+    void clear() {
+        cancelled = false;
+        held = false;
+        callback = null;
+        outcome = null;
+        failure = null;
+    }
+}
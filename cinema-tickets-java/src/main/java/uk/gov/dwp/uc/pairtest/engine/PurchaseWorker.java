@@ -0,0 +1,351 @@
+package uk.gov.dwp.uc.pairtest.engine;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.exception.RefundFailedException;
+import uk.gov.dwp.uc.pairtest.limits.PurchaseLimiter;
+import uk.gov.dwp.uc.pairtest.pricing.TicketPricing;
+import uk.gov.dwp.uc.pairtest.spi.BatchSeatReservationService;
+import uk.gov.dwp.uc.pairtest.spi.BatchTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.spi.PurchaseIds;
+import uk.gov.dwp.uc.pairtest.spi.PurchaseListener;
+import uk.gov.dwp.uc.pairtest.spi.RefundableTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.spi.SeatHoldService;
+import uk.gov.dwp.uc.pairtest.util.TicketPurchaseEvaluator;
+
+/**
+ * Single thread settling the purchases of one shard of the {@link PurchaseEngine}.
+ * <p>
+ * The worker takes every purchase published to its ring so far, up to {@code maxBatchSize}, as one
+ * batch: it validates and prices each purchase, takes the payments of the accepted ones, reserves
+ * their seats and then reports every result. With a {@link SeatHoldService} the seats are held before
+ * the payments are taken and the holds confirmed after, as in {@code TicketServiceImpl}, so a sold-out
+ * screening is never charged. With a {@link BatchTicketPaymentService} or
+ * {@link BatchSeatReservationService} each of those steps is a single downstream call for the whole
+ * batch. All of an account's purchases go through the same worker, one after the other, so no lock
+ * is needed. A batch ends before a second purchase of an account already in it, so a purchase is
+ * settled before the account's next one is paid. The batch arrays are allocated once, so settling
+ * allocates nothing of its own.
+ * <p>
+ * The {@link PurchaseListener} is told of each settlement step as in {@code TicketServiceImpl}, in
+ * order for each account; a failing listener is logged and never changes the outcome. Each purchase
+ * that meets the rules is counted against the {@link PurchaseLimiter} before payment, and given back
+ * if it then fails.
+ */
+final class PurchaseWorker implements Runnable {
+
+    private static final System.Logger LOGGER = System.getLogger(PurchaseWorker.class.getName());
+
+    // Longest the worker parks at once while idle, so it notices close() even without a wake-up
+    private static final long IDLE_PARK_NANOS = 1_000_000L;
+
+    private final PurchaseRing ring;
+    private final TicketPaymentService ticketPaymentService;
+    private final SeatReservationService seatReservationService;
+    // The seat reservation service, if it holds seats before they are paid for; otherwise null
+    private final SeatHoldService seatHolds;
+    private final TicketPricing ticketPricing;
+    private final PurchaseListener purchaseListener;
+    private final PurchaseLimiter purchaseLimiter;
+    private final PurchaseEngine engine;
+
+    // The purchases of the batch still being settled, compacted after each step
+    private final PurchaseSlot[] batch;
+    private final long[] accountIds;
+    private final int[] amounts;
+    private final boolean[] paid;
+    private final boolean[] reserved;
+
+    PurchaseWorker(PurchaseRing ring, int maxBatchSize, TicketPaymentService ticketPaymentService,
+                   SeatReservationService seatReservationService, TicketPricing ticketPricing,
+                   PurchaseListener purchaseListener, PurchaseLimiter purchaseLimiter, PurchaseEngine engine) {
+        this.ring = ring;
+        this.ticketPaymentService = ticketPaymentService;
+        this.seatReservationService = seatReservationService;
+        this.seatHolds = seatReservationService instanceof SeatHoldService holds ? holds : null;
+        this.ticketPricing = ticketPricing;
+        this.purchaseListener = purchaseListener;
+        this.purchaseLimiter = purchaseLimiter;
+        this.engine = engine;
+        this.batch = new PurchaseSlot[maxBatchSize];
+        this.accountIds = new long[maxBatchSize];
+        this.amounts = new int[maxBatchSize];
+        this.paid = new boolean[maxBatchSize];
+        this.reserved = new boolean[maxBatchSize];
+    }
+
+    @Override
+    public void run() {
+        long next = 0;
+        while (true) {
+            if (!ring.isPublished(next)) {
+                // Closed, and every claimed purchase settled
+                if (engine.isClosed() && ring.getNextSequence() == next) {
+                    return;
+                }
+                ring.awaitPublished(next, IDLE_PARK_NANOS);
+                continue;
+            }
+
+            int count = 0;
+            while (count < batch.length && ring.isPublished(next + count) && !repeatsAccount(next, count)) {
+                count++;
+            }
+            settle(next, count);
+            complete(next, count);
+            next += count;
+            ring.release(next - 1);
+        }
+    }
+
+    // Whether the purchase after the first count of the batch is of an account already among them
+    private boolean repeatsAccount(long first, int count) {
+        PurchaseSlot candidate = ring.get(first + count);
+        if (candidate.cancelled) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            PurchaseSlot slot = ring.get(first + i);
+            if (!slot.cancelled && slot.accountId == candidate.accountId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void settle(long first, int count) {
+        int accepted = 0;
+        for (int i = 0; i < count; i++) {
+            PurchaseSlot slot = ring.get(first + i);
+            if (slot.cancelled) {
+                continue;
+            }
+            long evaluation = TicketPurchaseEvaluator.tryEvaluate(slot.accountId, slot.adults, slot.children, slot.infants);
+            if (!TicketPurchaseEvaluator.isAccepted(evaluation)) {
+                slot.outcome = TicketPurchaseEvaluator.outcomeOf(evaluation);
+                continue;
+            }
+
+            try {
+                // The payment gateway takes an int amount
+                slot.totalAmount = Math.toIntExact(ticketPricing.quote(slot.adults, slot.children, slot.infants));
+            } catch (ArithmeticException e) {
+                slot.fail(e, null);
+                continue;
+            }
+            if (!purchaseLimiter.tryAcquire(slot.accountId, tickets(slot))) {
+                slot.outcome = PurchaseOutcome.PURCHASE_LIMIT_EXCEEDED;
+                continue;
+            }
+            slot.totalSeats = TicketPurchaseEvaluator.totalSeats(evaluation);
+            // Spares the shards a shared counter when nobody listens
+            slot.purchaseId = purchaseListener == PurchaseListener.NONE ? 0L : PurchaseIds.next();
+            batch[accepted++] = slot;
+        }
+
+        int ready = seatHolds != null ? hold(accepted) : accepted;
+        int paid = pay(ready);
+        for (int i = 0; i < paid; i++) {
+            notifyPaymentTaken(batch[i]);
+        }
+        int settled = seatHolds != null ? confirm(paid) : reserve(paid);
+        for (int i = 0; i < settled; i++) {
+            batch[i].outcome = PurchaseOutcome.ACCEPTED;
+            notifyPurchaseCompleted(batch[i]);
+        }
+    }
+
+    // Holds the seats of the batch before payment, and returns how many were held; they are left first in the batch
+    private int hold(int count) {
+        int held = 0;
+        for (int i = 0; i < count; i++) {
+            PurchaseSlot slot = batch[i];
+            try {
+                slot.holdId = seatHolds.holdSeats(slot.accountId, slot.totalSeats);
+                slot.held = true;
+                batch[held++] = slot;
+            } catch (RuntimeException e) {
+                fail(slot, e);
+            }
+        }
+        return held;
+    }
+
+    // Confirms the holds of the paid batch, and returns how many were confirmed; they are left first in the batch
+    private int confirm(int count) {
+        int settled = 0;
+        for (int i = 0; i < count; i++) {
+            PurchaseSlot slot = batch[i];
+            try {
+                seatHolds.confirmHold(slot.holdId);
+                slot.held = false;
+                batch[settled++] = slot;
+            } catch (RuntimeException e) {
+                // e.g. the hold expired during the payment
+                failAfterPayment(slot, e);
+            }
+        }
+        return settled;
+    }
+
+    // Takes the payments of the batch, and returns how many were taken; they are left first in the batch
+    private int pay(int count) {
+        if (count > 1 && ticketPaymentService instanceof BatchTicketPaymentService batchPayments) {
+            for (int i = 0; i < count; i++) {
+                accountIds[i] = batch[i].accountId;
+                amounts[i] = batch[i].totalAmount;
+            }
+            try {
+                batchPayments.makePayments(accountIds, amounts, paid, count);
+            } catch (RuntimeException e) {
+                // None of the batch was paid
+                for (int i = 0; i < count; i++) {
+                    fail(batch[i], e);
+                }
+                return 0;
+            }
+
+            int taken = 0;
+            for (int i = 0; i < count; i++) {
+                if (paid[i]) {
+                    batch[taken++] = batch[i];
+                } else {
+                    fail(batch[i], BatchTicketPaymentService.declined(batch[i].accountId));
+                }
+            }
+            return taken;
+        }
+
+        int taken = 0;
+        for (int i = 0; i < count; i++) {
+            PurchaseSlot slot = batch[i];
+            try {
+                ticketPaymentService.makePayment(slot.accountId, slot.totalAmount);
+                batch[taken++] = slot;
+            } catch (RuntimeException e) {
+                fail(slot, e);
+            }
+        }
+        return taken;
+    }
+
+    // Reserves the seats of the paid batch, and returns how many were reserved; they are left first in the batch
+    private int reserve(int count) {
+        if (count > 1 && seatReservationService instanceof BatchSeatReservationService batchSeats) {
+            for (int i = 0; i < count; i++) {
+                accountIds[i] = batch[i].accountId;
+                amounts[i] = batch[i].totalSeats;
+            }
+            try {
+                batchSeats.reserveSeats(accountIds, amounts, reserved, count);
+            } catch (RuntimeException e) {
+                for (int i = 0; i < count; i++) {
+                    failAfterPayment(batch[i], e);
+                }
+                return 0;
+            }
+
+            int settled = 0;
+            for (int i = 0; i < count; i++) {
+                if (reserved[i]) {
+                    batch[settled++] = batch[i];
+                } else {
+                    failAfterPayment(batch[i], TicketPurchaseEvaluator.rejection(PurchaseOutcome.SEATS_UNAVAILABLE));
+                }
+            }
+            return settled;
+        }
+
+        int settled = 0;
+        for (int i = 0; i < count; i++) {
+            PurchaseSlot slot = batch[i];
+            try {
+                seatReservationService.reserveSeat(slot.accountId, slot.totalSeats);
+                batch[settled++] = slot;
+            } catch (RuntimeException e) {
+                failAfterPayment(slot, e);
+            }
+        }
+        return settled;
+    }
+
+    // A purchase that failed after it was counted does not count against the limits, nor keep its seats held
+    private void fail(PurchaseSlot slot, RuntimeException failure) {
+        slot.fail(failure, failure instanceof InvalidPurchaseException rejection ? rejection.getOutcome() : null);
+        purchaseLimiter.release(slot.accountId, tickets(slot));
+        if (slot.held) {
+            slot.held = false;
+            try {
+                seatHolds.releaseHold(slot.holdId);
+            } catch (RuntimeException e) {
+                // The hold expires on its own
+                LOGGER.log(System.Logger.Level.WARNING, "Seat hold release failed", e);
+            }
+        }
+    }
+
+    private static int tickets(PurchaseSlot slot) {
+        return slot.adults + slot.children + slot.infants;
+    }
+
+    // The seats were not reserved, so the payment is refunded where the gateway allows it
+    private void failAfterPayment(PurchaseSlot slot, RuntimeException failure) {
+        fail(slot, failure);
+        boolean refunded = false;
+        if (ticketPaymentService instanceof RefundableTicketPaymentService refundable) {
+            try {
+                refundable.refundPayment(slot.accountId, slot.totalAmount);
+                refunded = true;
+            } catch (RuntimeException refundFailure) {
+                // Reported as the purchase's own failure, as the customer is left charged
+                slot.fail(new RefundFailedException(slot.outcome, failure, refundFailure), slot.outcome);
+            }
+        }
+        notifyPurchaseFailed(slot, refunded);
+    }
+
+    private void notifyPaymentTaken(PurchaseSlot slot) {
+        try {
+            purchaseListener.onPaymentTaken(slot.purchaseId, slot.accountId, slot.adults, slot.children, slot.infants,
+                slot.totalAmount);
+        } catch (RuntimeException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Purchase listener failed on payment taken", e);
+        }
+    }
+
+    private void notifyPurchaseCompleted(PurchaseSlot slot) {
+        try {
+            purchaseListener.onPurchaseCompleted(slot.purchaseId, slot.accountId, slot.adults, slot.children,
+                slot.infants, slot.totalAmount);
+        } catch (RuntimeException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Purchase listener failed on purchase completed", e);
+        }
+    }
+
+    private void notifyPurchaseFailed(PurchaseSlot slot, boolean refunded) {
+        try {
+            purchaseListener.onPurchaseFailed(slot.purchaseId, slot.accountId, slot.adults, slot.children,
+                slot.infants, slot.totalAmount, slot.outcome, refunded);
+        } catch (RuntimeException e) {
+            LOGGER.log(System.Logger.Level.WARNING, "Purchase listener failed on purchase failed", e);
+        }
+    }
+
+    private void complete(long first, int count) {
+        for (int i = 0; i < count; i++) {
+            PurchaseSlot slot = ring.get(first + i);
+            if (slot.cancelled) {
+                slot.clear();
+                continue;
+            }
+            try {
+                slot.callback.settled(slot.accountId, slot.tag, slot.outcome, slot.failure);
+            } catch (RuntimeException e) {
+                LOGGER.log(System.Logger.Level.WARNING, "Purchase callback failed", e);
+            }
+            slot.clear();
+        }
+    }
+}
@@ -1,16 +1,23 @@
 package uk.gov.dwp.uc.pairtest.exception;
 
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+
 /**
  * Exception thrown when an invalid ticket purchase request is made.
  */
 public class InvalidPurchaseException extends RuntimeException {
 
+	private static final long serialVersionUID = 1L;
+
+	private final PurchaseOutcome outcome;
+
 	/**
 	 * Constructs a new InvalidPurchaseException with {@code null} as its
 	 * detail message.
 	 */
 	public InvalidPurchaseException() {
 		super();
+		this.outcome = null;
 	}
 
 	/**
@@ -21,6 +28,7 @@ public class InvalidPurchaseException extends RuntimeException {
 	 */
 	public InvalidPurchaseException(String message) {
 		super(message);
+		this.outcome = null;
 	}
 
 	/**
@@ -33,6 +41,7 @@ public class InvalidPurchaseException extends RuntimeException {
 	 */
 	public InvalidPurchaseException(String message, Throwable cause) {
 		super(message, cause);
+		this.outcome = null;
 	}
 
 	/**
@@ -43,5 +52,42 @@ public class InvalidPurchaseException extends RuntimeException {
 	 */
 	public InvalidPurchaseException(Throwable cause) {
 		super(cause);
+		this.outcome = null;
+	}
+
+	/**
+	 * Constructs a new InvalidPurchaseException for a rejected purchase outcome.
+	 *
+	 * @param outcome            the reason the purchase was rejected (which is saved
+	 *                           for later retrieval by the {@link #getOutcome()} method)
+	 * @param message            the detail message
+	 * @param writableStackTrace whether the stack trace should be captured
+	 */
+	protected InvalidPurchaseException(PurchaseOutcome outcome, String message, boolean writableStackTrace) {
+		super(message, null, false, writableStackTrace);
+		this.outcome = outcome;
+	}
+
+	/**
+	 * Creates an InvalidPurchaseException for a rejected purchase outcome without capturing a
+	 * stack trace. Rejections are expected business results, and filling in the stack trace
+	 * would cost far more than the validation itself.
+	 *
+	 * @param outcome the reason the purchase was rejected
+	 * @param message the detail message
+	 * @return the stackless exception
+	 */
+	public static InvalidPurchaseException stackless(PurchaseOutcome outcome, String message) {
+		return new InvalidPurchaseException(outcome, message, false);
+	}
+
+	/**
+	 * Returns the reason the purchase was rejected, or {@code null} if the exception was
+	 * not raised for a known outcome.
+	 *
+	 * @return the rejection outcome
+	 */
+	public PurchaseOutcome getOutcome() {
+		return outcome;
 	}
 }
@@ -0,0 +1,38 @@
+package uk.gov.dwp.uc.pairtest.exception;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+
+/**
+ * Exception reported when a purchase failed after its payment was taken and the refund failed too,
+ * so the customer has been charged for seats they did not get and the payment must be settled by hand.
+ * <p>
+ * The refund's own failure is the cause; the failure that stopped the purchase is kept alongside it.
+ */
+public class RefundFailedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final PurchaseOutcome outcome;
+    private final RuntimeException purchaseFailure;
+
+    /**
+     * @param outcome         the rejection that stopped the purchase, or null for an unexpected failure
+     * @param purchaseFailure the failure that stopped the purchase
+     * @param refundFailure   the failure of the refund
+     */
+    public RefundFailedException(PurchaseOutcome outcome, RuntimeException purchaseFailure,
+                                 RuntimeException refundFailure) {
+        super("Payment not refunded after the purchase failed: " + purchaseFailure.getMessage(), refundFailure);
+        this.outcome = outcome;
+        this.purchaseFailure = purchaseFailure;
+    }
+
+    // The rejection that stopped the purchase, or null if it failed unexpectedly
+    public PurchaseOutcome getOutcome() {
+        return outcome;
+    }
+
+    public RuntimeException getPurchaseFailure() {
+        return purchaseFailure;
+    }
+}
@@ -0,0 +1,138 @@
+package uk.gov.dwp.uc.pairtest.inventory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free seat inventory of a single screening.
+ * <p>
+ * A purchase first claims its seat count from the remaining capacity with a CAS, so the screening can
+ * never be oversold. It then picks individual seats from a bitset seat map (one bit per seat, set when
+ * taken), claiming as many free seats as it needs from a 64-seat word in a single CAS. Buyers start
+ * scanning at a random word, so concurrent buyers of the same screening rarely meet on the same word.
+ */
+public final class ScreeningInventory {
+
+    private final String screeningId;
+    private final int capacity;
+    private final AtomicInteger remaining;
+    private final AtomicLongArray seatMap;
+
+    public ScreeningInventory(String screeningId, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+
+        this.screeningId = screeningId;
+        this.capacity = capacity;
+        this.remaining = new AtomicInteger(capacity);
+        this.seatMap = new AtomicLongArray((capacity + Long.SIZE - 1) / Long.SIZE);
+
+        // Bits past the last seat are marked taken so they are never handed out
+        int usedBits = capacity % Long.SIZE;
+        if (usedBits != 0) {
+            seatMap.set(seatMap.length() - 1, -1L << usedBits);
+        }
+    }
+
+    /**
+     * Reserves the given number of seats.
+     *
+     * @return the reserved seat numbers (0 based), or {@code null} if not enough seats are left
+     */
+    public int[] tryReserve(int seats) {
+        if (seats <= 0) {
+            throw new IllegalArgumentException("Seats to reserve must be positive: " + seats);
+        }
+
+        // Claim the capacity first; once claimed, enough free bits are guaranteed to be in the seat map
+        int available;
+        do {
+            available = remaining.get();
+            if (available < seats) {
+                return null;
+            }
+        } while (!remaining.compareAndSet(available, available - seats));
+
+        int[] assigned = new int[seats];
+        int found = 0;
+        int words = seatMap.length();
+        int word = ThreadLocalRandom.current().nextInt(words);
+        while (found < seats) {
+            long taken = seatMap.get(word);
+            long free = ~taken;
+            if (free == 0) {
+                word = word + 1 == words ? 0 : word + 1;
+                continue;
+            }
+
+            // Take as many of the lowest free seats of this word as still needed
+            long claim = 0;
+            for (int needed = seats - found; needed > 0 && free != 0; needed--) {
+                long seat = Long.lowestOneBit(free);
+                claim |= seat;
+                free &= ~seat;
+            }
+
+            if (seatMap.compareAndSet(word, taken, taken | claim)) {
+                while (claim != 0) {
+                    assigned[found++] = word * Long.SIZE + Long.numberOfTrailingZeros(claim);
+                    claim &= claim - 1;
+                }
+            }
+        }
+        return assigned;
+    }
+
+    /**
+     * Returns previously reserved seats to the inventory.
+     * <p>
+     * Seats that do not exist are rejected before any seat is freed. A seat that turns out not to be
+     * reserved stops the release, but the capacity of the seats already freed is still returned.
+     *
+     * @throws IllegalArgumentException if a seat does not exist or is not reserved
+     */
+    public void release(int[] seats) {
+        for (int seat : seats) {
+            if (seat < 0 || seat >= capacity) {
+                throw new IllegalArgumentException("No such seat: " + seat);
+            }
+        }
+
+        int freed = 0;
+        try {
+            for (int seat : seats) {
+                int word = seat / Long.SIZE;
+                long bit = 1L << (seat % Long.SIZE);
+                long taken;
+                do {
+                    taken = seatMap.get(word);
+                    if ((taken & bit) == 0) {
+                        throw new IllegalArgumentException("Seat is not reserved: " + seat);
+                    }
+                } while (!seatMap.compareAndSet(word, taken, taken & ~bit));
+                freed++;
+            }
+        } finally {
+            // Seats are freed in the map before the capacity is returned, keeping the tryReserve guarantee
+            remaining.addAndGet(freed);
+        }
+    }
+
+    public boolean isReserved(int seat) {
+        return (seatMap.get(seat / Long.SIZE) & (1L << (seat % Long.SIZE))) != 0;
+    }
+
+    public String getScreeningId() {
+        return screeningId;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getRemaining() {
+        return remaining.get();
+    }
+}
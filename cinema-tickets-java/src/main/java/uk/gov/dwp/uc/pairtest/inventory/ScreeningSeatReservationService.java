@@ -0,0 +1,154 @@
+package uk.gov.dwp.uc.pairtest.inventory;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.spi.BatchSeatReservationService;
+import uk.gov.dwp.uc.pairtest.spi.SeatHoldService;
+import uk.gov.dwp.uc.pairtest.util.HashedTimingWheel;
+import uk.gov.dwp.uc.pairtest.util.TicketPurchaseEvaluator;
+import uk.gov.dwp.uc.pairtest.util.TicketingConfig;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link thirdparty.seatbooking.SeatReservationService} backed by the seat inventory of one screening.
+ * The seats assigned to each account are remembered so they can be released again.
+ * <p>
+ * Seats can also be held before they are paid for. Held seats are taken in the seat map like reserved
+ * ones; a hold that is not confirmed or released within {@code seat.hold.timeout.ms} is expired by the
+ * inventory's {@link HashedTimingWheel}, which puts its seats back on sale.
+ */
+public class ScreeningSeatReservationService implements SeatHoldService, BatchSeatReservationService {
+
+    private static final int[] NO_SEATS = new int[0];
+
+    private final ScreeningInventory screening;
+    private final HashedTimingWheel holdExpiry;
+    private final ConcurrentMap<Long, int[]> seatsByAccount = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, SeatHold> holds = new ConcurrentHashMap<>();
+    private final AtomicLong nextHoldId = new AtomicLong();
+
+    ScreeningSeatReservationService(ScreeningInventory screening, HashedTimingWheel holdExpiry) {
+        this.screening = screening;
+        this.holdExpiry = holdExpiry;
+    }
+
+    /**
+     * @throws uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException if the screening does not have enough seats left
+     */
+    @Override
+    public void reserveSeat(long accountId, int totalSeatsToAllocate) {
+        if (totalSeatsToAllocate == 0) {
+            return;
+        }
+
+        seatsByAccount.merge(accountId, takeSeats(totalSeatsToAllocate), ScreeningSeatReservationService::concat);
+    }
+
+    @Override
+    public void reserveSeats(long[] accountIds, int[] totalSeatsToAllocate, boolean[] reserved, int count) {
+        for (int i = 0; i < count; i++) {
+            int wanted = totalSeatsToAllocate[i];
+            int[] seats = wanted == 0 ? NO_SEATS : screening.tryReserve(wanted);
+            reserved[i] = seats != null;
+            if (seats != null && wanted > 0) {
+                seatsByAccount.merge(accountIds[i], seats, ScreeningSeatReservationService::concat);
+            }
+        }
+    }
+
+    // Releases the most recently reserved seats of the account
+    @Override
+    public void releaseSeat(long accountId, int totalSeatsToRelease) {
+        int[][] released = new int[1][];
+        seatsByAccount.computeIfPresent(accountId, (account, seats) -> {
+            int keep = Math.max(0, seats.length - totalSeatsToRelease);
+            released[0] = Arrays.copyOfRange(seats, keep, seats.length);
+            return keep == 0 ? null : Arrays.copyOf(seats, keep);
+        });
+        if (released[0] != null) {
+            screening.release(released[0]);
+        }
+    }
+
+    /**
+     * @throws uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException if the screening does not have enough seats left
+     */
+    @Override
+    public long holdSeats(long accountId, int totalSeatsToHold) {
+        int[] seats = totalSeatsToHold == 0 ? NO_SEATS : takeSeats(totalSeatsToHold);
+        long holdId = nextHoldId.incrementAndGet();
+        SeatHold hold = new SeatHold(holdId, accountId, seats);
+        holds.put(holdId, hold);
+        holdExpiry.schedule(hold, Duration.ofMillis(TicketingConfig.current().getSeatHoldTimeoutMillis()));
+        return holdId;
+    }
+
+    @Override
+    public void confirmHold(long holdId) {
+        SeatHold hold = holds.remove(holdId);
+        // Cancelling the expiry is what confirms the hold; if the wheel got there first, the seats are gone
+        if (hold == null || !hold.cancel()) {
+            throw TicketPurchaseEvaluator.rejection(PurchaseOutcome.HOLD_EXPIRED);
+        }
+        if (hold.seats.length > 0) {
+            seatsByAccount.merge(hold.accountId, hold.seats, ScreeningSeatReservationService::concat);
+        }
+    }
+
+    @Override
+    public void releaseHold(long holdId) {
+        SeatHold hold = holds.remove(holdId);
+        if (hold != null && hold.cancel()) {
+            screening.release(hold.seats);
+        }
+    }
+
+    public int[] getSeats(long accountId) {
+        return seatsByAccount.getOrDefault(accountId, NO_SEATS).clone();
+    }
+
+    // Holds neither confirmed, released nor expired yet
+    public int getHeldCount() {
+        return holds.size();
+    }
+
+    public ScreeningInventory getScreening() {
+        return screening;
+    }
+
+    private int[] takeSeats(int count) {
+        int[] seats = screening.tryReserve(count);
+        if (seats == null) {
+            throw TicketPurchaseEvaluator.rejection(PurchaseOutcome.SEATS_UNAVAILABLE);
+        }
+        return seats;
+    }
+
+    private static int[] concat(int[] first, int[] second) {
+        int[] seats = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, seats, first.length, second.length);
+        return seats;
+    }
+
+    private final class SeatHold extends HashedTimingWheel.Timeout {
+        private final long holdId;
+        private final long accountId;
+        private final int[] seats;
+
+        SeatHold(long holdId, long accountId, int[] seats) {
+            this.holdId = holdId;
+            this.accountId = accountId;
+            this.seats = seats;
+        }
+
+        @Override
+        protected void expired() {
+            holds.remove(holdId);
+            screening.release(seats);
+        }
+    }
+}
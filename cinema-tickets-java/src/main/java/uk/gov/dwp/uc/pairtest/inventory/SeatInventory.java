@@ -0,0 +1,78 @@
+package uk.gov.dwp.uc.pairtest.inventory;
+
+import uk.gov.dwp.uc.pairtest.util.HashedTimingWheel;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Local, in-memory seat inventory for many screenings.
+ * <p>
+ * Each screening has its own {@link ScreeningInventory} with its own counters and seat map, so buyers
+ * of different screenings never touch the same memory, let alone contend on a lock.
+ * <p>
+ * Seat holds of all its screenings expire through one {@link HashedTimingWheel}; by default a wheel
+ * shared by every inventory in the process, so holds never start a thread or timer of their own.
+ */
+public final class SeatInventory {
+
+    private final ConcurrentMap<String, ScreeningInventory> screenings = new ConcurrentHashMap<>();
+    private final HashedTimingWheel holdExpiry;
+
+    public SeatInventory() {
+        this(SharedHoldExpiry.WHEEL);
+    }
+
+    // Inventory whose seat holds expire through the given wheel
+    public SeatInventory(HashedTimingWheel holdExpiry) {
+        this.holdExpiry = holdExpiry;
+    }
+
+    /**
+     * Adds a screening with all of its seats available.
+     *
+     * @throws IllegalArgumentException if the screening already exists or the capacity is not positive
+     */
+    public ScreeningInventory addScreening(String screeningId, int capacity) {
+        ScreeningInventory screening = new ScreeningInventory(screeningId, capacity);
+        if (screenings.putIfAbsent(screeningId, screening) != null) {
+            throw new IllegalArgumentException("Screening already exists: " + screeningId);
+        }
+        return screening;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the screening does not exist
+     */
+    public ScreeningInventory getScreening(String screeningId) {
+        ScreeningInventory screening = screenings.get(screeningId);
+        if (screening == null) {
+            throw new IllegalArgumentException("Unknown screening: " + screeningId);
+        }
+        return screening;
+    }
+
+    // Reserved seat numbers, or null if the screening does not have enough seats left
+    public int[] tryReserve(String screeningId, int seats) {
+        return getScreening(screeningId).tryReserve(seats);
+    }
+
+    public void release(String screeningId, int[] seats) {
+        getScreening(screeningId).release(seats);
+    }
+
+    public int getRemaining(String screeningId) {
+        return getScreening(screeningId).getRemaining();
+    }
+
+    // Seat reservation service that sells the seats of one screening
+    public ScreeningSeatReservationService forScreening(String screeningId) {
+        return new ScreeningSeatReservationService(getScreening(screeningId), holdExpiry);
+    }
+
+    // Started on first use: 10 ms ticks, with 1024 buckets covering about 10 seconds per turn
+    private static final class SharedHoldExpiry {
+        static final HashedTimingWheel WHEEL = new HashedTimingWheel(Duration.ofMillis(10), 1024, "seat-hold-expiry");
+    }
+}
@@ -0,0 +1,26 @@
+package uk.gov.dwp.uc.pairtest.journal;
+
+/**
+ * Kind of a purchase journal record.
+ */
+public enum JournalEntryType {
+    // The payment was taken; the seats are not yet reserved
+    PAID,
+    // The seats were reserved and the purchase is complete
+    COMPLETED,
+    // The purchase failed after payment and the payment was refunded
+    REFUNDED,
+    // The purchase failed after payment and the payment was not refunded
+    FAILED;
+
+    private static final JournalEntryType[] VALUES = values();
+
+    byte getCode() {
+        return (byte) (ordinal() + 1);
+    }
+
+    // null for an unknown code
+    static JournalEntryType fromCode(byte code) {
+        return code >= 1 && code <= VALUES.length ? VALUES[code - 1] : null;
+    }
+}
@@ -0,0 +1,164 @@
+package uk.gov.dwp.uc.pairtest.journal;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/**
+ * Immutable Object
+ *
+ * One record of the purchase journal.
+ * <p>
+ * On disk every record takes {@value #SIZE} bytes, little endian:
+ * sequence (8), account id (8), timestamp in epoch millis (8), adults, children, infants,
+ * total amount and total seats (4 each), entry type (1), outcome code (1, or -1 for none),
+ * padding (2), purchase id (8), padding (4), and a CRC32C of the first 60 bytes (4). The records of
+ * one purchase share its purchase id. A record whose checksum does not match
+ * (never written, or torn by a crash) marks the end of the journal.
+ */
+public final class JournalRecord {
+
+    public static final int SIZE = 64;
+
+    private static final int ACCOUNT_OFFSET = 8;
+    private static final int TIMESTAMP_OFFSET = 16;
+    private static final int ADULTS_OFFSET = 24;
+    private static final int CHILDREN_OFFSET = 28;
+    private static final int INFANTS_OFFSET = 32;
+    private static final int AMOUNT_OFFSET = 36;
+    private static final int SEATS_OFFSET = 40;
+    private static final int TYPE_OFFSET = 44;
+    private static final int OUTCOME_OFFSET = 45;
+    private static final int PURCHASE_OFFSET = 48;
+    private static final int CHECKSUM_OFFSET = 60;
+
+    private final long sequence;
+    private final JournalEntryType type;
+    private final long purchaseId;
+    private final long accountId;
+    private final long timestamp;
+    private final int adults;
+    private final int children;
+    private final int infants;
+    private final int totalAmount;
+    private final int totalSeats;
+    private final PurchaseOutcome outcome;
+
+    private JournalRecord(long sequence, JournalEntryType type, long purchaseId, long accountId, long timestamp,
+                          int adults, int children, int infants, int totalAmount, int totalSeats,
+                          PurchaseOutcome outcome) {
+        this.sequence = sequence;
+        this.type = type;
+        this.purchaseId = purchaseId;
+        this.accountId = accountId;
+        this.timestamp = timestamp;
+        this.adults = adults;
+        this.children = children;
+        this.infants = infants;
+        this.totalAmount = totalAmount;
+        this.totalSeats = totalSeats;
+        this.outcome = outcome;
+    }
+
+    // Encodes a record into the first SIZE bytes of the heap buffer, without allocating
+    static void encode(ByteBuffer buffer, CRC32C crc, long sequence, JournalEntryType type, long purchaseId,
+                       long accountId, long timestamp, int adults, int children, int infants, int totalAmount,
+                       int totalSeats, PurchaseOutcome outcome) {
+        buffer.putLong(0, sequence)
+            .putLong(ACCOUNT_OFFSET, accountId)
+            .putLong(TIMESTAMP_OFFSET, timestamp)
+            .putInt(ADULTS_OFFSET, adults)
+            .putInt(CHILDREN_OFFSET, children)
+            .putInt(INFANTS_OFFSET, infants)
+            .putInt(AMOUNT_OFFSET, totalAmount)
+            .putInt(SEATS_OFFSET, totalSeats)
+            .put(TYPE_OFFSET, type.getCode())
+            .put(OUTCOME_OFFSET, outcome == null ? -1 : (byte) outcome.getCode())
+            .putLong(PURCHASE_OFFSET, purchaseId);
+        crc.reset();
+        crc.update(buffer.array(), buffer.arrayOffset(), CHECKSUM_OFFSET);
+        buffer.putInt(CHECKSUM_OFFSET, (int) crc.getValue());
+    }
+
+    /**
+     * Decodes the record at the given offset.
+     *
+     * @return the record, or null if the bytes there are not a valid record with the expected sequence
+     */
+    static JournalRecord decode(ByteBuffer buffer, int offset, CRC32C crc, long expectedSequence) {
+        crc.reset();
+        crc.update(buffer.slice(offset, CHECKSUM_OFFSET));
+        JournalEntryType type = JournalEntryType.fromCode(buffer.get(offset + TYPE_OFFSET));
+        if ((int) crc.getValue() != buffer.getInt(offset + CHECKSUM_OFFSET)
+                || buffer.getLong(offset) != expectedSequence || type == null) {
+            return null;
+        }
+
+        byte outcome = buffer.get(offset + OUTCOME_OFFSET);
+        return new JournalRecord(expectedSequence, type,
+            buffer.getLong(offset + PURCHASE_OFFSET),
+            buffer.getLong(offset + ACCOUNT_OFFSET),
+            buffer.getLong(offset + TIMESTAMP_OFFSET),
+            buffer.getInt(offset + ADULTS_OFFSET),
+            buffer.getInt(offset + CHILDREN_OFFSET),
+            buffer.getInt(offset + INFANTS_OFFSET),
+            buffer.getInt(offset + AMOUNT_OFFSET),
+            buffer.getInt(offset + SEATS_OFFSET),
+            outcome < 0 ? null : PurchaseOutcome.fromCode(outcome));
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public JournalEntryType getType() {
+        return type;
+    }
+
+    // Id of the purchase the record is a step of, from PurchaseIds
+    public long getPurchaseId() {
+        return purchaseId;
+    }
+
+    public long getAccountId() {
+        return accountId;
+    }
+
+    // Epoch millis at which the record was written
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getAdults() {
+        return adults;
+    }
+
+    public int getChildren() {
+        return children;
+    }
+
+    public int getInfants() {
+        return infants;
+    }
+
+    public int getTotalAmount() {
+        return totalAmount;
+    }
+
+    public int getTotalSeats() {
+        return totalSeats;
+    }
+
+    // Outcome of a failed purchase, or null when there is none
+    public PurchaseOutcome getOutcome() {
+        return outcome;
+    }
+
+    @Override
+    public String toString() {
+        return type + "#" + sequence + "{purchase=" + purchaseId + ", account=" + accountId + ", adults=" + adults + ", children=" + children
+            + ", infants=" + infants + ", amount=" + totalAmount + ", seats=" + totalSeats
+            + (outcome == null ? "" : ", outcome=" + outcome) + "}";
+    }
+}
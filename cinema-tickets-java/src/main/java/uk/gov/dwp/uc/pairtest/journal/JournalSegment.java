@@ -0,0 +1,112 @@
+package uk.gov.dwp.uc.pairtest.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * One memory-mapped file of the purchase journal, holding a fixed number of records.
+ * The file name carries the sequence of its first record, so the segments sort in journal order.
+ */
+final class JournalSegment implements AutoCloseable {
+
+    private static final String PREFIX = "purchases-";
+    private static final String SUFFIX = ".journal";
+
+    private final long baseSequence;
+    private final int capacity;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private JournalSegment(long baseSequence, int capacity, FileChannel channel, MappedByteBuffer buffer) {
+        this.baseSequence = baseSequence;
+        this.capacity = capacity;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    // Maps the segment starting at the given sequence, creating it with room for capacity records if absent
+    static JournalSegment open(Path directory, long baseSequence, int capacity) throws IOException {
+        Path file = directory.resolve(String.format("%s%020d%s", PREFIX, baseSequence, SUFFIX));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        try {
+            long size = Math.max(channel.size(), (long) capacity * JournalRecord.SIZE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return new JournalSegment(baseSequence, (int) (size / JournalRecord.SIZE), channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Base sequences of the segments in the directory, in journal order
+    static List<Long> list(Path directory) throws IOException {
+        List<Long> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                .map(name -> name.substring(PREFIX.length(), name.length() - SUFFIX.length()))
+                .filter(base -> !base.isEmpty() && base.chars().allMatch(Character::isDigit))
+                .map(Long::parseLong)
+                .sorted()
+                .forEach(segments::add);
+        }
+        return segments;
+    }
+
+    /**
+     * Passes the valid records of the segment, in order, to the consumer.
+     *
+     * @return the number of valid records; the segment ends at the first invalid one
+     */
+    int scan(Consumer<JournalRecord> consumer) {
+        CRC32C crc = new CRC32C();
+        for (int slot = 0; slot < capacity; slot++) {
+            JournalRecord record = JournalRecord.decode(buffer, slot * JournalRecord.SIZE, crc, baseSequence + slot);
+            if (record == null) {
+                return slot;
+            }
+            consumer.accept(record);
+        }
+        return capacity;
+    }
+
+    // Copies an encoded record into its slot; the page cache keeps it even if the JVM dies
+    void write(long sequence, ByteBuffer record) {
+        buffer.put((int) (sequence - baseSequence) * JournalRecord.SIZE, record, 0, JournalRecord.SIZE);
+    }
+
+    // Flushes the written records to the storage device
+    void force() {
+        buffer.force();
+    }
+
+    long getBaseSequence() {
+        return baseSequence;
+    }
+
+    // Sequence of the first record of the next segment
+    long getEndSequence() {
+        return baseSequence + capacity;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,293 @@
+package uk.gov.dwp.uc.pairtest.journal;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.spi.PurchaseListener;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of purchase settlements, written as fixed-size {@link JournalRecord}s
+ * into memory-mapped segment files.
+ * <p>
+ * Appending copies a record into the mapped file under a short lock, so it costs no system call and
+ * survives a crash of the JVM. Durability against a crash of the machine comes from group commit:
+ * a single flusher thread forces the mapped files to disk, at the latest every {@code maxFlushDelay},
+ * and every writer waiting in {@link #awaitDurable(long)} shares the next force instead of issuing its own.
+ * When a segment is full the journal rolls over to a new file.
+ * <p>
+ * As a {@link PurchaseListener} the journal records each settlement step, waiting for the record to be
+ * durable when {@code awaitDurable} is set. Use {@link PurchaseJournalScanner} to read the journal back
+ * and to find purchases that were paid but never reserved.
+ */
+public final class PurchaseJournal implements PurchaseListener, AutoCloseable {
+
+    public static final int DEFAULT_RECORDS_PER_SEGMENT = 1 << 16;
+    public static final Duration DEFAULT_MAX_FLUSH_DELAY = Duration.ofMillis(10);
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final long maxFlushDelayNanos;
+    private final boolean awaitDurable;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushRequested = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    // Scratch space for encoding, guarded by the lock
+    private final ByteBuffer scratch = ByteBuffer.allocate(JournalRecord.SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32C crc = new CRC32C();
+    private final Thread flusher;
+
+    // All guarded by the lock
+    private JournalSegment current;
+    private final List<JournalSegment> rolledOver = new ArrayList<>();
+    private long nextSequence;
+    private long durableSequence;
+    private long requestedSequence;
+    private RuntimeException failure;
+    private boolean closed;
+    private boolean stopped;
+
+    private PurchaseJournal(Path directory, int recordsPerSegment, Duration maxFlushDelay, boolean awaitDurable,
+                            JournalSegment current, long nextSequence) {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.maxFlushDelayNanos = maxFlushDelay.toNanos();
+        this.awaitDurable = awaitDurable;
+        this.current = current;
+        this.nextSequence = nextSequence;
+        this.durableSequence = nextSequence;
+        this.requestedSequence = nextSequence;
+        this.flusher = new Thread(this::flushLoop, "purchase-journal-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    // Opens the journal with the default segment size and flush delay, waiting for every record to be durable
+    public static PurchaseJournal open(Path directory) throws IOException {
+        return open(directory, DEFAULT_RECORDS_PER_SEGMENT, DEFAULT_MAX_FLUSH_DELAY, true);
+    }
+
+    /**
+     * Opens the journal in the directory, creating it if needed, and continues after its last valid record.
+     *
+     * @param recordsPerSegment the number of records in each new segment file
+     * @param maxFlushDelay     the longest time an appended record waits to be forced to disk
+     * @param awaitDurable      whether the listener methods wait for their record to be durable
+     * @throws IOException if the directory or its last segment cannot be opened
+     */
+    public static PurchaseJournal open(Path directory, int recordsPerSegment, Duration maxFlushDelay,
+                                       boolean awaitDurable) throws IOException {
+        if (recordsPerSegment <= 0) {
+            throw new IllegalArgumentException("recordsPerSegment must be positive: " + recordsPerSegment);
+        }
+        if (maxFlushDelay.isNegative() || maxFlushDelay.isZero()) {
+            throw new IllegalArgumentException("maxFlushDelay must be positive: " + maxFlushDelay);
+        }
+
+        Files.createDirectories(directory);
+        List<Long> segments = JournalSegment.list(directory);
+        JournalSegment current;
+        long nextSequence;
+        if (segments.isEmpty()) {
+            current = JournalSegment.open(directory, 0, recordsPerSegment);
+            nextSequence = 0;
+        } else {
+            current = JournalSegment.open(directory, segments.get(segments.size() - 1), recordsPerSegment);
+            nextSequence = current.getBaseSequence() + current.scan(record -> {});
+        }
+        return new PurchaseJournal(directory, recordsPerSegment, maxFlushDelay, awaitDurable, current, nextSequence);
+    }
+
+    /**
+     * Appends a record without waiting for it to reach the disk.
+     *
+     * @param purchaseId the id of the purchase, shared by the records of its steps
+     * @param outcome    the outcome of a failed purchase, or null
+     * @return the sequence of the record, to pass to {@link #awaitDurable(long)}
+     * @throws IllegalStateException if the journal is closed or has failed
+     * @throws UncheckedIOException  if a new segment cannot be created
+     */
+    public long append(JournalEntryType type, long purchaseId, long accountId, int adults, int children, int infants,
+                       int totalAmount, PurchaseOutcome outcome) {
+        long timestamp = System.currentTimeMillis();
+        lock.lock();
+        try {
+            checkOpen();
+            if (nextSequence == current.getEndSequence()) {
+                rollOver();
+            }
+            long sequence = nextSequence;
+            JournalRecord.encode(scratch, crc, sequence, type, purchaseId, accountId, timestamp, adults, children,
+                infants, totalAmount, adults + children, outcome);
+            current.write(sequence, scratch);
+            nextSequence = sequence + 1;
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the record with the given sequence, and every record before it, has been forced to disk.
+     * Concurrent callers share one force.
+     *
+     * @throws IllegalStateException if the journal was closed or failed before the record became durable
+     */
+    public void awaitDurable(long sequence) {
+        lock.lock();
+        try {
+            if (sequence < durableSequence) {
+                return;
+            }
+            if (sequence + 1 > requestedSequence) {
+                requestedSequence = sequence + 1;
+                flushRequested.signal();
+            }
+            while (sequence >= durableSequence) {
+                if (stopped) {
+                    throw new IllegalStateException("Purchase journal stopped before the record was durable", failure);
+                }
+                flushed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onPaymentTaken(long purchaseId, long accountId, int adults, int children, int infants,
+                               int totalAmount) {
+        record(JournalEntryType.PAID, purchaseId, accountId, adults, children, infants, totalAmount, null);
+    }
+
+    @Override
+    public void onPurchaseCompleted(long purchaseId, long accountId, int adults, int children, int infants,
+                                    int totalAmount) {
+        record(JournalEntryType.COMPLETED, purchaseId, accountId, adults, children, infants, totalAmount,
+            PurchaseOutcome.ACCEPTED);
+    }
+
+    @Override
+    public void onPurchaseFailed(long purchaseId, long accountId, int adults, int children, int infants,
+                                 int totalAmount, PurchaseOutcome outcome, boolean refunded) {
+        record(refunded ? JournalEntryType.REFUNDED : JournalEntryType.FAILED, purchaseId, accountId, adults, children,
+            infants, totalAmount, outcome);
+    }
+
+    private void record(JournalEntryType type, long purchaseId, long accountId, int adults, int children,
+                        int infants, int totalAmount, PurchaseOutcome outcome) {
+        long sequence = append(type, purchaseId, accountId, adults, children, infants, totalAmount, outcome);
+        if (awaitDurable) {
+            awaitDurable(sequence);
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Forces the remaining records to disk, stops the flusher and closes the segment files.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            flushRequested.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        current.close();
+    }
+
+    // Called with the lock held
+    private void rollOver() {
+        try {
+            JournalSegment next = JournalSegment.open(directory, nextSequence, recordsPerSegment);
+            rolledOver.add(current);
+            current = next;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Called with the lock held
+    private void checkOpen() {
+        if (failure != null) {
+            throw new IllegalStateException("Purchase journal failed", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Purchase journal is closed");
+        }
+    }
+
+    private void flushLoop() {
+        lock.lock();
+        try {
+            while (true) {
+                if (!closed && requestedSequence <= durableSequence) {
+                    flushRequested.awaitNanos(maxFlushDelayNanos);
+                }
+
+                long target = nextSequence;
+                if (target > durableSequence) {
+                    List<JournalSegment> segments = new ArrayList<>(rolledOver);
+                    rolledOver.clear();
+                    JournalSegment active = current;
+                    lock.unlock();
+                    try {
+                        // Writers keep appending while the files are forced, and join the next group
+                        for (JournalSegment segment : segments) {
+                            segment.force();
+                            segment.close();
+                        }
+                        active.force();
+                    } catch (IOException | RuntimeException e) {
+                        lock.lock();
+                        failure = e instanceof IOException io ? new UncheckedIOException(io) : (RuntimeException) e;
+                        stopped = true;
+                        flushed.signalAll();
+                        return;
+                    }
+                    lock.lock();
+                    durableSequence = target;
+                    flushed.signalAll();
+                }
+
+                if (closed) {
+                    stopped = true;
+                    flushed.signalAll();
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopped = true;
+            flushed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package uk.gov.dwp.uc.pairtest.journal;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Reads a purchase journal back, e.g. for reconciliation after a crash.
+ */
+public final class PurchaseJournalScanner {
+
+    private PurchaseJournalScanner() {
+        // utility
+    }
+
+    /**
+     * Passes every valid record of the journal to the consumer, in sequence order.
+     * Each segment is read up to its first invalid record, such as one torn by a crash.
+     *
+     * @throws IOException if a segment cannot be read
+     */
+    public static void scan(Path directory, Consumer<JournalRecord> consumer) throws IOException {
+        for (long baseSequence : JournalSegment.list(directory)) {
+            try (JournalSegment segment = JournalSegment.open(directory, baseSequence, 0)) {
+                segment.scan(consumer);
+            }
+        }
+    }
+
+    public static List<JournalRecord> readAll(Path directory) throws IOException {
+        List<JournalRecord> records = new ArrayList<>();
+        scan(directory, records::add);
+        return records;
+    }
+
+    /**
+     * Finds the purchases whose payment was taken but whose seats were never reserved or refunded:
+     * the {@link JournalEntryType#PAID} records not followed by a {@link JournalEntryType#COMPLETED} or
+     * {@link JournalEntryType#REFUNDED} record of the same purchase id. Records are paired by that id
+     * rather than by account, as ticket services sharing the journal, one per screening, can settle
+     * purchases of the same account at the same time.
+     *
+     * @return the unsettled payment records, in sequence order
+     * @throws IOException if a segment cannot be read
+     */
+    public static List<JournalRecord> findPaidWithoutReservation(Path directory) throws IOException {
+        Map<Long, JournalRecord> openPayments = new HashMap<>();
+        List<JournalRecord> unsettled = new ArrayList<>();
+        scan(directory, record -> {
+            JournalRecord payment;
+            switch (record.getType()) {
+                case PAID:
+                    payment = openPayments.put(record.getPurchaseId(), record);
+                    if (payment != null) {
+                        unsettled.add(payment);
+                    }
+                    break;
+                case COMPLETED:
+                case REFUNDED:
+                    openPayments.remove(record.getPurchaseId());
+                    break;
+                case FAILED:
+                    payment = openPayments.remove(record.getPurchaseId());
+                    if (payment != null) {
+                        unsettled.add(payment);
+                    }
+                    break;
+            }
+        });
+
+        // Payments still open at the end of the journal were cut short by a crash
+        unsettled.addAll(openPayments.values());
+        unsettled.sort(Comparator.comparingLong(JournalRecord::getSequence));
+        return unsettled;
+    }
+}
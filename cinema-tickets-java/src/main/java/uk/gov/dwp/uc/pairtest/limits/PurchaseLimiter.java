@@ -0,0 +1,49 @@
+package uk.gov.dwp.uc.pairtest.limits;
+
+/**
+ * The sliding-window limits that apply to one kind of purchase, e.g. the limit of a screening
+ * together with the limit over all screenings. A purchase is counted against all of them, or none.
+ */
+public final class PurchaseLimiter {
+
+    // Limits nothing
+    public static final PurchaseLimiter NONE = new PurchaseLimiter(new SlidingWindowLimit[0]);
+
+    private final SlidingWindowLimit[] limits;
+
+    private PurchaseLimiter(SlidingWindowLimit[] limits) {
+        this.limits = limits;
+    }
+
+    public static PurchaseLimiter of(SlidingWindowLimit... limits) {
+        return limits.length == 0 ? NONE : new PurchaseLimiter(limits.clone());
+    }
+
+    /**
+     * Counts the tickets against every limit.
+     *
+     * @return whether they were counted; false, with nothing counted, if any limit would be exceeded
+     */
+    public boolean tryAcquire(long accountId, int tickets) {
+        for (int i = 0; i < limits.length; i++) {
+            if (!limits[i].tryAcquire(accountId, tickets)) {
+                for (int acquired = 0; acquired < i; acquired++) {
+                    limits[acquired].release(accountId, tickets);
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Gives back the tickets of a purchase that was counted but then failed
+    public void release(long accountId, int tickets) {
+        for (SlidingWindowLimit limit : limits) {
+            limit.release(accountId, tickets);
+        }
+    }
+
+    public boolean isUnlimited() {
+        return limits.length == 0;
+    }
+}
@@ -0,0 +1,88 @@
+package uk.gov.dwp.uc.pairtest.limits;
+
+import uk.gov.dwp.uc.pairtest.util.TicketingConfig;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Per-account ticket limits over a sliding window, for each screening and over all screenings together.
+ * {@code max.tickets} only caps a single purchase; these limits stop an account from buying
+ * around it with many purchases in a row.
+ * <p>
+ * Hand the {@link PurchaseLimiter} of a screening to the ticket service that sells it, as with the
+ * pricing and seat inventory of the screening. The limiters of all screenings share the overall limit.
+ */
+public final class PurchaseLimits {
+
+    private final int maxTicketsPerScreening;
+    private final Duration window;
+    // Null when there is no overall limit
+    private final SlidingWindowLimit overall;
+    private final ConcurrentMap<String, Screening> screenings = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxTicketsPerScreening the most tickets of one screening an account may buy within the window, or 0 for no limit
+     * @param maxTicketsOverall      the most tickets of all screenings an account may buy within the window, or 0 for no limit
+     * @param window                 the length of the sliding window
+     */
+    public PurchaseLimits(int maxTicketsPerScreening, int maxTicketsOverall, Duration window) {
+        if (maxTicketsPerScreening < 0 || maxTicketsOverall < 0) {
+            throw new IllegalArgumentException("Ticket limits must not be negative");
+        }
+        this.maxTicketsPerScreening = maxTicketsPerScreening;
+        this.window = window;
+        this.overall = maxTicketsOverall == 0 ? null : new SlidingWindowLimit(maxTicketsOverall, window);
+    }
+
+    // Limits of the purchase.limit.* keys of the configuration in force; later reloads do not change them
+    public static PurchaseLimits fromConfig() {
+        TicketingConfig.Snapshot config = TicketingConfig.current();
+        return new PurchaseLimits(config.getScreeningTicketLimit(), config.getOverallTicketLimit(),
+            Duration.ofMillis(config.getPurchaseLimitWindowMillis()));
+    }
+
+    // Only the overall limit, for purchases not tied to a screening
+    public PurchaseLimiter overall() {
+        return overall == null ? PurchaseLimiter.NONE : PurchaseLimiter.of(overall);
+    }
+
+    // The screening's own limit together with the overall limit
+    public PurchaseLimiter forScreening(String screeningId) {
+        return screenings.computeIfAbsent(screeningId, id -> new Screening(newScreeningLimit())).limiter;
+    }
+
+    /**
+     * Reclaims the memory of accounts with no purchases left in the window, in every limit.
+     *
+     * @return the number of account entries evicted
+     */
+    public int evictIdle() {
+        int evicted = overall == null ? 0 : overall.evictIdle();
+        for (Screening screening : screenings.values()) {
+            if (screening.limit != null) {
+                evicted += screening.limit.evictIdle();
+            }
+        }
+        return evicted;
+    }
+
+    private SlidingWindowLimit newScreeningLimit() {
+        return maxTicketsPerScreening == 0 ? null : new SlidingWindowLimit(maxTicketsPerScreening, window);
+    }
+
+    private final class Screening {
+        final SlidingWindowLimit limit;
+        final PurchaseLimiter limiter;
+
+        Screening(SlidingWindowLimit limit) {
+            this.limit = limit;
+            if (limit == null) {
+                this.limiter = overall();
+            } else {
+                this.limiter = overall == null ? PurchaseLimiter.of(limit) : PurchaseLimiter.of(limit, overall);
+            }
+        }
+    }
+}
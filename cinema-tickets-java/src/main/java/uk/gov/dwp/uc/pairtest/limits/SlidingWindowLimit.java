@@ -0,0 +1,362 @@
+package uk.gov.dwp.uc.pairtest.limits;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Limit on the tickets each account may buy within a sliding time window.
+ * <p>
+ * The window is split into {@value #BUCKETS} buckets, so it slides in steps of an eighth of its length.
+ * The counts live in primitive open-addressing tables keyed by the {@code long} account id: one slot
+ * holds the key, the time of its newest bucket and a ring of eight 16-bit bucket counts, 28 bytes in
+ * all, with no object or boxed key per account. The tables are split into segments, each with its own
+ * lock, so accounts in different segments are counted in parallel.
+ * <p>
+ * An account whose buckets have all slid out of the window is idle. Its slot is reclaimed when the
+ * account's count drops back to zero, when a full segment is rebuilt instead of grown, or by
+ * {@link #evictIdle()}, so memory follows the accounts active in the window, not all accounts ever seen.
+ */
+public final class SlidingWindowLimit {
+
+    static final int BUCKETS = 8;
+    private static final int BUCKET_MASK = BUCKETS - 1;
+
+    // Largest limit a 16-bit bucket count can hold
+    public static final int MAX_TICKETS_LIMIT = Character.MAX_VALUE;
+
+    private static final int MIN_SEGMENT_CAPACITY = 16;
+
+    private final int maxTickets;
+    private final long bucketNanos;
+    private final Segment[] segments;
+    private final LongSupplier nanoClock;
+
+    /**
+     * @param maxTickets the most tickets an account may buy within the window
+     * @param window     the length of the sliding window
+     */
+    public SlidingWindowLimit(int maxTickets, Duration window) {
+        this(maxTickets, window, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 16 - 1) << 1,
+            System::nanoTime);
+    }
+
+    // Constructor for testing with a controllable clock
+    SlidingWindowLimit(int maxTickets, Duration window, int segmentCount, LongSupplier nanoClock) {
+        if (maxTickets <= 0 || maxTickets > MAX_TICKETS_LIMIT) {
+            throw new IllegalArgumentException("maxTickets must be between 1 and " + MAX_TICKETS_LIMIT + ": " + maxTickets);
+        }
+        if (window.toNanos() < BUCKETS) {
+            throw new IllegalArgumentException("window is too short: " + window);
+        }
+        if (segmentCount <= 0 || Integer.bitCount(segmentCount) != 1) {
+            throw new IllegalArgumentException("segmentCount must be a power of two: " + segmentCount);
+        }
+
+        this.maxTickets = maxTickets;
+        this.bucketNanos = window.toNanos() / BUCKETS;
+        this.nanoClock = nanoClock;
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(MIN_SEGMENT_CAPACITY);
+        }
+    }
+
+    /**
+     * Counts the tickets against the account's window if they fit within the limit.
+     *
+     * @return whether the tickets were counted; false if they would take the account over the limit
+     */
+    public boolean tryAcquire(long accountId, int tickets) {
+        checkAccountId(accountId);
+        long hash = mix(accountId);
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
+        try {
+            return segment.tryAcquire(accountId, (int) hash, tickets, maxTickets, epoch());
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    // Gives back tickets that were counted for a purchase that then failed, from the newest buckets first
+    public void release(long accountId, int tickets) {
+        checkAccountId(accountId);
+        long hash = mix(accountId);
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
+        try {
+            segment.release(accountId, (int) hash, tickets, epoch());
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    // Tickets counted for the account within the current window
+    public int getUsed(long accountId) {
+        long hash = mix(accountId);
+        Segment segment = segmentFor(hash);
+        segment.lock.lock();
+        try {
+            return segment.used(accountId, (int) hash, epoch());
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Reclaims the slots of idle accounts and shrinks the tables to fit the accounts still active.
+     *
+     * @return the number of accounts evicted
+     */
+    public int evictIdle() {
+        int epoch = epoch();
+        int evicted = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                int before = segment.size;
+                segment.rebuild(segment.countActive(epoch), epoch);
+                evicted += before - segment.size;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return evicted;
+    }
+
+    // Accounts with a slot, including idle ones not evicted yet
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.size;
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    public int getMaxTickets() {
+        return maxTickets;
+    }
+
+    public Duration getWindow() {
+        return Duration.ofNanos(bucketNanos * BUCKETS);
+    }
+
+    // Index of the current bucket since the clock's origin; only differences between epochs are used
+    private int epoch() {
+        return (int) Math.floorDiv(nanoClock.getAsLong(), bucketNanos);
+    }
+
+    // Segments are picked by the high bits of the hash, slots within a segment by the low bits
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> 32) & (segments.length - 1)];
+    }
+
+    private static void checkAccountId(long accountId) {
+        // Zero marks a free slot
+        if (accountId <= 0) {
+            throw new IllegalArgumentException("Account id must be positive: " + accountId);
+        }
+    }
+
+    // Spreads sequential account ids across the table (the 64-bit finaliser of MurmurHash3)
+    static long mix(long accountId) {
+        long h = accountId;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Open-addressing table with linear probing, guarded by its lock. Removed slots are refilled by
+     * shifting later entries of the probe sequence back, so there are no tombstones.
+     */
+    private static final class Segment {
+        private static final long EMPTY = 0L;
+
+        final ReentrantLock lock = new ReentrantLock();
+        private long[] keys;
+        // Epoch of each slot's newest bucket; the older buckets are the ring positions before it
+        private int[] epochs;
+        private char[] counts;
+        private int mask;
+        int size;
+
+        Segment(int capacity) {
+            allocate(capacity);
+        }
+
+        boolean tryAcquire(long key, int hash, int tickets, int maxTickets, int epoch) {
+            int slot = find(key, hash);
+            if (slot < 0) {
+                if (tickets > maxTickets) {
+                    return false;
+                }
+                slot = insert(key, hash, epoch);
+            }
+            advance(slot, epoch);
+
+            int used = total(slot);
+            if (used + tickets > maxTickets) {
+                return false;
+            }
+            counts[slot * BUCKETS + (epoch & BUCKET_MASK)] += (char) tickets;
+            return true;
+        }
+
+        void release(long key, int hash, int tickets, int epoch) {
+            int slot = find(key, hash);
+            if (slot < 0) {
+                return;
+            }
+            advance(slot, epoch);
+
+            int remaining = tickets;
+            for (int age = 0; age < BUCKETS && remaining > 0; age++) {
+                int bucket = slot * BUCKETS + ((epoch - age) & BUCKET_MASK);
+                int taken = Math.min(counts[bucket], remaining);
+                counts[bucket] -= (char) taken;
+                remaining -= taken;
+            }
+            if (total(slot) == 0) {
+                remove(slot);
+            }
+        }
+
+        int used(long key, int hash, int epoch) {
+            int slot = find(key, hash);
+            if (slot < 0) {
+                return 0;
+            }
+            advance(slot, epoch);
+            return total(slot);
+        }
+
+        // The key's slot, or a negative value if it has none
+        private int find(long key, int hash) {
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                long k = keys[slot];
+                if (k == key) {
+                    return slot;
+                }
+                if (k == EMPTY) {
+                    return -1;
+                }
+            }
+        }
+
+        private int insert(long key, int hash, int epoch) {
+            // Above three quarters full, idle slots are dropped first and the table only grows if still needed
+            if (size + 1 > (keys.length >> 2) * 3) {
+                rebuild(countActive(epoch) + 1, epoch);
+            }
+
+            int slot = hash & mask;
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            epochs[slot] = epoch;
+            size++;
+            return slot;
+        }
+
+        // Clears the buckets that slid out of the window since the slot was last touched
+        private void advance(int slot, int epoch) {
+            int age = epoch - epochs[slot];
+            if (age <= 0) {
+                return;
+            }
+
+            int base = slot * BUCKETS;
+            if (age >= BUCKETS) {
+                Arrays.fill(counts, base, base + BUCKETS, (char) 0);
+            } else {
+                for (int step = 1; step <= age; step++) {
+                    counts[base + ((epochs[slot] + step) & BUCKET_MASK)] = 0;
+                }
+            }
+            epochs[slot] = epoch;
+        }
+
+        private int total(int slot) {
+            int total = 0;
+            int base = slot * BUCKETS;
+            for (int i = 0; i < BUCKETS; i++) {
+                total += counts[base + i];
+            }
+            return total;
+        }
+
+        private boolean isIdle(int slot, int epoch) {
+            return epoch - epochs[slot] >= BUCKETS;
+        }
+
+        int countActive(int epoch) {
+            int active = 0;
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != EMPTY && !isIdle(slot, epoch)) {
+                    active++;
+                }
+            }
+            return active;
+        }
+
+        // Re-inserts the active slots into a table at most half full with the expected entries
+        void rebuild(int expected, int epoch) {
+            long[] oldKeys = keys;
+            int[] oldEpochs = epochs;
+            char[] oldCounts = counts;
+            allocate(Math.max(MIN_SEGMENT_CAPACITY, Integer.highestOneBit(Math.max(1, expected) * 2 - 1) << 1));
+
+            for (int old = 0; old < oldKeys.length; old++) {
+                long key = oldKeys[old];
+                if (key == EMPTY || epoch - oldEpochs[old] >= BUCKETS) {
+                    continue;
+                }
+                int slot = (int) mix(key) & mask;
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                epochs[slot] = oldEpochs[old];
+                System.arraycopy(oldCounts, old * BUCKETS, counts, slot * BUCKETS, BUCKETS);
+                size++;
+            }
+        }
+
+        private void remove(int slot) {
+            int hole = slot;
+            for (int next = (slot + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+                // The entry can fill the hole if the hole lies between its home slot and where it sits
+                int home = (int) mix(keys[next]) & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    epochs[hole] = epochs[next];
+                    System.arraycopy(counts, next * BUCKETS, counts, hole * BUCKETS, BUCKETS);
+                    hole = next;
+                }
+            }
+            keys[hole] = EMPTY;
+            Arrays.fill(counts, hole * BUCKETS, hole * BUCKETS + BUCKETS, (char) 0);
+            size--;
+        }
+
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            epochs = new int[capacity];
+            counts = new char[capacity * BUCKETS];
+            mask = capacity - 1;
+            size = 0;
+        }
+    }
+}
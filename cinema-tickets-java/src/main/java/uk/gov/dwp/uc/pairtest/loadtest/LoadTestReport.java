@@ -0,0 +1,142 @@
+package uk.gov.dwp.uc.pairtest.loadtest;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.metrics.LatencyHistogram;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Immutable Object
+ *
+ * Results of one load test run at a target arrival rate.
+ * <p>
+ * The response time of an order is measured from when it was due to be sent, so time an order
+ * spent waiting behind a stalled service counts against the service (no coordinated omission).
+ * The service time is measured from when it was actually sent; where the two part ways, the
+ * system, or the load generator itself, could not keep up with the arrival rate.
+ */
+public final class LoadTestReport {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final double targetRate;
+    private final Duration duration;
+    private final long elapsedNanos;
+    private final long accepted;
+    private final long[] rejections;
+    private final long failed;
+    private final LatencyHistogram.Snapshot responseTimes;
+    private final LatencyHistogram.Snapshot serviceTimes;
+    private final long maxDispatchLagNanos;
+
+    LoadTestReport(double targetRate, Duration duration, long elapsedNanos, long accepted, long[] rejections,
+                   long failed, LatencyHistogram.Snapshot responseTimes, LatencyHistogram.Snapshot serviceTimes,
+                   long maxDispatchLagNanos) {
+        this.targetRate = targetRate;
+        this.duration = duration;
+        this.elapsedNanos = elapsedNanos;
+        this.accepted = accepted;
+        this.rejections = rejections;
+        this.failed = failed;
+        this.responseTimes = responseTimes;
+        this.serviceTimes = serviceTimes;
+        this.maxDispatchLagNanos = maxDispatchLagNanos;
+    }
+
+    // Orders per second the run was meant to send
+    public double getTargetRate() {
+        return targetRate;
+    }
+
+    // Orders completed per second, from the first order being due to the last one completing
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : getCompleted() * 1e9 / elapsedNanos;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public long getCompleted() {
+        return accepted + getRejected() + failed;
+    }
+
+    public long getAccepted() {
+        return accepted;
+    }
+
+    // Orders that broke a business rule
+    public long getRejected() {
+        long rejected = 0;
+        for (long count : rejections) {
+            rejected += count;
+        }
+        return rejected;
+    }
+
+    public long getRejections(PurchaseOutcome outcome) {
+        return rejections[outcome.ordinal()];
+    }
+
+    // Orders that failed for another reason, e.g. a gateway error
+    public long getFailed() {
+        return failed;
+    }
+
+    // Nanoseconds from when each order was due to when it completed
+    public LatencyHistogram.Snapshot getResponseTimes() {
+        return responseTimes;
+    }
+
+    // Nanoseconds from when each order was actually sent to when it completed
+    public LatencyHistogram.Snapshot getServiceTimes() {
+        return serviceTimes;
+    }
+
+    // Longest an order was sent after it was due, because the generator fell behind or hit its in-flight limit
+    public Duration getMaxDispatchLag() {
+        return Duration.ofNanos(maxDispatchLagNanos);
+    }
+
+    /**
+     * Whether the system kept up with the arrival rate: nearly all of it was served, and the
+     * 99th percentile response time stayed within the objective.
+     *
+     * @param p99Objective the highest acceptable 99th percentile response time
+     */
+    public boolean isSustained(Duration p99Objective) {
+        return getThroughput() >= targetRate * 0.95
+            && responseTimes.getValueAtPercentile(99) <= p99Objective.toNanos();
+    }
+
+    // Column headings matching format()
+    public static String header() {
+        return String.format(Locale.ROOT, "%10s %10s %9s %9s %9s %9s %9s %9s %9s %9s %9s",
+            "target/s", "actual/s", "rejected", "failed", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms",
+            "svc p99", "lag ms");
+    }
+
+    // One line of a report table
+    public String format() {
+        StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "%10.0f %10.0f %9d %9d",
+            targetRate, getThroughput(), getRejected(), failed));
+        for (double percentile : PERCENTILES) {
+            line.append(String.format(Locale.ROOT, " %9.2f", millis(responseTimes.getValueAtPercentile(percentile))));
+        }
+        line.append(String.format(Locale.ROOT, " %9.2f %9.2f %9.2f", millis(responseTimes.getMax()),
+            millis(serviceTimes.getValueAtPercentile(99)), millis(maxDispatchLagNanos)));
+        return line.toString();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return "LoadTestReport{targetRate=" + targetRate + ", throughput=" + getThroughput()
+            + ", accepted=" + accepted + ", rejected=" + getRejected() + ", failed=" + failed
+            + ", p99Nanos=" + responseTimes.getValueAtPercentile(99) + "}";
+    }
+}
@@ -0,0 +1,143 @@
+package uk.gov.dwp.uc.pairtest.loadtest;
+
+import uk.gov.dwp.uc.pairtest.TicketService;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.metrics.LatencyHistogram;
+import uk.gov.dwp.uc.pairtest.standin.SimulatedLatency;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Open-loop load generator: sends orders to a {@link TicketService} at a target arrival rate,
+ * whether or not the earlier ones have completed, the way independent customers arrive.
+ * <p>
+ * Arrivals are a Poisson process: the gaps between orders are drawn from an exponential
+ * distribution with the mean of the rate. Each order is sent on its own virtual thread, so a slow
+ * purchase never delays the next arrival. A closed-loop test, where each thread waits for its last
+ * call before sending the next, quietly lowers the rate when the system slows down and leaves out
+ * exactly the slow periods (coordinated omission); here each order's response time is measured
+ * from when it was due, so any lag shows up in the percentiles.
+ * <p>
+ * At most {@code maxInFlight} orders are outstanding, so a saturated system cannot exhaust memory;
+ * orders held back by the limit are still timed from when they were due.
+ */
+public final class OpenLoopLoadGenerator {
+
+    private final TicketService ticketService;
+    private final OrderMix orderMix;
+    private final int maxInFlight;
+    private final long seed;
+
+    // At most 10,000 orders in flight, and the same orders on every run
+    public OpenLoopLoadGenerator(TicketService ticketService, OrderMix orderMix) {
+        this(ticketService, orderMix, 10_000, 0x5eedL);
+    }
+
+    /**
+     * @param maxInFlight the most orders outstanding at once
+     * @param seed        seed of the arrivals and orders, so runs can be repeated exactly
+     */
+    public OpenLoopLoadGenerator(TicketService ticketService, OrderMix orderMix, int maxInFlight, long seed) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        this.ticketService = ticketService;
+        this.orderMix = orderMix;
+        this.maxInFlight = maxInFlight;
+        this.seed = seed;
+    }
+
+    /**
+     * Sends orders at the rate for the duration, then waits for all of them to complete.
+     *
+     * @param ratePerSecond the mean number of orders sent per second
+     * @throws InterruptedException if interrupted while sending; orders already sent are left to complete
+     */
+    public LoadTestReport run(double ratePerSecond, Duration duration) throws InterruptedException {
+        if (!(ratePerSecond > 0)) {
+            throw new IllegalArgumentException("ratePerSecond must be positive: " + ratePerSecond);
+        }
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("duration must be positive: " + duration);
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        Results results = new Results();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        double meanGapNanos = 1e9 / ratePerSecond;
+        long durationNanos = duration.toNanos();
+        long maxLagNanos = 0;
+
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            double offset = 0;
+            while (true) {
+                offset -= meanGapNanos * Math.log(1 - random.nextDouble());
+                if (offset >= durationNanos) {
+                    break;
+                }
+
+                long due = start + (long) offset;
+                SimulatedLatency.pause(due - System.nanoTime());
+                OrderMix.LoadOrder order = orderMix.next(random);
+                inFlight.acquire();
+                long sent = System.nanoTime();
+                maxLagNanos = Math.max(maxLagNanos, sent - due);
+                executor.execute(() -> {
+                    try {
+                        purchase(order, due, sent, results);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        return results.report(ratePerSecond, duration, elapsedNanos, maxLagNanos);
+    }
+
+    private void purchase(OrderMix.LoadOrder order, long due, long sent, Results results) {
+        try {
+            ticketService.purchaseTickets(order.accountId(), order.adults(), order.children(), order.infants());
+            results.accepted.increment();
+        } catch (InvalidPurchaseException e) {
+            PurchaseOutcome outcome = e.getOutcome();
+            // Without an outcome the purchase was not rejected for a reason of its own, so it failed
+            if (outcome != null) {
+                results.rejections.incrementAndGet(outcome.ordinal());
+            } else {
+                results.failed.increment();
+            }
+        } catch (RuntimeException e) {
+            results.failed.increment();
+        }
+        long completed = System.nanoTime();
+        results.responseTimes.record(completed - due);
+        results.serviceTimes.record(completed - sent);
+    }
+
+    // Counts and latencies of one run, recorded from the order threads
+    private static final class Results {
+        final LongAdder accepted = new LongAdder();
+        final AtomicLongArray rejections = new AtomicLongArray(PurchaseOutcome.values().length);
+        final LongAdder failed = new LongAdder();
+        final LatencyHistogram responseTimes = new LatencyHistogram();
+        final LatencyHistogram serviceTimes = new LatencyHistogram();
+
+        LoadTestReport report(double targetRate, Duration duration, long elapsedNanos, long maxLagNanos) {
+            long[] rejectionCounts = new long[rejections.length()];
+            for (int i = 0; i < rejectionCounts.length; i++) {
+                rejectionCounts[i] = rejections.get(i);
+            }
+            return new LoadTestReport(targetRate, duration, elapsedNanos, accepted.sum(), rejectionCounts,
+                failed.sum(), responseTimes.snapshot(), serviceTimes.snapshot(), maxLagNanos);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package uk.gov.dwp.uc.pairtest.loadtest;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Immutable Object
+ *
+ * Mix of the orders a load test sends: how likely each order size is, what share of the orders
+ * break a ticket rule on purpose, and how many accounts they are spread over.
+ * <p>
+ * Valid orders of n tickets split them randomly between the types, with at least one adult and
+ * no more infants than adults. Rejected orders are all children, so they fail the adult rule.
+ */
+public final class OrderMix {
+
+    private final int[] cumulativeWeights;
+    private final double rejectionShare;
+    private final long accounts;
+
+    private OrderMix(int[] cumulativeWeights, double rejectionShare, long accounts) {
+        this.cumulativeWeights = cumulativeWeights;
+        this.rejectionShare = rejectionShare;
+        this.accounts = accounts;
+    }
+
+    // Orders of minTickets to maxTickets tickets, all sizes equally likely
+    public static OrderMix uniform(int minTickets, int maxTickets) {
+        if (minTickets <= 0 || maxTickets < minTickets) {
+            throw new IllegalArgumentException("Invalid order sizes: " + minTickets + " to " + maxTickets);
+        }
+        int[] weights = new int[maxTickets];
+        Arrays.fill(weights, minTickets - 1, maxTickets, 1);
+        return weighted(weights);
+    }
+
+    /**
+     * @param weightsBySize the relative weight of orders of 1, 2, 3... tickets, e.g. {@code 5, 3, 1}
+     */
+    public static OrderMix weighted(int... weightsBySize) {
+        int[] cumulative = new int[weightsBySize.length];
+        long total = 0;
+        for (int i = 0; i < weightsBySize.length; i++) {
+            if (weightsBySize[i] < 0) {
+                throw new IllegalArgumentException("Weights cannot be negative: " + Arrays.toString(weightsBySize));
+            }
+            total += weightsBySize[i];
+            if (total > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Weights are too large: " + Arrays.toString(weightsBySize));
+            }
+            cumulative[i] = (int) total;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("At least one order size needs a weight");
+        }
+        return new OrderMix(cumulative, 0, 1_000_000L);
+    }
+
+    // Share of orders, between 0 and 1, that break a ticket rule and are rejected
+    public OrderMix withRejectionShare(double rejectionShare) {
+        if (rejectionShare < 0 || rejectionShare > 1) {
+            throw new IllegalArgumentException("rejectionShare must be between 0 and 1: " + rejectionShare);
+        }
+        return new OrderMix(cumulativeWeights, rejectionShare, accounts);
+    }
+
+    // Number of accounts the orders are spread over, evenly; 1,000,000 by default
+    public OrderMix withAccounts(long accounts) {
+        if (accounts <= 0) {
+            throw new IllegalArgumentException("accounts must be positive: " + accounts);
+        }
+        return new OrderMix(cumulativeWeights, rejectionShare, accounts);
+    }
+
+    public int getMaxTickets() {
+        return cumulativeWeights.length;
+    }
+
+    public double getRejectionShare() {
+        return rejectionShare;
+    }
+
+    LoadOrder next(SplittableRandom random) {
+        long accountId = 1 + random.nextLong(accounts);
+        int tickets = sizeOf(random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]));
+        if (rejectionShare > 0 && random.nextDouble() < rejectionShare) {
+            return new LoadOrder(accountId, 0, tickets, 0);
+        }
+
+        // Infants sit on an adult's lap, so at most half of the tickets (less the one adult) are infants
+        int infants = random.nextInt((tickets - 1) / 2 + 1);
+        int minAdults = Math.max(1, infants);
+        int children = random.nextInt(tickets - infants - minAdults + 1);
+        return new LoadOrder(accountId, tickets - infants - children, children, infants);
+    }
+
+    // Order size whose cumulative weight range holds the point, by binary search
+    private int sizeOf(int point) {
+        int low = 0;
+        int high = cumulativeWeights.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulativeWeights[mid] > point) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low + 1;
+    }
+
+    // One order of a load test
+    record LoadOrder(long accountId, int adults, int children, int infants) {
+    }
+}
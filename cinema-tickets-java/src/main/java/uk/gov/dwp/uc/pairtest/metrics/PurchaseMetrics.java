@@ -0,0 +1,164 @@
+package uk.gov.dwp.uc.pairtest.metrics;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and per-stage latency histograms of the purchase path.
+ * <p>
+ * Every counter is a {@link LongAdder} held in an array indexed by enum ordinal, and every histogram
+ * records without locks, so recording costs a few uncontended atomic adds and allocates nothing.
+ * Read the values through the getters, or over JMX after {@link #registerMBean(String)}.
+ */
+public final class PurchaseMetrics implements PurchaseMetricsMXBean {
+
+    private static final PurchaseStage[] STAGES = PurchaseStage.values();
+    private static final PurchaseOutcome[] OUTCOMES = PurchaseOutcome.values();
+    private static final TicketTypeRequest.Type[] TYPES = TicketTypeRequest.Type.values();
+
+    private final LatencyHistogram[] stageLatencies = new LatencyHistogram[STAGES.length];
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder[] rejections = adders(OUTCOMES.length);
+    private final LongAdder[] tickets = adders(TYPES.length);
+    private final LongAdder[] revenue = adders(TYPES.length);
+
+    public PurchaseMetrics() {
+        for (PurchaseStage stage : STAGES) {
+            stageLatencies[stage.ordinal()] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Records the latency of a stage that started at {@code startNanos}.
+     *
+     * @return the current {@link System#nanoTime()}, to be used as the start of the next stage
+     */
+    public long recordStage(PurchaseStage stage, long startNanos) {
+        long now = System.nanoTime();
+        stageLatencies[stage.ordinal()].record(now - startNanos);
+        return now;
+    }
+
+    public void recordAccepted(int adults, int children, int infants,
+                               long adultRevenue, long childRevenue, long infantRevenue) {
+        accepted.increment();
+        add(TicketTypeRequest.Type.ADULT, adults, adultRevenue);
+        add(TicketTypeRequest.Type.CHILD, children, childRevenue);
+        add(TicketTypeRequest.Type.INFANT, infants, infantRevenue);
+    }
+
+    public void recordRejection(PurchaseOutcome outcome) {
+        rejections[outcome.getCode()].increment();
+    }
+
+    // A purchase that failed for a reason other than a rejection, e.g. a gateway error
+    public void recordFailure() {
+        failed.increment();
+    }
+
+    public LatencyHistogram.Snapshot getStageLatency(PurchaseStage stage) {
+        return stageLatencies[stage.ordinal()].snapshot();
+    }
+
+    @Override
+    public long getAcceptedPurchases() {
+        return accepted.sum();
+    }
+
+    @Override
+    public long getFailedPurchases() {
+        return failed.sum();
+    }
+
+    public long getRejections(PurchaseOutcome outcome) {
+        return rejections[outcome.getCode()].sum();
+    }
+
+    public long getTickets(TicketTypeRequest.Type type) {
+        return tickets[type.ordinal()].sum();
+    }
+
+    public long getRevenue(TicketTypeRequest.Type type) {
+        return revenue[type.ordinal()].sum();
+    }
+
+    @Override
+    public Map<String, Long> getRejectionsByReason() {
+        Map<String, Long> byReason = new LinkedHashMap<>();
+        for (PurchaseOutcome outcome : OUTCOMES) {
+            if (outcome.getMessageKey() != null) {
+                byReason.put(outcome.getMessageKey(), getRejections(outcome));
+            }
+        }
+        return byReason;
+    }
+
+    @Override
+    public Map<String, Long> getTicketsByType() {
+        Map<String, Long> byType = new LinkedHashMap<>();
+        for (TicketTypeRequest.Type type : TYPES) {
+            byType.put(type.name(), getTickets(type));
+        }
+        return byType;
+    }
+
+    @Override
+    public Map<String, Long> getRevenueByType() {
+        Map<String, Long> byType = new LinkedHashMap<>();
+        for (TicketTypeRequest.Type type : TYPES) {
+            byType.put(type.name(), getRevenue(type));
+        }
+        return byType;
+    }
+
+    @Override
+    public Map<String, Long> getStageLatencies() {
+        Map<String, Long> latencies = new LinkedHashMap<>();
+        for (PurchaseStage stage : STAGES) {
+            LatencyHistogram.Snapshot snapshot = getStageLatency(stage);
+            latencies.put(stage + ".count", snapshot.getCount());
+            latencies.put(stage + ".p50", snapshot.getValueAtPercentile(50));
+            latencies.put(stage + ".p99", snapshot.getValueAtPercentile(99));
+            latencies.put(stage + ".p999", snapshot.getValueAtPercentile(99.9));
+            latencies.put(stage + ".max", snapshot.getMax());
+        }
+        return latencies;
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server.
+     *
+     * @param objectName e.g. {@code uk.gov.dwp.uc.pairtest:type=PurchaseMetrics}
+     * @throws IllegalStateException if the name is invalid or already registered
+     */
+    public void registerMBean(String objectName) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(objectName));
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register purchase metrics as " + objectName, e);
+        }
+    }
+
+    private void add(TicketTypeRequest.Type type, int count, long amount) {
+        if (count > 0) {
+            tickets[type.ordinal()].add(count);
+            revenue[type.ordinal()].add(amount);
+        }
+    }
+
+    private static LongAdder[] adders(int size) {
+        LongAdder[] adders = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,24 @@
+package uk.gov.dwp.uc.pairtest.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link PurchaseMetrics}. Latencies are in nanoseconds.
+ */
+public interface PurchaseMetricsMXBean {
+
+    long getAcceptedPurchases();
+
+    long getFailedPurchases();
+
+    // Rejections keyed by their error message key in messages.properties
+    Map<String, Long> getRejectionsByReason();
+
+    Map<String, Long> getTicketsByType();
+
+    Map<String, Long> getRevenueByType();
+
+    // Keyed by stage and statistic, e.g. "PAYMENT.p99"
+    Map<String, Long> getStageLatencies();
+
+}
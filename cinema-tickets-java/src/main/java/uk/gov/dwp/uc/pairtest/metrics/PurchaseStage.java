@@ -0,0 +1,8 @@
+package uk.gov.dwp.uc.pairtest.metrics;
+
+/**
+ * Stages of a purchase whose latency is recorded separately.
+ */
+public enum PurchaseStage {
+    VALIDATION, PRICING, PAYMENT, RESERVATION
+}
@@ -0,0 +1,243 @@
+package uk.gov.dwp.uc.pairtest.payment;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+import uk.gov.dwp.uc.pairtest.spi.BatchTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.spi.RefundableTicketPaymentService;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Payment service that coalesces concurrent payments into batched settlements of a
+ * {@link BatchTicketPaymentService}.
+ * <p>
+ * Payments are gathered until {@code maxBatchSize} are pending or the first of them has waited
+ * {@code maxWait}, whichever comes first, and the batch is then sent in one call on a virtual thread,
+ * while the next batch is gathered. A full batch is sent by the caller that filled it, and a
+ * dispatcher thread sends the batches whose wait is over. Every caller gets its own future,
+ * completed when its batch settles, or failed if the gateway declined its payment or the whole batch.
+ * {@link #makePayment(long, int)} blocks on that future, so the service can stand in for the gateway
+ * wherever a {@link TicketPaymentService} is used, e.g. in {@code TicketServiceImpl}.
+ */
+public class CoalescingTicketPaymentService implements TicketPaymentService, AutoCloseable {
+
+    private static final Executor SETTLEMENT_EXECUTOR =
+        Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("payment-batch-", 0).factory());
+
+    private final BatchTicketPaymentService gateway;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final Thread dispatcher;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition paymentsPending = lock.newCondition();
+    // The batch being gathered, guarded by the lock
+    private Batch gathering;
+    private long firstPendingNanos;
+    private boolean closed;
+
+    private CoalescingTicketPaymentService(BatchTicketPaymentService gateway, int maxBatchSize, Duration maxWait) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize must be positive: " + maxBatchSize);
+        }
+        if (maxWait.isNegative()) {
+            throw new IllegalArgumentException("maxWait must not be negative: " + maxWait);
+        }
+        this.gateway = gateway;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.gathering = new Batch(maxBatchSize);
+        this.dispatcher = new Thread(this::dispatchLoop, "payment-coalescer");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Coalesces the payments of the gateway. When it can refund payments, so can the returned service;
+     * refunds are rare, so they go straight to the gateway rather than into a batch.
+     *
+     * @param maxBatchSize the most payments sent in one settlement
+     * @param maxWait      the longest a payment waits for its batch to fill up
+     */
+    public static CoalescingTicketPaymentService wrap(BatchTicketPaymentService gateway, int maxBatchSize,
+                                                      Duration maxWait) {
+        if (gateway instanceof RefundableTicketPaymentService refundable) {
+            return new Refundable(gateway, refundable, maxBatchSize, maxWait);
+        }
+        return new CoalescingTicketPaymentService(gateway, maxBatchSize, maxWait);
+    }
+
+    /**
+     * Adds the payment to the next batch.
+     *
+     * @return a future that completes when the payment is taken, or exceptionally if it was declined or
+     *         the batch failed
+     * @throws IllegalStateException if the service is closed
+     */
+    public CompletableFuture<Void> submitPayment(long accountId, int totalAmountToPay) {
+        CompletableFuture<Void> settled = new CompletableFuture<>();
+        Batch full = null;
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Payment coalescer is closed");
+            }
+            if (gathering.count == 0) {
+                firstPendingNanos = System.nanoTime();
+                paymentsPending.signal();
+            }
+            gathering.add(accountId, totalAmountToPay, settled);
+            // The caller that fills the batch sends it; the dispatcher only sends batches whose wait is over
+            if (gathering.count == maxBatchSize) {
+                full = gathering;
+                gathering = new Batch(maxBatchSize);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+        return settled;
+    }
+
+    @Override
+    public void makePayment(long accountId, int totalAmountToPay) {
+        try {
+            submitPayment(accountId, totalAmountToPay).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Sends the payments still pending and stops gathering new ones.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            paymentsPending.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void dispatchLoop() {
+        while (true) {
+            Batch batch;
+            lock.lock();
+            try {
+                // Wait until the first payment has waited long enough, or the service closes
+                while (true) {
+                    if (closed && gathering.count > 0) {
+                        break;
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    if (gathering.count == 0) {
+                        paymentsPending.awaitUninterruptibly();
+                        continue;
+                    }
+                    long remaining = firstPendingNanos + maxWaitNanos - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    paymentsPending.awaitNanos(remaining);
+                }
+                batch = gathering;
+                gathering = new Batch(maxBatchSize);
+            } catch (InterruptedException e) {
+                // not interrupted by this class; keep gathering
+                continue;
+            } finally {
+                lock.unlock();
+            }
+
+            dispatch(batch);
+        }
+    }
+
+    private void dispatch(Batch batch) {
+        SETTLEMENT_EXECUTOR.execute(() -> settle(batch));
+    }
+
+    private void settle(Batch batch) {
+        try {
+            gateway.makePayments(batch.accountIds, batch.amounts, batch.paid, batch.count);
+        } catch (Throwable e) {
+            // Even an Error fails the batch, or its callers would wait forever
+            for (int i = 0; i < batch.count; i++) {
+                batch.futures[i].completeExceptionally(e);
+            }
+            if (e instanceof Error error) {
+                throw error;
+            }
+            return;
+        }
+        // Only the declined payments fail; the rest of the batch was taken
+        for (int i = 0; i < batch.count; i++) {
+            if (batch.paid[i]) {
+                batch.futures[i].complete(null);
+            } else {
+                batch.futures[i].completeExceptionally(BatchTicketPaymentService.declined(batch.accountIds[i]));
+            }
+        }
+    }
+
+    private static final class Refundable extends CoalescingTicketPaymentService
+            implements RefundableTicketPaymentService {
+        private final RefundableTicketPaymentService refundable;
+
+        Refundable(BatchTicketPaymentService gateway, RefundableTicketPaymentService refundable, int maxBatchSize,
+                   Duration maxWait) {
+            super(gateway, maxBatchSize, maxWait);
+            this.refundable = refundable;
+        }
+
+        @Override
+        public void refundPayment(long accountId, int totalAmountToRefund) {
+            refundable.refundPayment(accountId, totalAmountToRefund);
+        }
+    }
+
+    private static final class Batch {
+        final long[] accountIds;
+        final int[] amounts;
+        final boolean[] paid;
+        final CompletableFuture<?>[] futures;
+        int count;
+
+        Batch(int capacity) {
+            accountIds = new long[capacity];
+            amounts = new int[capacity];
+            paid = new boolean[capacity];
+            futures = new CompletableFuture<?>[capacity];
+        }
+
+        void add(long accountId, int amount, CompletableFuture<Void> future) {
+            accountIds[count] = accountId;
+            amounts[count] = amount;
+            futures[count] = future;
+            count++;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package uk.gov.dwp.uc.pairtest.pricing;
+
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.util.TicketPrices;
+
+import java.util.Arrays;
+
+/**
+ * Immutable Object
+ *
+ * Price of one ticket of each type, held in a flat array indexed by {@link TicketTypeRequest.Type#ordinal()}.
+ * Prices are in the same currency unit as {@link TicketPrices}.
+ */
+public final class PriceTable implements TicketPricing {
+
+    private static final int ADULT = TicketTypeRequest.Type.ADULT.ordinal();
+    private static final int CHILD = TicketTypeRequest.Type.CHILD.ordinal();
+    private static final int INFANT = TicketTypeRequest.Type.INFANT.ordinal();
+
+    private final long[] prices;
+
+    private PriceTable(long[] prices) {
+        for (long price : prices) {
+            if (price < 0) {
+                throw new IllegalArgumentException("Price cannot be negative: " + price);
+            }
+        }
+        this.prices = prices;
+    }
+
+    public static PriceTable of(long adult, long child, long infant) {
+        long[] prices = new long[TicketTypeRequest.Type.values().length];
+        prices[ADULT] = adult;
+        prices[CHILD] = child;
+        prices[INFANT] = infant;
+        return new PriceTable(prices);
+    }
+
+    // The fixed prices in TicketPrices
+    public static PriceTable standard() {
+        return of(TicketPrices.ADULT, TicketPrices.CHILD, TicketPrices.INFANT);
+    }
+
+    public long getPrice(TicketTypeRequest.Type type) {
+        return prices[type.ordinal()];
+    }
+
+    /**
+     * Works the total out directly.
+     *
+     * @throws ArithmeticException if the total does not fit in a long
+     */
+    @Override
+    public long quote(int adults, int children, int infants) {
+        return Math.addExact(Math.addExact(
+                Math.multiplyExact(adults, prices[ADULT]),
+                Math.multiplyExact(children, prices[CHILD])),
+            Math.multiplyExact(infants, prices[INFANT]));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PriceTable other && Arrays.equals(prices, other.prices);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(prices);
+    }
+}
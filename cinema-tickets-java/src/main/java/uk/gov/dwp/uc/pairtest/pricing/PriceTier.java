@@ -0,0 +1,8 @@
+package uk.gov.dwp.uc.pairtest.pricing;
+
+/**
+ * Price tiers a screening can be sold at.
+ */
+public enum PriceTier {
+    STANDARD, OFF_PEAK, PEAK, PREMIUM
+}
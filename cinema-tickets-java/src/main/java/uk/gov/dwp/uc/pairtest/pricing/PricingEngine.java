@@ -0,0 +1,198 @@
+package uk.gov.dwp.uc.pairtest.pricing;
+
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.util.TicketingConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Consumer;
+
+/**
+ * Prices purchases per price tier and per screening.
+ * <p>
+ * Price tables are loaded from properties such as {@code pricing.properties}:
+ * <pre>
+ * tier.PEAK.ADULT=30
+ * tier.PEAK.CHILD=18
+ * screening.evening-imax.tier=PREMIUM
+ * screening.evening-imax.ADULT=45
+ * </pre>
+ * A tier without prices uses the standard prices in {@code TicketPrices}; a screening uses the prices of
+ * its tier (standard if none is given), with any of them overridden per ticket type. Unknown screenings
+ * are priced at the standard tier.
+ * <p>
+ * Every table is precomputed into a {@link QuoteTable} up to {@code max.tickets}. When the configuration
+ * is reloaded, the quote tables are rebuilt once by the reloading thread and swapped in atomically; until
+ * then quotes keep coming from the old tables, which price counts beyond their own maximum directly.
+ */
+public final class PricingEngine {
+
+    private static final String PROPERTIES_FILE = "pricing.properties";
+
+    private final Map<PriceTier, PriceTable> tierTables;
+    private final Map<String, PriceTable> screeningTables;
+
+    private volatile Quotes quotes;
+
+    public PricingEngine(Map<PriceTier, PriceTable> tierTables, Map<String, PriceTable> screeningTables) {
+        Map<PriceTier, PriceTable> tiers = new EnumMap<>(PriceTier.class);
+        for (PriceTier tier : PriceTier.values()) {
+            PriceTable table = tierTables.get(tier);
+            tiers.put(tier, table != null ? table : tierTables.getOrDefault(PriceTier.STANDARD, PriceTable.standard()));
+        }
+        this.tierTables = tiers;
+        this.screeningTables = Map.copyOf(screeningTables);
+        this.quotes = buildQuotes(TicketingConfig.current());
+        TicketingConfig.addListener(new QuoteRebuilder(this));
+        rebuildQuotes();
+    }
+
+    // Engine for the pricing.properties file on the classpath, or standard prices if there is none
+    public static PricingEngine load() {
+        Properties props = new Properties();
+        try (InputStream in = PricingEngine.class.getClassLoader().getResourceAsStream(PROPERTIES_FILE)) {
+            if (in != null) {
+                props.load(in);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return fromProperties(props);
+    }
+
+    public static PricingEngine fromProperties(Properties props) {
+        Map<PriceTier, PriceTable> tierTables = new EnumMap<>(PriceTier.class);
+        PriceTable standard = readTable(props, "tier." + PriceTier.STANDARD + ".", PriceTable.standard());
+        for (PriceTier tier : PriceTier.values()) {
+            tierTables.put(tier, readTable(props, "tier." + tier + ".", standard));
+        }
+
+        Map<String, PriceTable> screeningTables = new HashMap<>();
+        for (String name : props.stringPropertyNames()) {
+            if (!name.startsWith("screening.")) {
+                continue;
+            }
+            int end = name.lastIndexOf('.');
+            String screeningId = name.substring("screening.".length(), end);
+            if (screeningId.isEmpty() || screeningTables.containsKey(screeningId)) {
+                continue;
+            }
+
+            String prefix = "screening." + screeningId + ".";
+            String tier = props.getProperty(prefix + "tier");
+            PriceTable base = tier == null ? standard : tierTables.get(PriceTier.valueOf(tier.trim()));
+            screeningTables.put(screeningId, readTable(props, prefix, base));
+        }
+
+        return new PricingEngine(tierTables, screeningTables);
+    }
+
+    public long quote(PriceTier tier, int adults, int children, int infants) {
+        return quotes.tiers.get(tier).quote(adults, children, infants);
+    }
+
+    public long quote(String screeningId, int adults, int children, int infants) {
+        return quoteTable(quotes, screeningId).quote(adults, children, infants);
+    }
+
+    // Pricing bound to one tier, for a TicketServiceImpl that sells that tier
+    public TicketPricing forTier(PriceTier tier) {
+        return (adults, children, infants) -> quote(tier, adults, children, infants);
+    }
+
+    // Pricing bound to one screening, for a TicketServiceImpl that sells that screening
+    public TicketPricing forScreening(String screeningId) {
+        return (adults, children, infants) -> quote(screeningId, adults, children, infants);
+    }
+
+    public PriceTable getPriceTable(PriceTier tier) {
+        return tierTables.get(tier);
+    }
+
+    public PriceTable getPriceTable(String screeningId) {
+        return screeningTables.getOrDefault(screeningId, tierTables.get(PriceTier.STANDARD));
+    }
+
+    private QuoteTable quoteTable(Quotes current, String screeningId) {
+        QuoteTable table = current.screenings.get(screeningId);
+        return table != null ? table : current.tiers.get(PriceTier.STANDARD);
+    }
+
+    // Snapshot the quote tables in use were built for
+    TicketingConfig.Snapshot getQuotedConfig() {
+        return quotes.config;
+    }
+
+    // Builds the quote tables for the latest snapshot, unless they are already built; one build at a time
+    private synchronized void rebuildQuotes() {
+        TicketingConfig.Snapshot config = TicketingConfig.current();
+        if (quotes.config != config) {
+            quotes = buildQuotes(config);
+        }
+    }
+
+    private Quotes buildQuotes(TicketingConfig.Snapshot config) {
+        // Screenings and tiers that share prices share one quote table
+        Map<PriceTable, QuoteTable> built = new HashMap<>();
+        Map<PriceTier, QuoteTable> tiers = new EnumMap<>(PriceTier.class);
+        for (Map.Entry<PriceTier, PriceTable> entry : tierTables.entrySet()) {
+            tiers.put(entry.getKey(), built.computeIfAbsent(entry.getValue(),
+                table -> new QuoteTable(table, config.getMaxTickets())));
+        }
+        Map<String, QuoteTable> screenings = new HashMap<>();
+        for (Map.Entry<String, PriceTable> entry : screeningTables.entrySet()) {
+            screenings.put(entry.getKey(), built.computeIfAbsent(entry.getValue(),
+                table -> new QuoteTable(table, config.getMaxTickets())));
+        }
+        return new Quotes(config, tiers, screenings);
+    }
+
+    private static PriceTable readTable(Properties props, String prefix, PriceTable defaults) {
+        return PriceTable.of(
+            readPrice(props, prefix, TicketTypeRequest.Type.ADULT, defaults),
+            readPrice(props, prefix, TicketTypeRequest.Type.CHILD, defaults),
+            readPrice(props, prefix, TicketTypeRequest.Type.INFANT, defaults));
+    }
+
+    private static long readPrice(Properties props, String prefix, TicketTypeRequest.Type type, PriceTable defaults) {
+        String value = props.getProperty(prefix + type);
+        if (value == null) {
+            return defaults.getPrice(type);
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(prefix + type + " is not a number: " + value, e);
+        }
+    }
+
+    // Rebuilds an engine's quote tables on reload, for as long as the engine is in use
+    private static final class QuoteRebuilder implements Consumer<TicketingConfig.Snapshot> {
+        private final WeakReference<PricingEngine> engine;
+
+        private QuoteRebuilder(PricingEngine engine) {
+            this.engine = new WeakReference<>(engine);
+        }
+
+        @Override
+        public void accept(TicketingConfig.Snapshot snapshot) {
+            PricingEngine pricingEngine = engine.get();
+            if (pricingEngine == null) {
+                TicketingConfig.removeListener(this);
+            } else {
+                pricingEngine.rebuildQuotes();
+            }
+        }
+    }
+
+    // Quote tables built for one configuration snapshot
+    private record Quotes(TicketingConfig.Snapshot config, Map<PriceTier, QuoteTable> tiers,
+                          Map<String, QuoteTable> screenings) {
+    }
+}
@@ -0,0 +1,47 @@
+package uk.gov.dwp.uc.pairtest.pricing;
+
+import uk.gov.dwp.uc.pairtest.util.TetrahedralIndex;
+
+/**
+ * Precomputed totals of a {@link PriceTable} for every combination of ticket counts whose sum is
+ * at most the maximum number of tickets, so a quote is a single read from a dense array.
+ * <p>
+ * The totals are laid out by a {@link TetrahedralIndex}, with no gaps.
+ * Counts outside the table are priced directly by the price table.
+ */
+public final class QuoteTable implements TicketPricing {
+
+    // Above this many combinations (max.tickets of about 290) the table is not worth its memory
+    static final long MAX_ENTRIES = 1L << 22;
+
+    private final PriceTable priceTable;
+    private final TetrahedralIndex index;
+    private final long[] totals;
+
+    public QuoteTable(PriceTable priceTable, int maxTickets) {
+        this.priceTable = priceTable;
+        this.index = TetrahedralIndex.upTo(maxTickets, MAX_ENTRIES);
+        this.totals = new long[index.size()];
+
+        int max = index.getMaxTickets();
+        for (int adults = 0; adults <= max; adults++) {
+            for (int children = 0; adults + children <= max; children++) {
+                for (int infants = 0; adults + children + infants <= max; infants++) {
+                    totals[index.indexOf(adults, children, infants)] = priceTable.quote(adults, children, infants);
+                }
+            }
+        }
+    }
+
+    @Override
+    public long quote(int adults, int children, int infants) {
+        if (adults < 0 || children < 0 || infants < 0 || !index.covers(adults, children, infants)) {
+            return priceTable.quote(adults, children, infants);
+        }
+        return totals[index.indexOf(adults, children, infants)];
+    }
+
+    public PriceTable getPriceTable() {
+        return priceTable;
+    }
+}
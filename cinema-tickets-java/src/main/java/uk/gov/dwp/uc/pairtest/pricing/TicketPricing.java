@@ -0,0 +1,16 @@
+package uk.gov.dwp.uc.pairtest.pricing;
+
+/**
+ * Prices a purchase from its ticket counts per type.
+ * Totals are {@code long} so large group or corporate orders cannot overflow.
+ */
+@FunctionalInterface
+public interface TicketPricing {
+
+    long quote(int adults, int children, int infants);
+
+    // The fixed prices in TicketPrices
+    static TicketPricing standard() {
+        return PriceTable.standard();
+    }
+}
@@ -0,0 +1,57 @@
+package uk.gov.dwp.uc.pairtest.resilience;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Circuit breaker counting consecutive failures of a downstream service.
+ * <p>
+ * Once the failure threshold is reached the circuit opens and calls are refused. After the open
+ * period a single trial call is let through: its success closes the circuit, its failure opens it again.
+ */
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicBoolean trialInFlight = new AtomicBoolean();
+    private volatile boolean open;
+    private volatile long openUntilNanos;
+
+    /**
+     * @return whether a call may go ahead now
+     */
+    boolean tryAcquire(long nowNanos) {
+        if (!open) {
+            return true;
+        }
+        return nowNanos - openUntilNanos >= 0 && trialInFlight.compareAndSet(false, true);
+    }
+
+    void onSuccess() {
+        consecutiveFailures.set(0);
+        if (open) {
+            open = false;
+            trialInFlight.set(false);
+        }
+    }
+
+    void onFailure(long nowNanos, int failureThreshold, long openNanos) {
+        if (open) {
+            // the trial call failed
+            openUntilNanos = nowNanos + openNanos;
+            trialInFlight.set(false);
+        } else if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            consecutiveFailures.set(0);
+            openUntilNanos = nowNanos + openNanos;
+            open = true;
+        }
+    }
+
+    public State getState() {
+        if (!open) {
+            return State.CLOSED;
+        }
+        return System.nanoTime() - openUntilNanos >= 0 ? State.HALF_OPEN : State.OPEN;
+    }
+}
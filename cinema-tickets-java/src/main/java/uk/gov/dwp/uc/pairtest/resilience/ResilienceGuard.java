@@ -0,0 +1,169 @@
+package uk.gov.dwp.uc.pairtest.resilience;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.util.TicketPurchaseEvaluator;
+import uk.gov.dwp.uc.pairtest.util.TicketingConfig;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Protects the calls to one downstream service with a circuit breaker, a bulkhead and a timeout,
+ * so a slow or failing service cannot hold up every purchasing thread.
+ * <p>
+ * Each call fails fast with a stackless {@link InvalidPurchaseException} instead of waiting:
+ * {@link PurchaseOutcome#SERVICE_UNAVAILABLE} while the circuit is open,
+ * {@link PurchaseOutcome#SERVICE_BUSY} when the bulkhead has no room left, and
+ * {@link PurchaseOutcome#SERVICE_TIMEOUT} when the call takes longer than the timeout.
+ * A timed-out call is interrupted but keeps its bulkhead slot until it has really returned,
+ * so calls stuck in the service still count against the limit. A call whose effect cannot be
+ * abandoned halfway, such as taking a payment, runs with {@link #runUntimed} instead.
+ * <p>
+ * The limits are read from {@link TicketingConfig.ServiceSettings} on every call, so a reloaded
+ * configuration takes effect at once; the bulkhead is resized when the settings change.
+ */
+public final class ResilienceGuard {
+
+    // Timed calls run on virtual threads, so a stuck call does not hold a platform thread
+    private static final Executor CALL_EXECUTOR =
+        Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("downstream-call-", 0).factory());
+
+    private final Supplier<TicketingConfig.ServiceSettings> settings;
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+    private volatile Bulkhead bulkhead;
+
+    /**
+     * @param settings supplies the current limits; a new instance resizes the bulkhead
+     */
+    public ResilienceGuard(Supplier<TicketingConfig.ServiceSettings> settings) {
+        this.settings = settings;
+        TicketingConfig.ServiceSettings initial = settings.get();
+        this.bulkhead = new Bulkhead(initial, new Semaphore(initial.getMaxConcurrentCalls()));
+    }
+
+    // Guard for the payment gateway, following the payment.* settings of TicketingConfig
+    public static ResilienceGuard forPayments() {
+        return new ResilienceGuard(() -> TicketingConfig.current().getPaymentSettings());
+    }
+
+    // Guard for the seat reservation service, following the reservation.* settings of TicketingConfig
+    public static ResilienceGuard forReservations() {
+        return new ResilienceGuard(() -> TicketingConfig.current().getReservationSettings());
+    }
+
+    /**
+     * Runs the call within the limits.
+     *
+     * @throws InvalidPurchaseException if the call is refused or times out, or the rejection thrown by the call
+     */
+    public void run(Runnable call) {
+        run(call, true);
+    }
+
+    /**
+     * Runs the call within the circuit breaker and the bulkhead, but without the timeout, for calls
+     * that may already have taken effect when they time out, e.g. a payment that may have been charged.
+     *
+     * @throws InvalidPurchaseException if the call is refused, or the rejection thrown by the call
+     */
+    public void runUntimed(Runnable call) {
+        run(call, false);
+    }
+
+    private void run(Runnable call, boolean timed) {
+        TicketingConfig.ServiceSettings current = settings.get();
+        Semaphore permits = bulkheadFor(current);
+        if (!permits.tryAcquire()) {
+            throw TicketPurchaseEvaluator.rejection(PurchaseOutcome.SERVICE_BUSY);
+        }
+        if (!circuitBreaker.tryAcquire(System.nanoTime())) {
+            permits.release();
+            throw TicketPurchaseEvaluator.rejection(PurchaseOutcome.SERVICE_UNAVAILABLE);
+        }
+
+        try {
+            if (!timed || current.getTimeoutMillis() == 0) {
+                try {
+                    call.run();
+                } finally {
+                    permits.release();
+                }
+            } else {
+                runWithTimeout(call, permits, current.getTimeoutMillis());
+            }
+        } catch (InvalidPurchaseException e) {
+            // The service answered: a rejection such as sold-out seats is not a failure of the service
+            if (isGuardRejection(e)) {
+                circuitBreaker.onFailure(System.nanoTime(), current.getFailureThreshold(), openNanos(current));
+            } else {
+                circuitBreaker.onSuccess();
+            }
+            throw e;
+        } catch (RuntimeException | Error e) {
+            circuitBreaker.onFailure(System.nanoTime(), current.getFailureThreshold(), openNanos(current));
+            throw e;
+        }
+        circuitBreaker.onSuccess();
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+
+    private static void runWithTimeout(Runnable call, Semaphore permits, int timeoutMillis) {
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            try {
+                call.run();
+            } finally {
+                permits.release();
+            }
+        }, null);
+        CALL_EXECUTOR.execute(task);
+
+        try {
+            task.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            task.cancel(true);
+            throw TicketPurchaseEvaluator.rejection(PurchaseOutcome.SERVICE_TIMEOUT);
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            throw TicketPurchaseEvaluator.rejection(PurchaseOutcome.SERVICE_TIMEOUT);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static boolean isGuardRejection(InvalidPurchaseException e) {
+        return e.getOutcome() == PurchaseOutcome.SERVICE_TIMEOUT;
+    }
+
+    private static long openNanos(TicketingConfig.ServiceSettings settings) {
+        return TimeUnit.MILLISECONDS.toNanos(settings.getOpenMillis());
+    }
+
+    private Semaphore bulkheadFor(TicketingConfig.ServiceSettings current) {
+        Bulkhead bulkhead = this.bulkhead;
+        if (bulkhead.settings != current) {
+            // Calls in flight release the permits of the bulkhead they acquired
+            bulkhead = new Bulkhead(current, new Semaphore(current.getMaxConcurrentCalls()));
+            this.bulkhead = bulkhead;
+        }
+        return bulkhead.permits;
+    }
+
+    private record Bulkhead(TicketingConfig.ServiceSettings settings, Semaphore permits) {}
+}
@@ -0,0 +1,94 @@
+package uk.gov.dwp.uc.pairtest.resilience;
+
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.spi.ReleasableSeatReservationService;
+import uk.gov.dwp.uc.pairtest.spi.SeatHoldService;
+
+/**
+ * Seat reservation service decorator that runs every call through a {@link ResilienceGuard},
+ * except the releases of seats and holds: they compensate failed purchases, so they go straight to
+ * the service rather than being shed while it is degraded.
+ * <p>
+ * Only {@code holdSeats} is timed out, since a hold left behind by an abandoned call expires on its own.
+ * A reservation or a hold confirmation abandoned midway may still go through, leaving seats taken
+ * for a purchase reported as failed, or sold to a customer whose payment is then refunded, so those
+ * calls are waited for however long they take.
+ */
+public class ResilientSeatReservationService implements SeatReservationService {
+
+    final ResilienceGuard guard;
+    private final SeatReservationService delegate;
+
+    private ResilientSeatReservationService(SeatReservationService delegate, ResilienceGuard guard) {
+        this.delegate = delegate;
+        this.guard = guard;
+    }
+
+    // Guards the service with the reservation.* settings of TicketingConfig
+    public static ResilientSeatReservationService wrap(SeatReservationService delegate) {
+        return wrap(delegate, ResilienceGuard.forReservations());
+    }
+
+    /**
+     * Guards the service. When it can release or hold seats, so can the returned service, which
+     * lets {@code TicketServiceImpl} keep compensating failed purchases and holding seats before payment.
+     */
+    public static ResilientSeatReservationService wrap(SeatReservationService delegate, ResilienceGuard guard) {
+        if (delegate instanceof SeatHoldService holding) {
+            return new Holding(holding, guard);
+        }
+        if (delegate instanceof ReleasableSeatReservationService releasable) {
+            return new Releasable(releasable, guard);
+        }
+        return new ResilientSeatReservationService(delegate, guard);
+    }
+
+    @Override
+    public void reserveSeat(long accountId, int totalSeatsToAllocate) {
+        guard.runUntimed(() -> delegate.reserveSeat(accountId, totalSeatsToAllocate));
+    }
+
+    public ResilienceGuard getGuard() {
+        return guard;
+    }
+
+    private static class Releasable extends ResilientSeatReservationService implements ReleasableSeatReservationService {
+        private final ReleasableSeatReservationService delegate;
+
+        Releasable(ReleasableSeatReservationService delegate, ResilienceGuard guard) {
+            super(delegate, guard);
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void releaseSeat(long accountId, int totalSeatsToRelease) {
+            delegate.releaseSeat(accountId, totalSeatsToRelease);
+        }
+    }
+
+    private static final class Holding extends Releasable implements SeatHoldService {
+        private final SeatHoldService delegate;
+
+        Holding(SeatHoldService delegate, ResilienceGuard guard) {
+            super(delegate, guard);
+            this.delegate = delegate;
+        }
+
+        @Override
+        public long holdSeats(long accountId, int totalSeatsToHold) {
+            long[] holdId = new long[1];
+            guard.run(() -> holdId[0] = delegate.holdSeats(accountId, totalSeatsToHold));
+            return holdId[0];
+        }
+
+        @Override
+        public void confirmHold(long holdId) {
+            guard.runUntimed(() -> delegate.confirmHold(holdId));
+        }
+
+        @Override
+        public void releaseHold(long holdId) {
+            delegate.releaseHold(holdId);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package uk.gov.dwp.uc.pairtest.resilience;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+import uk.gov.dwp.uc.pairtest.spi.RefundableTicketPaymentService;
+
+/**
+ * Payment gateway decorator that runs every payment through a {@link ResilienceGuard}.
+ * <p>
+ * Refunds compensate payments already taken, so they go straight to the gateway: a guard shedding
+ * them while the gateway is degraded would leave customers charged for seats they never got.
+ * <p>
+ * Payments run without the guard's timeout: a payment abandoned midway may still have been charged,
+ * and the purchase would then fail with no refund. The bulkhead still bounds how many callers a
+ * slow gateway can hold up.
+ */
+public class ResilientTicketPaymentService implements TicketPaymentService {
+
+    final ResilienceGuard guard;
+    private final TicketPaymentService delegate;
+
+    private ResilientTicketPaymentService(TicketPaymentService delegate, ResilienceGuard guard) {
+        this.delegate = delegate;
+        this.guard = guard;
+    }
+
+    // Guards the gateway with the payment.* settings of TicketingConfig
+    public static ResilientTicketPaymentService wrap(TicketPaymentService delegate) {
+        return wrap(delegate, ResilienceGuard.forPayments());
+    }
+
+    /**
+     * Guards the gateway. When it can refund payments, so can the returned service, which
+     * lets {@code TicketServiceImpl} keep compensating failed purchases.
+     */
+    public static ResilientTicketPaymentService wrap(TicketPaymentService delegate, ResilienceGuard guard) {
+        if (delegate instanceof RefundableTicketPaymentService refundable) {
+            return new Refundable(refundable, guard);
+        }
+        return new ResilientTicketPaymentService(delegate, guard);
+    }
+
+    @Override
+    public void makePayment(long accountId, int totalAmountToPay) {
+        guard.runUntimed(() -> delegate.makePayment(accountId, totalAmountToPay));
+    }
+
+    public ResilienceGuard getGuard() {
+        return guard;
+    }
+
+    private static final class Refundable extends ResilientTicketPaymentService implements RefundableTicketPaymentService {
+        private final RefundableTicketPaymentService delegate;
+
+        Refundable(RefundableTicketPaymentService delegate, ResilienceGuard guard) {
+            super(delegate, guard);
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void refundPayment(long accountId, int totalAmountToRefund) {
+            delegate.refundPayment(accountId, totalAmountToRefund);
+        }
+    }
+}
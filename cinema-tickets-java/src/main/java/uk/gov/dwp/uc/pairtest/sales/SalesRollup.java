@@ -0,0 +1,344 @@
+package uk.gov.dwp.uc.pairtest.sales;
+
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.pricing.TicketPricing;
+import uk.gov.dwp.uc.pairtest.spi.PurchaseListener;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Live rollup of seats sold and revenue per screening, per ticket type and per minute, for dashboards.
+ * <p>
+ * All counters live off-heap, in one direct buffer allocated up front: each screening has a row of
+ * 64-byte buckets, one per minute of the retained window, used as a ring, plus one bucket of totals
+ * since the screening went on sale. A bucket is eight longs: a tag naming its minute, then the
+ * purchases, the tickets by type and the revenue by type. Memory use depends only on the number of
+ * screenings and the retention, never on the number of purchases.
+ * <p>
+ * {@link #forScreening} gives the {@link PurchaseListener} to pass to the screening's
+ * {@code TicketServiceImpl}; every completed purchase is then added with atomic adds on the buffer,
+ * with no lock and no allocation. The writer that first reaches a bucket left over from an older
+ * minute claims it with a CAS on the tag and clears it. Queries sum one bucket per minute asked for,
+ * skipping buckets whose tag changes while they are read. Revenue is the amount each purchase was
+ * charged, split across the types in proportion to their tickets quoted on their own with the
+ * screening's pricing, so it adds up to what was taken even when the pricing is not additive.
+ * <p>
+ * {@link #retire} stops tracking a screening and frees its row for the next one registered.
+ */
+public final class SalesRollup {
+
+    static final TicketTypeRequest.Type[] TYPES = TicketTypeRequest.Type.values();
+
+    // Long fields of a bucket
+    static final int TAG = 0;
+    static final int PURCHASES = 1;
+    static final int TICKETS = 2;
+    static final int REVENUE = TICKETS + TYPES.length;
+    static final int FIELDS = REVENUE + TYPES.length;
+
+    private static final int BUCKET_BYTES = 64;
+    private static final long MILLIS_PER_MINUTE = 60_000L;
+
+    // Atomic access to the longs of a direct buffer, which must be 8-byte aligned
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final ByteBuffer buffer;
+    private final int maxScreenings;
+    private final int minutes;
+    private final int rowBytes;
+    private final TicketPricing ticketPricing;
+    private final LongSupplier millisClock;
+    private final ConcurrentMap<String, ScreeningSales> screenings = new ConcurrentHashMap<>();
+    private final AtomicInteger nextRow = new AtomicInteger();
+    // Rows of retired screenings, reused before any row never used
+    private final ConcurrentLinkedQueue<Integer> freeRows = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param maxScreenings the most screenings the rollup can track
+     * @param retention     how far back per-minute sales can be queried, at least a minute
+     * @param ticketPricing the pricing used to split each purchase's revenue by type, unless a screening has its own
+     */
+    public SalesRollup(int maxScreenings, Duration retention, TicketPricing ticketPricing) {
+        this(maxScreenings, retention, ticketPricing, System::currentTimeMillis);
+    }
+
+    // For tests, with a wall clock in epoch milliseconds that they control
+    SalesRollup(int maxScreenings, Duration retention, TicketPricing ticketPricing, LongSupplier millisClock) {
+        long minutes = retention.toMinutes();
+        if (maxScreenings <= 0) {
+            throw new IllegalArgumentException("maxScreenings must be positive: " + maxScreenings);
+        }
+        if (minutes <= 0) {
+            throw new IllegalArgumentException("retention must be at least a minute: " + retention);
+        }
+        long rowBytes = (minutes + 1) * BUCKET_BYTES;
+        if (rowBytes * maxScreenings > Integer.MAX_VALUE - BUCKET_BYTES) {
+            throw new IllegalArgumentException("Too many screenings or minutes for one buffer: "
+                + maxScreenings + " screenings of " + minutes + " minutes");
+        }
+
+        this.maxScreenings = maxScreenings;
+        this.minutes = (int) minutes;
+        this.rowBytes = (int) rowBytes;
+        this.ticketPricing = ticketPricing;
+        this.millisClock = millisClock;
+        // A direct buffer starts zeroed; aligned to a cache line so no bucket straddles two
+        this.buffer = ByteBuffer.allocateDirect(this.rowBytes * maxScreenings + BUCKET_BYTES)
+            .alignedSlice(BUCKET_BYTES)
+            .order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * The listener recording the screening's completed purchases, registering the screening on first
+     * use; its totals since on-sale count from then.
+     *
+     * @throws IllegalStateException if the rollup already tracks {@code maxScreenings} screenings
+     */
+    public PurchaseListener forScreening(String screeningId) {
+        return forScreening(screeningId, ticketPricing);
+    }
+
+    /**
+     * As {@link #forScreening(String)}, splitting the revenue by type with the screening's own pricing.
+     * The pricing given when the screening is registered is kept.
+     */
+    public PurchaseListener forScreening(String screeningId, TicketPricing screeningPricing) {
+        return screenings.computeIfAbsent(screeningId, id -> {
+            Integer free = freeRows.poll();
+            int row = free != null ? free : nextRow.getAndIncrement();
+            if (row >= maxScreenings) {
+                nextRow.decrementAndGet();
+                throw new IllegalStateException("Sales rollup is full: " + maxScreenings + " screenings");
+            }
+            ScreeningSales sales = new ScreeningSales(row * rowBytes, screeningPricing);
+            if (free != null) {
+                clearRow(sales.offset);
+            }
+            LONGS.setRelease(buffer, sales.offset, minuteNow() + 1);
+            return sales;
+        });
+    }
+
+    /**
+     * Stops tracking the screening, e.g. once it has been shown, and frees its row for another.
+     * Stop selling the screening first: a purchase its listener records later is not counted.
+     *
+     * @return the screening's sales since on-sale
+     * @throws IllegalArgumentException if the screening is unknown
+     */
+    public SalesTotals retire(String screeningId) {
+        ScreeningSales sales = screenings.remove(screeningId);
+        if (sales == null) {
+            throw new IllegalArgumentException("Unknown screening: " + screeningId);
+        }
+        sales.retired = true;
+        long[] totals = new long[FIELDS];
+        addBucket(sales.offset, totals);
+        freeRows.add(sales.offset / rowBytes);
+        return new SalesTotals(totals);
+    }
+
+    /**
+     * Sales of the screening in the last {@code minutes} minutes, the current one included.
+     *
+     * @throws IllegalArgumentException if the screening is unknown, or the minutes are not within the retention
+     */
+    public SalesTotals lastMinutes(String screeningId, int minutes) {
+        if (minutes <= 0 || minutes > this.minutes) {
+            throw new IllegalArgumentException("minutes must be between 1 and " + this.minutes + ": " + minutes);
+        }
+        long now = minuteNow();
+        long[] totals = new long[FIELDS];
+        sumMinutes(screening(screeningId).offset, now - minutes + 1, now, totals);
+        return new SalesTotals(totals);
+    }
+
+    /**
+     * Sales of all screenings in the last {@code minutes} minutes, the current one included.
+     *
+     * @throws IllegalArgumentException if the minutes are not within the retention
+     */
+    public SalesTotals lastMinutes(int minutes) {
+        if (minutes <= 0 || minutes > this.minutes) {
+            throw new IllegalArgumentException("minutes must be between 1 and " + this.minutes + ": " + minutes);
+        }
+        long now = minuteNow();
+        long[] totals = new long[FIELDS];
+        for (ScreeningSales sales : screenings.values()) {
+            sumMinutes(sales.offset, now - minutes + 1, now, totals);
+        }
+        return new SalesTotals(totals);
+    }
+
+    /**
+     * Sales of the screening in the minutes from {@code from} up to and including {@code to}.
+     * Minutes older than the retention are no longer known and count as no sales.
+     *
+     * @throws IllegalArgumentException if the screening is unknown
+     */
+    public SalesTotals between(String screeningId, Instant from, Instant to) {
+        ScreeningSales sales = screening(screeningId);
+        long now = minuteNow();
+        long first = Math.max(Math.floorDiv(from.toEpochMilli(), MILLIS_PER_MINUTE), now - minutes + 1);
+        long last = Math.min(Math.floorDiv(to.toEpochMilli(), MILLIS_PER_MINUTE), now);
+        long[] totals = new long[FIELDS];
+        sumMinutes(sales.offset, first, last, totals);
+        return new SalesTotals(totals);
+    }
+
+    /**
+     * Sales of the screening since it was registered with {@link #forScreening}, however long ago.
+     *
+     * @throws IllegalArgumentException if the screening is unknown
+     */
+    public SalesTotals sinceOnSale(String screeningId) {
+        long[] totals = new long[FIELDS];
+        addBucket(screening(screeningId).offset, totals);
+        return new SalesTotals(totals);
+    }
+
+    public Duration getRetention() {
+        return Duration.ofMinutes(minutes);
+    }
+
+    private ScreeningSales screening(String screeningId) {
+        ScreeningSales sales = screenings.get(screeningId);
+        if (sales == null) {
+            throw new IllegalArgumentException("Unknown screening: " + screeningId);
+        }
+        return sales;
+    }
+
+    private long minuteNow() {
+        return Math.floorDiv(millisClock.getAsLong(), MILLIS_PER_MINUTE);
+    }
+
+    // Byte offset of the bucket of the minute in the ring after the row's totals bucket
+    private int bucketOffset(int rowOffset, long minute) {
+        return rowOffset + BUCKET_BYTES * (1 + (int) Math.floorMod(minute, (long) minutes));
+    }
+
+    private void record(int rowOffset, TicketPricing pricing, int adults, int children, int infants, int totalAmount) {
+        long adultQuote = adults == 0 ? 0 : pricing.quote(adults, 0, 0);
+        long childQuote = children == 0 ? 0 : pricing.quote(0, children, 0);
+        long infantQuote = infants == 0 ? 0 : pricing.quote(0, 0, infants);
+        long quoted = adultQuote + childQuote + infantQuote;
+        // Rounded down by type, with what is left over going to the adults, who every purchase has
+        long childRevenue = quoted == 0 ? 0 : (long) (totalAmount * ((double) childQuote / quoted));
+        long infantRevenue = quoted == 0 ? 0 : (long) (totalAmount * ((double) infantQuote / quoted));
+        long adultRevenue = totalAmount - childRevenue - infantRevenue;
+
+        long minute = minuteNow();
+        int bucket = claim(bucketOffset(rowOffset, minute), minute);
+        add(bucket, adults, children, infants, adultRevenue, childRevenue, infantRevenue);
+        add(rowOffset, adults, children, infants, adultRevenue, childRevenue, infantRevenue);
+    }
+
+    private void add(int bucket, int adults, int children, int infants,
+                     long adultRevenue, long childRevenue, long infantRevenue) {
+        addField(bucket, PURCHASES, 1);
+        addField(bucket, TICKETS + TicketTypeRequest.Type.ADULT.ordinal(), adults);
+        addField(bucket, TICKETS + TicketTypeRequest.Type.CHILD.ordinal(), children);
+        addField(bucket, TICKETS + TicketTypeRequest.Type.INFANT.ordinal(), infants);
+        addField(bucket, REVENUE + TicketTypeRequest.Type.ADULT.ordinal(), adultRevenue);
+        addField(bucket, REVENUE + TicketTypeRequest.Type.CHILD.ordinal(), childRevenue);
+        addField(bucket, REVENUE + TicketTypeRequest.Type.INFANT.ordinal(), infantRevenue);
+    }
+
+    private void addField(int bucket, int field, long value) {
+        if (value != 0) {
+            LONGS.getAndAdd(buffer, bucket + field * Long.BYTES, value);
+        }
+    }
+
+    /**
+     * Makes the bucket count the minute, clearing it first if it still holds an older one.
+     * The tag is the minute plus one, so 0 is a bucket never used, and minus that while it is cleared.
+     * A write so late that the bucket has moved on to a newer minute is added to the newer minute.
+     */
+    private int claim(int bucket, long minute) {
+        long tag = minute + 1;
+        while (true) {
+            long current = (long) LONGS.getAcquire(buffer, bucket);
+            if (current < 0) {
+                // Another writer is clearing it
+                Thread.onSpinWait();
+            } else if (current >= tag) {
+                return bucket;
+            } else if (LONGS.compareAndSet(buffer, bucket, current, -tag)) {
+                for (int field = TAG + 1; field < FIELDS; field++) {
+                    LONGS.setOpaque(buffer, bucket + field * Long.BYTES, 0L);
+                }
+                LONGS.setRelease(buffer, bucket, tag);
+                return bucket;
+            }
+        }
+    }
+
+    private void sumMinutes(int rowOffset, long first, long last, long[] totals) {
+        long[] fields = new long[FIELDS];
+        for (long minute = first; minute <= last; minute++) {
+            int bucket = bucketOffset(rowOffset, minute);
+            long tag = minute + 1;
+            if ((long) LONGS.getAcquire(buffer, bucket) != tag) {
+                continue;
+            }
+
+            for (int field = TAG + 1; field < FIELDS; field++) {
+                fields[field] = (long) LONGS.getOpaque(buffer, bucket + field * Long.BYTES);
+            }
+            // Skipped if the bucket was claimed for a newer minute while being read
+            if ((long) LONGS.getAcquire(buffer, bucket) == tag) {
+                for (int field = TAG + 1; field < FIELDS; field++) {
+                    totals[field] += fields[field];
+                }
+            }
+        }
+    }
+
+    // Zeroes the totals and every minute of a reused row, so none of its old screening's sales show
+    private void clearRow(int rowOffset) {
+        for (int bucket = rowOffset; bucket < rowOffset + rowBytes; bucket += BUCKET_BYTES) {
+            for (int field = TAG; field < FIELDS; field++) {
+                LONGS.setOpaque(buffer, bucket + field * Long.BYTES, 0L);
+            }
+        }
+    }
+
+    private void addBucket(int bucket, long[] totals) {
+        for (int field = TAG + 1; field < FIELDS; field++) {
+            totals[field] += (long) LONGS.getOpaque(buffer, bucket + field * Long.BYTES);
+        }
+    }
+
+    // Listener of one screening; its row is fixed, so recording needs no lookup
+    private final class ScreeningSales implements PurchaseListener {
+        private final int offset;
+        private final TicketPricing pricing;
+        private volatile boolean retired;
+
+        private ScreeningSales(int offset, TicketPricing pricing) {
+            this.offset = offset;
+            this.pricing = pricing;
+        }
+
+        @Override
+        public void onPurchaseCompleted(long purchaseId, long accountId, int adults, int children, int infants,
+                                        int totalAmount) {
+            // The row may already belong to another screening
+            if (!retired) {
+                record(offset, pricing, adults, children, infants, totalAmount);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package uk.gov.dwp.uc.pairtest.sales;
+
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+
+/**
+ * Immutable Object
+ *
+ * Purchases, tickets and revenue by ticket type, summed over a range of minutes.
+ */
+public final class SalesTotals {
+
+    public static final SalesTotals EMPTY = new SalesTotals(new long[SalesRollup.FIELDS]);
+
+    // Laid out like a rollup bucket: the tag, purchases, tickets by type, then revenue by type
+    private final long[] fields;
+
+    SalesTotals(long[] fields) {
+        this.fields = fields;
+    }
+
+    public long getPurchases() {
+        return fields[SalesRollup.PURCHASES];
+    }
+
+    public long getTickets(TicketTypeRequest.Type type) {
+        return fields[SalesRollup.TICKETS + type.ordinal()];
+    }
+
+    public long getTickets() {
+        return sum(SalesRollup.TICKETS);
+    }
+
+    public long getRevenue(TicketTypeRequest.Type type) {
+        return fields[SalesRollup.REVENUE + type.ordinal()];
+    }
+
+    public long getRevenue() {
+        return sum(SalesRollup.REVENUE);
+    }
+
+    private long sum(int first) {
+        long total = 0;
+        for (int i = 0; i < SalesRollup.TYPES.length; i++) {
+            total += fields[first + i];
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder("SalesTotals{purchases=").append(getPurchases());
+        for (TicketTypeRequest.Type type : SalesRollup.TYPES) {
+            text.append(", ").append(type).append("=").append(getTickets(type))
+                .append(" for ").append(getRevenue(type));
+        }
+        return text.append("}").toString();
+    }
+}
@@ -0,0 +1,18 @@
+package uk.gov.dwp.uc.pairtest.spi;
+
+import thirdparty.seatbooking.SeatReservationService;
+
+/**
+ * Seat reservation service that can reserve seats for many purchases in one call, so its per-call
+ * latency is paid once per batch instead of once per purchase.
+ */
+public interface BatchSeatReservationService extends SeatReservationService {
+
+    /**
+     * Reserves the seats of each of the first {@code count} entries on its own, as {@link #reserveSeat}
+     * would, and sets {@code reserved[i]} for each entry that got its seats. An entry whose seats are
+     * not available is left false without affecting the others. If the call throws, no seats were reserved.
+     */
+    void reserveSeats(long[] accountIds, int[] totalSeatsToAllocate, boolean[] reserved, int count);
+
+}
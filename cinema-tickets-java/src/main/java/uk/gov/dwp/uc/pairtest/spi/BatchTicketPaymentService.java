@@ -0,0 +1,23 @@
+package uk.gov.dwp.uc.pairtest.spi;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+
+/**
+ * Payment gateway that can settle many payments in one call, so its per-call fee and latency
+ * are paid once per batch instead of once per purchase.
+ */
+public interface BatchTicketPaymentService extends TicketPaymentService {
+
+    /**
+     * Takes each of the first {@code count} payments on its own, as {@link #makePayment} would, and sets
+     * {@code paid[i]} for each payment taken. A payment the gateway declines is left false without
+     * affecting the others. If the call throws, none of the payments was taken.
+     */
+    void makePayments(long[] accountIds, int[] totalAmountsToPay, boolean[] paid, int count);
+
+    // Failure reported for a payment of a batch that the gateway declined
+    static IllegalStateException declined(long accountId) {
+        return new IllegalStateException("Payment declined for account " + accountId);
+    }
+
+}
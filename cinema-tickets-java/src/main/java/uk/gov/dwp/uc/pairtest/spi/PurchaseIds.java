@@ -0,0 +1,23 @@
+package uk.gov.dwp.uc.pairtest.spi;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Source of the purchase ids passed to a {@link PurchaseListener}, unique across every ticket service
+ * of the JVM, so the steps of one purchase can be paired even when several services share a listener.
+ * <p>
+ * The ids count up from the start time in milliseconds shifted into the upper bits, so they keep
+ * increasing across restarts unless a run averages more than about a million purchases a millisecond.
+ */
+public final class PurchaseIds {
+
+    private static final AtomicLong NEXT = new AtomicLong(System.currentTimeMillis() << 20);
+
+    private PurchaseIds() {
+        // utility
+    }
+
+    public static long next() {
+        return NEXT.incrementAndGet();
+    }
+}
@@ -0,0 +1,108 @@
+package uk.gov.dwp.uc.pairtest.spi;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+
+/**
+ * Callback for the settlement steps of a purchase, e.g. to journal them.
+ * <p>
+ * Purchases of one account are settled one at a time, so for each account the calls arrive in order:
+ * {@code onPaymentTaken} followed by either {@code onPurchaseCompleted} or {@code onPurchaseFailed}.
+ * Every call carries the id {@link PurchaseIds} gave the purchase, the same for each of its steps,
+ * so a listener shared by several ticket services can still pair them.
+ * The calls run on the purchasing thread, so implementations must be quick and thread-safe. A listener that
+ * throws does not change the outcome of the purchase; the failure is logged.
+ */
+public interface PurchaseListener {
+
+    // Listener that ignores every call
+    PurchaseListener NONE = new PurchaseListener() {};
+
+    /**
+     * Listener passing every call to each of the listeners in turn, e.g. to a journal and a sales rollup.
+     * Every listener is called even if an earlier one fails; the first failure is then rethrown,
+     * with any later ones suppressed.
+     */
+    static PurchaseListener all(PurchaseListener... listeners) {
+        PurchaseListener[] copy = listeners.clone();
+        if (copy.length == 1) {
+            return copy[0];
+        }
+        return new PurchaseListener() {
+            @Override
+            public void onPaymentTaken(long purchaseId, long accountId, int adults, int children, int infants,
+                                       int totalAmount) {
+                RuntimeException failure = null;
+                for (PurchaseListener listener : copy) {
+                    try {
+                        listener.onPaymentTaken(purchaseId, accountId, adults, children, infants, totalAmount);
+                    } catch (RuntimeException e) {
+                        failure = suppress(failure, e);
+                    }
+                }
+                rethrow(failure);
+            }
+
+            @Override
+            public void onPurchaseCompleted(long purchaseId, long accountId, int adults, int children, int infants,
+                                            int totalAmount) {
+                RuntimeException failure = null;
+                for (PurchaseListener listener : copy) {
+                    try {
+                        listener.onPurchaseCompleted(purchaseId, accountId, adults, children, infants, totalAmount);
+                    } catch (RuntimeException e) {
+                        failure = suppress(failure, e);
+                    }
+                }
+                rethrow(failure);
+            }
+
+            @Override
+            public void onPurchaseFailed(long purchaseId, long accountId, int adults, int children, int infants,
+                                         int totalAmount, PurchaseOutcome outcome, boolean refunded) {
+                RuntimeException failure = null;
+                for (PurchaseListener listener : copy) {
+                    try {
+                        listener.onPurchaseFailed(purchaseId, accountId, adults, children, infants, totalAmount,
+                            outcome, refunded);
+                    } catch (RuntimeException e) {
+                        failure = suppress(failure, e);
+                    }
+                }
+                rethrow(failure);
+            }
+
+            private RuntimeException suppress(RuntimeException first, RuntimeException next) {
+                if (first == null) {
+                    return next;
+                }
+                first.addSuppressed(next);
+                return first;
+            }
+
+            private void rethrow(RuntimeException failure) {
+                if (failure != null) {
+                    throw failure;
+                }
+            }
+        };
+    }
+
+    default void onPaymentTaken(long purchaseId, long accountId, int adults, int children, int infants,
+                                int totalAmount) {
+    }
+
+    default void onPurchaseCompleted(long purchaseId, long accountId, int adults, int children, int infants,
+                                     int totalAmount) {
+    }
+
+    /**
+     * Called when a purchase fails after its payment was taken.
+     *
+     * @param outcome  the rejection, or null for a failure that is not a rejection (e.g. a gateway error)
+     * @param refunded whether the payment was refunded
+     */
+    default void onPurchaseFailed(long purchaseId, long accountId, int adults, int children, int infants,
+                                  int totalAmount, PurchaseOutcome outcome, boolean refunded) {
+    }
+
+}
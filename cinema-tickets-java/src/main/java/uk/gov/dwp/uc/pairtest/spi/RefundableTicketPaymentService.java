@@ -0,0 +1,13 @@
+package uk.gov.dwp.uc.pairtest.spi;
+
+import thirdparty.paymentgateway.TicketPaymentService;
+
+/**
+ * Payment gateway that can also refund a payment, so a purchase whose seat reservation
+ * fails can be compensated.
+ */
+public interface RefundableTicketPaymentService extends TicketPaymentService {
+
+    void refundPayment(long accountId, int totalAmountToRefund);
+
+}
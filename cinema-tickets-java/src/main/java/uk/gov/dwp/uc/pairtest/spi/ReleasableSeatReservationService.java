@@ -0,0 +1,13 @@
+package uk.gov.dwp.uc.pairtest.spi;
+
+import thirdparty.seatbooking.SeatReservationService;
+
+/**
+ * Seat reservation service that can also release reserved seats, so a purchase whose payment
+ * fails can be compensated.
+ */
+public interface ReleasableSeatReservationService extends SeatReservationService {
+
+    void releaseSeat(long accountId, int totalSeatsToRelease);
+
+}
@@ -0,0 +1,30 @@
+package uk.gov.dwp.uc.pairtest.spi;
+
+/**
+ * Seat reservation service that sells seats in two phases: seats are held before the payment is
+ * taken, and the hold is confirmed once it has been paid for. A hold that is neither confirmed nor
+ * released in time expires and its seats go back on sale, so a sold-out screening is detected
+ * before any payment is taken, and an abandoned purchase does not keep its seats.
+ */
+public interface SeatHoldService extends ReleasableSeatReservationService {
+
+    /**
+     * Holds seats for the account until they are confirmed, released or the hold expires.
+     *
+     * @return the id of the hold
+     * @throws uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException if not enough seats are left
+     */
+    long holdSeats(long accountId, int totalSeatsToHold);
+
+    /**
+     * Turns the hold into a reservation of its seats for the account, as {@link #reserveSeat} does.
+     *
+     * @throws uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException with the HOLD_EXPIRED outcome
+     *                                                                   if the hold has expired or was released
+     */
+    void confirmHold(long holdId);
+
+    // Gives the held seats back; does nothing if the hold was already confirmed, released or expired
+    void releaseHold(long holdId);
+
+}
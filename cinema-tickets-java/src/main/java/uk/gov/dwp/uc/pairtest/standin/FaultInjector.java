@@ -0,0 +1,55 @@
+package uk.gov.dwp.uc.pairtest.standin;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Extra latency and failures injected into the calls of the local stand-in services,
+ * e.g. to simulate a brownout of a downstream service. The settings can be changed while calls run.
+ * The extra latency can be drawn from any {@link LatencyDistribution}, so load tests can give the
+ * stand-ins realistic tails.
+ */
+public final class FaultInjector {
+
+    private volatile LatencyDistribution extraLatency = LatencyDistribution.NONE;
+    private volatile double failureRate;
+
+    // Injects nothing until configured
+    public FaultInjector() {
+    }
+
+    // Latency added to every call
+    public FaultInjector setExtraLatency(Duration extraLatency) {
+        return setExtraLatency(LatencyDistribution.fixed(extraLatency));
+    }
+
+    // Latency added to every call, sampled per call
+    public FaultInjector setExtraLatency(LatencyDistribution extraLatency) {
+        this.extraLatency = extraLatency;
+        return this;
+    }
+
+    // Share of calls, between 0 and 1, that fail with an IllegalStateException after the latency
+    public FaultInjector setFailureRate(double failureRate) {
+        if (failureRate < 0 || failureRate > 1) {
+            throw new IllegalArgumentException("failureRate must be between 0 and 1: " + failureRate);
+        }
+        this.failureRate = failureRate;
+        return this;
+    }
+
+    // Stops injecting latency and failures
+    public FaultInjector clear() {
+        this.extraLatency = LatencyDistribution.NONE;
+        this.failureRate = 0;
+        return this;
+    }
+
+    void inject() {
+        SimulatedLatency.pause(extraLatency.sampleNanos());
+        double rate = failureRate;
+        if (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate) {
+            throw new IllegalStateException("Injected fault");
+        }
+    }
+}
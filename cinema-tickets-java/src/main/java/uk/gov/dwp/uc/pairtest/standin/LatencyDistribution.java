@@ -0,0 +1,58 @@
+package uk.gov.dwp.uc.pairtest.standin;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Distribution of the simulated latency of a stand-in call, sampled once per call.
+ * Remote calls are rarely constant: {@link #logNormal} gives the long right tail usually seen in practice.
+ */
+@FunctionalInterface
+public interface LatencyDistribution {
+
+    LatencyDistribution NONE = () -> 0L;
+
+    // Latency of the next call
+    long sampleNanos();
+
+    static LatencyDistribution fixed(Duration latency) {
+        long nanos = latency.toNanos();
+        return nanos <= 0 ? NONE : () -> nanos;
+    }
+
+    static LatencyDistribution uniform(Duration min, Duration max) {
+        long minNanos = min.toNanos();
+        long maxNanos = max.toNanos();
+        if (minNanos < 0 || maxNanos < minNanos) {
+            throw new IllegalArgumentException("Invalid latency range: " + min + " to " + max);
+        }
+        return minNanos == maxNanos
+            ? fixed(min)
+            : () -> ThreadLocalRandom.current().nextLong(minNanos, maxNanos + 1);
+    }
+
+    // Memoryless latency, e.g. of a queue in front of the service
+    static LatencyDistribution exponential(Duration mean) {
+        double meanNanos = mean.toNanos();
+        if (meanNanos <= 0) {
+            throw new IllegalArgumentException("mean must be positive: " + mean);
+        }
+        return () -> (long) (-meanNanos * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+    }
+
+    /**
+     * Log-normal latency fitted to two percentiles.
+     *
+     * @param median the 50th percentile
+     * @param p99    the 99th percentile, at least the median
+     */
+    static LatencyDistribution logNormal(Duration median, Duration p99) {
+        if (median.toNanos() <= 0 || p99.compareTo(median) < 0) {
+            throw new IllegalArgumentException("Invalid latency percentiles: median " + median + ", p99 " + p99);
+        }
+        double mu = Math.log(median.toNanos());
+        // 2.326 is the z-score of the 99th percentile of the standard normal distribution
+        double sigma = (Math.log(p99.toNanos()) - mu) / 2.3263478740408408;
+        return () -> (long) Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian());
+    }
+}
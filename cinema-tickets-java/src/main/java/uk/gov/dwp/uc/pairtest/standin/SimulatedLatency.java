@@ -0,0 +1,34 @@
+package uk.gov.dwp.uc.pairtest.standin;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Utility for simulating the latency of a remote call in the local stand-in services.
+ */
+public final class SimulatedLatency {
+
+    // Below this, parking is too coarse to be accurate, so the thread spins instead
+    private static final long SPIN_THRESHOLD_NANOS = 100_000L;
+
+    private SimulatedLatency() {
+        // utility
+    }
+
+    public static void pause(long nanos) {
+        if (nanos <= 0) {
+            return;
+        }
+
+        long deadline = System.nanoTime() + nanos;
+        if (nanos >= SPIN_THRESHOLD_NANOS) {
+            LockSupport.parkNanos(nanos);
+            // An interrupted call, e.g. one that timed out, gives up like a remote call would
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+        while (System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package uk.gov.dwp.uc.pairtest.standin;
+
+import uk.gov.dwp.uc.pairtest.spi.BatchSeatReservationService;
+import uk.gov.dwp.uc.pairtest.spi.ReleasableSeatReservationService;
+
+import java.util.Arrays;
+
+/**
+ * Local stand-in for the seat reservation service, used by benchmarks and load tests.
+ * Reserves and releases nothing; each call, including a batched reservation, just waits for the configured latency,
+ * plus whatever a {@link FaultInjector} adds.
+ */
+public class StandInSeatReservationService implements ReleasableSeatReservationService, BatchSeatReservationService {
+
+    private final long latencyNanos;
+    private final FaultInjector faults;
+
+    // No-op stand-in that returns immediately
+    public StandInSeatReservationService() {
+        this(0L);
+    }
+
+    public StandInSeatReservationService(long latencyNanos) {
+        this(latencyNanos, new FaultInjector());
+    }
+
+    // Stand-in whose calls also suffer the latency and failures of the injector
+    public StandInSeatReservationService(long latencyNanos, FaultInjector faults) {
+        this.latencyNanos = latencyNanos;
+        this.faults = faults;
+    }
+
+    @Override
+    public void reserveSeat(long accountId, int totalSeatsToAllocate) {
+        SimulatedLatency.pause(latencyNanos);
+        faults.inject();
+    }
+
+    @Override
+    public void reserveSeats(long[] accountIds, int[] totalSeatsToAllocate, boolean[] reserved, int count) {
+        SimulatedLatency.pause(latencyNanos);
+        faults.inject();
+        Arrays.fill(reserved, 0, count, true);
+    }
+
+    @Override
+    public void releaseSeat(long accountId, int totalSeatsToRelease) {
+        SimulatedLatency.pause(latencyNanos);
+        faults.inject();
+    }
+
+}
@@ -0,0 +1,52 @@
+package uk.gov.dwp.uc.pairtest.standin;
+
+import uk.gov.dwp.uc.pairtest.spi.BatchTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.spi.RefundableTicketPaymentService;
+
+import java.util.Arrays;
+
+/**
+ * Local stand-in for the payment gateway, used by benchmarks and load tests.
+ * Takes and refunds no payment; each call, including a batched settlement, just waits for the configured latency,
+ * plus whatever a {@link FaultInjector} adds.
+ */
+public class StandInTicketPaymentService implements RefundableTicketPaymentService, BatchTicketPaymentService {
+
+    private final long latencyNanos;
+    private final FaultInjector faults;
+
+    // No-op stand-in that returns immediately
+    public StandInTicketPaymentService() {
+        this(0L);
+    }
+
+    public StandInTicketPaymentService(long latencyNanos) {
+        this(latencyNanos, new FaultInjector());
+    }
+
+    // Stand-in whose calls also suffer the latency and failures of the injector
+    public StandInTicketPaymentService(long latencyNanos, FaultInjector faults) {
+        this.latencyNanos = latencyNanos;
+        this.faults = faults;
+    }
+
+    @Override
+    public void makePayment(long accountId, int totalAmountToPay) {
+        SimulatedLatency.pause(latencyNanos);
+        faults.inject();
+    }
+
+    @Override
+    public void makePayments(long[] accountIds, int[] totalAmountsToPay, boolean[] paid, int count) {
+        SimulatedLatency.pause(latencyNanos);
+        faults.inject();
+        Arrays.fill(paid, 0, count, true);
+    }
+
+    @Override
+    public void refundPayment(long accountId, int totalAmountToRefund) {
+        SimulatedLatency.pause(latencyNanos);
+        faults.inject();
+    }
+
+}
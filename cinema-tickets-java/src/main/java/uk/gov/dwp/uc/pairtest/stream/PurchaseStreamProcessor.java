@@ -0,0 +1,259 @@
+package uk.gov.dwp.uc.pairtest.stream;
+
+import uk.gov.dwp.uc.pairtest.TicketService;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.util.MessageProvider;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reactive entry point for a stream of purchase orders, e.g. pushed by an upstream gateway.
+ * <p>
+ * Subscribe the processor to the orders and subscribe one downstream subscriber to it. Each order
+ * is purchased through the {@link TicketService}, so it goes through the usual validation, pricing,
+ * payment and seat reservation, and its {@link PurchaseResult} is published: accepted, rejected with
+ * the outcome, or rejected without one when a downstream service failed. A failed order never ends
+ * the stream. Results are published in the order the purchases complete.
+ * <p>
+ * Demand is honoured end to end: the processor requests an order from upstream only when the
+ * downstream subscriber has asked for its result and fewer than {@code maxConcurrency} orders are
+ * outstanding, counting from the request upstream until the result is delivered downstream. A slow
+ * payment gateway or a slow subscriber therefore slows the intake, instead of queueing orders or
+ * threads without bound; at most {@code maxConcurrency} orders and results are ever held.
+ */
+public final class PurchaseStreamProcessor implements Flow.Processor<PurchaseOrder, PurchaseResult> {
+
+    private static final System.Logger LOGGER = System.getLogger(PurchaseStreamProcessor.class.getName());
+
+    // One virtual thread per purchase; the concurrency is bounded by the demand instead
+    private static final Executor PURCHASE_EXECUTOR =
+        Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("stream-purchase-", 0).factory());
+
+    private final TicketService ticketService;
+    private final int maxConcurrency;
+    private final Executor executor;
+
+    private final AtomicReference<Flow.Subscription> upstream = new AtomicReference<>();
+    private final AtomicReference<Flow.Subscriber<? super PurchaseResult>> downstream = new AtomicReference<>();
+    private final Queue<PurchaseResult> results = new ConcurrentLinkedQueue<>();
+    // Results asked for downstream and not yet delivered
+    private final AtomicLong demand = new AtomicLong();
+    // Orders requested upstream and not yet delivered as results
+    private final AtomicLong outstanding = new AtomicLong();
+    // Orders received and not yet delivered as results
+    private final AtomicLong received = new AtomicLong();
+    // Turns of the drain loop still to run; only the thread that raised it from zero runs the loop
+    private final AtomicInteger drainTurns = new AtomicInteger();
+
+    private volatile boolean upstreamDone;
+    private volatile Throwable upstreamError;
+    private volatile Throwable demandError;
+    private volatile boolean cancelled;
+    // Only touched inside the drain loop
+    private boolean terminated;
+
+    public PurchaseStreamProcessor(TicketService ticketService, int maxConcurrency) {
+        this(ticketService, maxConcurrency, PURCHASE_EXECUTOR);
+    }
+
+    /**
+     * @param maxConcurrency the most orders outstanding at once, and so the most purchases in progress
+     * @param executor       runs each purchase; it must not run them on the calling thread
+     */
+    public PurchaseStreamProcessor(TicketService ticketService, int maxConcurrency, Executor executor) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+        }
+        this.ticketService = ticketService;
+        this.maxConcurrency = maxConcurrency;
+        this.executor = executor;
+    }
+
+    // Only one downstream subscriber is supported; any later one is told so through onError
+    @Override
+    public void subscribe(Flow.Subscriber<? super PurchaseResult> subscriber) {
+        if (!downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("Purchase stream already has a subscriber"));
+            return;
+        }
+
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    demandError = new IllegalArgumentException("Demand must be positive: " + n);
+                    cancelUpstream();
+                } else {
+                    demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                cancelUpstream();
+                drain();
+            }
+        });
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (!upstream.compareAndSet(null, subscription)) {
+            subscription.cancel();
+            return;
+        }
+        if (cancelled) {
+            subscription.cancel();
+            return;
+        }
+        drain();
+    }
+
+    @Override
+    public void onNext(PurchaseOrder order) {
+        if (cancelled || upstreamDone) {
+            return;
+        }
+        received.incrementAndGet();
+        executor.execute(() -> {
+            results.offer(purchase(order));
+            drain();
+        });
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        upstreamError = throwable;
+        upstreamDone = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        drain();
+    }
+
+    private PurchaseResult purchase(PurchaseOrder order) {
+        if (order == null) {
+            PurchaseOutcome outcome = PurchaseOutcome.INVALID_TICKET_REQUEST;
+            return PurchaseResult.rejected(null, outcome, MessageProvider.getRejectionMessage(outcome));
+        }
+
+        Long accountId = order.getAccountId();
+        try {
+            ticketService.purchaseTickets(accountId, order.getTicketTypeRequests());
+            return PurchaseResult.accepted(accountId);
+        } catch (InvalidPurchaseException e) {
+            return PurchaseResult.rejected(accountId, e.getOutcome(), e.getMessage());
+        } catch (RuntimeException e) {
+            // e.g. a gateway error; the stream carries on with the next order
+            return PurchaseResult.rejected(accountId, String.valueOf(e.getMessage()));
+        }
+    }
+
+    // Delivers the results asked for, ends the stream when done, and requests as many orders as allowed
+    private void drain() {
+        if (drainTurns.getAndIncrement() != 0) {
+            return;
+        }
+
+        int turns = 1;
+        do {
+            Flow.Subscriber<? super PurchaseResult> subscriber = downstream.get();
+            if (cancelled) {
+                // Results of purchases still in progress when the subscriber cancelled are dropped
+                results.clear();
+            } else if (subscriber != null && !terminated) {
+                deliver(subscriber);
+                complete(subscriber);
+                requestOrders();
+            }
+            turns = drainTurns.addAndGet(-turns);
+        } while (turns != 0);
+    }
+
+    private void deliver(Flow.Subscriber<? super PurchaseResult> subscriber) {
+        long delivered = 0;
+        long asked = demand.get();
+        while (delivered != asked && !cancelled) {
+            PurchaseResult result = results.poll();
+            if (result == null) {
+                break;
+            }
+            delivered++;
+            received.decrementAndGet();
+            outstanding.decrementAndGet();
+            try {
+                subscriber.onNext(result);
+            } catch (RuntimeException e) {
+                // A subscriber that throws is treated as having cancelled
+                LOGGER.log(System.Logger.Level.WARNING, "Purchase stream subscriber failed", e);
+                cancelled = true;
+                cancelUpstream();
+            }
+        }
+        if (delivered != 0 && asked != Long.MAX_VALUE) {
+            demand.addAndGet(-delivered);
+        }
+    }
+
+    private void complete(Flow.Subscriber<? super PurchaseResult> subscriber) {
+        if (cancelled) {
+            return;
+        }
+        // A bad request ends the stream at once; the end of the upstream only once every order received is delivered
+        if (demandError != null) {
+            terminated = true;
+            subscriber.onError(demandError);
+        } else if (upstreamDone && received.get() == 0) {
+            terminated = true;
+            if (upstreamError != null) {
+                subscriber.onError(upstreamError);
+            } else {
+                subscriber.onComplete();
+            }
+        }
+    }
+
+    private void requestOrders() {
+        Flow.Subscription subscription = upstream.get();
+        if (terminated || upstreamDone || cancelled || subscription == null) {
+            return;
+        }
+        long allowed = Math.min(maxConcurrency, demand.get()) - outstanding.get();
+        if (allowed > 0) {
+            outstanding.addAndGet(allowed);
+            subscription.request(allowed);
+        }
+    }
+
+    private void cancelUpstream() {
+        Flow.Subscription subscription = upstream.get();
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package uk.gov.dwp.uc.pairtest.util;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Striped table of per-account locks keyed on the primitive account id.
+ * <p>
+ * An account always maps to the same stripe, so its purchases run one at a time and, since the stripes
+ * are fair, in the order they arrived. Different accounts almost always map to different stripes and run
+ * fully in parallel; the table is sized well above the core count to keep collisions rare. The stripes are
+ * single-permit semaphores rather than locks because they are not tied to a thread: an asynchronous
+ * purchase can take the stripe on one thread and give it back on another.
+ */
+public final class AccountLocks {
+
+    private final Semaphore[] stripes;
+    private final int mask;
+
+    public AccountLocks(int minimumStripes) {
+        if (minimumStripes <= 0) {
+            throw new IllegalArgumentException("Stripes must be positive: " + minimumStripes);
+        }
+
+        int size = Integer.highestOneBit(minimumStripes);
+        if (size < minimumStripes) {
+            size <<= 1;
+        }
+        this.stripes = new Semaphore[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Semaphore(1, true);
+        }
+        this.mask = size - 1;
+    }
+
+    // Sized for the machine: 64 stripes per core, and at least 1024
+    public static AccountLocks forAvailableProcessors() {
+        return new AccountLocks(Math.max(1024, Runtime.getRuntime().availableProcessors() * 64));
+    }
+
+    // Blocks until the account's stripe is free; must be paired with unlock
+    public void lock(long accountId) {
+        stripes[stripe(accountId)].acquireUninterruptibly();
+    }
+
+    public void unlock(long accountId) {
+        stripes[stripe(accountId)].release();
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    // Spreads sequential account ids across the table (the 64-bit finaliser of MurmurHash3)
+    int stripe(long accountId) {
+        long h = accountId;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+}
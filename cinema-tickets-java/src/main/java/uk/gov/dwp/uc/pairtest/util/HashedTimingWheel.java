@@ -0,0 +1,216 @@
+package uk.gov.dwp.uc.pairtest.util;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel that expires very many short-lived timeouts from a single daemon thread.
+ * <p>
+ * The wheel is a ring of buckets, each covering one tick. A timeout is hashed into the bucket of its
+ * deadline tick, together with the number of full turns of the wheel still to wait, so scheduling,
+ * cancelling and expiring a timeout each cost O(1) however many are pending. Timeouts are intrusive:
+ * the caller's {@link Timeout} subclass carries its own links, so scheduling allocates nothing and
+ * no timer task or thread is created per timeout.
+ * <p>
+ * Scheduling pushes the timeout onto a lock-free stack that the wheel thread drains on every tick;
+ * only the wheel thread touches the buckets. Cancelling is a single CAS on the timeout's state, and
+ * the cancelled timeout is unlinked when the wheel next passes its bucket. Timeouts fire at most one
+ * tick late.
+ */
+public final class HashedTimingWheel implements AutoCloseable {
+
+    private static final System.Logger LOGGER = System.getLogger(HashedTimingWheel.class.getName());
+
+    private final long tickNanos;
+    private final int mask;
+    private final int roundShift;
+    private final Timeout[] buckets;
+    private final AtomicReference<Timeout> scheduled = new AtomicReference<>();
+    private final long startNanos;
+    private final Thread worker;
+    private volatile boolean closed;
+
+    /**
+     * @param tick          the resolution of the wheel
+     * @param ticksPerWheel the number of buckets, rounded up to a power of two
+     * @param threadName    the name of the wheel's daemon thread
+     */
+    public HashedTimingWheel(Duration tick, int ticksPerWheel, String threadName) {
+        if (tick.toNanos() <= 0) {
+            throw new IllegalArgumentException("tick must be positive: " + tick);
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > 1 << 20) {
+            throw new IllegalArgumentException("ticksPerWheel must be between 1 and 2^20: " + ticksPerWheel);
+        }
+
+        this.tickNanos = tick.toNanos();
+        int size = ticksPerWheel == 1 ? 1 : Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        this.buckets = new Timeout[size];
+        this.mask = size - 1;
+        this.roundShift = Integer.numberOfTrailingZeros(size);
+        this.startNanos = System.nanoTime();
+
+        this.worker = new Thread(this::run, threadName);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Schedules the timeout to expire after the delay, unless it is cancelled first.
+     *
+     * @throws IllegalStateException if the timeout was already scheduled, or the wheel is closed
+     */
+    public void schedule(Timeout timeout, Duration delay) {
+        if (closed) {
+            throw new IllegalStateException("Timing wheel is closed");
+        }
+        if (!Timeout.STATE.compareAndSet(timeout, Timeout.NEW, Timeout.PENDING)) {
+            throw new IllegalStateException("Timeout was already scheduled");
+        }
+
+        timeout.deadlineNanos = System.nanoTime() - startNanos + Math.max(0, delay.toNanos());
+        Timeout head;
+        do {
+            head = scheduled.get();
+            timeout.nextScheduled = head;
+        } while (!scheduled.compareAndSet(head, timeout));
+    }
+
+    // Stops the wheel; timeouts still pending never expire
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(worker);
+    }
+
+    public Duration getTick() {
+        return Duration.ofNanos(tickNanos);
+    }
+
+    private void run() {
+        long tick = 0;
+        while (!closed) {
+            long tickEnd = (tick + 1) * tickNanos;
+            long sleepNanos;
+            while ((sleepNanos = tickEnd - (System.nanoTime() - startNanos)) > 0 && !closed) {
+                LockSupport.parkNanos(this, sleepNanos);
+            }
+            if (closed) {
+                return;
+            }
+
+            addScheduled(tick);
+            expire(buckets[(int) (tick & mask)], tick);
+            tick++;
+        }
+    }
+
+    // Moves the newly scheduled timeouts into the buckets of their deadlines
+    private void addScheduled(long currentTick) {
+        Timeout timeout = scheduled.getAndSet(null);
+        while (timeout != null) {
+            Timeout next = timeout.nextScheduled;
+            timeout.nextScheduled = null;
+            if (timeout.state == Timeout.PENDING) {
+                // A deadline already passed goes into the current bucket, which is expired next
+                long deadlineTick = Math.max(timeout.deadlineNanos / tickNanos, currentTick);
+                timeout.remainingRounds = (deadlineTick - currentTick) >> roundShift;
+                link(timeout, (int) (deadlineTick & mask));
+            }
+            timeout = next;
+        }
+    }
+
+    private void expire(Timeout timeout, long currentTick) {
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.state != Timeout.PENDING) {
+                unlink(timeout);
+            } else if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+            } else {
+                unlink(timeout);
+                if (Timeout.STATE.compareAndSet(timeout, Timeout.PENDING, Timeout.EXPIRED)) {
+                    try {
+                        timeout.expired();
+                    } catch (RuntimeException e) {
+                        LOGGER.log(System.Logger.Level.WARNING, "Timeout failed to expire", e);
+                    }
+                }
+            }
+            timeout = next;
+        }
+    }
+
+    private void link(Timeout timeout, int bucket) {
+        Timeout head = buckets[bucket];
+        timeout.bucket = bucket;
+        timeout.prev = null;
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        buckets[bucket] = timeout;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            buckets[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+    }
+
+    /**
+     * Something that expires unless cancelled in time. Each instance can be scheduled once.
+     */
+    public abstract static class Timeout {
+        private static final int NEW = 0;
+        private static final int PENDING = 1;
+        private static final int CANCELLED = 2;
+        private static final int EXPIRED = 3;
+
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private volatile int state;
+
+        // Written before the timeout is published to the wheel thread, and then only by it
+        private long deadlineNanos;
+        private long remainingRounds;
+        private int bucket;
+        private Timeout prev;
+        private Timeout next;
+        private Timeout nextScheduled;
+
+        /**
+         * Called once on the wheel thread when the deadline passes without the timeout being cancelled.
+         * It must be quick, as it holds up the other expiries of the tick.
+         */
+        protected abstract void expired();
+
+        /**
+         * Cancels the timeout if it has not expired yet.
+         *
+         * @return whether this call cancelled it; false if it had already expired or been cancelled
+         */
+        public final boolean cancel() {
+            return STATE.compareAndSet(this, PENDING, CANCELLED);
+        }
+
+        public final boolean isPending() {
+            return state == PENDING;
+        }
+
+        public final boolean isExpired() {
+            return state == EXPIRED;
+        }
+    }
+}
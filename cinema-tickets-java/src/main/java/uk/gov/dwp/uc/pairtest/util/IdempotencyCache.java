@@ -0,0 +1,149 @@
+package uk.gov.dwp.uc.pairtest.util;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded, concurrent cache of results by idempotency key, with time-to-live and size-based eviction.
+ * <p>
+ * Results are held as futures, so a key is claimed by its first caller before the work is done and
+ * concurrent duplicates can wait for that single in-flight execution. An in-flight entry is never
+ * evicted, since that would let a duplicate run the work a second time; it does not count towards the
+ * maximum size. Once its result completes, an entry lives for the same time-to-live, so completion order
+ * is also expiry order: a FIFO queue of completed entries lets expired and excess entries be evicted
+ * from its head without any locking.
+ * <p>
+ * Each key is stored with the request it was claimed for, and a claim of the key for a different request
+ * is refused, so a client reusing a key for another order cannot be handed the first order's result.
+ *
+ * @param <V> the type of the cached results
+ */
+public final class IdempotencyCache<V> {
+
+    private final ConcurrentMap<String, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry<V>> completionOrder = new ConcurrentLinkedQueue<>();
+    // ConcurrentLinkedQueue.size() walks the queue, so its length is counted separately
+    private final AtomicInteger queued = new AtomicInteger();
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+
+    public IdempotencyCache(int maxEntries, Duration ttl) {
+        this(maxEntries, ttl, System::nanoTime);
+    }
+
+    // Constructor for testing with a controllable clock
+    IdempotencyCache(int maxEntries, Duration ttl, LongSupplier nanoClock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Maximum entries must be positive: " + maxEntries);
+        }
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("Time-to-live must be positive: " + ttl);
+        }
+
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Claims the key for a new execution, unless a live entry already holds it.
+     *
+     * @param key     the idempotency key
+     * @param request the request the key is used for, compared with {@code equals} against the request
+     *                of a live entry for the key
+     * @param pending the incomplete future the caller will complete if it wins the claim
+     * @return {@code null} if the caller claimed the key and must now do the work and complete
+     *         {@code pending}; otherwise the future of the original execution
+     * @throws IllegalArgumentException if a live entry holds the key for a different request
+     */
+    public CompletableFuture<V> claim(String key, Object request, CompletableFuture<V> pending) {
+        long now = nanoClock.getAsLong();
+        evict(now);
+
+        Entry<V> entry = new Entry<>(key, request, pending);
+        while (true) {
+            Entry<V> existing = entries.putIfAbsent(key, entry);
+            if (existing == null) {
+                pending.whenComplete((result, failure) -> complete(entry));
+                return null;
+            }
+            if (existing.isLive(now)) {
+                if (!existing.request.equals(request)) {
+                    throw new IllegalArgumentException("Idempotency key reused for a different request: " + key);
+                }
+                return existing.result;
+            }
+            // Expired but not evicted yet: replace it, unless someone else got there first
+            if (entries.replace(key, existing, entry)) {
+                pending.whenComplete((result, failure) -> complete(entry));
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Gives up a key claimed with {@code pending}, before it completes, so that the next claim of the key
+     * runs the work again instead of getting this result. Duplicates already waiting still get it.
+     *
+     * @param key     the idempotency key
+     * @param pending the future the key was claimed with
+     */
+    public void release(String key, CompletableFuture<V> pending) {
+        entries.computeIfPresent(key, (k, entry) -> entry.result == pending ? null : entry);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    // Starts the entry's time-to-live and makes it evictable
+    private void complete(Entry<V> entry) {
+        if (entries.get(entry.key) != entry) {
+            return;  // released, so there is nothing to expire
+        }
+        long now = nanoClock.getAsLong();
+        entry.expiresAt = now + ttlNanos;
+        entry.completed = true;
+        completionOrder.add(entry);
+        queued.incrementAndGet();
+        evict(now);
+    }
+
+    private void evict(long now) {
+        Entry<V> head;
+        while ((head = completionOrder.peek()) != null
+                && (head.expiresAt - now <= 0 || queued.get() > maxEntries)) {
+            if (completionOrder.remove(head)) {
+                queued.decrementAndGet();
+                entries.remove(head.key, head);
+            }
+        }
+    }
+
+    // Identity equality, so only this exact entry is ever removed from the map
+    private static final class Entry<V> {
+        private final String key;
+        private final Object request;
+        private final CompletableFuture<V> result;
+        private long expiresAt;
+        // Written after expiresAt, so a reader that sees it set also sees the expiry
+        private volatile boolean completed;
+
+        private Entry(String key, Object request, CompletableFuture<V> result) {
+            this.key = key;
+            this.request = request;
+            this.result = result;
+        }
+
+        private boolean isLive(long now) {
+            return !completed || expiresAt - now > 0;
+        }
+    }
+}
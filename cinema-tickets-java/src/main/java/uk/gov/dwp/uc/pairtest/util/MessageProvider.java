@@ -1,5 +1,7 @@
 package uk.gov.dwp.uc.pairtest.util;
 
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+
 import java.text.MessageFormat;
 import java.util.ResourceBundle;
 
@@ -7,6 +9,12 @@ public class MessageProvider {
     private static final String BUNDLE_NAME = "messages";
     private static final ResourceBundle RESOURCE_BUNDLE = ResourceBundle.getBundle(BUNDLE_NAME);
 
+    // Rejection messages resolved once up front, indexed by outcome code
+    private static final String[] REJECTION_MESSAGES = loadRejectionMessages();
+
+    // Last formatted maximum ticket message; only re-formatted when the limit changes
+    private static volatile FormattedMessage maxTicketsMessage = new FormattedMessage(-1, null);
+
     private MessageProvider() {
         // Utility class, hide constructor
     }
@@ -19,4 +27,35 @@ public class MessageProvider {
         String pattern = getMessage(key);
         return MessageFormat.format(pattern, params);
     }
+
+    /**
+     * Returns the message for a rejected purchase outcome from a cache, so repeated rejections
+     * skip the bundle lookup and {@link MessageFormat}.
+     */
+    public static String getRejectionMessage(PurchaseOutcome outcome) {
+        if (outcome == PurchaseOutcome.MAX_TICKETS_EXCEEDED) {
+            int maxTickets = TicketingConfig.getMaxTickets();
+            FormattedMessage cached = maxTicketsMessage;
+            if (cached.param != maxTickets) {
+                cached = new FormattedMessage(maxTickets, getMessage(outcome.getMessageKey(), maxTickets));
+                maxTicketsMessage = cached;
+            }
+            return cached.message;
+        }
+        return REJECTION_MESSAGES[outcome.getCode()];
+    }
+
+    private static String[] loadRejectionMessages() {
+        PurchaseOutcome[] outcomes = PurchaseOutcome.values();
+        String[] messages = new String[outcomes.length];
+        for (PurchaseOutcome outcome : outcomes) {
+            if (outcome.getMessageKey() != null) {
+                messages[outcome.getCode()] = getMessage(outcome.getMessageKey());
+            }
+        }
+        return messages;
+    }
+
+    private record FormattedMessage(int param, String message) {
+    }
 }
\ No newline at end of file
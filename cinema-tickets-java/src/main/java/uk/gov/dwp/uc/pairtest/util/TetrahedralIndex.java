@@ -0,0 +1,81 @@
+package uk.gov.dwp.uc.pairtest.util;
+
+/**
+ * Dense index of every combination of (adults, children, infants) ticket counts whose total is at most
+ * a maximum, for tables that precompute one value per combination such as {@code QuoteTable} and
+ * {@link ValidationDecisionTable}.
+ * <p>
+ * The combinations are laid out tetrahedrally: all (children, infants) pairs for 0 adults first,
+ * then for 1 adult, and so on, which numbers the (max + 1)(max + 2)(max + 3) / 6 combinations with no gaps.
+ */
+public final class TetrahedralIndex {
+
+    // Index covering no combination, for tables too large to build
+    public static final TetrahedralIndex NONE = new TetrahedralIndex(-1, new int[0], 0);
+
+    // Largest maximum whose (max + 1)(max + 2)(max + 3) still fits in a long: (max + 3) must stay below the cube root of 2^63
+    private static final int MAX_COUNTABLE_TICKETS = (1 << 21) - 4;
+
+    private final int maxTickets;
+    private final int[] adultOffsets;
+    private final int size;
+
+    private TetrahedralIndex(int maxTickets, int[] adultOffsets, int size) {
+        this.maxTickets = maxTickets;
+        this.adultOffsets = adultOffsets;
+        this.size = size;
+    }
+
+    /**
+     * @return the index of the combinations totalling at most {@code maxTickets}, or {@link #NONE} if
+     *         the maximum is negative or there would be more than {@code maxEntries} combinations
+     */
+    public static TetrahedralIndex upTo(int maxTickets, long maxEntries) {
+        long combinations = combinations(maxTickets);
+        if (maxTickets < 0 || combinations > Math.min(maxEntries, Integer.MAX_VALUE)) {
+            return NONE;
+        }
+
+        int[] adultOffsets = new int[maxTickets + 1];
+        int offset = 0;
+        for (int adults = 0; adults <= maxTickets; adults++) {
+            adultOffsets[adults] = offset;
+            int remaining = maxTickets - adults;
+            offset += (remaining + 1) * (remaining + 2) / 2;
+        }
+        return new TetrahedralIndex(maxTickets, adultOffsets, (int) combinations);
+    }
+
+    // Number of combinations totalling at most the maximum, or Long.MAX_VALUE if that does not fit in a long
+    public static long combinations(int maxTickets) {
+        if (maxTickets < 0) {
+            return 0;
+        }
+        if (maxTickets > MAX_COUNTABLE_TICKETS) {
+            return Long.MAX_VALUE;
+        }
+        return (long) (maxTickets + 1) * (maxTickets + 2) * (maxTickets + 3) / 6;
+    }
+
+    // Whether the non-negative counts are indexed; summed as longs so huge counts cannot wrap around
+    public boolean covers(long adults, long children, long infants) {
+        return adults + children + infants <= maxTickets;
+    }
+
+    // Position of non-negative counts that are covered
+    public int indexOf(int adults, int children, int infants) {
+        // Pairs left for this adult count form a triangle of side remaining + 1; skip the rows of earlier child counts
+        int remaining = maxTickets - adults;
+        return adultOffsets[adults] + children * (remaining + 1) - children * (children - 1) / 2 + infants;
+    }
+
+    // Number of combinations indexed
+    public int size() {
+        return size;
+    }
+
+    // Highest total indexed, or -1 for NONE
+    public int getMaxTickets() {
+        return maxTickets;
+    }
+}
@@ -50,4 +50,14 @@ public final class TicketCalculationUtils {
 
         return totalSeats;
     }
+
+    // Primitive variant of calculateTotalAmount for callers that already hold the count per type
+    public static int calculateTotalAmount(int adults, int children, int infants) {
+        return adults * TicketPrices.ADULT + children * TicketPrices.CHILD + infants * TicketPrices.INFANT;
+    }
+
+    // Primitive variant of calculateTotalSeats (infants do not require a seat)
+    public static int calculateTotalSeats(int adults, int children) {
+        return adults + children;
+    }
 }
@@ -0,0 +1,193 @@
+package uk.gov.dwp.uc.pairtest.util;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+
+/**
+ * Validates and prices a ticket purchase in a single pass over the requests.
+ * <p>
+ * The ticket counts per type are tallied with primitive counters and packed into a {@code long}
+ * evaluation, so the happy path allocates nothing. Read the evaluation back with
+ * {@link #adults(long)}, {@link #children(long)}, {@link #infants(long)},
+ * {@link #totalAmount(long)} and {@link #totalSeats(long)}.
+ * <p>
+ * The {@code tryEvaluate} methods never throw: a rejected purchase is returned as a negative
+ * evaluation holding its {@link PurchaseOutcome} (see {@link #outcomeOf(long)}). The
+ * {@code evaluate} methods throw a stackless {@link InvalidPurchaseException} with a cached message instead.
+ */
+public final class TicketPurchaseEvaluator {
+
+    // Each ticket count takes 21 bits of the packed evaluation
+    private static final int COUNT_BITS = 21;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final int CHILD_SHIFT = COUNT_BITS;
+    private static final int INFANT_SHIFT = COUNT_BITS * 2;
+
+    private TicketPurchaseEvaluator() {
+        // utility
+    }
+
+    /**
+     * Validates the purchase and tallies the requested tickets.
+     *
+     * @return the packed evaluation of the purchase
+     * @throws InvalidPurchaseException if the purchase breaks any of the business rules
+     */
+    public static long evaluate(Long accountId, TicketTypeRequest... ticketTypeRequests) {
+        return orThrow(tryEvaluate(accountId, ticketTypeRequests));
+    }
+
+    /**
+     * Validates the purchase from ticket counts per type, without any request objects.
+     * Counts of zero are allowed for any type, as long as the rules are met overall.
+     *
+     * @return the packed evaluation of the purchase
+     * @throws InvalidPurchaseException if the purchase breaks any of the business rules
+     */
+    public static long evaluate(long accountId, int adults, int children, int infants) {
+        return orThrow(tryEvaluate(accountId, adults, children, infants));
+    }
+
+    /**
+     * Validates the purchase and tallies the requested tickets without throwing.
+     *
+     * @return the packed evaluation of the purchase, or a negative rejection if it breaks any of the business rules
+     */
+    public static long tryEvaluate(Long accountId, TicketTypeRequest... ticketTypeRequests) {
+        if (accountId == null || accountId <= 0) {
+            return reject(PurchaseOutcome.INVALID_ACCOUNT_ID);
+        }
+
+        if (ticketTypeRequests == null || ticketTypeRequests.length == 0) {
+            return reject(PurchaseOutcome.NO_TICKETS);
+        }
+
+        // long counters so that huge requests cannot overflow past the maximum ticket check
+        long adults = 0;
+        long children = 0;
+        long infants = 0;
+
+        for (TicketTypeRequest request : ticketTypeRequests) {
+            if (request == null || request.getNoOfTickets() <= 0) {
+                return reject(PurchaseOutcome.INVALID_TICKET_REQUEST);
+            }
+
+            switch (request.getTicketType()) {
+                case ADULT:
+                    adults += request.getNoOfTickets();
+                    break;
+                case CHILD:
+                    children += request.getNoOfTickets();
+                    break;
+                case INFANT:
+                    infants += request.getNoOfTickets();
+                    break;
+            }
+        }
+
+        return checkRules(adults, children, infants);
+    }
+
+    /**
+     * Validates the purchase from ticket counts per type without throwing.
+     *
+     * @return the packed evaluation of the purchase, or a negative rejection if it breaks any of the business rules
+     */
+    public static long tryEvaluate(long accountId, int adults, int children, int infants) {
+        if (accountId <= 0) {
+            return reject(PurchaseOutcome.INVALID_ACCOUNT_ID);
+        }
+
+        if (adults < 0 || children < 0 || infants < 0) {
+            return reject(PurchaseOutcome.INVALID_TICKET_REQUEST);
+        }
+
+        if (adults == 0 && children == 0 && infants == 0) {
+            return reject(PurchaseOutcome.NO_TICKETS);
+        }
+
+        return checkRules(adults, children, infants);
+    }
+
+    private static long checkRules(long adults, long children, long infants) {
+        TicketingConfig.Snapshot config = TicketingConfig.current();
+        if (config.isDecisionTableEnabled()) {
+            // One read from the rules compiled for this snapshot, once they are
+            ValidationDecisionTable table = ValidationDecisionTable.forConfig(config);
+            if (table != null && table.covers(adults, children, infants)) {
+                int code = table.outcomeCode(adults, children, infants);
+                return code == PurchaseOutcome.ACCEPTED.getCode() ? pack(adults, children, infants) : -code;
+            }
+        }
+        return checkRules(config, adults, children, infants);
+    }
+
+    // The business rules on positive ticket counts; also used to compile the ValidationDecisionTable
+    static long checkRules(TicketingConfig.Snapshot config, long adults, long children, long infants) {
+        // Validate against maximum ticket limit
+        if (adults + children + infants > config.getMaxTickets()) {
+            return reject(PurchaseOutcome.MAX_TICKETS_EXCEEDED);
+        }
+
+        // Ensure at least one adult ticket is purchased
+        if (adults == 0) {
+            return reject(PurchaseOutcome.ADULT_REQUIRED);
+        }
+
+        // Ensure infants do not exceed adult tickets
+        if (infants > adults) {
+            return reject(PurchaseOutcome.INFANT_EXCEEDS_ADULT);
+        }
+
+        return pack(adults, children, infants);
+    }
+
+    private static long pack(long adults, long children, long infants) {
+        return adults | (children << CHILD_SHIFT) | (infants << INFANT_SHIFT);
+    }
+
+    private static long reject(PurchaseOutcome outcome) {
+        return -outcome.getCode();
+    }
+
+    private static long orThrow(long evaluation) {
+        if (evaluation < 0) {
+            throw rejection(outcomeOf(evaluation));
+        }
+        return evaluation;
+    }
+
+    // Stackless exception carrying the cached message for the rejected outcome
+    public static InvalidPurchaseException rejection(PurchaseOutcome outcome) {
+        return InvalidPurchaseException.stackless(outcome, MessageProvider.getRejectionMessage(outcome));
+    }
+
+    public static boolean isAccepted(long evaluation) {
+        return evaluation >= 0;
+    }
+
+    public static PurchaseOutcome outcomeOf(long evaluation) {
+        return evaluation >= 0 ? PurchaseOutcome.ACCEPTED : PurchaseOutcome.fromCode((int) -evaluation);
+    }
+
+    public static int adults(long evaluation) {
+        return (int) (evaluation & COUNT_MASK);
+    }
+
+    public static int children(long evaluation) {
+        return (int) ((evaluation >>> CHILD_SHIFT) & COUNT_MASK);
+    }
+
+    public static int infants(long evaluation) {
+        return (int) ((evaluation >>> INFANT_SHIFT) & COUNT_MASK);
+    }
+
+    public static int totalAmount(long evaluation) {
+        return TicketCalculationUtils.calculateTotalAmount(adults(evaluation), children(evaluation), infants(evaluation));
+    }
+
+    public static int totalSeats(long evaluation) {
+        return TicketCalculationUtils.calculateTotalSeats(adults(evaluation), children(evaluation));
+    }
+}
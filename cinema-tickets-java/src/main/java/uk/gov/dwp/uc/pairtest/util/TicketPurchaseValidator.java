@@ -1,59 +1,30 @@
 package uk.gov.dwp.uc.pairtest.util;
 
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
 import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
-import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
 
-// Utility class for validating ticket purchase requests
+// Utility class for validating ticket purchase requests; it has no side effects, so per-account
+// purchase limits are counted by the ticket service itself
 public final class TicketPurchaseValidator {
     private TicketPurchaseValidator() {}
 
+    // The rules are applied by the single-pass evaluator; the evaluation itself is not needed here
     public static void validate(Long accountId, TicketTypeRequest... ticketTypeRequests) {
-        if (accountId == null || accountId <= 0) {
-            throw new InvalidPurchaseException(MessageProvider.getMessage("error.invalid.accountId"));
-        }
-
-        if (ticketTypeRequests == null || ticketTypeRequests.length == 0) {
-            throw new InvalidPurchaseException(MessageProvider.getMessage("error.no.tickets"));
-        }
-
-        int totalTickets = 0;
-        int adultCount = 0;
-        int infantCount = 0;
-
-        for (TicketTypeRequest request : ticketTypeRequests) {
-            if (request == null || request.getNoOfTickets() <= 0) {
-                throw new InvalidPurchaseException(MessageProvider.getMessage("error.invalid.ticket.request"));
-            }
-
-            totalTickets += request.getNoOfTickets();
-
-            switch (request.getTicketType()) {
-                case ADULT:
-                    adultCount += request.getNoOfTickets();
-                    break;
-                case CHILD:
-                    break;
-                case INFANT:
-                    infantCount += request.getNoOfTickets();
-                    break;
-            }
-        }
-
-        int maxTickets = TicketingConfig.getMaxTickets();
+        TicketPurchaseEvaluator.evaluate(accountId, ticketTypeRequests);
+    }
 
-        // Validate against maximum ticket limit
-        if (totalTickets > maxTickets) {
-            throw new InvalidPurchaseException(MessageProvider.getMessage("error.max.tickets", maxTickets));
-        }
+    // Primitive variant for callers that already hold the count per type
+    public static void validate(long accountId, int adults, int children, int infants) {
+        TicketPurchaseEvaluator.evaluate(accountId, adults, children, infants);
+    }
 
-        // Ensure at least one adult ticket is purchased
-        if (adultCount == 0) {
-            throw new InvalidPurchaseException(MessageProvider.getMessage("error.adult.required"));
-        }
+    // Non-throwing validation: returns the outcome instead of raising InvalidPurchaseException
+    public static PurchaseOutcome check(Long accountId, TicketTypeRequest... ticketTypeRequests) {
+        return TicketPurchaseEvaluator.outcomeOf(TicketPurchaseEvaluator.tryEvaluate(accountId, ticketTypeRequests));
+    }
 
-        // Ensure infants do not exceed adult tickets
-        if (infantCount > adultCount) {
-            throw new InvalidPurchaseException(MessageProvider.getMessage("error.infant.exceeds.adult"));
-        }
+    // Primitive variant of check
+    public static PurchaseOutcome check(long accountId, int adults, int children, int infants) {
+        return TicketPurchaseEvaluator.outcomeOf(TicketPurchaseEvaluator.tryEvaluate(accountId, adults, children, infants));
     }
 }
@@ -2,24 +2,329 @@ package uk.gov.dwp.uc.pairtest.util;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
+/**
+ * Ticketing configuration, read from {@code application.properties} on the classpath and optionally
+ * overridden by an external file named by the {@value #OVERRIDE_FILE_PROPERTY} system property.
+ * <p>
+ * The values are parsed once into an immutable {@link Snapshot} published through a volatile reference,
+ * so reading them on the hot path costs a single field read. {@link #reload()} and the file watcher
+ * started by {@link #watch()} swap in a new snapshot atomically, without a restart, and then hand it to
+ * the listeners added with {@link #addListener}, so state derived from the configuration is rebuilt once
+ * on the reloading thread rather than by the first requests to notice the change.
+ */
 public final class TicketingConfig {
     private static final String PROPERTIES_FILE = "application.properties";
-    private static final Properties PROPS = new Properties();
-    static {
-        try (InputStream in = TicketingConfig.class.getClassLoader().getResourceAsStream(PROPERTIES_FILE)) {
-            if (in != null) {
-                PROPS.load(in);
+
+    // System property naming an external properties file that overrides application.properties
+    public static final String OVERRIDE_FILE_PROPERTY = "ticketing.config.file";
+
+    private static final System.Logger LOGGER = System.getLogger(TicketingConfig.class.getName());
+
+    private static final List<Consumer<Snapshot>> LISTENERS = new CopyOnWriteArrayList<>();
+
+    private static volatile Snapshot current = load();
+
+    private TicketingConfig() {}
+
+    public static int getMaxTickets() {
+        return current.getMaxTickets();
+    }
+
+    // The configuration currently in force
+    public static Snapshot current() {
+        return current;
+    }
+
+    // Adds a listener that is called with every snapshot reloaded from now on, after it is in force
+    public static void addListener(Consumer<Snapshot> listener) {
+        LISTENERS.add(listener);
+    }
+
+    public static void removeListener(Consumer<Snapshot> listener) {
+        LISTENERS.remove(listener);
+    }
+
+    /**
+     * Re-reads the configuration files and atomically replaces the current snapshot, then calls the
+     * listeners with it. If the files cannot be read or hold invalid values, the current snapshot is kept.
+     *
+     * @return the snapshot now in force
+     * @throws UncheckedIOException     if the files cannot be read
+     * @throws IllegalArgumentException if a value is invalid
+     */
+    public static Snapshot reload() {
+        Snapshot snapshot = load();
+        current = snapshot;
+        for (Consumer<Snapshot> listener : LISTENERS) {
+            try {
+                listener.accept(snapshot);
+            } catch (RuntimeException e) {
+                LOGGER.log(System.Logger.Level.WARNING, "Ticketing configuration listener failed", e);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Starts a daemon thread that reloads the configuration whenever {@code application.properties}
+     * (when it is a plain file on the classpath) or the override file changes.
+     *
+     * @return a handle that stops the watcher when closed
+     * @throws IOException if the watch service cannot be created
+     */
+    public static AutoCloseable watch() throws IOException {
+        WatchService watchService = FileSystems.getDefault().newWatchService();
+        List<Path> files = new ArrayList<>();
+        for (Path file : watchedFiles()) {
+            Path directory = file.toAbsolutePath().getParent();
+            if (directory != null && Files.isDirectory(directory)) {
+                directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+                files.add(file.toAbsolutePath());
+            }
+        }
+
+        Thread watcher = new Thread(() -> watchLoop(watchService, files), "ticketing-config-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        return watchService::close;
+    }
+
+    private static void watchLoop(WatchService watchService, List<Path> files) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path directory = (Path) key.watchable();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.context() instanceof Path name && files.contains(directory.resolve(name))) {
+                        changed = true;
+                    }
+                }
+                key.reset();
+
+                if (changed) {
+                    try {
+                        reload();
+                    } catch (RuntimeException e) {
+                        LOGGER.log(System.Logger.Level.WARNING, "Keeping current ticketing configuration", e);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // watcher stopped
+        }
+    }
+
+    private static List<Path> watchedFiles() {
+        List<Path> files = new ArrayList<>();
+        URL resource = TicketingConfig.class.getClassLoader().getResource(PROPERTIES_FILE);
+        if (resource != null && "file".equals(resource.getProtocol())) {
+            try {
+                files.add(Paths.get(resource.toURI()));
+            } catch (URISyntaxException e) {
+                // not a watchable file
+            }
+        }
+        Path overrideFile = overrideFile();
+        if (overrideFile != null) {
+            files.add(overrideFile);
+        }
+        return files;
+    }
+
+    private static Path overrideFile() {
+        String location = System.getProperty(OVERRIDE_FILE_PROPERTY);
+        return location == null || location.isBlank() ? null : Paths.get(location);
+    }
+
+    private static Snapshot load() {
+        Properties props = new Properties();
+        try {
+            try (InputStream in = TicketingConfig.class.getClassLoader().getResourceAsStream(PROPERTIES_FILE)) {
+                if (in != null) {
+                    props.load(in);
+                }
+            }
+            Path overrideFile = overrideFile();
+            if (overrideFile != null && Files.isRegularFile(overrideFile)) {
+                try (InputStream in = Files.newInputStream(overrideFile)) {
+                    props.load(in);
+                }
             }
         } catch (IOException e) {
-            throw new ExceptionInInitializerError(e);
+            throw new UncheckedIOException(e);
         }
+        return new Snapshot(props);
     }
 
-    private TicketingConfig() {}
+    /**
+     * Immutable, parsed view of the ticketing configuration.
+     */
+    public static final class Snapshot {
 
-    public static int getMaxTickets() {
-        return Integer.parseInt(PROPS.getProperty("max.tickets", "25"));
+        // Upper bound of max.tickets: the purchase evaluator packs each ticket count into 21 bits
+        public static final int MAX_TICKETS_LIMIT = (1 << 21) - 1;
+
+        private final int maxTickets;
+        private final boolean decisionTableEnabled;
+        private final int seatHoldTimeoutMillis;
+        private final int purchaseLimitWindowMillis;
+        private final int screeningTicketLimit;
+        private final int overallTicketLimit;
+        private final ServiceSettings paymentSettings;
+        private final ServiceSettings reservationSettings;
+
+        private Snapshot(Properties props) {
+            this.maxTickets = intProperty(props, "max.tickets", 25, 1, MAX_TICKETS_LIMIT);
+            this.decisionTableEnabled = booleanProperty(props, "validation.decision.table", false);
+            this.seatHoldTimeoutMillis = intProperty(props, "seat.hold.timeout.ms", 120_000, 1, Integer.MAX_VALUE);
+            this.purchaseLimitWindowMillis = intProperty(props, "purchase.limit.window.ms", 3_600_000, 1, Integer.MAX_VALUE);
+            this.screeningTicketLimit = intProperty(props, "purchase.limit.screening.tickets", 0, 0, Character.MAX_VALUE);
+            this.overallTicketLimit = intProperty(props, "purchase.limit.overall.tickets", 0, 0, Character.MAX_VALUE);
+            this.paymentSettings = serviceSettings(props, "payment");
+            this.reservationSettings = serviceSettings(props, "reservation");
+        }
+
+        public int getMaxTickets() {
+            return maxTickets;
+        }
+
+        // Whether the rules are checked with a ValidationDecisionTable compiled for this snapshot
+        public boolean isDecisionTableEnabled() {
+            return decisionTableEnabled;
+        }
+
+        // How long held seats stay off sale waiting for the payment before the hold expires
+        public int getSeatHoldTimeoutMillis() {
+            return seatHoldTimeoutMillis;
+        }
+
+        // Length of the sliding window of the per-account purchase limits
+        public int getPurchaseLimitWindowMillis() {
+            return purchaseLimitWindowMillis;
+        }
+
+        // Tickets of one screening an account may buy within the window, or 0 for no limit
+        public int getScreeningTicketLimit() {
+            return screeningTicketLimit;
+        }
+
+        // Tickets of all screenings an account may buy within the window, or 0 for no limit
+        public int getOverallTicketLimit() {
+            return overallTicketLimit;
+        }
+
+        // Limits on calls to the payment gateway
+        public ServiceSettings getPaymentSettings() {
+            return paymentSettings;
+        }
+
+        // Limits on calls to the seat reservation service
+        public ServiceSettings getReservationSettings() {
+            return reservationSettings;
+        }
+
+        private static ServiceSettings serviceSettings(Properties props, String prefix) {
+            return new ServiceSettings(
+                intProperty(props, prefix + ".timeout.ms", 2000, 0, Integer.MAX_VALUE),
+                intProperty(props, prefix + ".max.concurrent.calls", 64, 1, Integer.MAX_VALUE),
+                intProperty(props, prefix + ".circuit.failure.threshold", 5, 1, Integer.MAX_VALUE),
+                intProperty(props, prefix + ".circuit.open.ms", 5000, 1, Integer.MAX_VALUE));
+        }
+
+        private static boolean booleanProperty(Properties props, String name, boolean defaultValue) {
+            String value = props.getProperty(name);
+            if (value == null) {
+                return defaultValue;
+            }
+
+            String trimmed = value.trim();
+            if (trimmed.equalsIgnoreCase("true")) {
+                return true;
+            }
+            if (trimmed.equalsIgnoreCase("false")) {
+                return false;
+            }
+            throw new IllegalArgumentException(name + " must be true or false: " + value);
+        }
+
+        private static int intProperty(Properties props, String name, int defaultValue, int min, int max) {
+            String value = props.getProperty(name);
+            if (value == null) {
+                return defaultValue;
+            }
+
+            int parsed;
+            try {
+                parsed = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(name + " is not a number: " + value, e);
+            }
+            if (parsed < min || parsed > max) {
+                throw new IllegalArgumentException(name + " must be between " + min + " and " + max + ": " + parsed);
+            }
+            return parsed;
+        }
+    }
+
+    /**
+     * Immutable limits on the calls to one downstream service.
+     */
+    public static final class ServiceSettings {
+
+        private final int timeoutMillis;
+        private final int maxConcurrentCalls;
+        private final int failureThreshold;
+        private final int openMillis;
+
+        /**
+         * @param timeoutMillis      the longest a call may take, or 0 for no timeout
+         * @param maxConcurrentCalls the most calls in flight at once
+         * @param failureThreshold   the consecutive failures that open the circuit breaker
+         * @param openMillis         how long the circuit breaker stays open before letting a trial call through
+         */
+        public ServiceSettings(int timeoutMillis, int maxConcurrentCalls, int failureThreshold, int openMillis) {
+            this.timeoutMillis = timeoutMillis;
+            this.maxConcurrentCalls = maxConcurrentCalls;
+            this.failureThreshold = failureThreshold;
+            this.openMillis = openMillis;
+        }
+
+        public int getTimeoutMillis() {
+            return timeoutMillis;
+        }
+
+        public int getMaxConcurrentCalls() {
+            return maxConcurrentCalls;
+        }
+
+        public int getFailureThreshold() {
+            return failureThreshold;
+        }
+
+        public int getOpenMillis() {
+            return openMillis;
+        }
     }
 }
@@ -0,0 +1,110 @@
+package uk.gov.dwp.uc.pairtest.util;
+
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+
+/**
+ * The business rules on ticket counts, compiled for one configuration snapshot into a dense table of
+ * outcome codes indexed by (adults, children, infants), so checking a purchase is a single array read
+ * with no rule branches.
+ * <p>
+ * The table covers every combination whose total is at most the snapshot's max.tickets, laid out
+ * by a {@link TetrahedralIndex}. It is filled by running the rules themselves, so a new
+ * configurable rule only needs adding to {@link TicketPurchaseEvaluator}. Counts outside the table
+ * are outside the rules' domain (negative or over the maximum) and are answered without a lookup.
+ * <p>
+ * The table is rebuilt once per configuration snapshot, by the thread that reloads the configuration,
+ * and published through a volatile field, so readers always see a complete table for one snapshot.
+ * Until the table for a new snapshot is published, purchases are checked against the rules directly.
+ */
+public final class ValidationDecisionTable {
+
+    // Above this many combinations (max.tickets of about 290) the table is not worth its memory
+    static final long MAX_ENTRIES = 1L << 22;
+
+    private static volatile ValidationDecisionTable current;
+
+    static {
+        TicketingConfig.addListener(snapshot -> rebuild());
+        rebuild();
+    }
+
+    private final TicketingConfig.Snapshot config;
+    private final TetrahedralIndex index;
+    private final byte[] outcomes;
+
+    private ValidationDecisionTable(TicketingConfig.Snapshot config) {
+        this.config = config;
+        this.index = TetrahedralIndex.upTo(config.getMaxTickets(), MAX_ENTRIES);
+        this.outcomes = new byte[index.size()];
+
+        int max = index.getMaxTickets();
+        for (int adults = 0; adults <= max; adults++) {
+            for (int children = 0; adults + children <= max; children++) {
+                for (int infants = 0; adults + children + infants <= max; infants++) {
+                    long evaluation = TicketPurchaseEvaluator.checkRules(config, adults, children, infants);
+                    outcomes[index.indexOf(adults, children, infants)] =
+                        (byte) TicketPurchaseEvaluator.outcomeOf(evaluation).getCode();
+                }
+            }
+        }
+    }
+
+    // Compiles the rules for the given configuration
+    public static ValidationDecisionTable compile(TicketingConfig.Snapshot config) {
+        return new ValidationDecisionTable(config);
+    }
+
+    // The table for the configuration currently in force, waiting for it to be built if need be
+    public static ValidationDecisionTable current() {
+        ValidationDecisionTable table = current;
+        return table.config == TicketingConfig.current() ? table : rebuild();
+    }
+
+    // The table for the snapshot, or null while it has not been published yet
+    static ValidationDecisionTable forConfig(TicketingConfig.Snapshot config) {
+        ValidationDecisionTable table = current;
+        return table.config == config ? table : null;
+    }
+
+    // Builds the table for the latest snapshot, unless it is already built; one build at a time
+    private static synchronized ValidationDecisionTable rebuild() {
+        TicketingConfig.Snapshot config = TicketingConfig.current();
+        ValidationDecisionTable table = current;
+        if (table == null || table.config != config) {
+            table = new ValidationDecisionTable(config);
+            current = table;
+        }
+        return table;
+    }
+
+    /**
+     * @return the outcome of the business rules for the counts
+     */
+    public PurchaseOutcome outcome(int adults, int children, int infants) {
+        if (adults < 0 || children < 0 || infants < 0) {
+            return PurchaseOutcome.INVALID_TICKET_REQUEST;
+        }
+        if (!covers(adults, children, infants)) {
+            return TicketPurchaseEvaluator.outcomeOf(TicketPurchaseEvaluator.checkRules(config, adults, children, infants));
+        }
+        return PurchaseOutcome.fromCode(outcomeCode(adults, children, infants));
+    }
+
+    // Whether the non-negative counts are in the table; always false if it was too large to build
+    boolean covers(long adults, long children, long infants) {
+        return index.covers(adults, children, infants);
+    }
+
+    // Outcome code of counts covered by the table
+    int outcomeCode(long adults, long children, long infants) {
+        return outcomes[index.indexOf((int) adults, (int) children, (int) infants)];
+    }
+
+    public boolean isCompiled() {
+        return index != TetrahedralIndex.NONE;
+    }
+
+    public TicketingConfig.Snapshot getConfig() {
+        return config;
+    }
+}
@@ -0,0 +1,138 @@
+package uk.gov.dwp.uc.pairtest;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.util.TicketPurchaseEvaluator;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class IdempotentTicketServiceTest {
+
+    private TicketPaymentService paymentService;
+    private SeatReservationService reservationService;
+    private IdempotentTicketService ticketService;
+
+    @BeforeEach
+    void setUp() {
+        paymentService = mock(TicketPaymentService.class);
+        reservationService = mock(SeatReservationService.class);
+        ticketService = new IdempotentTicketService(
+            new TicketServiceImpl(paymentService, reservationService), 1_000, Duration.ofMinutes(5));
+    }
+
+    @Test
+    @DisplayName("Should take the payment only once for retries with the same key")
+    void shouldPayOnceForRetries() {
+        TicketTypeRequest adult = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2);
+
+        ticketService.purchaseTickets("order-1", 1L, adult);
+        ticketService.purchaseTickets("order-1", 1L, adult);
+        ticketService.purchaseTickets("order-1", 1L, 2, 0, 0);
+
+        verify(paymentService, times(1)).makePayment(1L, 50);
+        verify(reservationService, times(1)).reserveSeat(1L, 2);
+    }
+
+    @Test
+    @DisplayName("Should replay the original rejection for retries with the same key")
+    void shouldReplayOriginalRejection() {
+        TicketTypeRequest child = new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1);
+        InvalidPurchaseException original = assertThrows(InvalidPurchaseException.class,
+            () -> ticketService.purchaseTickets("order-1", 1L, child));
+
+        InvalidPurchaseException replayed = assertThrows(InvalidPurchaseException.class,
+            () -> ticketService.purchaseTickets("order-1", 1L, 0, 1, 0));
+
+        assertSame(original, replayed);
+        verifyNoInteractions(paymentService, reservationService);
+    }
+
+    @Test
+    @DisplayName("Should run the purchase again on a retry after a gateway failure")
+    void shouldRetryAfterGatewayFailure() {
+        doThrow(new IllegalStateException("gateway down")).doNothing().when(paymentService).makePayment(anyLong(), anyInt());
+
+        assertThrows(IllegalStateException.class, () -> ticketService.purchaseTickets("order-1", 1L, 2, 0, 0));
+        ticketService.purchaseTickets("order-1", 1L, 2, 0, 0);
+        ticketService.purchaseTickets("order-1", 1L, 2, 0, 0);
+
+        verify(paymentService, times(2)).makePayment(1L, 50);
+        verify(reservationService, times(1)).reserveSeat(1L, 2);
+    }
+
+    @Test
+    @DisplayName("Should run the purchase again on a retry after the service was busy")
+    void shouldRetryAfterServiceBusy() {
+        TicketService delegate = mock(TicketService.class);
+        doThrow(TicketPurchaseEvaluator.rejection(PurchaseOutcome.SERVICE_BUSY)).doNothing()
+            .when(delegate).purchaseTickets(anyLong(), anyInt(), anyInt(), anyInt());
+        IdempotentTicketService idempotent = new IdempotentTicketService(delegate, 1_000, Duration.ofMinutes(5));
+
+        InvalidPurchaseException busy = assertThrows(InvalidPurchaseException.class,
+            () -> idempotent.purchaseTickets("order-1", 1L, 2, 0, 0));
+        assertEquals(PurchaseOutcome.SERVICE_BUSY, busy.getOutcome());
+        idempotent.purchaseTickets("order-1", 1L, 2, 0, 0);
+        idempotent.purchaseTickets("order-1", 1L, 2, 0, 0);
+
+        verify(delegate, times(2)).purchaseTickets(1L, 2, 0, 0);
+    }
+
+    @Test
+    @DisplayName("Should reject a key reused for a different order")
+    void shouldRejectKeyReusedForDifferentOrder() {
+        ticketService.purchaseTickets("order-1", 1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+
+        InvalidPurchaseException exception = assertThrows(InvalidPurchaseException.class,
+            () -> ticketService.purchaseTickets("order-1", 1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 3)));
+        assertEquals(PurchaseOutcome.IDEMPOTENCY_KEY_REUSED, exception.getOutcome());
+        assertThrows(InvalidPurchaseException.class, () -> ticketService.purchaseTickets("order-1", 2L, 1, 0, 0));
+
+        verify(paymentService, times(1)).makePayment(anyLong(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should purchase every time without a key")
+    void shouldPurchaseEveryTimeWithoutKey() {
+        ticketService.purchaseTickets((String) null, 1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+        ticketService.purchaseTickets(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+
+        verify(paymentService, times(2)).makePayment(1L, 25);
+    }
+
+    @Test
+    @DisplayName("Should collapse concurrent duplicates onto the in-flight purchase")
+    void shouldCollapseConcurrentDuplicates() throws Exception {
+        CountDownLatch paymentStarted = new CountDownLatch(1);
+        CountDownLatch releasePayment = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            paymentStarted.countDown();
+            releasePayment.await(10, TimeUnit.SECONDS);
+            return null;
+        }).when(paymentService).makePayment(anyLong(), anyInt());
+
+        TicketTypeRequest adult = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1);
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> ticketService.purchaseTickets("order-1", 1L, adult));
+        assertTrue(paymentStarted.await(10, TimeUnit.SECONDS));
+        CompletableFuture<Void> duplicate = CompletableFuture.runAsync(() -> ticketService.purchaseTickets("order-1", 1L, adult));
+
+        assertFalse(duplicate.isDone());
+        releasePayment.countDown();
+        first.get(10, TimeUnit.SECONDS);
+        duplicate.get(10, TimeUnit.SECONDS);
+
+        verify(paymentService, times(1)).makePayment(1L, 25);
+        verify(reservationService, times(1)).reserveSeat(1L, 1);
+    }
+}
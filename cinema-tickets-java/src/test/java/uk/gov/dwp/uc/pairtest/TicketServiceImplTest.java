@@ -8,11 +8,38 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import thirdparty.paymentgateway.TicketPaymentService;
 import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
 import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
 import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.limits.PurchaseLimiter;
+import uk.gov.dwp.uc.pairtest.limits.SlidingWindowLimit;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseMetrics;
+import uk.gov.dwp.uc.pairtest.metrics.PurchaseStage;
+import uk.gov.dwp.uc.pairtest.pricing.PriceTier;
+import uk.gov.dwp.uc.pairtest.pricing.PricingEngine;
+import uk.gov.dwp.uc.pairtest.pricing.TicketPricing;
+import uk.gov.dwp.uc.pairtest.spi.PurchaseListener;
+import uk.gov.dwp.uc.pairtest.spi.RefundableTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.spi.ReleasableSeatReservationService;
+import uk.gov.dwp.uc.pairtest.spi.SeatHoldService;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -66,7 +93,619 @@ class TicketServiceImplTest {
             verify(paymentService).makePayment(eq(accountId), anyInt());
             verify(reservationService).reserveSeat(eq(accountId), anyInt());
         }
+
+        @Test
+        @DisplayName("Should charge the prices of the configured pricing")
+        void shouldChargeConfiguredPricing() {
+            TicketService peakService = new TicketServiceImpl(paymentService, reservationService,
+                PricingEngine.load().forTier(PriceTier.PEAK));
+
+            peakService.purchaseTickets(123L,
+                new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2),
+                new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1));
+
+            verify(paymentService).makePayment(123L, 78); // (2 adults * £30) + (1 child * £18)
+            verify(reservationService).reserveSeat(123L, 3);
+        }
+    }
+
+    @Nested
+    @DisplayName("Batch Purchase Tests")
+    class BatchPurchaseTests {
+        @Test
+        @DisplayName("Should settle accepted orders and report rejected ones without failing the batch")
+        void shouldSettleAcceptedOrdersAndReportRejections() {
+            List<PurchaseOrder> orders = List.of(
+                new PurchaseOrder(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2)),
+                new PurchaseOrder(2L, new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1)),
+                new PurchaseOrder(3L,
+                    new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1),
+                    new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1),
+                    new TicketTypeRequest(TicketTypeRequest.Type.INFANT, 1))
+            );
+
+            List<PurchaseResult> results = ((TicketServiceImpl) ticketService).purchaseTickets(orders);
+
+            assertEquals(3, results.size());
+            assertTrue(results.get(0).isAccepted());
+            assertFalse(results.get(1).isAccepted());
+            assertTrue(results.get(1).getReason().contains("adult ticket must be purchased"));
+            assertEquals(PurchaseOutcome.ADULT_REQUIRED, results.get(1).getOutcome());
+            assertTrue(results.get(2).isAccepted());
+
+            verify(paymentService).makePayment(1L, 50);
+            verify(reservationService).reserveSeat(1L, 2);
+            verify(paymentService).makePayment(3L, 40);
+            verify(reservationService).reserveSeat(3L, 2);
+            verify(paymentService, never()).makePayment(eq(2L), anyInt());
+            verify(reservationService, never()).reserveSeat(eq(2L), anyInt());
+        }
+
+        @Test
+        @DisplayName("Should validate every order before settling any of them")
+        void shouldValidateAllOrdersBeforeSettling() {
+            List<PurchaseOrder> orders = List.of(
+                new PurchaseOrder(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)),
+                new PurchaseOrder(0L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1))
+            );
+
+            List<PurchaseResult> results = ((TicketServiceImpl) ticketService).purchaseTickets(orders);
+
+            assertTrue(results.get(0).isAccepted());
+            assertEquals("Invalid account ID", results.get(1).getReason());
+            verify(paymentService, times(1)).makePayment(anyLong(), anyInt());
+        }
+
+        @Test
+        @DisplayName("Should report a gateway failure for its own order and settle the rest of the batch")
+        void shouldReportGatewayFailureWithoutAbortingBatch() {
+            doThrow(new IllegalStateException("gateway down")).when(paymentService).makePayment(eq(2L), anyInt());
+            List<PurchaseOrder> orders = List.of(
+                new PurchaseOrder(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)),
+                new PurchaseOrder(2L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)),
+                new PurchaseOrder(3L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1))
+            );
+
+            List<PurchaseResult> results = ((TicketServiceImpl) ticketService).purchaseTickets(orders);
+
+            assertTrue(results.get(0).isAccepted());
+            assertFalse(results.get(1).isAccepted());
+            assertNull(results.get(1).getOutcome());
+            assertEquals("gateway down", results.get(1).getReason());
+            assertTrue(results.get(2).isAccepted());
+            verify(reservationService).reserveSeat(3L, 1);
+        }
+
+        @Test
+        @DisplayName("Should return no results for an empty batch")
+        void shouldReturnNoResultsForEmptyBatch() {
+            assertTrue(((TicketServiceImpl) ticketService).purchaseTickets(List.of()).isEmpty());
+            verifyNoInteractions(paymentService, reservationService);
+        }
+    }
+
+    @Nested
+    @DisplayName("Async Purchase Tests")
+    class AsyncPurchaseTests {
+        private RefundableTicketPaymentService refundablePaymentService;
+        private ReleasableSeatReservationService releasableReservationService;
+        private TicketServiceImpl compensatingService;
+
+        @BeforeEach
+        void setUp() {
+            refundablePaymentService = mock(RefundableTicketPaymentService.class);
+            releasableReservationService = mock(ReleasableSeatReservationService.class);
+            compensatingService = new TicketServiceImpl(refundablePaymentService, releasableReservationService);
+        }
+
+        @Test
+        @DisplayName("Should pay and reserve seats asynchronously")
+        void shouldPayAndReserveAsynchronously() {
+            compensatingService.purchaseTicketsAsync(1L, new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2)).join();
+
+            verify(refundablePaymentService).makePayment(1L, 50);
+            verify(releasableReservationService).reserveSeat(1L, 2);
+            verify(refundablePaymentService, never()).refundPayment(anyLong(), anyInt());
+            verify(releasableReservationService, never()).releaseSeat(anyLong(), anyInt());
+        }
+
+        @Test
+        @DisplayName("Should return a failed future for an invalid purchase without calling the services")
+        void shouldFailInvalidPurchaseWithoutCallingServices() {
+            CompletableFuture<Void> future = compensatingService.purchaseTicketsAsync(1L,
+                new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1));
+
+            CompletionException exception = assertThrows(CompletionException.class, future::join);
+            assertInstanceOf(InvalidPurchaseException.class, exception.getCause());
+            verifyNoInteractions(refundablePaymentService, releasableReservationService);
+        }
+
+        @Test
+        @DisplayName("Should release the reserved seats when the payment fails")
+        void shouldReleaseSeatsWhenPaymentFails() {
+            doThrow(new IllegalStateException("card declined")).when(refundablePaymentService).makePayment(1L, 40);
+
+            CompletableFuture<Void> future = compensatingService.purchaseTicketsAsync(1L,
+                new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1),
+                new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 1));
+
+            CompletionException exception = assertThrows(CompletionException.class, future::join);
+            assertEquals("card declined", exception.getCause().getMessage());
+            verify(releasableReservationService).releaseSeat(1L, 2);
+            verify(refundablePaymentService, never()).refundPayment(anyLong(), anyInt());
+        }
+
+        @Test
+        @DisplayName("Should refund the payment when the seat reservation fails")
+        void shouldRefundPaymentWhenReservationFails() {
+            doThrow(new IllegalStateException("sold out")).when(releasableReservationService).reserveSeat(1L, 1);
+
+            CompletableFuture<Void> future = compensatingService.purchaseTicketsAsync(1L,
+                new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+
+            CompletionException exception = assertThrows(CompletionException.class, future::join);
+            assertEquals("sold out", exception.getCause().getMessage());
+            verify(refundablePaymentService).refundPayment(1L, 25);
+            verify(releasableReservationService, never()).releaseSeat(anyLong(), anyInt());
+        }
+
+        @Test
+        @DisplayName("Should pay before reserving when the services cannot be compensated")
+        void shouldRunStepsInOrderWithoutCompensation() {
+            ((TicketServiceImpl) ticketService).purchaseTicketsAsync(1L,
+                new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1)).join();
+
+            InOrder inOrder = inOrder(paymentService, reservationService);
+            inOrder.verify(paymentService).makePayment(1L, 25);
+            inOrder.verify(reservationService).reserveSeat(1L, 1);
+        }
+    }
+
+    @Nested
+    @DisplayName("Primitive Purchase Tests")
+    class PrimitivePurchaseTests {
+        @Test
+        @DisplayName("Should purchase tickets given as counts per type")
+        void shouldPurchaseTicketsGivenAsCounts() {
+            ticketService.purchaseTickets(123L, 2, 2, 1);
+
+            verify(paymentService).makePayment(123L, 80);
+            verify(reservationService).reserveSeat(123L, 4);
+        }
+
+        @Test
+        @DisplayName("Should apply the same rules as the request based purchase")
+        void shouldApplySameRules() {
+            assertAll(
+                () -> assertThrows(InvalidPurchaseException.class, () -> ticketService.purchaseTickets(0L, 1, 0, 0)),
+                () -> assertThrows(InvalidPurchaseException.class, () -> ticketService.purchaseTickets(1L, 0, 0, 0)),
+                () -> assertThrows(InvalidPurchaseException.class, () -> ticketService.purchaseTickets(1L, 1, -1, 0)),
+                () -> assertThrows(InvalidPurchaseException.class, () -> ticketService.purchaseTickets(1L, 0, 1, 0)),
+                () -> assertThrows(InvalidPurchaseException.class, () -> ticketService.purchaseTickets(1L, 1, 0, 2))
+            );
+            verifyNoInteractions(paymentService, reservationService);
+        }
+
+        @Test
+        @DisplayName("Should fall back to the request based purchase for other TicketService implementations")
+        void shouldFallBackToRequestBasedPurchase() {
+            TicketService fallback = mock(TicketService.class, CALLS_REAL_METHODS);
+            doNothing().when(fallback).purchaseTickets(anyLong(), any(TicketTypeRequest[].class));
+
+            fallback.purchaseTickets(1L, 2, 0, 1);
+
+            verify(fallback).purchaseTickets(1L,
+                TicketTypeRequest.of(TicketTypeRequest.Type.ADULT, 2),
+                TicketTypeRequest.of(TicketTypeRequest.Type.INFANT, 1));
+        }
+    }
+
+    @Nested
+    @DisplayName("Account Serialisation Tests")
+    class AccountSerialisationTests {
+        @Test
+        @DisplayName("Should never interleave the payment and reservation of one account")
+        void shouldNotInterleaveSameAccount() throws Exception {
+            AtomicInteger inFlight = new AtomicInteger();
+            AtomicInteger maxInFlight = new AtomicInteger();
+            doAnswer(invocation -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                Thread.sleep(1);
+                return null;
+            }).when(paymentService).makePayment(anyLong(), anyInt());
+            doAnswer(invocation -> {
+                inFlight.decrementAndGet();
+                return null;
+            }).when(reservationService).reserveSeat(anyLong(), anyInt());
+
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<?>> purchases = new ArrayList<>();
+                for (int i = 0; i < 64; i++) {
+                    purchases.add(executor.submit(() -> ticketService.purchaseTickets(1L, 1, 0, 0)));
+                }
+                for (Future<?> purchase : purchases) {
+                    purchase.get(10, TimeUnit.SECONDS);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            assertEquals(1, maxInFlight.get());
+            verify(paymentService, times(64)).makePayment(1L, 25);
+        }
+
+        @Test
+        @DisplayName("Should run purchases of different accounts in parallel")
+        void shouldRunDifferentAccountsInParallel() throws Exception {
+            CountDownLatch bothPaying = new CountDownLatch(2);
+            doAnswer(invocation -> {
+                bothPaying.countDown();
+                assertTrue(bothPaying.await(10, TimeUnit.SECONDS), "Other account was blocked");
+                return null;
+            }).when(paymentService).makePayment(anyLong(), anyInt());
+
+            CompletableFuture<Void> first = CompletableFuture.runAsync(() -> ticketService.purchaseTickets(1L, 1, 0, 0));
+            CompletableFuture<Void> second = CompletableFuture.runAsync(() -> ticketService.purchaseTickets(2L, 1, 0, 0));
+
+            first.get(15, TimeUnit.SECONDS);
+            second.get(15, TimeUnit.SECONDS);
+            verify(reservationService).reserveSeat(1L, 1);
+            verify(reservationService).reserveSeat(2L, 1);
+        }
     }
 
+    @Nested
+    @DisplayName("Metrics Tests")
+    class MetricsTests {
+        @Test
+        @DisplayName("Should count accepted purchases with tickets and revenue by type")
+        void shouldCountAcceptedPurchases() {
+            ticketService.purchaseTickets(1L, 2, 1, 1);
+            ticketService.purchaseTickets(2L, 1, 0, 0);
+
+            PurchaseMetrics metrics = ((TicketServiceImpl) ticketService).getMetrics();
+            assertEquals(2, metrics.getAcceptedPurchases());
+            assertEquals(3, metrics.getTickets(TicketTypeRequest.Type.ADULT));
+            assertEquals(1, metrics.getTickets(TicketTypeRequest.Type.INFANT));
+            assertEquals(75, metrics.getRevenue(TicketTypeRequest.Type.ADULT));
+            assertEquals(15, metrics.getRevenue(TicketTypeRequest.Type.CHILD));
+            assertEquals(0, metrics.getRevenue(TicketTypeRequest.Type.INFANT));
+            for (PurchaseStage stage : PurchaseStage.values()) {
+                assertEquals(2, metrics.getStageLatency(stage).getCount(), stage.name());
+            }
+        }
 
-}
\ No newline at end of file
+        @Test
+        @DisplayName("Should count rejections by their message key")
+        void shouldCountRejectionsByMessageKey() {
+            assertThrows(InvalidPurchaseException.class, () -> ticketService.purchaseTickets(1L, 0, 1, 0));
+            assertThrows(InvalidPurchaseException.class, () -> ticketService.purchaseTickets(0L, 1, 0, 0));
+            assertThrows(InvalidPurchaseException.class, () -> ticketService.purchaseTickets(1L, 0, 2, 0));
+
+            PurchaseMetrics metrics = ((TicketServiceImpl) ticketService).getMetrics();
+            assertEquals(0, metrics.getAcceptedPurchases());
+            assertEquals(2, metrics.getRejectionsByReason().get(PurchaseOutcome.ADULT_REQUIRED.getMessageKey()));
+            assertEquals(1, metrics.getRejections(PurchaseOutcome.INVALID_ACCOUNT_ID));
+            assertEquals(3, metrics.getStageLatency(PurchaseStage.VALIDATION).getCount());
+            assertEquals(0, metrics.getStageLatency(PurchaseStage.PAYMENT).getCount());
+        }
+
+        @Test
+        @DisplayName("Should count a gateway error as a failed purchase")
+        void shouldCountGatewayErrorAsFailure() {
+            doThrow(new IllegalStateException("gateway down")).when(paymentService).makePayment(anyLong(), anyInt());
+
+            assertThrows(IllegalStateException.class, () -> ticketService.purchaseTickets(1L, 1, 0, 0));
+
+            PurchaseMetrics metrics = ((TicketServiceImpl) ticketService).getMetrics();
+            assertEquals(1, metrics.getFailedPurchases());
+            assertEquals(0, metrics.getAcceptedPurchases());
+        }
+    }
+
+    @Nested
+    @DisplayName("Purchase Listener Tests")
+    class PurchaseListenerTests {
+        private PurchaseListener listener;
+
+        @BeforeEach
+        void setUp() {
+            listener = mock(PurchaseListener.class);
+            ticketService = new TicketServiceImpl(paymentService, reservationService, TicketPricing.standard(), listener);
+        }
+
+        @Test
+        @DisplayName("Should report the payment before the reservation and then the completed purchase")
+        void shouldReportSettlementSteps() {
+            ticketService.purchaseTickets(1L, 2, 1, 1);
+
+            InOrder inOrder = inOrder(paymentService, listener, reservationService);
+            inOrder.verify(paymentService).makePayment(1L, 65);
+            inOrder.verify(listener).onPaymentTaken(anyLong(), eq(1L), eq(2), eq(1), eq(1), eq(65));
+            inOrder.verify(reservationService).reserveSeat(1L, 3);
+            inOrder.verify(listener).onPurchaseCompleted(anyLong(), eq(1L), eq(2), eq(1), eq(1), eq(65));
+        }
+
+        @Test
+        @DisplayName("Should give each purchase its own id, shared by all of its steps")
+        void shouldIdentifyPurchaseInEveryStep() {
+            ticketService.purchaseTickets(1L, 1, 0, 0);
+            ticketService.purchaseTickets(1L, 1, 0, 0);
+
+            ArgumentCaptor<Long> paid = ArgumentCaptor.forClass(Long.class);
+            ArgumentCaptor<Long> completed = ArgumentCaptor.forClass(Long.class);
+            verify(listener, times(2)).onPaymentTaken(paid.capture(), eq(1L), eq(1), eq(0), eq(0), eq(25));
+            verify(listener, times(2)).onPurchaseCompleted(completed.capture(), eq(1L), eq(1), eq(0), eq(0), eq(25));
+            assertEquals(paid.getAllValues(), completed.getAllValues());
+            assertNotEquals(paid.getAllValues().get(0), paid.getAllValues().get(1));
+        }
+
+        @Test
+        @DisplayName("Should report a reservation failure after payment")
+        void shouldReportFailureAfterPayment() {
+            doThrow(new IllegalStateException("booking down")).when(reservationService).reserveSeat(anyLong(), anyInt());
+
+            assertThrows(IllegalStateException.class, () -> ticketService.purchaseTickets(1L, 1, 0, 0));
+
+            verify(listener).onPaymentTaken(anyLong(), eq(1L), eq(1), eq(0), eq(0), eq(25));
+            verify(listener).onPurchaseFailed(anyLong(), eq(1L), eq(1), eq(0), eq(0), eq(25), isNull(), eq(false));
+            verify(listener, never()).onPurchaseCompleted(anyLong(), anyLong(), anyInt(), anyInt(), anyInt(), anyInt());
+        }
+
+        @Test
+        @DisplayName("Should refund the payment when the reservation fails")
+        void shouldRefundWhenReservationFails() {
+            RefundableTicketPaymentService refundable = mock(RefundableTicketPaymentService.class);
+            doThrow(InvalidPurchaseException.stackless(PurchaseOutcome.SEATS_UNAVAILABLE, "sold out"))
+                .when(reservationService).reserveSeat(anyLong(), anyInt());
+            TicketService service = new TicketServiceImpl(refundable, reservationService, TicketPricing.standard(), listener);
+
+            assertThrows(InvalidPurchaseException.class, () -> service.purchaseTickets(1L, 1, 0, 0));
+
+            verify(refundable).refundPayment(1L, 25);
+            verify(listener).onPurchaseFailed(anyLong(), eq(1L), eq(1), eq(0), eq(0), eq(25),
+                eq(PurchaseOutcome.SEATS_UNAVAILABLE), eq(true));
+        }
+
+        @Test
+        @DisplayName("Should report a payment that could not be refunded when the reservation fails")
+        void shouldReportFailedRefund() {
+            RefundableTicketPaymentService refundable = mock(RefundableTicketPaymentService.class);
+            doThrow(new IllegalStateException("booking down")).when(reservationService).reserveSeat(anyLong(), anyInt());
+            doThrow(new IllegalStateException("refunds down")).when(refundable).refundPayment(anyLong(), anyInt());
+            TicketService service = new TicketServiceImpl(refundable, reservationService, TicketPricing.standard(), listener);
+
+            IllegalStateException failure = assertThrows(IllegalStateException.class,
+                () -> service.purchaseTickets(1L, 1, 0, 0));
+
+            assertEquals("refunds down", failure.getSuppressed()[0].getMessage());
+            verify(listener).onPurchaseFailed(anyLong(), eq(1L), eq(1), eq(0), eq(0), eq(25), isNull(), eq(false));
+        }
+
+        @Test
+        @DisplayName("Should not report a purchase whose payment failed")
+        void shouldNotReportFailedPayment() {
+            doThrow(new IllegalStateException("gateway down")).when(paymentService).makePayment(anyLong(), anyInt());
+
+            assertThrows(IllegalStateException.class, () -> ticketService.purchaseTickets(1L, 1, 0, 0));
+
+            verifyNoInteractions(listener);
+        }
+
+        @Test
+        @DisplayName("Should report a refunded payment when the async reservation fails")
+        void shouldReportRefundedAsyncPurchase() {
+            RefundableTicketPaymentService refundable = mock(RefundableTicketPaymentService.class);
+            ReleasableSeatReservationService releasable = mock(ReleasableSeatReservationService.class);
+            doThrow(InvalidPurchaseException.stackless(PurchaseOutcome.SEATS_UNAVAILABLE, "sold out"))
+                .when(releasable).reserveSeat(anyLong(), anyInt());
+            TicketServiceImpl service = new TicketServiceImpl(refundable, releasable, TicketPricing.standard(), listener);
+
+            CompletableFuture<Void> purchase = service.purchaseTicketsAsync(1L, TicketTypeRequest.of(TicketTypeRequest.Type.ADULT, 1));
+
+            assertThrows(CompletionException.class, purchase::join);
+            verify(refundable).refundPayment(1L, 25);
+            verify(listener).onPaymentTaken(anyLong(), eq(1L), eq(1), eq(0), eq(0), eq(25));
+            verify(listener).onPurchaseFailed(anyLong(), eq(1L), eq(1), eq(0), eq(0), eq(25),
+                eq(PurchaseOutcome.SEATS_UNAVAILABLE), eq(true));
+        }
+
+        @Test
+        @DisplayName("Should complete the purchase without compensation when the listener fails")
+        void shouldIgnoreListenerFailures() {
+            doThrow(new IllegalStateException("journal full")).when(listener)
+                .onPaymentTaken(anyLong(), anyLong(), anyInt(), anyInt(), anyInt(), anyInt());
+            doThrow(new IllegalStateException("journal full")).when(listener)
+                .onPurchaseCompleted(anyLong(), anyLong(), anyInt(), anyInt(), anyInt(), anyInt());
+
+            assertDoesNotThrow(() -> ticketService.purchaseTickets(1L, 1, 0, 0));
+
+            verify(reservationService).reserveSeat(1L, 1);
+            verify(listener, never()).onPurchaseFailed(anyLong(), anyLong(), anyInt(), anyInt(), anyInt(), anyInt(),
+                any(), anyBoolean());
+            assertEquals(1, ((TicketServiceImpl) ticketService).getMetrics().getAcceptedPurchases());
+        }
+
+        @Test
+        @DisplayName("Should not refund an async purchase when the listener fails")
+        void shouldIgnoreListenerFailuresAsync() {
+            RefundableTicketPaymentService refundable = mock(RefundableTicketPaymentService.class);
+            ReleasableSeatReservationService releasable = mock(ReleasableSeatReservationService.class);
+            doThrow(new IllegalStateException("journal full")).when(listener)
+                .onPaymentTaken(anyLong(), anyLong(), anyInt(), anyInt(), anyInt(), anyInt());
+            doThrow(new IllegalStateException("journal full")).when(listener)
+                .onPurchaseCompleted(anyLong(), anyLong(), anyInt(), anyInt(), anyInt(), anyInt());
+            TicketServiceImpl service = new TicketServiceImpl(refundable, releasable, TicketPricing.standard(), listener);
+
+            service.purchaseTicketsAsync(1L, TicketTypeRequest.of(TicketTypeRequest.Type.ADULT, 1)).join();
+
+            verify(refundable, never()).refundPayment(anyLong(), anyInt());
+            verify(releasable, never()).releaseSeat(anyLong(), anyInt());
+        }
+
+        @Test
+        @DisplayName("Should pass every call to each of several listeners even when one fails")
+        void shouldNotifyEveryListener() {
+            PurchaseListener failing = mock(PurchaseListener.class);
+            doThrow(new IllegalStateException("journal full")).when(failing)
+                .onPurchaseCompleted(anyLong(), anyLong(), anyInt(), anyInt(), anyInt(), anyInt());
+            PurchaseListener all = PurchaseListener.all(failing, listener);
+
+            IllegalStateException failure = assertThrows(IllegalStateException.class,
+                () -> all.onPurchaseCompleted(7L, 1L, 1, 0, 0, 25));
+
+            assertEquals("journal full", failure.getMessage());
+            verify(listener).onPurchaseCompleted(7L, 1L, 1, 0, 0, 25);
+        }
+    }
+
+    @Nested
+    @DisplayName("Seat Hold Tests")
+    class SeatHoldTests {
+        private RefundableTicketPaymentService refundable;
+        private SeatHoldService seatHolds;
+        private PurchaseListener listener;
+        private TicketServiceImpl service;
+
+        @BeforeEach
+        void setUp() {
+            refundable = mock(RefundableTicketPaymentService.class);
+            seatHolds = mock(SeatHoldService.class);
+            listener = mock(PurchaseListener.class);
+            when(seatHolds.holdSeats(anyLong(), anyInt())).thenReturn(7L);
+            service = new TicketServiceImpl(refundable, seatHolds, TicketPricing.standard(), listener);
+        }
+
+        @Test
+        @DisplayName("Should hold the seats, take the payment and then confirm the hold")
+        void shouldHoldPayAndConfirm() {
+            service.purchaseTickets(1L, 2, 1, 1);
+
+            InOrder inOrder = inOrder(seatHolds, refundable, listener);
+            inOrder.verify(seatHolds).holdSeats(1L, 3);
+            inOrder.verify(refundable).makePayment(1L, 65);
+            inOrder.verify(listener).onPaymentTaken(anyLong(), eq(1L), eq(2), eq(1), eq(1), eq(65));
+            inOrder.verify(seatHolds).confirmHold(7L);
+            inOrder.verify(listener).onPurchaseCompleted(anyLong(), eq(1L), eq(2), eq(1), eq(1), eq(65));
+            verify(seatHolds, never()).reserveSeat(anyLong(), anyInt());
+            verify(seatHolds, never()).releaseHold(anyLong());
+        }
+
+        @Test
+        @DisplayName("Should not take the payment when the screening is sold out")
+        void shouldNotChargeSoldOutScreening() {
+            when(seatHolds.holdSeats(anyLong(), anyInt()))
+                .thenThrow(InvalidPurchaseException.stackless(PurchaseOutcome.SEATS_UNAVAILABLE, "sold out"));
+
+            InvalidPurchaseException exception = assertThrows(InvalidPurchaseException.class,
+                () -> service.purchaseTickets(1L, 1, 0, 0));
+
+            assertEquals(PurchaseOutcome.SEATS_UNAVAILABLE, exception.getOutcome());
+            verifyNoInteractions(refundable, listener);
+            assertEquals(1, service.getMetrics().getRejections(PurchaseOutcome.SEATS_UNAVAILABLE));
+        }
+
+        @Test
+        @DisplayName("Should release the hold when the payment fails")
+        void shouldReleaseHoldWhenPaymentFails() {
+            doThrow(new IllegalStateException("gateway down")).when(refundable).makePayment(anyLong(), anyInt());
+
+            assertThrows(IllegalStateException.class, () -> service.purchaseTickets(1L, 1, 0, 0));
+
+            verify(seatHolds).releaseHold(7L);
+            verify(seatHolds, never()).confirmHold(anyLong());
+            verify(refundable, never()).refundPayment(anyLong(), anyInt());
+            verifyNoInteractions(listener);
+        }
+
+        @Test
+        @DisplayName("Should refund the payment when the hold expired before it was confirmed")
+        void shouldRefundWhenHoldExpired() {
+            doThrow(InvalidPurchaseException.stackless(PurchaseOutcome.HOLD_EXPIRED, "expired"))
+                .when(seatHolds).confirmHold(7L);
+
+            InvalidPurchaseException exception = assertThrows(InvalidPurchaseException.class,
+                () -> service.purchaseTickets(1L, 1, 0, 0));
+
+            assertEquals(PurchaseOutcome.HOLD_EXPIRED, exception.getOutcome());
+            verify(refundable).refundPayment(1L, 25);
+            verify(listener).onPurchaseFailed(anyLong(), eq(1L), eq(1), eq(0), eq(0), eq(25),
+                eq(PurchaseOutcome.HOLD_EXPIRED), eq(true));
+        }
+
+        @Test
+        @DisplayName("Should hold before paying on the async path too")
+        void shouldHoldBeforePayingAsync() {
+            service.purchaseTicketsAsync(1L, TicketTypeRequest.of(TicketTypeRequest.Type.ADULT, 2)).join();
+
+            InOrder inOrder = inOrder(seatHolds, refundable);
+            inOrder.verify(seatHolds).holdSeats(1L, 2);
+            inOrder.verify(refundable).makePayment(1L, 50);
+            inOrder.verify(seatHolds).confirmHold(7L);
+        }
+    }
+
+    @Nested
+    @DisplayName("Purchase Limit Tests")
+    class PurchaseLimitTests {
+        private TicketServiceImpl service;
+
+        @BeforeEach
+        void setUp() {
+            PurchaseLimiter limiter = PurchaseLimiter.of(new SlidingWindowLimit(4, Duration.ofHours(1)));
+            service = new TicketServiceImpl(paymentService, reservationService, TicketPricing.standard(),
+                PurchaseListener.NONE, limiter);
+        }
+
+        @Test
+        @DisplayName("Should reject a purchase over the account's limit without taking the payment")
+        void shouldRejectPurchaseOverLimit() {
+            service.purchaseTickets(1L, 2, 1, 0);
+
+            InvalidPurchaseException exception = assertThrows(InvalidPurchaseException.class,
+                () -> service.purchaseTickets(1L, 2, 0, 0));
+
+            assertEquals(PurchaseOutcome.PURCHASE_LIMIT_EXCEEDED, exception.getOutcome());
+            verify(paymentService, times(1)).makePayment(anyLong(), anyInt());
+            assertEquals(1, service.getMetrics().getRejections(PurchaseOutcome.PURCHASE_LIMIT_EXCEEDED));
+            // Other accounts have limits of their own
+            service.purchaseTickets(2L, 4, 0, 0);
+        }
+
+        @Test
+        @DisplayName("Should not count a purchase that breaks the ticket rules against the limit")
+        void shouldNotCountRejectedPurchase() {
+            InvalidPurchaseException exception = assertThrows(InvalidPurchaseException.class,
+                () -> service.purchaseTickets(1L, 0, 4, 0));
+
+            assertEquals(PurchaseOutcome.ADULT_REQUIRED, exception.getOutcome());
+            service.purchaseTickets(1L, 4, 0, 0);
+        }
+
+        @Test
+        @DisplayName("Should give the tickets back to the limit when the purchase fails")
+        void shouldReleaseLimitWhenPurchaseFails() {
+            doThrow(new IllegalStateException("gateway down")).doNothing()
+                .when(paymentService).makePayment(anyLong(), anyInt());
+
+            assertThrows(IllegalStateException.class, () -> service.purchaseTickets(1L, 4, 0, 0));
+            service.purchaseTickets(1L, 4, 0, 0);
+
+            verify(reservationService).reserveSeat(1L, 4);
+        }
+
+        @Test
+        @DisplayName("Should apply the limit on the async path too")
+        void shouldLimitAsyncPurchases() {
+            service.purchaseTicketsAsync(1L, TicketTypeRequest.of(TicketTypeRequest.Type.ADULT, 3)).join();
+
+            CompletionException exception = assertThrows(CompletionException.class,
+                () -> service.purchaseTicketsAsync(1L, TicketTypeRequest.of(TicketTypeRequest.Type.ADULT, 2)).join());
+
+            assertEquals(PurchaseOutcome.PURCHASE_LIMIT_EXCEEDED,
+                ((InvalidPurchaseException) exception.getCause()).getOutcome());
+            verify(paymentService, times(1)).makePayment(anyLong(), anyInt());
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package uk.gov.dwp.uc.pairtest.bulk;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.util.TicketingConfig;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BulkPurchaseImporterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private TicketPaymentService paymentService;
+    private SeatReservationService reservationService;
+    private BulkPurchaseImporter importer;
+
+    @BeforeEach
+    void setUp() {
+        paymentService = mock(TicketPaymentService.class);
+        reservationService = mock(SeatReservationService.class);
+        importer = new BulkPurchaseImporter(new TicketServiceImpl(paymentService, reservationService), 4);
+    }
+
+    @Nested
+    @DisplayName("CSV Tests")
+    class CsvTests {
+        @Test
+        @DisplayName("Should purchase every valid row and report each row's outcome")
+        void shouldImportCsv() throws IOException {
+            Path orders = tempDir.resolve("orders.csv");
+            Files.writeString(orders, """
+                accountId,adults,children,infants
+                1,2,1,1
+                2,0,1,0
+
+                3,one,0,0
+                4, 1 ,0,0\r
+                5,1,0""");
+            Path results = tempDir.resolve("results.csv");
+
+            BulkImportSummary summary = importer.importFile(orders, results);
+
+            assertEquals(2, summary.getAccepted());
+            assertEquals(1, summary.getRejected());
+            assertEquals(2, summary.getInvalid());
+            assertEquals(5, summary.getRows());
+            verify(paymentService).makePayment(1L, 65);
+            verify(paymentService).makePayment(4L, 25);
+            verify(reservationService).reserveSeat(1L, 3);
+
+            Map<Long, String> byRow = resultsByRow(results);
+            assertEquals("2,1,ACCEPTED,", byRow.get(2L));
+            assertEquals("3,2,ADULT_REQUIRED,At least one adult ticket must be purchased", byRow.get(3L));
+            assertEquals("5,,INVALID_ROW,Malformed order", byRow.get(5L));
+            assertEquals("6,4,ACCEPTED,", byRow.get(6L));
+            assertEquals("7,,INVALID_ROW,Malformed order", byRow.get(7L));
+        }
+
+        @Test
+        @DisplayName("Should report a gateway error as a failed row without stopping the import")
+        void shouldReportGatewayErrors() throws IOException {
+            doThrow(new IllegalStateException("gateway down, retry")).when(paymentService).makePayment(eq(2L), anyInt());
+            Path orders = tempDir.resolve("orders.csv");
+            Files.writeString(orders, "1,1,0,0\n2,1,0,0\n3,1,0,0\n");
+            Path results = tempDir.resolve("results.csv");
+
+            BulkImportSummary summary = importer.importFile(orders, results);
+
+            assertEquals(2, summary.getAccepted());
+            assertEquals(1, summary.getFailed());
+            assertEquals("2,2,FAILED,\"gateway down, retry\"", resultsByRow(results).get(2L));
+        }
+
+        @Test
+        @DisplayName("Should report the ticket limit in force when the configuration is reloaded")
+        void shouldReportReloadedLimit() throws IOException {
+            Path orders = tempDir.resolve("orders.csv");
+            Files.writeString(orders, "1,31,0,0\n");
+            Path results = tempDir.resolve("results.csv");
+            importer.importFile(orders, results);
+            assertEquals("1,1,MAX_TICKETS_EXCEEDED,Cannot purchase more than 25 tickets", resultsByRow(results).get(1L));
+
+            Path overrideFile = tempDir.resolve("ticketing.properties");
+            Files.writeString(overrideFile, "max.tickets=30\n");
+            System.setProperty(TicketingConfig.OVERRIDE_FILE_PROPERTY, overrideFile.toString());
+            try {
+                TicketingConfig.reload();
+                importer.importFile(orders, results);
+                assertEquals("1,1,MAX_TICKETS_EXCEEDED,Cannot purchase more than 30 tickets",
+                    resultsByRow(results).get(1L));
+            } finally {
+                System.clearProperty(TicketingConfig.OVERRIDE_FILE_PROPERTY);
+                TicketingConfig.reload();
+            }
+        }
+
+        @Test
+        @DisplayName("Should stream a large file across buffer boundaries, keeping each account's rows in order")
+        void shouldStreamLargeFile() throws IOException {
+            Map<Long, List<Integer>> amountsByAccount = new ConcurrentHashMap<>();
+            LongAdder seats = new LongAdder();
+            TicketPaymentService recordingPayments = (accountId, amount) ->
+                amountsByAccount.computeIfAbsent(accountId, id -> new CopyOnWriteArrayList<>()).add(amount);
+            SeatReservationService countingSeats = (accountId, count) -> seats.add(count);
+            BulkPurchaseImporter streaming = new BulkPurchaseImporter(
+                new TicketServiceImpl(recordingPayments, countingSeats), 8);
+
+            Path orders = tempDir.resolve("orders.csv");
+            int rows = 200_000;
+            try (BufferedWriter writer = Files.newBufferedWriter(orders)) {
+                for (int row = 0; row < rows; row++) {
+                    // every account buys 1, 2, 3, ... adult tickets in turn
+                    writer.write((row % 1000 + 1) + "," + (row / 1000 % 10 + 1) + ",0,0\n");
+                }
+            }
+
+            BulkImportSummary summary = streaming.importFile(orders, tempDir.resolve("results.csv"));
+
+            assertEquals(rows, summary.getAccepted());
+            assertEquals(1000, amountsByAccount.size());
+            for (List<Integer> amounts : amountsByAccount.values()) {
+                for (int i = 0; i < amounts.size(); i++) {
+                    assertEquals((i % 10 + 1) * 25, amounts.get(i));
+                }
+            }
+            assertEquals(rows + 1, Files.readAllLines(tempDir.resolve("results.csv")).size());
+        }
+    }
+
+    @Nested
+    @DisplayName("NDJSON Tests")
+    class NdjsonTests {
+        @Test
+        @DisplayName("Should purchase NDJSON orders, ignoring unknown members")
+        void shouldImportNdjson() throws IOException {
+            Path orders = tempDir.resolve("orders.ndjson");
+            Files.writeString(orders, """
+                {"accountId": 1, "adults": 2, "children": 1, "channel": "partner-a"}
+                {"accountId":2,"infants":1}
+                {"adults":1}
+                {"accountId":3,"adults":1,"meta":{"nested":true}}
+                {"accountId":4,"adults":1,"note":"quote \\" inside","vip":false}
+                """);
+            Path results = tempDir.resolve("results.csv");
+
+            BulkImportSummary summary = importer.importFile(orders, results);
+
+            assertEquals(2, summary.getAccepted());
+            assertEquals(1, summary.getRejected());
+            assertEquals(2, summary.getInvalid());
+            verify(paymentService).makePayment(1L, 65);
+            verify(paymentService).makePayment(4L, 25);
+            assertEquals("2,2,ADULT_REQUIRED,At least one adult ticket must be purchased", resultsByRow(results).get(2L));
+        }
+
+        @Test
+        @DisplayName("Should reject a file with an unknown extension")
+        void shouldRejectUnknownExtension() {
+            assertThrows(IllegalArgumentException.class, () -> BulkFormat.fromFileName(tempDir.resolve("orders.xml")));
+            assertEquals(BulkFormat.NDJSON, BulkFormat.fromFileName(tempDir.resolve("ORDERS.JSONL")));
+        }
+    }
+
+    private static Map<Long, String> resultsByRow(Path results) throws IOException {
+        List<String> lines = Files.readAllLines(results);
+        assertEquals("row,accountId,outcome,message", lines.get(0));
+        Map<Long, String> byRow = new HashMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            byRow.put(Long.parseLong(line.substring(0, line.indexOf(','))), line);
+        }
+        return Collections.unmodifiableMap(byRow);
+    }
+}
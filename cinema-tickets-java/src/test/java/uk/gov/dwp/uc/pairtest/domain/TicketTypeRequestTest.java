@@ -0,0 +1,38 @@
+package uk.gov.dwp.uc.pairtest.domain;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TicketTypeRequestTest {
+
+    @Test
+    @DisplayName("Should reuse cached instances for counts up to the cached maximum")
+    void shouldReuseCachedInstances() {
+        int max = TicketTypeRequest.MAX_CACHED_TICKETS;
+        for (TicketTypeRequest.Type type : TicketTypeRequest.Type.values()) {
+            assertSame(TicketTypeRequest.of(type, 1), TicketTypeRequest.of(type, 1));
+            assertSame(TicketTypeRequest.of(type, max), TicketTypeRequest.of(type, max));
+            assertEquals(type, TicketTypeRequest.of(type, max).getTicketType());
+            assertEquals(max, TicketTypeRequest.of(type, max).getNoOfTickets());
+        }
+    }
+
+    @Test
+    @DisplayName("Should create new instances for counts outside the cached range")
+    void shouldCreateInstancesOutsideCachedRange() {
+        int beyondMax = TicketTypeRequest.MAX_CACHED_TICKETS + 1;
+        TicketTypeRequest request = TicketTypeRequest.of(TicketTypeRequest.Type.ADULT, beyondMax);
+
+        assertNotSame(request, TicketTypeRequest.of(TicketTypeRequest.Type.ADULT, beyondMax));
+        assertEquals(beyondMax, request.getNoOfTickets());
+        assertEquals(0, TicketTypeRequest.of(TicketTypeRequest.Type.CHILD, 0).getNoOfTickets());
+    }
+
+    @Test
+    @DisplayName("Should reject a null type")
+    void shouldRejectNullType() {
+        assertThrows(IllegalArgumentException.class, () -> TicketTypeRequest.of(null, 1));
+    }
+}
@@ -0,0 +1,419 @@
+package uk.gov.dwp.uc.pairtest.engine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import thirdparty.paymentgateway.TicketPaymentService;
+import thirdparty.seatbooking.SeatReservationService;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.exception.RefundFailedException;
+import uk.gov.dwp.uc.pairtest.inventory.SeatInventory;
+import uk.gov.dwp.uc.pairtest.limits.PurchaseLimiter;
+import uk.gov.dwp.uc.pairtest.limits.SlidingWindowLimit;
+import uk.gov.dwp.uc.pairtest.pricing.TicketPricing;
+import uk.gov.dwp.uc.pairtest.spi.BatchTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.spi.PurchaseListener;
+import uk.gov.dwp.uc.pairtest.spi.RefundableTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.spi.SeatHoldService;
+import uk.gov.dwp.uc.pairtest.standin.SimulatedLatency;
+import uk.gov.dwp.uc.pairtest.standin.StandInSeatReservationService;
+import uk.gov.dwp.uc.pairtest.standin.StandInTicketPaymentService;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PurchaseEngineTest {
+
+    private PurchaseEngine engine;
+
+    @AfterEach
+    void tearDown() {
+        if (engine != null) {
+            engine.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Should settle a valid purchase and reject one that breaks the rules")
+    void shouldSettleAndReject() {
+        TicketPaymentService payment = mock(TicketPaymentService.class);
+        SeatReservationService seats = mock(SeatReservationService.class);
+        engine = new PurchaseEngine(payment, seats, TicketPricing.standard(), 2, 16, 8);
+
+        engine.purchaseTickets(1L, TicketTypeRequest.of(TicketTypeRequest.Type.ADULT, 2),
+            TicketTypeRequest.of(TicketTypeRequest.Type.CHILD, 1), TicketTypeRequest.of(TicketTypeRequest.Type.INFANT, 1));
+        InvalidPurchaseException exception = assertThrows(InvalidPurchaseException.class,
+            () -> engine.purchaseTickets(2L, 0, 1, 0));
+
+        verify(payment).makePayment(1L, 65);
+        verify(seats).reserveSeat(1L, 3);
+        assertEquals(PurchaseOutcome.ADULT_REQUIRED, exception.getOutcome());
+        verifyNoMoreInteractions(payment, seats);
+    }
+
+    @Test
+    @DisplayName("Should report each result with its tag to the callback")
+    void shouldReportResultsToCallback() throws Exception {
+        engine = new PurchaseEngine(new StandInTicketPaymentService(), new StandInSeatReservationService(),
+            TicketPricing.standard(), 2, 16, 8);
+        CountDownLatch settled = new CountDownLatch(3);
+        PurchaseOutcome[] outcomes = new PurchaseOutcome[3];
+        PurchaseCallback callback = (accountId, tag, outcome, failure) -> {
+            outcomes[(int) tag] = outcome;
+            settled.countDown();
+        };
+
+        engine.submit(1L, 1, 0, 0, 0, callback);
+        engine.submit(2L, 1, 0, 2, 1, callback);
+        engine.submit(0L, 1, 0, 0, 2, callback);
+
+        assertTrue(settled.await(5, TimeUnit.SECONDS));
+        assertArrayEquals(new PurchaseOutcome[] {PurchaseOutcome.ACCEPTED, PurchaseOutcome.INFANT_EXCEEDS_ADULT,
+            PurchaseOutcome.INVALID_ACCOUNT_ID}, outcomes);
+    }
+
+    @Test
+    @DisplayName("Should settle many purchases in batched payments, in order per account")
+    void shouldBatchPaymentsInAccountOrder() {
+        RecordingBatchGateway gateway = new RecordingBatchGateway();
+        engine = new PurchaseEngine(gateway, new StandInSeatReservationService(), TicketPricing.standard(), 4, 64, 32);
+
+        int accounts = 16;
+        int perAccount = 200;
+        List<CompletableFuture<Void>> purchases = new ArrayList<>();
+        for (int n = 1; n <= perAccount; n++) {
+            for (long account = 1; account <= accounts; account++) {
+                // Amounts grow with n, so the order of an account's payments is visible
+                purchases.add(engine.purchaseAsync(account, n % 20 + 1, 0, 0));
+            }
+        }
+        CompletableFuture.allOf(purchases.toArray(new CompletableFuture[0])).join();
+
+        assertEquals(accounts * perAccount, gateway.payments.get());
+        assertTrue(gateway.batches.get() < accounts * perAccount, "payments were not batched");
+        for (long account = 1; account <= accounts; account++) {
+            List<Integer> amounts = gateway.amountsByAccount.get(account);
+            for (int n = 1; n <= perAccount; n++) {
+                assertEquals((n % 20 + 1) * 25, amounts.get(n - 1));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should fail the whole batch when a batched payment fails")
+    void shouldFailBatchWhenPaymentFails() {
+        BatchTicketPaymentService gateway = mock(BatchTicketPaymentService.class);
+        doThrow(new IllegalStateException("gateway down")).when(gateway).makePayments(any(), any(), any(), anyInt());
+        doThrow(new IllegalStateException("gateway down")).when(gateway).makePayment(anyLong(), anyInt());
+        SeatReservationService seats = mock(SeatReservationService.class);
+        engine = new PurchaseEngine(gateway, seats, TicketPricing.standard(), 1, 16, 8);
+
+        List<CompletableFuture<Void>> purchases = new ArrayList<>();
+        for (long account = 1; account <= 10; account++) {
+            purchases.add(engine.purchaseAsync(account, 1, 0, 0));
+        }
+
+        for (CompletableFuture<Void> purchase : purchases) {
+            CompletionException exception = assertThrows(CompletionException.class, purchase::join);
+            assertInstanceOf(IllegalStateException.class, exception.getCause());
+        }
+        verifyNoInteractions(seats);
+    }
+
+    @Test
+    @DisplayName("Should fail only the purchases whose batched payment was declined")
+    void shouldFailOnlyDeclinedPayments() {
+        RecordingBatchGateway gateway = new RecordingBatchGateway();
+        gateway.declinedAccountId = 3L;
+        SeatReservationService seats = mock(SeatReservationService.class);
+        engine = new PurchaseEngine(gateway, seats, TicketPricing.standard(), 1, 16, 8);
+
+        List<CompletableFuture<Void>> purchases = new ArrayList<>();
+        for (long account = 1; account <= 5; account++) {
+            purchases.add(engine.purchaseAsync(account, 1, 0, 0));
+        }
+
+        for (int i = 0; i < purchases.size(); i++) {
+            if (i == 2) {
+                assertThrows(CompletionException.class, purchases.get(i)::join);
+            } else {
+                purchases.get(i).join();
+            }
+        }
+        assertEquals(4, gateway.payments.get());
+        verify(seats, never()).reserveSeat(eq(3L), anyInt());
+        verify(seats, times(4)).reserveSeat(anyLong(), eq(1));
+    }
+
+    @Test
+    @DisplayName("Should charge only the purchases whose seats were held and never oversell")
+    void shouldNotChargeSoldOutPurchases() {
+        RefundableTicketPaymentService payment = mock(RefundableTicketPaymentService.class);
+        SeatInventory inventory = new SeatInventory();
+        inventory.addScreening("s1", 10);
+        engine = new PurchaseEngine(payment, inventory.forScreening("s1"), TicketPricing.standard(), 2, 16, 8);
+
+        List<CompletableFuture<Void>> purchases = new ArrayList<>();
+        for (long account = 1; account <= 8; account++) {
+            purchases.add(engine.purchaseAsync(account, 2, 0, 0));
+        }
+
+        int accepted = 0;
+        for (CompletableFuture<Void> purchase : purchases) {
+            try {
+                purchase.join();
+                accepted++;
+            } catch (CompletionException e) {
+                assertEquals(PurchaseOutcome.SEATS_UNAVAILABLE, ((InvalidPurchaseException) e.getCause()).getOutcome());
+            }
+        }
+        assertEquals(5, accepted);
+        assertEquals(0, inventory.getRemaining("s1"));
+        verify(payment, times(5)).makePayment(anyLong(), eq(50));
+        verify(payment, never()).refundPayment(anyLong(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should report a refund that failed after the seats sold out")
+    void shouldReportFailedRefund() {
+        RefundableTicketPaymentService payment = mock(RefundableTicketPaymentService.class);
+        doThrow(new IllegalStateException("refunds down")).when(payment).refundPayment(anyLong(), anyInt());
+        SeatReservationService seats = mock(SeatReservationService.class);
+        doThrow(InvalidPurchaseException.stackless(PurchaseOutcome.SEATS_UNAVAILABLE, "sold out"))
+            .when(seats).reserveSeat(anyLong(), anyInt());
+        PurchaseListener listener = mock(PurchaseListener.class);
+        engine = new PurchaseEngine(payment, seats, TicketPricing.standard(), listener, 1, 16, 8);
+
+        CompletionException exception = assertThrows(CompletionException.class,
+            () -> engine.purchaseAsync(1L, 1, 0, 0).join());
+
+        RefundFailedException failure = assertInstanceOf(RefundFailedException.class, exception.getCause());
+        assertEquals(PurchaseOutcome.SEATS_UNAVAILABLE, failure.getOutcome());
+        assertEquals("refunds down", failure.getCause().getMessage());
+        verify(listener).onPaymentTaken(anyLong(), eq(1L), eq(1), eq(0), eq(0), eq(25));
+        verify(listener).onPurchaseFailed(anyLong(), eq(1L), eq(1), eq(0), eq(0), eq(25),
+            eq(PurchaseOutcome.SEATS_UNAVAILABLE), eq(false));
+    }
+
+    @Test
+    @DisplayName("Should report every settlement step to the listener")
+    void shouldReportSettlementSteps() {
+        RefundableTicketPaymentService payment = mock(RefundableTicketPaymentService.class);
+        SeatInventory inventory = new SeatInventory();
+        inventory.addScreening("s1", 2);
+        PurchaseListener listener = mock(PurchaseListener.class);
+        doThrow(new IllegalStateException("journal full")).when(listener)
+            .onPurchaseCompleted(anyLong(), anyLong(), anyInt(), anyInt(), anyInt(), anyInt());
+        engine = new PurchaseEngine(payment, inventory.forScreening("s1"), TicketPricing.standard(), listener, 1, 16, 8);
+
+        engine.purchaseTickets(1L, 2, 0, 0);
+        assertThrows(InvalidPurchaseException.class, () -> engine.purchaseTickets(2L, 1, 0, 0));
+
+        InOrder inOrder = inOrder(listener);
+        inOrder.verify(listener).onPaymentTaken(anyLong(), eq(1L), eq(2), eq(0), eq(0), eq(50));
+        inOrder.verify(listener).onPurchaseCompleted(anyLong(), eq(1L), eq(2), eq(0), eq(0), eq(50));
+        // Sold out before it was paid for, so there is nothing to report
+        verifyNoMoreInteractions(listener);
+    }
+
+    @Test
+    @DisplayName("Should hold the seats before taking the payment and confirm the hold after")
+    void shouldHoldPayAndConfirm() {
+        TicketPaymentService payment = mock(TicketPaymentService.class);
+        SeatHoldService seats = mock(SeatHoldService.class);
+        when(seats.holdSeats(1L, 3)).thenReturn(42L);
+        engine = new PurchaseEngine(payment, seats, TicketPricing.standard(), 1, 16, 8);
+
+        engine.purchaseTickets(1L, 2, 1, 0);
+
+        InOrder inOrder = inOrder(seats, payment);
+        inOrder.verify(seats).holdSeats(1L, 3);
+        inOrder.verify(payment).makePayment(1L, 65);
+        inOrder.verify(seats).confirmHold(42L);
+        verify(seats, never()).reserveSeat(anyLong(), anyInt());
+        verify(seats, never()).releaseHold(anyLong());
+    }
+
+    @Test
+    @DisplayName("Should release the hold when the payment fails, and refund when the hold expired")
+    void shouldCompensateHeldPurchases() {
+        RefundableTicketPaymentService payment = mock(RefundableTicketPaymentService.class);
+        doThrow(new IllegalStateException("gateway down")).when(payment).makePayment(1L, 25);
+        SeatHoldService seats = mock(SeatHoldService.class);
+        when(seats.holdSeats(1L, 1)).thenReturn(41L);
+        when(seats.holdSeats(2L, 1)).thenReturn(42L);
+        doThrow(InvalidPurchaseException.stackless(PurchaseOutcome.HOLD_EXPIRED, "expired")).when(seats).confirmHold(42L);
+        engine = new PurchaseEngine(payment, seats, TicketPricing.standard(), 1, 16, 8);
+
+        assertThrows(IllegalStateException.class, () -> engine.purchaseTickets(1L, 1, 0, 0));
+        InvalidPurchaseException expired = assertThrows(InvalidPurchaseException.class,
+            () -> engine.purchaseTickets(2L, 1, 0, 0));
+
+        assertEquals(PurchaseOutcome.HOLD_EXPIRED, expired.getOutcome());
+        verify(seats).releaseHold(41L);
+        verify(payment, never()).refundPayment(eq(1L), anyInt());
+        verify(payment).refundPayment(2L, 25);
+    }
+
+    @Test
+    @DisplayName("Should reject a purchase over the account's limit and give back the tickets of a failed one")
+    void shouldApplyPurchaseLimits() {
+        TicketPaymentService payment = mock(TicketPaymentService.class);
+        doThrow(new IllegalStateException("gateway down")).doNothing().when(payment).makePayment(anyLong(), anyInt());
+        SeatReservationService seats = mock(SeatReservationService.class);
+        PurchaseLimiter limiter = PurchaseLimiter.of(new SlidingWindowLimit(4, Duration.ofHours(1)));
+        engine = new PurchaseEngine(payment, seats, TicketPricing.standard(), PurchaseListener.NONE, limiter, 1, 16, 8);
+
+        assertThrows(IllegalStateException.class, () -> engine.purchaseTickets(1L, 4, 0, 0));
+        engine.purchaseTickets(1L, 3, 0, 0);
+        InvalidPurchaseException exception = assertThrows(InvalidPurchaseException.class,
+            () -> engine.purchaseTickets(1L, 2, 0, 0));
+
+        assertEquals(PurchaseOutcome.PURCHASE_LIMIT_EXCEEDED, exception.getOutcome());
+        verify(payment, times(2)).makePayment(anyLong(), anyInt());
+        verify(seats).reserveSeat(1L, 3);
+        // Other accounts have limits of their own
+        engine.purchaseTickets(2L, 4, 0, 0);
+    }
+
+    @Test
+    @DisplayName("Should settle one purchase of an account before paying its next one queued behind it")
+    void shouldReportStepsInOrderPerAccount() throws Exception {
+        CountDownLatch paying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TicketPaymentService payment = mock(TicketPaymentService.class);
+        doAnswer(invocation -> {
+            paying.countDown();
+            release.await();
+            return null;
+        }).when(payment).makePayment(eq(9L), anyInt());
+        PurchaseListener listener = mock(PurchaseListener.class);
+        engine = new PurchaseEngine(payment, new StandInSeatReservationService(), TicketPricing.standard(), listener,
+            1, 16, 8);
+
+        // Holds the worker, so both purchases of account 1 are published when it next takes a batch
+        CompletableFuture<Void> blocker = engine.purchaseAsync(9L, 1, 0, 0);
+        assertTrue(paying.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Void> first = engine.purchaseAsync(1L, 1, 0, 0);
+        CompletableFuture<Void> second = engine.purchaseAsync(1L, 2, 0, 0);
+        release.countDown();
+        CompletableFuture.allOf(blocker, first, second).join();
+
+        InOrder inOrder = inOrder(listener);
+        inOrder.verify(listener).onPaymentTaken(anyLong(), eq(1L), eq(1), eq(0), eq(0), eq(25));
+        inOrder.verify(listener).onPurchaseCompleted(anyLong(), eq(1L), eq(1), eq(0), eq(0), eq(25));
+        inOrder.verify(listener).onPaymentTaken(anyLong(), eq(1L), eq(2), eq(0), eq(0), eq(50));
+        inOrder.verify(listener).onPurchaseCompleted(anyLong(), eq(1L), eq(2), eq(0), eq(0), eq(50));
+    }
+
+    @Test
+    @DisplayName("Should settle the submitted purchases on close and refuse new ones")
+    void shouldDrainOnClose() {
+        AtomicInteger settled = new AtomicInteger();
+        engine = new PurchaseEngine(new StandInTicketPaymentService(), new StandInSeatReservationService(),
+            TicketPricing.standard(), 2, 8, 4);
+
+        for (long account = 1; account <= 100; account++) {
+            engine.submit(account, 1, 0, 0, account, (accountId, tag, outcome, failure) -> settled.incrementAndGet());
+        }
+        engine.close();
+
+        assertEquals(100, settled.get());
+        assertThrows(IllegalStateException.class, () -> engine.submit(1L, 1, 0, 0, 0, (a, t, o, f) -> { }));
+        assertThrows(IllegalArgumentException.class, () -> new PurchaseEngine(new StandInTicketPaymentService(),
+            new StandInSeatReservationService(), TicketPricing.standard(), 1, 100, 4));
+    }
+
+    @Test
+    @DisplayName("Should refuse a purchase whose producer found the engine open just before it closed")
+    void shouldRefuseClaimAfterClose() {
+        AtomicInteger settled = new AtomicInteger();
+        engine = new PurchaseEngine(new StandInTicketPaymentService(), new StandInSeatReservationService(),
+            TicketPricing.standard(), 1, 8, 4);
+        engine.close();
+
+        assertThrows(IllegalStateException.class,
+            () -> engine.enqueue(1L, 1, 0, 0, 0, (accountId, tag, outcome, failure) -> settled.incrementAndGet()));
+        assertEquals(0, settled.get());
+    }
+
+    @Test
+    @DisplayName("Should settle or refuse every purchase submitted while the engine closes")
+    void shouldSettleOrRefuseDuringClose() throws InterruptedException {
+        AtomicInteger submitted = new AtomicInteger();
+        AtomicInteger settled = new AtomicInteger();
+        engine = new PurchaseEngine(new StandInTicketPaymentService(), new StandInSeatReservationService(),
+            TicketPricing.standard(), 4, 8, 4);
+        CountDownLatch started = new CountDownLatch(8);
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < 8; p++) {
+            long firstAccount = p * 1_000_000L + 1;
+            producers.add(Thread.ofVirtual().start(() -> {
+                started.countDown();
+                for (long account = firstAccount; ; account++) {
+                    try {
+                        engine.submit(account, 1, 0, 0, 0, (accountId, tag, outcome, failure) -> settled.incrementAndGet());
+                        submitted.incrementAndGet();
+                    } catch (IllegalStateException e) {
+                        return;
+                    }
+                }
+            }));
+        }
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> engine.close());
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertEquals(submitted.get(), settled.get());
+    }
+
+    // Records the payments of each account, in the order they were taken; each call takes about 1 ms
+    private static final class RecordingBatchGateway implements BatchTicketPaymentService {
+        final ConcurrentHashMap<Long, List<Integer>> amountsByAccount = new ConcurrentHashMap<>();
+        final AtomicInteger payments = new AtomicInteger();
+        final AtomicInteger batches = new AtomicInteger();
+
+        volatile long declinedAccountId;
+
+        @Override
+        public void makePayment(long accountId, int totalAmountToPay) {
+            boolean[] paid = new boolean[1];
+            makePayments(new long[] {accountId}, new int[] {totalAmountToPay}, paid, 1);
+            if (!paid[0]) {
+                throw BatchTicketPaymentService.declined(accountId);
+            }
+        }
+
+        @Override
+        public void makePayments(long[] accountIds, int[] totalAmountsToPay, boolean[] paid, int count) {
+            SimulatedLatency.pause(TimeUnit.MILLISECONDS.toNanos(1));
+            batches.incrementAndGet();
+            for (int i = 0; i < count; i++) {
+                paid[i] = accountIds[i] != declinedAccountId;
+                if (!paid[i]) {
+                    continue;
+                }
+                amountsByAccount.computeIfAbsent(accountIds[i], account -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(totalAmountsToPay[i]);
+                payments.incrementAndGet();
+            }
+        }
+    }
+}
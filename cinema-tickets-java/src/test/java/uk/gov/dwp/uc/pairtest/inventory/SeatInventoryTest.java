@@ -0,0 +1,294 @@
+package uk.gov.dwp.uc.pairtest.inventory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.util.HashedTimingWheel;
+import uk.gov.dwp.uc.pairtest.util.TicketingConfig;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SeatInventoryTest {
+
+    @Nested
+    @DisplayName("Screening Inventory Tests")
+    class ScreeningInventoryTests {
+        @Test
+        @DisplayName("Should assign distinct seats until the screening is sold out")
+        void shouldAssignDistinctSeatsUntilSoldOut() {
+            ScreeningInventory screening = new ScreeningInventory("s1", 70);
+
+            int[] first = screening.tryReserve(64);
+            int[] second = screening.tryReserve(6);
+
+            BitSet seats = new BitSet();
+            for (int seat : first) {
+                seats.set(seat);
+            }
+            for (int seat : second) {
+                seats.set(seat);
+            }
+            assertEquals(70, seats.cardinality());
+            assertEquals(70, seats.length());
+            assertEquals(0, screening.getRemaining());
+            assertNull(screening.tryReserve(1));
+        }
+
+        @Test
+        @DisplayName("Should make released seats available again")
+        void shouldMakeReleasedSeatsAvailableAgain() {
+            ScreeningInventory screening = new ScreeningInventory("s1", 3);
+            int[] seats = screening.tryReserve(3);
+
+            screening.release(new int[] {seats[1]});
+
+            assertEquals(1, screening.getRemaining());
+            assertArrayEquals(new int[] {seats[1]}, screening.tryReserve(1));
+            assertThrows(IllegalArgumentException.class, () -> screening.release(new int[] {3}));
+        }
+
+        @Test
+        @DisplayName("Should reject releasing a seat that is not reserved")
+        void shouldRejectReleasingFreeSeat() {
+            ScreeningInventory screening = new ScreeningInventory("s1", 10);
+
+            assertThrows(IllegalArgumentException.class, () -> screening.release(new int[] {4}));
+            assertEquals(10, screening.getRemaining());
+        }
+
+        @Test
+        @DisplayName("Should keep capacity consistent when a release fails part way")
+        void shouldKeepCapacityWhenReleaseFails() {
+            ScreeningInventory screening = new ScreeningInventory("s1", 4);
+            int[] seats = screening.tryReserve(2);
+
+            assertThrows(IllegalArgumentException.class, () -> screening.release(new int[] {seats[0], 99}));
+            assertTrue(screening.isReserved(seats[0]));
+            assertEquals(2, screening.getRemaining());
+
+            assertThrows(IllegalArgumentException.class, () -> screening.release(new int[] {seats[0], seats[0]}));
+            assertFalse(screening.isReserved(seats[0]));
+            assertEquals(3, screening.getRemaining());
+            assertNotNull(screening.tryReserve(3));
+        }
+    }
+
+    @Nested
+    @DisplayName("Seat Reservation Service Tests")
+    class ReservationServiceTests {
+        @Test
+        @DisplayName("Should reserve and release seats per account and reject when sold out")
+        void shouldReserveAndReleasePerAccount() {
+            SeatInventory inventory = new SeatInventory();
+            inventory.addScreening("s1", 5);
+            ScreeningSeatReservationService service = inventory.forScreening("s1");
+
+            service.reserveSeat(1L, 3);
+            service.reserveSeat(2L, 2);
+            InvalidPurchaseException exception = assertThrows(InvalidPurchaseException.class,
+                () -> service.reserveSeat(3L, 1));
+            assertEquals(PurchaseOutcome.SEATS_UNAVAILABLE, exception.getOutcome());
+
+            service.releaseSeat(1L, 2);
+            assertEquals(1, service.getSeats(1L).length);
+            assertEquals(2, inventory.getRemaining("s1"));
+            service.reserveSeat(3L, 2);
+            assertEquals(0, inventory.getRemaining("s1"));
+        }
+
+        @Test
+        @DisplayName("Should reject unknown and duplicate screenings")
+        void shouldRejectUnknownAndDuplicateScreenings() {
+            SeatInventory inventory = new SeatInventory();
+            inventory.addScreening("s1", 5);
+
+            assertThrows(IllegalArgumentException.class, () -> inventory.addScreening("s1", 5));
+            assertThrows(IllegalArgumentException.class, () -> inventory.tryReserve("s2", 1));
+        }
+    }
+
+    @Nested
+    @DisplayName("Seat Hold Tests")
+    class SeatHoldTests {
+        @TempDir
+        Path tempDir;
+
+        private HashedTimingWheel wheel;
+        private SeatInventory inventory;
+        private ScreeningSeatReservationService service;
+
+        @BeforeEach
+        void setUp() {
+            wheel = new HashedTimingWheel(Duration.ofMillis(1), 8, "test-hold-expiry");
+            inventory = new SeatInventory(wheel);
+            inventory.addScreening("s1", 5);
+            service = inventory.forScreening("s1");
+        }
+
+        @AfterEach
+        void tearDown() {
+            wheel.close();
+            System.clearProperty(TicketingConfig.OVERRIDE_FILE_PROPERTY);
+            TicketingConfig.reload();
+        }
+
+        @Test
+        @DisplayName("Should take held seats off sale and give them to the account on confirmation")
+        void shouldConfirmHold() {
+            long holdId = service.holdSeats(1L, 3);
+            assertEquals(2, inventory.getRemaining("s1"));
+            assertEquals(0, service.getSeats(1L).length);
+            InvalidPurchaseException exception = assertThrows(InvalidPurchaseException.class,
+                () -> service.holdSeats(2L, 3));
+            assertEquals(PurchaseOutcome.SEATS_UNAVAILABLE, exception.getOutcome());
+
+            service.confirmHold(holdId);
+
+            assertEquals(3, service.getSeats(1L).length);
+            assertEquals(0, service.getHeldCount());
+            assertEquals(2, inventory.getRemaining("s1"));
+            service.releaseHold(holdId);
+            assertEquals(2, inventory.getRemaining("s1"));
+        }
+
+        @Test
+        @DisplayName("Should put released seats back on sale and refuse to confirm the released hold")
+        void shouldReleaseHold() {
+            long holdId = service.holdSeats(1L, 4);
+
+            service.releaseHold(holdId);
+
+            assertEquals(5, inventory.getRemaining("s1"));
+            InvalidPurchaseException exception = assertThrows(InvalidPurchaseException.class,
+                () -> service.confirmHold(holdId));
+            assertEquals(PurchaseOutcome.HOLD_EXPIRED, exception.getOutcome());
+            assertEquals(0, service.getSeats(1L).length);
+        }
+
+        @Test
+        @DisplayName("Should expire an unconfirmed hold and put its seats back on sale")
+        void shouldExpireUnconfirmedHold() throws Exception {
+            Path overrideFile = tempDir.resolve("ticketing.properties");
+            Files.writeString(overrideFile, "seat.hold.timeout.ms=20\n");
+            System.setProperty(TicketingConfig.OVERRIDE_FILE_PROPERTY, overrideFile.toString());
+            TicketingConfig.reload();
+
+            long holdId = service.holdSeats(1L, 5);
+            assertEquals(0, inventory.getRemaining("s1"));
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (inventory.getRemaining("s1") < 5 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(5, inventory.getRemaining("s1"));
+            assertEquals(0, service.getHeldCount());
+            InvalidPurchaseException exception = assertThrows(InvalidPurchaseException.class,
+                () -> service.confirmHold(holdId));
+            assertEquals(PurchaseOutcome.HOLD_EXPIRED, exception.getOutcome());
+        }
+    }
+
+    @Nested
+    @DisplayName("Concurrency Stress Tests")
+    class StressTests {
+        @Test
+        @DisplayName("Should never oversell or double-assign a seat under concurrent buyers")
+        void shouldNeverOversellUnderConcurrentBuyers() throws Exception {
+            int capacity = 10_007;
+            int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+            ScreeningInventory screening = new ScreeningInventory("popular", capacity);
+
+            List<List<int[]>> sold = runConcurrently(threads, () -> {
+                List<int[]> bought = new ArrayList<>();
+                int[] seats;
+                while ((seats = screening.tryReserve(ThreadLocalRandom.current().nextInt(1, 8))) != null
+                        || screening.getRemaining() > 0) {
+                    if (seats != null) {
+                        bought.add(seats);
+                    }
+                }
+                return bought;
+            });
+
+            BitSet assigned = new BitSet(capacity);
+            int total = 0;
+            for (List<int[]> bought : sold) {
+                for (int[] seats : bought) {
+                    for (int seat : seats) {
+                        assertFalse(assigned.get(seat), "Seat assigned twice: " + seat);
+                        assigned.set(seat);
+                        total++;
+                    }
+                }
+            }
+            assertEquals(capacity, total);
+            assertEquals(0, screening.getRemaining());
+        }
+
+        @Test
+        @DisplayName("Should keep capacity consistent while buyers reserve and release concurrently")
+        void shouldStayConsistentWithConcurrentReleases() throws Exception {
+            int capacity = 512;
+            int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+            ScreeningInventory screening = new ScreeningInventory("churn", capacity);
+
+            runConcurrently(threads, () -> {
+                for (int i = 0; i < 20_000; i++) {
+                    int[] seats = screening.tryReserve(ThreadLocalRandom.current().nextInt(1, 6));
+                    if (seats != null) {
+                        for (int seat : seats) {
+                            assertTrue(screening.isReserved(seat));
+                        }
+                        screening.release(seats);
+                    }
+                }
+                return null;
+            });
+
+            assertEquals(capacity, screening.getRemaining());
+            assertEquals(capacity, screening.tryReserve(capacity).length);
+        }
+
+        private <T> List<T> runConcurrently(int threads, Callable<T> buyer) throws Exception {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<T>> futures = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        return buyer.call();
+                    }));
+                }
+                start.countDown();
+
+                List<T> results = new ArrayList<>();
+                for (Future<T> future : futures) {
+                    results.add(future.get(60, TimeUnit.SECONDS));
+                }
+                return results;
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+}
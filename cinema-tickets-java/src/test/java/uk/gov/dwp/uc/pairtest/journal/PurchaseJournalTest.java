@@ -0,0 +1,190 @@
+package uk.gov.dwp.uc.pairtest.journal;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PurchaseJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Nested
+    @DisplayName("Journal Tests")
+    class JournalTests {
+        @Test
+        @DisplayName("Should read back the appended records in order")
+        void shouldReadBackAppendedRecords() throws IOException {
+            try (PurchaseJournal journal = PurchaseJournal.open(directory)) {
+                journal.onPaymentTaken(101L, 1L, 2, 1, 1, 65);
+                journal.onPurchaseCompleted(101L, 1L, 2, 1, 1, 65);
+                journal.onPurchaseFailed(102L, 2L, 1, 0, 0, 25, PurchaseOutcome.SEATS_UNAVAILABLE, true);
+            }
+
+            List<JournalRecord> records = PurchaseJournalScanner.readAll(directory);
+            assertEquals(3, records.size());
+
+            JournalRecord paid = records.get(0);
+            assertEquals(0, paid.getSequence());
+            assertEquals(101L, paid.getPurchaseId());
+            assertEquals(JournalEntryType.PAID, paid.getType());
+            assertEquals(1L, paid.getAccountId());
+            assertEquals(2, paid.getAdults());
+            assertEquals(1, paid.getChildren());
+            assertEquals(1, paid.getInfants());
+            assertEquals(65, paid.getTotalAmount());
+            assertEquals(3, paid.getTotalSeats());
+            assertNull(paid.getOutcome());
+            assertTrue(paid.getTimestamp() > 0);
+
+            assertEquals(PurchaseOutcome.ACCEPTED, records.get(1).getOutcome());
+            assertEquals(JournalEntryType.REFUNDED, records.get(2).getType());
+            assertEquals(PurchaseOutcome.SEATS_UNAVAILABLE, records.get(2).getOutcome());
+        }
+
+        @Test
+        @DisplayName("Should roll over to a new segment when one is full")
+        void shouldRollOverSegments() throws IOException {
+            try (PurchaseJournal journal = PurchaseJournal.open(directory, 4, Duration.ofMillis(5), false)) {
+                for (int i = 0; i < 10; i++) {
+                    journal.append(JournalEntryType.PAID, i + 101, i + 1, 1, 0, 0, 25, null);
+                }
+            }
+
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(3, files.count());
+            }
+            List<JournalRecord> records = PurchaseJournalScanner.readAll(directory);
+            assertEquals(10, records.size());
+            assertEquals(10L, records.get(9).getAccountId());
+        }
+
+        @Test
+        @DisplayName("Should continue after the last record when reopened")
+        void shouldContinueWhenReopened() throws IOException {
+            try (PurchaseJournal journal = PurchaseJournal.open(directory, 4, Duration.ofMillis(5), false)) {
+                journal.append(JournalEntryType.PAID, 101L, 1L, 1, 0, 0, 25, null);
+                journal.append(JournalEntryType.COMPLETED, 101L, 1L, 1, 0, 0, 25, null);
+            }
+            try (PurchaseJournal journal = PurchaseJournal.open(directory, 4, Duration.ofMillis(5), false)) {
+                assertEquals(2, journal.append(JournalEntryType.PAID, 102L, 2L, 1, 0, 0, 25, null));
+            }
+
+            assertEquals(3, PurchaseJournalScanner.readAll(directory).size());
+        }
+
+        @Test
+        @DisplayName("Should let concurrent writers share group-committed flushes")
+        void shouldGroupCommitConcurrentWriters() throws IOException {
+            try (PurchaseJournal journal = PurchaseJournal.open(directory, 1024, Duration.ofSeconds(1), true)) {
+                CompletableFuture<?>[] writers = new CompletableFuture<?>[8];
+                for (int i = 0; i < writers.length; i++) {
+                    long accountId = i + 1;
+                    writers[i] = CompletableFuture.runAsync(() -> {
+                        for (int j = 0; j < 50; j++) {
+                            journal.onPaymentTaken(accountId * 100 + j, accountId, 1, 0, 0, 25);
+                            journal.onPurchaseCompleted(accountId * 100 + j, accountId, 1, 0, 0, 25);
+                        }
+                    });
+                }
+                // A one second flush delay would take minutes if each record waited for its own timed flush
+                assertTimeoutPreemptively(Duration.ofSeconds(30), () -> CompletableFuture.allOf(writers).join());
+            }
+
+            assertEquals(800, PurchaseJournalScanner.readAll(directory).size());
+        }
+
+        @Test
+        @DisplayName("Should reject appends once closed")
+        void shouldRejectAppendsOnceClosed() throws IOException {
+            PurchaseJournal journal = PurchaseJournal.open(directory);
+            journal.close();
+
+            assertThrows(IllegalStateException.class, () -> journal.onPaymentTaken(101L, 1L, 1, 0, 0, 25));
+        }
+    }
+
+    @Nested
+    @DisplayName("Recovery Tests")
+    class RecoveryTests {
+        @Test
+        @DisplayName("Should find purchases that were paid but not reserved")
+        void shouldFindPaidWithoutReservation() throws IOException {
+            try (PurchaseJournal journal = PurchaseJournal.open(directory, 4, Duration.ofMillis(5), false)) {
+                journal.onPaymentTaken(101L, 1L, 1, 0, 0, 25);
+                journal.onPurchaseCompleted(101L, 1L, 1, 0, 0, 25);
+                journal.onPaymentTaken(102L, 2L, 2, 0, 0, 50);
+                journal.onPurchaseFailed(102L, 2L, 2, 0, 0, 50, null, false);
+                journal.onPaymentTaken(103L, 3L, 1, 1, 0, 40);
+                journal.onPurchaseFailed(103L, 3L, 1, 1, 0, 40, PurchaseOutcome.SEATS_UNAVAILABLE, true);
+                // Crash between payment and reservation
+                journal.onPaymentTaken(104L, 4L, 3, 0, 0, 75);
+            }
+
+            List<JournalRecord> unsettled = PurchaseJournalScanner.findPaidWithoutReservation(directory);
+
+            assertEquals(2, unsettled.size());
+            assertEquals(2L, unsettled.get(0).getAccountId());
+            assertEquals(4L, unsettled.get(1).getAccountId());
+            assertEquals(75, unsettled.get(1).getTotalAmount());
+        }
+
+        @Test
+        @DisplayName("Should stop at a torn record")
+        void shouldStopAtTornRecord() throws IOException {
+            try (PurchaseJournal journal = PurchaseJournal.open(directory, 8, Duration.ofMillis(5), false)) {
+                for (int i = 0; i < 3; i++) {
+                    journal.onPaymentTaken(i + 101, i + 1, 1, 0, 0, 25);
+                }
+            }
+            Path segment;
+            try (Stream<Path> files = Files.list(directory)) {
+                segment = files.findFirst().orElseThrow();
+            }
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[] {42}), JournalRecord.SIZE + 10L);
+            }
+
+            assertEquals(1, PurchaseJournalScanner.readAll(directory).size());
+        }
+
+        @Test
+        @DisplayName("Should pair records by purchase when services sharing the journal interleave an account")
+        void shouldPairInterleavedPurchasesOfAccount() throws IOException {
+            try (PurchaseJournal journal = PurchaseJournal.open(directory, 8, Duration.ofMillis(5), false)) {
+                // Account 1 buys for two screenings at once, each through its own ticket service
+                journal.onPaymentTaken(201L, 1L, 1, 0, 0, 25);
+                journal.onPaymentTaken(202L, 1L, 2, 0, 0, 50);
+                journal.onPurchaseCompleted(201L, 1L, 1, 0, 0, 25);
+                journal.onPurchaseFailed(202L, 1L, 2, 0, 0, 50, null, false);
+            }
+
+            List<JournalRecord> unsettled = PurchaseJournalScanner.findPaidWithoutReservation(directory);
+
+            assertEquals(1, unsettled.size());
+            assertEquals(202L, unsettled.get(0).getPurchaseId());
+            assertEquals(50, unsettled.get(0).getTotalAmount());
+        }
+
+        @Test
+        @DisplayName("Should find nothing in an empty directory")
+        void shouldFindNothingWhenEmpty() throws IOException {
+            assertTrue(PurchaseJournalScanner.findPaidWithoutReservation(directory.resolve("missing")).isEmpty());
+        }
+    }
+}
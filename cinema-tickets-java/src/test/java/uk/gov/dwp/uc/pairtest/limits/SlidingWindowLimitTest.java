@@ -0,0 +1,217 @@
+package uk.gov.dwp.uc.pairtest.limits;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlidingWindowLimitTest {
+
+    // 80 s window of eight 10 s buckets, on a clock the tests move by hand
+    private static final Duration WINDOW = Duration.ofSeconds(80);
+    private static final long BUCKET_NANOS = Duration.ofSeconds(10).toNanos();
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private SlidingWindowLimit limit(int maxTickets, int segments) {
+        return new SlidingWindowLimit(maxTickets, WINDOW, segments, clock::get);
+    }
+
+    @Nested
+    @DisplayName("Sliding Window Tests")
+    class SlidingWindowTests {
+        @Test
+        @DisplayName("Should allow tickets up to the limit within the window")
+        void shouldAllowUpToLimit() {
+            SlidingWindowLimit limit = limit(10, 4);
+
+            assertTrue(limit.tryAcquire(1L, 6));
+            assertTrue(limit.tryAcquire(1L, 4));
+            assertFalse(limit.tryAcquire(1L, 1));
+            assertTrue(limit.tryAcquire(2L, 10));
+            assertFalse(limit.tryAcquire(3L, 11));
+
+            assertEquals(10, limit.getUsed(1L));
+            assertEquals(0, limit.getUsed(3L));
+            assertEquals(2, limit.size());
+        }
+
+        @Test
+        @DisplayName("Should free tickets as their bucket slides out of the window")
+        void shouldSlideWindow() {
+            SlidingWindowLimit limit = limit(10, 4);
+
+            assertTrue(limit.tryAcquire(1L, 6));
+            clock.addAndGet(3 * BUCKET_NANOS);
+            assertTrue(limit.tryAcquire(1L, 4));
+            assertFalse(limit.tryAcquire(1L, 1));
+
+            // The first purchase leaves the window after eight buckets, the second three buckets later
+            clock.addAndGet(5 * BUCKET_NANOS);
+            assertEquals(4, limit.getUsed(1L));
+            assertTrue(limit.tryAcquire(1L, 6));
+            clock.addAndGet(3 * BUCKET_NANOS);
+            assertEquals(6, limit.getUsed(1L));
+            clock.addAndGet(100 * BUCKET_NANOS);
+            assertEquals(0, limit.getUsed(1L));
+        }
+
+        @Test
+        @DisplayName("Should give back released tickets and drop accounts with none left")
+        void shouldReleaseTickets() {
+            SlidingWindowLimit limit = limit(10, 4);
+
+            assertTrue(limit.tryAcquire(1L, 4));
+            clock.addAndGet(BUCKET_NANOS);
+            assertTrue(limit.tryAcquire(1L, 6));
+            limit.release(1L, 8);
+
+            assertEquals(2, limit.getUsed(1L));
+            limit.release(1L, 5);
+            assertEquals(0, limit.getUsed(1L));
+            assertEquals(0, limit.size());
+            limit.release(2L, 5);
+        }
+
+        @Test
+        @DisplayName("Should reject invalid limits and account ids")
+        void shouldRejectInvalidArguments() {
+            assertThrows(IllegalArgumentException.class, () -> limit(0, 4));
+            assertThrows(IllegalArgumentException.class, () -> limit(SlidingWindowLimit.MAX_TICKETS_LIMIT + 1, 4));
+            assertThrows(IllegalArgumentException.class, () -> limit(10, 3));
+            assertThrows(IllegalArgumentException.class, () -> limit(10, 4).tryAcquire(0L, 1));
+        }
+    }
+
+    @Nested
+    @DisplayName("Table Tests")
+    class TableTests {
+        @Test
+        @DisplayName("Should track many accounts through growth and removals")
+        void shouldTrackManyAccounts() {
+            SlidingWindowLimit limit = limit(5, 4);
+            int accounts = 200_000;
+
+            for (long account = 1; account <= accounts; account++) {
+                assertTrue(limit.tryAcquire(account, (int) (account % 5) + 1));
+            }
+            for (long account = 2; account <= accounts; account += 2) {
+                limit.release(account, 5);
+            }
+
+            assertEquals(accounts / 2, limit.size());
+            for (long account = 1; account <= accounts; account++) {
+                int expected = account % 2 == 0 ? 0 : (int) (account % 5) + 1;
+                assertEquals(expected, limit.getUsed(account), "account " + account);
+            }
+        }
+
+        @Test
+        @DisplayName("Should evict idle accounts and keep the active ones")
+        void shouldEvictIdleAccounts() {
+            SlidingWindowLimit limit = limit(5, 2);
+            for (long account = 1; account <= 1000; account++) {
+                limit.tryAcquire(account, 1);
+            }
+            clock.addAndGet(4 * BUCKET_NANOS);
+            for (long account = 1001; account <= 1100; account++) {
+                limit.tryAcquire(account, 2);
+            }
+            clock.addAndGet(5 * BUCKET_NANOS);
+
+            assertEquals(1000, limit.evictIdle());
+            assertEquals(100, limit.size());
+            assertEquals(2, limit.getUsed(1050L));
+            assertEquals(0, limit.getUsed(10L));
+        }
+
+        @Test
+        @DisplayName("Should reuse idle slots instead of growing when new accounts arrive")
+        void shouldReuseIdleSlots() {
+            SlidingWindowLimit limit = limit(5, 1);
+            for (int round = 0; round < 20; round++) {
+                for (long account = 1; account <= 1000; account++) {
+                    assertTrue(limit.tryAcquire(round * 1000L + account, 1));
+                }
+                clock.addAndGet(8 * BUCKET_NANOS);
+            }
+
+            // Only the last round is still in the window; earlier rounds were dropped as the table filled
+            assertTrue(limit.size() < 4000, "idle accounts were not reclaimed: " + limit.size());
+        }
+
+        @Test
+        @DisplayName("Should never let concurrent purchases of an account exceed the limit")
+        void shouldEnforceLimitConcurrently() throws Exception {
+            SlidingWindowLimit limit = new SlidingWindowLimit(100, WINDOW);
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<Integer>> results = new ArrayList<>();
+                for (int thread = 0; thread < 8; thread++) {
+                    results.add(executor.submit(() -> {
+                        int acquired = 0;
+                        for (int i = 0; i < 1000; i++) {
+                            for (long account = 1; account <= 10; account++) {
+                                if (limit.tryAcquire(account, 1)) {
+                                    acquired++;
+                                }
+                            }
+                        }
+                        return acquired;
+                    }));
+                }
+
+                int total = 0;
+                for (Future<Integer> result : results) {
+                    total += result.get();
+                }
+                assertEquals(10 * 100, total);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Purchase Limits Tests")
+    class PurchaseLimitsTests {
+        @Test
+        @DisplayName("Should limit each screening on its own and all screenings together")
+        void shouldLimitPerScreeningAndOverall() {
+            PurchaseLimits limits = new PurchaseLimits(4, 6, Duration.ofHours(1));
+            PurchaseLimiter evening = limits.forScreening("evening");
+            PurchaseLimiter matinee = limits.forScreening("matinee");
+
+            assertSame(evening, limits.forScreening("evening"));
+            assertTrue(evening.tryAcquire(1L, 4));
+            assertFalse(evening.tryAcquire(1L, 1));
+            assertTrue(matinee.tryAcquire(1L, 2));
+            // Within the matinee limit, but over the overall one; nothing is counted
+            assertFalse(matinee.tryAcquire(1L, 1));
+            assertTrue(matinee.tryAcquire(2L, 4));
+
+            matinee.release(1L, 2);
+            assertTrue(matinee.tryAcquire(1L, 2));
+            assertFalse(limits.overall().tryAcquire(1L, 1));
+        }
+
+        @Test
+        @DisplayName("Should not limit anything when the limits are zero")
+        void shouldNotLimitWhenDisabled() {
+            PurchaseLimits limits = new PurchaseLimits(0, 0, Duration.ofHours(1));
+
+            assertTrue(limits.forScreening("evening").isUnlimited());
+            assertSame(PurchaseLimiter.NONE, limits.overall());
+            assertTrue(PurchaseLimits.fromConfig().overall().isUnlimited());
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package uk.gov.dwp.uc.pairtest.loadtest;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import uk.gov.dwp.uc.pairtest.TicketService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.standin.FaultInjector;
+import uk.gov.dwp.uc.pairtest.standin.LatencyDistribution;
+import uk.gov.dwp.uc.pairtest.standin.SimulatedLatency;
+import uk.gov.dwp.uc.pairtest.standin.StandInSeatReservationService;
+import uk.gov.dwp.uc.pairtest.standin.StandInTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.util.TicketPurchaseValidator;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenLoopLoadGeneratorTest {
+
+    @Nested
+    @DisplayName("Order Mix Tests")
+    class OrderMixTests {
+        @Test
+        @DisplayName("Should build valid orders with sizes following the weights")
+        void shouldBuildValidOrdersFollowingWeights() {
+            OrderMix mix = OrderMix.weighted(6, 0, 3).withAccounts(50);
+            SplittableRandom random = new SplittableRandom(1);
+            int[] sizes = new int[4];
+
+            for (int i = 0; i < 10_000; i++) {
+                OrderMix.LoadOrder order = mix.next(random);
+                assertEquals(PurchaseOutcome.ACCEPTED, TicketPurchaseValidator.check(order.accountId(),
+                    order.adults(), order.children(), order.infants()), order.toString());
+                assertTrue(order.accountId() >= 1 && order.accountId() <= 50);
+                sizes[order.adults() + order.children() + order.infants()]++;
+            }
+
+            assertEquals(0, sizes[2]);
+            assertEquals(6667, sizes[1], 300);
+            assertEquals(3333, sizes[3], 300);
+        }
+
+        @Test
+        @DisplayName("Should make the given share of orders break a rule")
+        void shouldRejectGivenShare() {
+            OrderMix mix = OrderMix.uniform(1, 10).withRejectionShare(0.2);
+            SplittableRandom random = new SplittableRandom(2);
+
+            int rejected = 0;
+            for (int i = 0; i < 10_000; i++) {
+                OrderMix.LoadOrder order = mix.next(random);
+                if (!TicketPurchaseValidator.check(order.accountId(), order.adults(), order.children(), order.infants()).isAccepted()) {
+                    rejected++;
+                }
+            }
+
+            assertEquals(2000, rejected, 250);
+        }
+
+        @Test
+        @DisplayName("Should reject invalid mixes")
+        void shouldRejectInvalidMixes() {
+            assertAll(
+                () -> assertThrows(IllegalArgumentException.class, () -> OrderMix.weighted(0, 0)),
+                () -> assertThrows(IllegalArgumentException.class, () -> OrderMix.weighted(1, -1)),
+                () -> assertThrows(IllegalArgumentException.class, () -> OrderMix.uniform(3, 2)),
+                () -> assertThrows(IllegalArgumentException.class, () -> OrderMix.uniform(1, 2).withRejectionShare(1.5))
+            );
+        }
+    }
+
+    @Nested
+    @DisplayName("Load Generator Tests")
+    class LoadGeneratorTests {
+        @Test
+        @DisplayName("Should send orders at the target rate and count them by result")
+        void shouldSendOrdersAtTargetRate() throws InterruptedException {
+            FaultInjector paymentFaults = new FaultInjector().setFailureRate(0.1);
+            TicketService service = new TicketServiceImpl(new StandInTicketPaymentService(0L, paymentFaults),
+                new StandInSeatReservationService());
+            OpenLoopLoadGenerator generator = new OpenLoopLoadGenerator(service,
+                OrderMix.uniform(1, 5).withRejectionShare(0.25));
+
+            LoadTestReport report = generator.run(2000, Duration.ofMillis(500));
+
+            // A Poisson process at 2000/s sends about 1000 orders in half a second
+            assertEquals(1000, report.getCompleted(), 150);
+            assertEquals(report.getCompleted(), report.getResponseTimes().getCount());
+            assertEquals(report.getRejected(), report.getRejections(PurchaseOutcome.ADULT_REQUIRED));
+            assertEquals(0.25, (double) report.getRejected() / report.getCompleted(), 0.06);
+            assertEquals(0.1, (double) report.getFailed() / (report.getCompleted() - report.getRejected()), 0.05);
+            assertTrue(report.getThroughput() > 0);
+        }
+
+        @Test
+        @DisplayName("Should time orders from when they were due, not from when a stalled service let them through")
+        void shouldCorrectForCoordinatedOmission() throws InterruptedException {
+            // Takes 5 ms a call, one call at a time, against orders due every 2 ms on average
+            TicketService slowService = (accountId, requests) -> SimulatedLatency.pause(5_000_000L);
+            OpenLoopLoadGenerator generator = new OpenLoopLoadGenerator(slowService, OrderMix.uniform(1, 1), 1, 3L);
+
+            LoadTestReport report = generator.run(500, Duration.ofMillis(200));
+
+            assertTrue(report.getServiceTimes().getValueAtPercentile(99) < Duration.ofMillis(50).toNanos(),
+                "service time " + report.getServiceTimes().getValueAtPercentile(99));
+            assertTrue(report.getResponseTimes().getValueAtPercentile(99) > Duration.ofMillis(100).toNanos(),
+                "response time " + report.getResponseTimes().getValueAtPercentile(99));
+            assertTrue(report.getMaxDispatchLag().toMillis() > 100);
+            assertFalse(report.isSustained(Duration.ofMillis(50)));
+        }
+
+        @Test
+        @DisplayName("Should count an exception without an outcome as a failure, not a rejection")
+        void shouldCountExceptionWithoutOutcomeAsFailure() throws InterruptedException {
+            TicketService failingService = (accountId, requests) -> {
+                throw new InvalidPurchaseException("gateway error");
+            };
+
+            LoadTestReport report = new OpenLoopLoadGenerator(failingService, OrderMix.uniform(1, 3))
+                .run(1000, Duration.ofMillis(50));
+
+            assertTrue(report.getCompleted() > 0);
+            assertEquals(report.getCompleted(), report.getFailed());
+            assertEquals(0, report.getRejected());
+        }
+
+        @Test
+        @DisplayName("Should format a report line under the header")
+        void shouldFormatReport() throws InterruptedException {
+            LoadTestReport report = new OpenLoopLoadGenerator((accountId, requests) -> { }, OrderMix.uniform(1, 3))
+                .run(1000, Duration.ofMillis(50));
+
+            // Fixed-width columns line up
+            assertEquals(LoadTestReport.header().length(), report.format().length());
+        }
+    }
+
+    @Nested
+    @DisplayName("Latency Distribution Tests")
+    class LatencyDistributionTests {
+        @Test
+        @DisplayName("Should sample log-normal latencies matching the median and 99th percentile")
+        void shouldMatchLogNormalPercentiles() {
+            LatencyDistribution latency = LatencyDistribution.logNormal(Duration.ofMillis(2), Duration.ofMillis(20));
+            long[] samples = new long[100_000];
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = latency.sampleNanos();
+            }
+            Arrays.sort(samples);
+
+            assertEquals(2_000_000, samples[50_000], 100_000);
+            assertEquals(20_000_000, samples[99_000], 2_000_000);
+        }
+
+        @Test
+        @DisplayName("Should keep uniform and exponential latencies within their bounds")
+        void shouldSampleUniformAndExponential() {
+            LatencyDistribution uniform = LatencyDistribution.uniform(Duration.ofNanos(10), Duration.ofNanos(20));
+            LatencyDistribution exponential = LatencyDistribution.exponential(Duration.ofNanos(1000));
+            long total = 0;
+            for (int i = 0; i < 100_000; i++) {
+                long sample = uniform.sampleNanos();
+                assertTrue(sample >= 10 && sample <= 20);
+                total += exponential.sampleNanos();
+            }
+
+            assertEquals(1000, total / 100_000.0, 30);
+            assertSame(LatencyDistribution.NONE, LatencyDistribution.fixed(Duration.ZERO));
+        }
+    }
+}
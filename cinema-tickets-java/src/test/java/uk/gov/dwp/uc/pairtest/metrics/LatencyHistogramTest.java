@@ -0,0 +1,71 @@
+package uk.gov.dwp.uc.pairtest.metrics;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    @DisplayName("Should give every bucket a contiguous range of values")
+    void shouldMapBucketsContiguously() {
+        for (long value = 0; value < 100_000; value++) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(value <= LatencyHistogram.highestValueOf(bucket), "value " + value);
+            assertTrue(bucket == 0 || value > LatencyHistogram.highestValueOf(bucket - 1), "value " + value);
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    @DisplayName("Should report percentiles within the bucket precision")
+    void shouldReportPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 10_000; value++) {
+            histogram.record(value * 1_000);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10_000, snapshot.getCount());
+        assertEquals(10_000_000, snapshot.getMax());
+        assertEquals(5_000_500, snapshot.getMean(), 0.001);
+        assertWithinPrecision(5_000_000, snapshot.getValueAtPercentile(50));
+        assertWithinPrecision(9_900_000, snapshot.getValueAtPercentile(99));
+        assertWithinPrecision(9_990_000, snapshot.getValueAtPercentile(99.9));
+        assertEquals(10_000_000, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    @DisplayName("Should report zero for an empty histogram")
+    void shouldReportZeroWhenEmpty() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getValueAtPercentile(99));
+        assertEquals(0, snapshot.getMean());
+    }
+
+    @Test
+    @DisplayName("Should not lose values recorded concurrently")
+    void shouldRecordConcurrently() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        CompletableFuture<?>[] writers = new CompletableFuture<?>[4];
+        for (int i = 0; i < writers.length; i++) {
+            writers[i] = CompletableFuture.runAsync(() -> {
+                for (int value = 0; value < 50_000; value++) {
+                    histogram.record(value);
+                }
+            });
+        }
+        CompletableFuture.allOf(writers).join();
+
+        assertEquals(200_000, histogram.snapshot().getCount());
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue(actual >= expected && actual <= expected + expected / 16, "expected ~" + expected + " but was " + actual);
+    }
+}
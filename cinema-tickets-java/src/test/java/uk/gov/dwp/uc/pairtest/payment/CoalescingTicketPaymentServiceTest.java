@@ -0,0 +1,192 @@
+package uk.gov.dwp.uc.pairtest.payment;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import uk.gov.dwp.uc.pairtest.spi.BatchTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.spi.RefundableTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.standin.StandInTicketPaymentService;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CoalescingTicketPaymentServiceTest {
+
+    private final RecordingGateway gateway = new RecordingGateway();
+    private CoalescingTicketPaymentService payments;
+
+    @AfterEach
+    void tearDown() {
+        if (payments != null) {
+            payments.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Should send a full batch as one settlement")
+    void shouldSendFullBatchAsOneSettlement() {
+        payments = CoalescingTicketPaymentService.wrap(gateway, 4, Duration.ofMinutes(1));
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 1; i <= 8; i++) {
+            futures.add(payments.submitPayment(i, i * 10));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+        assertEquals(List.of(4, 4), gateway.batchSizes);
+        assertEquals(360, gateway.total());
+    }
+
+    @Test
+    @DisplayName("Should send a partial batch once the wait window has passed")
+    void shouldSendPartialBatchAfterWindow() {
+        payments = CoalescingTicketPaymentService.wrap(gateway, 100, Duration.ofMillis(20));
+
+        payments.makePayment(1L, 25);
+        payments.makePayment(2L, 40);
+
+        assertEquals(List.of(1, 1), gateway.batchSizes);
+        assertEquals(65, gateway.total());
+    }
+
+    @Test
+    @DisplayName("Should fail every payment of a batch that the gateway rejects")
+    void shouldFailEveryPaymentOfFailedBatch() {
+        gateway.failure = new IllegalStateException("gateway down");
+        payments = CoalescingTicketPaymentService.wrap(gateway, 2, Duration.ofMillis(10));
+
+        CompletableFuture<Void> first = payments.submitPayment(1L, 25);
+        CompletableFuture<Void> second = payments.submitPayment(2L, 25);
+
+        assertSame(gateway.failure, assertThrows(CompletionException.class, first::join).getCause());
+        assertSame(gateway.failure, assertThrows(CompletionException.class, second::join).getCause());
+        // The blocking call rethrows the gateway's own exception
+        assertSame(gateway.failure, assertThrows(IllegalStateException.class, () -> payments.makePayment(3L, 25)));
+    }
+
+    @Test
+    @DisplayName("Should fail every payment of a batch when the gateway throws an Error")
+    void shouldFailEveryPaymentOnError() {
+        gateway.error = new Error("gateway bug");
+        payments = CoalescingTicketPaymentService.wrap(gateway, 2, Duration.ofMillis(10));
+
+        CompletableFuture<Void> first = payments.submitPayment(1L, 25);
+        CompletableFuture<Void> second = payments.submitPayment(2L, 25);
+
+        // Bounded, so a batch left unsettled fails the test rather than hanging it
+        CompletableFuture<Void> bounded = first.orTimeout(5, TimeUnit.SECONDS);
+        assertSame(gateway.error, assertThrows(CompletionException.class, bounded::join).getCause());
+        assertSame(gateway.error, assertThrows(CompletionException.class, second::join).getCause());
+        assertSame(gateway.error, assertThrows(Error.class, () -> payments.makePayment(3L, 25)));
+    }
+
+    @Test
+    @DisplayName("Should fail only the payment that the gateway declines")
+    void shouldFailOnlyDeclinedPayment() {
+        gateway.declinedAccountId = 2L;
+        payments = CoalescingTicketPaymentService.wrap(gateway, 3, Duration.ofMinutes(1));
+
+        CompletableFuture<Void> first = payments.submitPayment(1L, 25);
+        CompletableFuture<Void> declined = payments.submitPayment(2L, 25);
+        CompletableFuture<Void> third = payments.submitPayment(3L, 40);
+
+        first.join();
+        third.join();
+        assertInstanceOf(IllegalStateException.class, assertThrows(CompletionException.class, declined::join).getCause());
+        assertEquals(List.of(3), gateway.batchSizes);
+        assertEquals(65, gateway.total());
+    }
+
+    @Test
+    @DisplayName("Should coalesce blocking callers on many threads")
+    void shouldCoalesceBlockingCallers() throws InterruptedException {
+        payments = CoalescingTicketPaymentService.wrap(gateway, 16, Duration.ofMillis(50));
+        CountDownLatch done = new CountDownLatch(64);
+        for (int i = 0; i < 64; i++) {
+            long accountId = i + 1;
+            Thread.ofVirtual().start(() -> {
+                payments.makePayment(accountId, 25);
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(64 * 25, gateway.total());
+        assertTrue(gateway.batchSizes.size() < 64, "No payments were coalesced");
+    }
+
+    @Test
+    @DisplayName("Should send pending payments when closed and refuse new ones")
+    void shouldFlushOnClose() {
+        payments = CoalescingTicketPaymentService.wrap(gateway, 100, Duration.ofMinutes(1));
+        CompletableFuture<Void> pending = payments.submitPayment(1L, 25);
+
+        payments.close();
+
+        pending.join();
+        assertEquals(List.of(1), gateway.batchSizes);
+        assertThrows(IllegalStateException.class, () -> payments.submitPayment(2L, 25));
+    }
+
+    @Test
+    @DisplayName("Should refund through the gateway when it can refund payments")
+    void shouldForwardRefunds() {
+        StandInTicketPaymentService refundableGateway = mock(StandInTicketPaymentService.class);
+        payments = CoalescingTicketPaymentService.wrap(refundableGateway, 4, Duration.ofMillis(10));
+
+        RefundableTicketPaymentService refundable = assertInstanceOf(RefundableTicketPaymentService.class, payments);
+        refundable.refundPayment(1L, 25);
+
+        verify(refundableGateway).refundPayment(1L, 25);
+        try (CoalescingTicketPaymentService plain = CoalescingTicketPaymentService.wrap(gateway, 4, Duration.ofMillis(10))) {
+            assertFalse(plain instanceof RefundableTicketPaymentService);
+        }
+    }
+
+    private static final class RecordingGateway implements BatchTicketPaymentService {
+        final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        final List<Integer> amounts = new CopyOnWriteArrayList<>();
+        volatile RuntimeException failure;
+        volatile Error error;
+        volatile long declinedAccountId;
+
+        @Override
+        public void makePayments(long[] accountIds, int[] totalAmountsToPay, boolean[] paid, int count) {
+            if (failure != null) {
+                throw failure;
+            }
+            if (error != null) {
+                throw error;
+            }
+            batchSizes.add(count);
+            for (int i = 0; i < count; i++) {
+                paid[i] = accountIds[i] != declinedAccountId;
+                if (paid[i]) {
+                    amounts.add(totalAmountsToPay[i]);
+                }
+            }
+        }
+
+        @Override
+        public void makePayment(long accountId, int totalAmountToPay) {
+            boolean[] paid = new boolean[1];
+            makePayments(new long[] {accountId}, new int[] {totalAmountToPay}, paid, 1);
+            if (!paid[0]) {
+                throw BatchTicketPaymentService.declined(accountId);
+            }
+        }
+
+        int total() {
+            return amounts.stream().mapToInt(Integer::intValue).sum();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package uk.gov.dwp.uc.pairtest.pricing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.util.TicketingConfig;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PricingEngineTest {
+
+    @Nested
+    @DisplayName("Quote Table Tests")
+    class QuoteTableTests {
+        @Test
+        @DisplayName("Should precompute the same total as the price table for every combination")
+        void shouldMatchPriceTableForEveryCombination() {
+            PriceTable prices = PriceTable.of(31, 17, 3);
+            int max = 12;
+            QuoteTable quotes = new QuoteTable(prices, max);
+
+            for (int adults = 0; adults <= max; adults++) {
+                for (int children = 0; adults + children <= max; children++) {
+                    for (int infants = 0; adults + children + infants <= max; infants++) {
+                        assertEquals(prices.quote(adults, children, infants), quotes.quote(adults, children, infants));
+                    }
+                }
+            }
+        }
+
+        @Test
+        @DisplayName("Should price combinations beyond the table directly")
+        void shouldPriceBeyondTableDirectly() {
+            QuoteTable quotes = new QuoteTable(PriceTable.standard(), 5);
+
+            assertEquals(10 * 25 + 3 * 15, quotes.quote(10, 3, 1));
+        }
+
+        @Test
+        @DisplayName("Should price directly, without a table, at the highest configurable maximum")
+        void shouldSkipTableAtHighestMaximum() {
+            QuoteTable quotes = new QuoteTable(PriceTable.standard(), TicketingConfig.Snapshot.MAX_TICKETS_LIMIT);
+
+            assertEquals(2 * 25 + 15, quotes.quote(2, 1, 1));
+            assertEquals(25L * 2_000_000, quotes.quote(2_000_000, 0, 0));
+        }
+
+        @Test
+        @DisplayName("Should total large orders in long arithmetic")
+        void shouldTotalLargeOrdersWithoutOverflow() {
+            PriceTable prices = PriceTable.of(5_000_000, 0, 0);
+
+            assertEquals(5_000_000L * 1_000_000, prices.quote(1_000_000, 0, 0));
+            assertThrows(ArithmeticException.class,
+                () -> PriceTable.of(Long.MAX_VALUE, 0, 0).quote(2, 0, 0));
+        }
+    }
+
+    @Nested
+    @DisplayName("Pricing Engine Tests")
+    class EngineTests {
+        @TempDir
+        Path tempDir;
+
+        @AfterEach
+        void restoreDefaults() {
+            System.clearProperty(TicketingConfig.OVERRIDE_FILE_PROPERTY);
+            TicketingConfig.reload();
+        }
+
+        @Test
+        @DisplayName("Should load tier prices from pricing.properties")
+        void shouldLoadTierPrices() {
+            PricingEngine engine = PricingEngine.load();
+
+            assertEquals(2 * 25 + 15, engine.quote(PriceTier.STANDARD, 2, 1, 1));
+            assertEquals(2 * 30 + 18, engine.quote(PriceTier.PEAK, 2, 1, 1));
+            assertEquals(0, engine.getPriceTable(PriceTier.PREMIUM).getPrice(TicketTypeRequest.Type.INFANT));
+        }
+
+        @Test
+        @DisplayName("Should price screenings at their tier with per-type overrides")
+        void shouldPriceScreenings() {
+            Properties props = new Properties();
+            props.setProperty("tier.PREMIUM.ADULT", "40");
+            props.setProperty("tier.PREMIUM.CHILD", "25");
+            props.setProperty("screening.evening-imax.tier", "PREMIUM");
+            props.setProperty("screening.evening-imax.ADULT", "45");
+            props.setProperty("screening.matinee.CHILD", "10");
+            PricingEngine engine = PricingEngine.fromProperties(props);
+
+            assertEquals(45 + 25, engine.quote("evening-imax", 1, 1, 0));
+            assertEquals(25 + 10, engine.quote("matinee", 1, 1, 0));
+            assertEquals(25 + 15, engine.quote("unknown", 1, 1, 0));
+            assertEquals(45 + 25, engine.forScreening("evening-imax").quote(1, 1, 0));
+        }
+
+        @Test
+        @DisplayName("Should reject prices that are not numbers")
+        void shouldRejectInvalidPrices() {
+            Properties props = new Properties();
+            props.setProperty("tier.PEAK.ADULT", "thirty");
+
+            assertThrows(IllegalArgumentException.class, () -> PricingEngine.fromProperties(props));
+        }
+
+        @Test
+        @DisplayName("Should rebuild the quote tables when the configuration is reloaded")
+        void shouldRebuildQuotesOnReload() throws Exception {
+            PricingEngine engine = PricingEngine.load();
+            assertSame(TicketingConfig.current(), engine.getQuotedConfig());
+
+            Path overrideFile = tempDir.resolve("ticketing.properties");
+            Files.writeString(overrideFile, "max.tickets=40\n");
+            System.setProperty(TicketingConfig.OVERRIDE_FILE_PROPERTY, overrideFile.toString());
+            TicketingConfig.Snapshot snapshot = TicketingConfig.reload();
+
+            assertSame(snapshot, engine.getQuotedConfig());
+            assertEquals(30 * 30 + 5 * 18, engine.quote(PriceTier.PEAK, 30, 5, 5));
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package uk.gov.dwp.uc.pairtest.resilience;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+import uk.gov.dwp.uc.pairtest.standin.FaultInjector;
+import uk.gov.dwp.uc.pairtest.standin.StandInSeatReservationService;
+import uk.gov.dwp.uc.pairtest.standin.StandInTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.spi.RefundableTicketPaymentService;
+import uk.gov.dwp.uc.pairtest.spi.SeatHoldService;
+import uk.gov.dwp.uc.pairtest.util.TicketPurchaseEvaluator;
+import uk.gov.dwp.uc.pairtest.util.TicketingConfig;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ResilienceGuardTest {
+
+    @Nested
+    @DisplayName("Guard Tests")
+    class GuardTests {
+        @Test
+        @DisplayName("Should fail with a timeout reason when the call takes too long")
+        void shouldTimeOutSlowCall() {
+            ResilienceGuard guard = guard(50, 4, 5, 1_000);
+
+            long start = System.nanoTime();
+            InvalidPurchaseException e = assertThrows(InvalidPurchaseException.class, () -> guard.run(() -> sleep(2_000)));
+
+            assertEquals(PurchaseOutcome.SERVICE_TIMEOUT, e.getOutcome());
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1), "Caller waited for the slow call");
+        }
+
+        @Test
+        @DisplayName("Should wait for an untimed call however long it takes")
+        void shouldNotTimeOutUntimedCall() {
+            ResilienceGuard guard = guard(20, 4, 5, 1_000);
+            AtomicInteger completed = new AtomicInteger();
+
+            guard.runUntimed(() -> {
+                sleep(200);
+                completed.incrementAndGet();
+            });
+
+            assertEquals(1, completed.get());
+            assertEquals(CircuitBreaker.State.CLOSED, guard.getCircuitState());
+        }
+
+        @Test
+        @DisplayName("Should fail with a busy reason when the bulkhead is full")
+        void shouldRejectWhenBulkheadFull() throws InterruptedException {
+            ResilienceGuard guard = guard(0, 1, 5, 1_000);
+            CountDownLatch inCall = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            Thread holder = Thread.ofVirtual().start(() -> guard.run(() -> {
+                inCall.countDown();
+                await(release);
+            }));
+            assertTrue(inCall.await(5, TimeUnit.SECONDS));
+
+            InvalidPurchaseException e = assertThrows(InvalidPurchaseException.class, () -> guard.run(() -> {}));
+
+            assertEquals(PurchaseOutcome.SERVICE_BUSY, e.getOutcome());
+            release.countDown();
+            holder.join();
+            assertDoesNotThrow(() -> guard.run(() -> {}));
+        }
+
+        @Test
+        @DisplayName("Should open the circuit after consecutive failures and fail fast without calling the service")
+        void shouldOpenCircuitAfterFailures() {
+            ResilienceGuard guard = guard(0, 4, 3, 60_000);
+            AtomicInteger calls = new AtomicInteger();
+            Runnable failing = () -> {
+                calls.incrementAndGet();
+                throw new IllegalStateException("down");
+            };
+
+            for (int i = 0; i < 3; i++) {
+                assertThrows(IllegalStateException.class, () -> guard.run(failing));
+            }
+            InvalidPurchaseException e = assertThrows(InvalidPurchaseException.class, () -> guard.run(failing));
+
+            assertEquals(PurchaseOutcome.SERVICE_UNAVAILABLE, e.getOutcome());
+            assertEquals(CircuitBreaker.State.OPEN, guard.getCircuitState());
+            assertEquals(3, calls.get());
+        }
+
+        @Test
+        @DisplayName("Should close the circuit when the trial call after the open period succeeds")
+        void shouldCloseCircuitAfterSuccessfulTrial() throws InterruptedException {
+            ResilienceGuard guard = guard(0, 4, 1, 50);
+            assertThrows(IllegalStateException.class, () -> guard.run(() -> {
+                throw new IllegalStateException("down");
+            }));
+            assertEquals(CircuitBreaker.State.OPEN, guard.getCircuitState());
+
+            Thread.sleep(100);
+            assertEquals(CircuitBreaker.State.HALF_OPEN, guard.getCircuitState());
+            guard.run(() -> {});
+
+            assertEquals(CircuitBreaker.State.CLOSED, guard.getCircuitState());
+        }
+
+        @Test
+        @DisplayName("Should not count a business rejection from the service as a failure")
+        void shouldNotCountRejectionAsFailure() {
+            ResilienceGuard guard = guard(0, 4, 1, 60_000);
+
+            for (int i = 0; i < 3; i++) {
+                InvalidPurchaseException e = assertThrows(InvalidPurchaseException.class, () -> guard.run(() -> {
+                    throw TicketPurchaseEvaluator.rejection(PurchaseOutcome.SEATS_UNAVAILABLE);
+                }));
+                assertEquals(PurchaseOutcome.SEATS_UNAVAILABLE, e.getOutcome());
+            }
+
+            assertEquals(CircuitBreaker.State.CLOSED, guard.getCircuitState());
+        }
+    }
+
+    @Nested
+    @DisplayName("Brownout Tests")
+    class BrownoutTests {
+        @Test
+        @DisplayName("Should keep purchase latency bounded while holding seats browns out")
+        void shouldBoundLatencyDuringBrownout() {
+            SeatHoldService seats = mock(SeatHoldService.class);
+            when(seats.holdSeats(anyLong(), anyInt())).thenAnswer(invocation -> {
+                sleep(2_000);
+                return 1L;
+            });
+            ResilientTicketPaymentService payments = ResilientTicketPaymentService.wrap(
+                new StandInTicketPaymentService(), guard(50, 8, 3, 60_000));
+            TicketServiceImpl ticketService = new TicketServiceImpl(payments,
+                ResilientSeatReservationService.wrap(seats, guard(50, 8, 3, 60_000)));
+
+            long worstNanos = 0;
+            int unavailable = 0;
+            for (int i = 0; i < 20; i++) {
+                long start = System.nanoTime();
+                InvalidPurchaseException e = assertThrows(InvalidPurchaseException.class,
+                    () -> ticketService.purchaseTickets(1L, 1, 0, 0));
+                worstNanos = Math.max(worstNanos, System.nanoTime() - start);
+                if (e.getOutcome() == PurchaseOutcome.SERVICE_UNAVAILABLE) {
+                    unavailable++;
+                }
+            }
+
+            assertTrue(worstNanos < TimeUnit.MILLISECONDS.toNanos(500), "Worst purchase took " + worstNanos + "ns");
+            assertEquals(17, unavailable);
+            assertInstanceOf(RefundableTicketPaymentService.class, payments);
+        }
+    }
+
+    @Nested
+    @DisplayName("Payment Tests")
+    class PaymentTests {
+        @Test
+        @DisplayName("Should take a slow payment rather than abandon it with a timeout")
+        void shouldNotTimeOutPayment() {
+            FaultInjector faults = new FaultInjector().setExtraLatency(Duration.ofMillis(200));
+            ResilientTicketPaymentService payments = ResilientTicketPaymentService.wrap(
+                new StandInTicketPaymentService(0L, faults), guard(20, 8, 3, 60_000));
+
+            assertDoesNotThrow(() -> payments.makePayment(1L, 25));
+            assertEquals(CircuitBreaker.State.CLOSED, payments.getGuard().getCircuitState());
+        }
+    }
+
+    @Nested
+    @DisplayName("Reservation Tests")
+    class ReservationTests {
+        @Test
+        @DisplayName("Should wait for a hold confirmation that finishes after the timeout rather than refund a sale")
+        void shouldNotTimeOutConfirmation() {
+            SeatHoldService seats = mock(SeatHoldService.class);
+            AtomicInteger confirmed = new AtomicInteger();
+            when(seats.holdSeats(1L, 1)).thenReturn(7L);
+            doAnswer(invocation -> {
+                sleep(200);
+                return confirmed.incrementAndGet();
+            }).when(seats).confirmHold(7L);
+            RefundableTicketPaymentService payments = mock(RefundableTicketPaymentService.class);
+            TicketServiceImpl ticketService = new TicketServiceImpl(payments,
+                ResilientSeatReservationService.wrap(seats, guard(20, 8, 3, 60_000)));
+
+            assertDoesNotThrow(() -> ticketService.purchaseTickets(1L, 1, 0, 0));
+
+            assertEquals(1, confirmed.get());
+            verify(payments, never()).refundPayment(anyLong(), anyInt());
+            verify(seats, never()).releaseHold(anyLong());
+        }
+
+        @Test
+        @DisplayName("Should wait for a seat reservation that finishes after the timeout")
+        void shouldNotTimeOutReservation() {
+            FaultInjector faults = new FaultInjector().setExtraLatency(Duration.ofMillis(200));
+            ResilientSeatReservationService seats = ResilientSeatReservationService.wrap(
+                new StandInSeatReservationService(0L, faults), guard(20, 8, 3, 60_000));
+
+            assertDoesNotThrow(() -> seats.reserveSeat(1L, 2));
+            assertEquals(CircuitBreaker.State.CLOSED, seats.getGuard().getCircuitState());
+        }
+    }
+
+    @Nested
+    @DisplayName("Compensation Tests")
+    class CompensationTests {
+        @Test
+        @DisplayName("Should refund and release seats while the circuit is open")
+        void shouldCompensateWhileCircuitOpen() {
+            RefundableTicketPaymentService gateway = mock(RefundableTicketPaymentService.class);
+            SeatHoldService seats = mock(SeatHoldService.class);
+            ResilienceGuard paymentGuard = guard(0, 4, 1, 60_000);
+            ResilienceGuard seatGuard = guard(0, 4, 1, 60_000);
+            tripCircuit(paymentGuard);
+            tripCircuit(seatGuard);
+            RefundableTicketPaymentService payments =
+                (RefundableTicketPaymentService) ResilientTicketPaymentService.wrap(gateway, paymentGuard);
+            SeatHoldService holds = (SeatHoldService) ResilientSeatReservationService.wrap(seats, seatGuard);
+
+            assertThrows(InvalidPurchaseException.class, () -> payments.makePayment(1L, 25));
+            payments.refundPayment(1L, 25);
+            holds.releaseSeat(1L, 2);
+            holds.releaseHold(7L);
+
+            verify(gateway, never()).makePayment(anyLong(), anyInt());
+            verify(gateway).refundPayment(1L, 25);
+            verify(seats).releaseSeat(1L, 2);
+            verify(seats).releaseHold(7L);
+        }
+
+        private void tripCircuit(ResilienceGuard guard) {
+            assertThrows(IllegalStateException.class, () -> guard.run(() -> {
+                throw new IllegalStateException("down");
+            }));
+            assertEquals(CircuitBreaker.State.OPEN, guard.getCircuitState());
+        }
+    }
+
+    private static ResilienceGuard guard(int timeoutMillis, int maxConcurrentCalls, int failureThreshold, int openMillis) {
+        TicketingConfig.ServiceSettings settings =
+            new TicketingConfig.ServiceSettings(timeoutMillis, maxConcurrentCalls, failureThreshold, openMillis);
+        return new ResilienceGuard(() -> settings);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package uk.gov.dwp.uc.pairtest.sales;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.pricing.TicketPricing;
+import uk.gov.dwp.uc.pairtest.spi.PurchaseListener;
+import uk.gov.dwp.uc.pairtest.standin.StandInSeatReservationService;
+import uk.gov.dwp.uc.pairtest.standin.StandInTicketPaymentService;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SalesRollupTest {
+
+    private static final long MINUTE = 60_000L;
+
+    // An hour after the epoch, moved on by hand
+    private final AtomicLong clock = new AtomicLong(60 * MINUTE);
+    private SalesRollup rollup;
+
+    @BeforeEach
+    void setUp() {
+        rollup = new SalesRollup(4, Duration.ofMinutes(10), TicketPricing.standard(), clock::get);
+    }
+
+    @Nested
+    @DisplayName("Recording Tests")
+    class RecordingTests {
+        @Test
+        @DisplayName("Should roll up the purchases a ticket service completes by type")
+        void shouldRollUpCompletedPurchases() {
+            TicketServiceImpl service = new TicketServiceImpl(new StandInTicketPaymentService(),
+                new StandInSeatReservationService(), TicketPricing.standard(), rollup.forScreening("evening"));
+
+            service.purchaseTickets(1L, 2, 1, 1);
+            service.purchaseTickets(2L, 1, 0, 0);
+
+            SalesTotals totals = rollup.lastMinutes("evening", 1);
+            assertEquals(2, totals.getPurchases());
+            assertEquals(3, totals.getTickets(TicketTypeRequest.Type.ADULT));
+            assertEquals(1, totals.getTickets(TicketTypeRequest.Type.CHILD));
+            assertEquals(1, totals.getTickets(TicketTypeRequest.Type.INFANT));
+            assertEquals(5, totals.getTickets());
+            assertEquals(75, totals.getRevenue(TicketTypeRequest.Type.ADULT));
+            assertEquals(15, totals.getRevenue(TicketTypeRequest.Type.CHILD));
+            assertEquals(90, totals.getRevenue());
+        }
+
+        @Test
+        @DisplayName("Should record the amount charged, split by type with the screening's pricing")
+        void shouldRecordAmountCharged() {
+            // Charged 52 for tickets quoted at 50 and 15 on their own
+            rollup.forScreening("evening").onPurchaseCompleted(0L, 1L, 2, 1, 0, 52);
+            // Priced at 20 an adult and 10 a child for this screening, not the rollup's standard prices
+            rollup.forScreening("matinee", (adults, children, infants) -> 20L * adults + 10L * children)
+                .onPurchaseCompleted(0L, 1L, 1, 1, 0, 30);
+
+            SalesTotals evening = rollup.sinceOnSale("evening");
+            assertEquals(52, evening.getRevenue());
+            assertEquals(12, evening.getRevenue(TicketTypeRequest.Type.CHILD));
+            assertEquals(40, evening.getRevenue(TicketTypeRequest.Type.ADULT));
+            SalesTotals matinee = rollup.sinceOnSale("matinee");
+            assertEquals(20, matinee.getRevenue(TicketTypeRequest.Type.ADULT));
+            assertEquals(10, matinee.getRevenue(TicketTypeRequest.Type.CHILD));
+        }
+
+        @Test
+        @DisplayName("Should keep screenings apart and sum them on request")
+        void shouldKeepScreeningsApart() {
+            rollup.forScreening("evening").onPurchaseCompleted(0L, 1L, 2, 0, 0, 50);
+            rollup.forScreening("matinee").onPurchaseCompleted(0L, 1L, 1, 1, 0, 40);
+
+            assertSame(rollup.forScreening("evening"), rollup.forScreening("evening"));
+            assertEquals(2, rollup.lastMinutes("evening", 5).getTickets());
+            assertEquals(15, rollup.lastMinutes("matinee", 5).getRevenue(TicketTypeRequest.Type.CHILD));
+            assertEquals(4, rollup.lastMinutes(5).getTickets());
+            assertEquals(2, rollup.lastMinutes(5).getPurchases());
+        }
+
+        @Test
+        @DisplayName("Should count nothing for failed purchases")
+        void shouldIgnoreFailedPurchases() {
+            PurchaseListener sales = rollup.forScreening("evening");
+            sales.onPaymentTaken(0L, 1L, 2, 0, 0, 50);
+            sales.onPurchaseFailed(0L, 1L, 2, 0, 0, 50, null, true);
+
+            assertEquals(0, rollup.sinceOnSale("evening").getPurchases());
+        }
+
+        @Test
+        @DisplayName("Should free the row of a retired screening for a new one, with none of its sales")
+        void shouldReuseRetiredRow() {
+            PurchaseListener evening = rollup.forScreening("evening");
+            evening.onPurchaseCompleted(0L, 1L, 2, 0, 0, 50);
+            for (int i = 1; i < 4; i++) {
+                rollup.forScreening("screening-" + i);
+            }
+
+            SalesTotals retired = rollup.retire("evening");
+            PurchaseListener late = rollup.forScreening("late");
+            evening.onPurchaseCompleted(0L, 2L, 1, 0, 0, 25);
+
+            assertEquals(2, retired.getTickets());
+            assertEquals(0, rollup.sinceOnSale("late").getPurchases());
+            assertEquals(0, rollup.lastMinutes("late", 10).getPurchases());
+            assertEquals(0, rollup.lastMinutes(10).getTickets());
+            assertThrows(IllegalArgumentException.class, () -> rollup.sinceOnSale("evening"));
+            assertThrows(IllegalArgumentException.class, () -> rollup.retire("evening"));
+            assertThrows(IllegalStateException.class, () -> rollup.forScreening("one-too-many"));
+            late.onPurchaseCompleted(0L, 3L, 1, 0, 0, 25);
+            assertEquals(1, rollup.sinceOnSale("late").getTickets());
+        }
+
+        @Test
+        @DisplayName("Should reject unknown screenings, bad ranges, and screenings beyond the capacity")
+        void shouldRejectInvalidQueries() {
+            for (int i = 0; i < 4; i++) {
+                rollup.forScreening("screening-" + i);
+            }
+
+            assertThrows(IllegalStateException.class, () -> rollup.forScreening("one-too-many"));
+            assertThrows(IllegalArgumentException.class, () -> rollup.lastMinutes("unknown", 1));
+            assertThrows(IllegalArgumentException.class, () -> rollup.lastMinutes("screening-0", 11));
+            assertThrows(IllegalArgumentException.class, () -> rollup.lastMinutes(0));
+            assertThrows(IllegalArgumentException.class,
+                () -> new SalesRollup(1, Duration.ofSeconds(30), TicketPricing.standard()));
+        }
+    }
+
+    @Nested
+    @DisplayName("Time Window Tests")
+    class TimeWindowTests {
+        @Test
+        @DisplayName("Should answer the last minutes and ranges of minutes")
+        void shouldQueryMinuteRanges() {
+            PurchaseListener sales = rollup.forScreening("evening");
+            Instant start = Instant.ofEpochMilli(clock.get());
+            for (int minute = 0; minute < 5; minute++) {
+                // minute + 1 adults in each minute
+                sales.onPurchaseCompleted(0L, 1L, minute + 1, 0, 0, 0);
+                clock.addAndGet(MINUTE);
+            }
+            clock.addAndGet(-MINUTE);
+
+            assertEquals(5, rollup.lastMinutes("evening", 1).getTickets());
+            assertEquals(5 + 4 + 3, rollup.lastMinutes("evening", 3).getTickets());
+            assertEquals(15, rollup.lastMinutes("evening", 10).getTickets());
+            assertEquals(2 + 3, rollup.between("evening", start.plusSeconds(60), start.plusSeconds(179)).getTickets());
+            assertEquals(0, rollup.between("evening", start.plusSeconds(600), start.plusSeconds(900)).getTickets());
+        }
+
+        @Test
+        @DisplayName("Should forget minutes past the retention but keep the totals since on-sale")
+        void shouldForgetMinutesPastRetention() {
+            PurchaseListener sales = rollup.forScreening("evening");
+            sales.onPurchaseCompleted(0L, 1L, 3, 0, 0, 75);
+
+            // Ten minutes later the same bucket of the ring is reused
+            clock.addAndGet(10 * MINUTE);
+            sales.onPurchaseCompleted(0L, 2L, 1, 0, 0, 25);
+
+            assertEquals(1, rollup.lastMinutes("evening", 10).getTickets());
+            assertEquals(1, rollup.lastMinutes("evening", 1).getPurchases());
+            assertEquals(4, rollup.sinceOnSale("evening").getTickets());
+            assertEquals(100, rollup.sinceOnSale("evening").getRevenue());
+
+            clock.addAndGet(20 * MINUTE);
+            assertEquals(0, rollup.lastMinutes("evening", 10).getTickets());
+            assertEquals(2, rollup.sinceOnSale("evening").getPurchases());
+        }
+
+        @Test
+        @DisplayName("Should lose no purchase recorded concurrently while the minute rolls over")
+        void shouldCountConcurrentPurchases() throws Exception {
+            SalesRollup realClock = new SalesRollup(2, Duration.ofMinutes(60), TicketPricing.standard());
+            PurchaseListener sales = realClock.forScreening("evening");
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<?>> results = new ArrayList<>();
+                for (int thread = 0; thread < 8; thread++) {
+                    results.add(executor.submit(() -> {
+                        for (int i = 0; i < 10_000; i++) {
+                            sales.onPurchaseCompleted(0L, 1L, 1, 1, 0, 40);
+                        }
+                    }));
+                }
+                for (Future<?> result : results) {
+                    result.get();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            SalesTotals totals = realClock.sinceOnSale("evening");
+            assertEquals(80_000, totals.getPurchases());
+            assertEquals(80_000 * 40L, totals.getRevenue());
+            assertEquals(totals.getTickets(), realClock.lastMinutes("evening", 60).getTickets());
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package uk.gov.dwp.uc.pairtest.stream;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import uk.gov.dwp.uc.pairtest.TicketService;
+import uk.gov.dwp.uc.pairtest.TicketServiceImpl;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOrder;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseResult;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.standin.StandInSeatReservationService;
+import uk.gov.dwp.uc.pairtest.standin.StandInTicketPaymentService;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PurchaseStreamProcessorTest {
+
+    private static final TicketTypeRequest ADULT = TicketTypeRequest.of(TicketTypeRequest.Type.ADULT, 1);
+    private static final TicketTypeRequest CHILD = TicketTypeRequest.of(TicketTypeRequest.Type.CHILD, 1);
+
+    private static TicketService standInService() {
+        return new TicketServiceImpl(new StandInTicketPaymentService(), new StandInSeatReservationService());
+    }
+
+    @Nested
+    @DisplayName("Stream Tests")
+    class StreamTests {
+        @Test
+        @DisplayName("Should publish a result for every order and complete after the upstream")
+        void shouldPublishEveryResult() throws Exception {
+            PurchaseStreamProcessor processor = new PurchaseStreamProcessor(standInService(), 4);
+            RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+            processor.subscribe(subscriber);
+
+            try (SubmissionPublisher<PurchaseOrder> orders = new SubmissionPublisher<>()) {
+                orders.subscribe(processor);
+                for (long account = 1; account <= 100; account++) {
+                    orders.submit(new PurchaseOrder(account, account % 10 == 0 ? CHILD : ADULT));
+                }
+            }
+
+            subscriber.done.get(5, TimeUnit.SECONDS);
+            assertEquals(100, subscriber.results.size());
+            assertEquals(90, subscriber.results.stream().filter(PurchaseResult::isAccepted).count());
+            assertEquals(10, subscriber.results.stream()
+                .filter(result -> result.getOutcome() == PurchaseOutcome.ADULT_REQUIRED).count());
+        }
+
+        @Test
+        @DisplayName("Should publish a gateway failure as a rejection and carry on")
+        void shouldCarryOnAfterGatewayFailure() throws Exception {
+            TicketService failingFirst = new TicketService() {
+                private final AtomicBoolean failed = new AtomicBoolean();
+
+                @Override
+                public void purchaseTickets(Long accountId, TicketTypeRequest... ticketTypeRequests) {
+                    if (failed.compareAndSet(false, true)) {
+                        throw new IllegalStateException("gateway down");
+                    }
+                }
+            };
+            PurchaseStreamProcessor processor = new PurchaseStreamProcessor(failingFirst, 1);
+            TestPublisher orders = new TestPublisher();
+            RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+            processor.subscribe(subscriber);
+            orders.subscribe(processor);
+
+            orders.emit(new PurchaseOrder(1L, ADULT));
+            orders.awaitRequested(2);
+            orders.emit(new PurchaseOrder(2L, ADULT));
+            orders.complete();
+
+            subscriber.done.get(5, TimeUnit.SECONDS);
+            assertFalse(subscriber.results.get(0).isAccepted());
+            assertNull(subscriber.results.get(0).getOutcome());
+            assertEquals("gateway down", subscriber.results.get(0).getReason());
+            assertTrue(subscriber.results.get(1).isAccepted());
+        }
+
+        @Test
+        @DisplayName("Should pass an upstream error on after the results already in progress")
+        void shouldPassOnUpstreamError() throws Exception {
+            PurchaseStreamProcessor processor = new PurchaseStreamProcessor(standInService(), 2);
+            TestPublisher orders = new TestPublisher();
+            RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+            processor.subscribe(subscriber);
+            orders.subscribe(processor);
+
+            orders.emit(new PurchaseOrder(1L, ADULT));
+            orders.fail(new IllegalStateException("gateway disconnected"));
+
+            assertFailedWith(IllegalStateException.class, subscriber.done);
+            assertEquals(1, subscriber.results.size());
+        }
+
+        @Test
+        @DisplayName("Should reject a second subscriber")
+        void shouldRejectSecondSubscriber() {
+            PurchaseStreamProcessor processor = new PurchaseStreamProcessor(standInService(), 2);
+            processor.subscribe(new RecordingSubscriber(1));
+            RecordingSubscriber second = new RecordingSubscriber(1);
+
+            processor.subscribe(second);
+
+            assertFailedWith(IllegalStateException.class, second.done);
+        }
+    }
+
+    @Nested
+    @DisplayName("Backpressure Tests")
+    class BackpressureTests {
+        @Test
+        @DisplayName("Should request no more orders than the subscriber asked for results")
+        void shouldHonourSubscriberDemand() throws Exception {
+            PurchaseStreamProcessor processor = new PurchaseStreamProcessor(standInService(), 8);
+            TestPublisher orders = new TestPublisher();
+            RecordingSubscriber subscriber = new RecordingSubscriber(0);
+            processor.subscribe(subscriber);
+            orders.subscribe(processor);
+
+            assertEquals(0, orders.requested.get());
+            subscriber.subscription.request(2);
+            assertEquals(2, orders.requested.get());
+
+            orders.emit(new PurchaseOrder(1L, ADULT));
+            orders.emit(new PurchaseOrder(2L, ADULT));
+            subscriber.awaitResults(2);
+            assertEquals(2, orders.requested.get());
+
+            subscriber.subscription.request(1);
+            assertEquals(3, orders.requested.get());
+        }
+
+        @Test
+        @DisplayName("Should keep at most maxConcurrency purchases in progress while the gateway is slow")
+        void shouldBoundConcurrency() throws Exception {
+            CountDownLatch gateway = new CountDownLatch(1);
+            AtomicInteger inProgress = new AtomicInteger();
+            AtomicInteger maxInProgress = new AtomicInteger();
+            TicketService slowService = (accountId, requests) -> {
+                maxInProgress.accumulateAndGet(inProgress.incrementAndGet(), Math::max);
+                try {
+                    gateway.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                inProgress.decrementAndGet();
+            };
+            PurchaseStreamProcessor processor = new PurchaseStreamProcessor(slowService, 3);
+            TestPublisher orders = new TestPublisher();
+            RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+            processor.subscribe(subscriber);
+            orders.subscribe(processor);
+
+            assertEquals(3, orders.requested.get());
+            for (long account = 1; account <= 3; account++) {
+                orders.emit(new PurchaseOrder(account, ADULT));
+            }
+            // The slow gateway holds up the intake
+            Thread.sleep(50);
+            assertEquals(3, orders.requested.get());
+
+            gateway.countDown();
+            subscriber.awaitResults(3);
+            orders.awaitRequested(6);
+            assertEquals(3, maxInProgress.get());
+        }
+
+        @Test
+        @DisplayName("Should cancel the upstream when the subscriber cancels")
+        void shouldCancelUpstream() {
+            PurchaseStreamProcessor processor = new PurchaseStreamProcessor(standInService(), 2);
+            TestPublisher orders = new TestPublisher();
+            RecordingSubscriber subscriber = new RecordingSubscriber(1);
+            processor.subscribe(subscriber);
+            orders.subscribe(processor);
+
+            subscriber.subscription.cancel();
+
+            assertTrue(orders.cancelled.get());
+        }
+
+        @Test
+        @DisplayName("Should fail the stream on a demand that is not positive")
+        void shouldFailOnNonPositiveDemand() {
+            PurchaseStreamProcessor processor = new PurchaseStreamProcessor(standInService(), 2);
+            TestPublisher orders = new TestPublisher();
+            RecordingSubscriber subscriber = new RecordingSubscriber(0);
+            processor.subscribe(subscriber);
+            orders.subscribe(processor);
+
+            subscriber.subscription.request(0);
+
+            assertFailedWith(IllegalArgumentException.class, subscriber.done);
+            assertTrue(orders.cancelled.get());
+        }
+    }
+
+    // Publisher driven by hand, recording the demand it was given
+    private static final class TestPublisher implements Flow.Publisher<PurchaseOrder> {
+        final AtomicLong requested = new AtomicLong();
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        private Flow.Subscriber<? super PurchaseOrder> subscriber;
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super PurchaseOrder> subscriber) {
+            this.subscriber = subscriber;
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    requested.addAndGet(n);
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled.set(true);
+                }
+            });
+        }
+
+        void emit(PurchaseOrder order) {
+            subscriber.onNext(order);
+        }
+
+        void complete() {
+            subscriber.onComplete();
+        }
+
+        void fail(Throwable error) {
+            subscriber.onError(error);
+        }
+
+        void awaitRequested(long count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (requested.get() < count) {
+                assertTrue(System.nanoTime() < deadline, "requested only " + requested.get());
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    private static final class RecordingSubscriber implements Flow.Subscriber<PurchaseResult> {
+        final List<PurchaseResult> results = new CopyOnWriteArrayList<>();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        private final long initialDemand;
+        Flow.Subscription subscription;
+
+        RecordingSubscriber(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialDemand > 0) {
+                subscription.request(initialDemand);
+            }
+        }
+
+        @Override
+        public void onNext(PurchaseResult item) {
+            results.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            done.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            done.complete(null);
+        }
+
+        void awaitResults(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (results.size() < count) {
+                assertTrue(System.nanoTime() < deadline, "received only " + results.size());
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    private static void assertFailedWith(Class<? extends Throwable> expected, CompletableFuture<Void> done) {
+        Exception failure = assertThrows(Exception.class, () -> done.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(expected, failure.getCause());
+    }
+}
@@ -0,0 +1,67 @@
+package uk.gov.dwp.uc.pairtest.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountLocksTest {
+
+    @Test
+    @DisplayName("Should round the stripe count up to a power of two")
+    void shouldRoundStripeCountUpToPowerOfTwo() {
+        assertEquals(16, new AccountLocks(10).getStripeCount());
+        assertEquals(1024, new AccountLocks(1024).getStripeCount());
+        assertTrue(AccountLocks.forAvailableProcessors().getStripeCount() >= 1024);
+    }
+
+    @Test
+    @DisplayName("Should spread sequential account ids across the stripes")
+    void shouldSpreadSequentialAccountIds() {
+        AccountLocks locks = new AccountLocks(1024);
+        Set<Integer> stripes = new HashSet<>();
+        for (long accountId = 1; accountId <= 256; accountId++) {
+            stripes.add(locks.stripe(accountId));
+        }
+
+        assertTrue(stripes.size() > 200, "Only " + stripes.size() + " distinct stripes");
+        assertNotEquals(locks.stripe(1L), locks.stripe(2L));
+    }
+
+    @Test
+    @DisplayName("Should block a second holder of the same account until it is unlocked")
+    void shouldBlockSameAccount() throws Exception {
+        AccountLocks locks = new AccountLocks(64);
+        locks.lock(42L);
+
+        CountDownLatch acquired = new CountDownLatch(1);
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> {
+            locks.lock(42L);
+            acquired.countDown();
+            locks.unlock(42L);
+        });
+
+        assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+        locks.unlock(42L);
+        assertTrue(acquired.await(10, TimeUnit.SECONDS));
+        second.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    @DisplayName("Should let a lock be released from another thread")
+    void shouldReleaseFromAnotherThread() throws Exception {
+        AccountLocks locks = new AccountLocks(64);
+        locks.lock(7L);
+
+        CompletableFuture.runAsync(() -> locks.unlock(7L)).get(10, TimeUnit.SECONDS);
+
+        locks.lock(7L);
+        locks.unlock(7L);
+    }
+}
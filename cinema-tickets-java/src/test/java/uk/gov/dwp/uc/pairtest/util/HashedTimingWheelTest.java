@@ -0,0 +1,113 @@
+package uk.gov.dwp.uc.pairtest.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedTimingWheelTest {
+
+    private HashedTimingWheel wheel;
+
+    @BeforeEach
+    void setUp() {
+        // 8 buckets of 1 ms, so most delays below take several turns of the wheel
+        wheel = new HashedTimingWheel(Duration.ofMillis(1), 8, "test-timing-wheel");
+    }
+
+    @AfterEach
+    void tearDown() {
+        wheel.close();
+    }
+
+    @Test
+    @DisplayName("Should expire a timeout once its delay has passed")
+    void shouldExpireAfterDelay() throws Exception {
+        CountDownLatch expired = new CountDownLatch(1);
+        CountingTimeout timeout = new CountingTimeout(expired);
+        long start = System.nanoTime();
+
+        wheel.schedule(timeout, Duration.ofMillis(30));
+
+        assertTrue(expired.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+        assertEquals(1, timeout.expiries.get());
+    }
+
+    @Test
+    @DisplayName("Should not expire a cancelled timeout")
+    void shouldNotExpireCancelledTimeout() throws Exception {
+        CountingTimeout cancelled = new CountingTimeout(new CountDownLatch(1));
+        CountDownLatch later = new CountDownLatch(1);
+
+        wheel.schedule(cancelled, Duration.ofMillis(10));
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        wheel.schedule(new CountingTimeout(later), Duration.ofMillis(40));
+
+        assertTrue(later.await(5, TimeUnit.SECONDS));
+        assertEquals(0, cancelled.expiries.get());
+        assertFalse(cancelled.isPending());
+        assertFalse(cancelled.isExpired());
+    }
+
+    @Test
+    @DisplayName("Should expire every one of many timeouts exactly once")
+    void shouldExpireManyTimeouts() throws Exception {
+        int count = 100_000;
+        CountDownLatch expired = new CountDownLatch(count / 2);
+        CountingTimeout[] timeouts = new CountingTimeout[count];
+        for (int i = 0; i < count; i++) {
+            timeouts[i] = new CountingTimeout(expired);
+            wheel.schedule(timeouts[i], Duration.ofMillis(i % 50));
+        }
+        for (int i = 1; i < count; i += 2) {
+            timeouts[i].cancel();
+        }
+
+        assertTrue(expired.await(10, TimeUnit.SECONDS));
+        Thread.sleep(20);
+        for (int i = 0; i < count; i++) {
+            // A timeout due at once may expire before it is cancelled
+            int expected = i % 2 == 0 || timeouts[i].isExpired() ? 1 : 0;
+            assertEquals(expected, timeouts[i].expiries.get(), "timeout " + i);
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject scheduling a timeout twice or on a closed wheel")
+    void shouldRejectInvalidScheduling() {
+        CountingTimeout timeout = new CountingTimeout(new CountDownLatch(1));
+        wheel.schedule(timeout, Duration.ofSeconds(10));
+
+        assertThrows(IllegalStateException.class, () -> wheel.schedule(timeout, Duration.ofSeconds(10)));
+        wheel.close();
+        assertThrows(IllegalStateException.class,
+            () -> wheel.schedule(new CountingTimeout(new CountDownLatch(1)), Duration.ofSeconds(10)));
+        assertThrows(IllegalArgumentException.class, () -> new HashedTimingWheel(Duration.ZERO, 8, "invalid"));
+    }
+
+    private static final class CountingTimeout extends HashedTimingWheel.Timeout {
+        final AtomicInteger expiries = new AtomicInteger();
+        private final CountDownLatch latch;
+
+        CountingTimeout(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        protected void expired() {
+            expiries.incrementAndGet();
+            latch.countDown();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package uk.gov.dwp.uc.pairtest.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyCacheTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    @DisplayName("Should hand the original result to later claims of the same key")
+    void shouldReturnOriginalResultForSameKey() {
+        IdempotencyCache<String> cache = new IdempotencyCache<>(10, Duration.ofMinutes(1), clock::get);
+        CompletableFuture<String> first = new CompletableFuture<>();
+
+        assertNull(cache.claim("key", "order", first));
+        assertSame(first, cache.claim("key", "order", new CompletableFuture<>()));
+        assertNull(cache.claim("other", "order", new CompletableFuture<>()));
+    }
+
+    @Test
+    @DisplayName("Should let a key be claimed again once its completed entry has expired")
+    void shouldExpireEntries() {
+        IdempotencyCache<String> cache = new IdempotencyCache<>(10, Duration.ofSeconds(30), clock::get);
+        cache.claim("key", "order", CompletableFuture.completedFuture("done"));
+
+        clock.addAndGet(Duration.ofSeconds(29).toNanos());
+        assertNotNull(cache.claim("key", "order", new CompletableFuture<>()));
+
+        clock.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertNull(cache.claim("key", "order", new CompletableFuture<>()));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    @DisplayName("Should evict the oldest entries beyond the maximum size")
+    void shouldEvictOldestEntriesBeyondMaximumSize() {
+        IdempotencyCache<String> cache = new IdempotencyCache<>(3, Duration.ofMinutes(1), clock::get);
+        for (int i = 0; i < 5; i++) {
+            cache.claim("key-" + i, "order", CompletableFuture.completedFuture("done"));
+        }
+
+        assertEquals(3, cache.size());
+        assertNull(cache.claim("key-0", "order", new CompletableFuture<>()));
+        assertNotNull(cache.claim("key-4", "order", new CompletableFuture<>()));
+    }
+
+    @Test
+    @DisplayName("Should never evict or expire an entry whose result is still in flight")
+    void shouldKeepInFlightEntries() {
+        IdempotencyCache<String> cache = new IdempotencyCache<>(2, Duration.ofSeconds(30), clock::get);
+        CompletableFuture<String> inFlight = new CompletableFuture<>();
+        cache.claim("in-flight", "order", inFlight);
+        for (int i = 0; i < 5; i++) {
+            cache.claim("key-" + i, "order", CompletableFuture.completedFuture("done"));
+        }
+        clock.addAndGet(Duration.ofMinutes(5).toNanos());
+
+        assertSame(inFlight, cache.claim("in-flight", "order", new CompletableFuture<>()));
+
+        inFlight.complete("done");
+        clock.addAndGet(Duration.ofSeconds(29).toNanos());
+        assertSame(inFlight, cache.claim("in-flight", "order", new CompletableFuture<>()));
+        clock.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertNull(cache.claim("in-flight", "order", new CompletableFuture<>()));
+    }
+
+    @Test
+    @DisplayName("Should let a released key be claimed again at once")
+    void shouldReleaseKey() {
+        IdempotencyCache<String> cache = new IdempotencyCache<>(10, Duration.ofMinutes(1), clock::get);
+        CompletableFuture<String> first = new CompletableFuture<>();
+        cache.claim("key", "order", first);
+
+        cache.release("key", new CompletableFuture<>());
+        assertSame(first, cache.claim("key", "order", new CompletableFuture<>()));
+
+        cache.release("key", first);
+        first.completeExceptionally(new IllegalStateException());
+        assertEquals(0, cache.size());
+        assertNull(cache.claim("key", "order", new CompletableFuture<>()));
+    }
+
+    @Test
+    @DisplayName("Should refuse a key reused for a different request")
+    void shouldRefuseKeyReusedForDifferentRequest() {
+        IdempotencyCache<String> cache = new IdempotencyCache<>(10, Duration.ofMinutes(1), clock::get);
+        cache.claim("key", "order-1", new CompletableFuture<>());
+
+        assertThrows(IllegalArgumentException.class, () -> cache.claim("key", "order-2", new CompletableFuture<>()));
+        assertNotNull(cache.claim("key", "order-1", new CompletableFuture<>()));
+    }
+}
@@ -0,0 +1,41 @@
+package uk.gov.dwp.uc.pairtest.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TetrahedralIndexTest {
+
+    @Test
+    @DisplayName("Should number every combination up to the maximum once, with no gaps")
+    void shouldNumberCombinationsDensely() {
+        int max = 9;
+        TetrahedralIndex index = TetrahedralIndex.upTo(max, Long.MAX_VALUE);
+        boolean[] seen = new boolean[index.size()];
+
+        assertEquals(TetrahedralIndex.combinations(max), index.size());
+        for (int adults = 0; adults <= max; adults++) {
+            for (int children = 0; adults + children <= max; children++) {
+                for (int infants = 0; adults + children + infants <= max; infants++) {
+                    assertTrue(index.covers(adults, children, infants));
+                    int position = index.indexOf(adults, children, infants);
+                    assertFalse(seen[position], "position " + position + " assigned twice");
+                    seen[position] = true;
+                }
+            }
+        }
+        assertFalse(index.covers(max, 1, 0));
+    }
+
+    @Test
+    @DisplayName("Should refuse sizes over the limit without overflowing")
+    void shouldRefuseOversizedIndex() {
+        assertSame(TetrahedralIndex.NONE, TetrahedralIndex.upTo(100, 1000));
+        assertSame(TetrahedralIndex.NONE, TetrahedralIndex.upTo(-1, Long.MAX_VALUE));
+        assertSame(TetrahedralIndex.NONE, TetrahedralIndex.upTo(TicketingConfig.Snapshot.MAX_TICKETS_LIMIT, Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, TetrahedralIndex.combinations(Integer.MAX_VALUE));
+        assertFalse(TetrahedralIndex.NONE.covers(0, 0, 0));
+        assertFalse(TetrahedralIndex.upTo(5, Long.MAX_VALUE).covers(Integer.MAX_VALUE, Integer.MAX_VALUE, 2));
+    }
+}
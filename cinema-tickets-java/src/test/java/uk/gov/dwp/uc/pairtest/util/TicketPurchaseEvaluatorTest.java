@@ -0,0 +1,76 @@
+package uk.gov.dwp.uc.pairtest.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
+import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TicketPurchaseEvaluatorTest {
+
+    @Test
+    @DisplayName("Should tally tickets per type and derive amount and seats in one evaluation")
+    void shouldTallyTicketsAndDeriveAmountAndSeats() {
+        long evaluation = TicketPurchaseEvaluator.evaluate(1L,
+            new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 2),
+            new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 2),
+            new TicketTypeRequest(TicketTypeRequest.Type.INFANT, 1),
+            new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1));
+
+        assertEquals(3, TicketPurchaseEvaluator.adults(evaluation));
+        assertEquals(2, TicketPurchaseEvaluator.children(evaluation));
+        assertEquals(1, TicketPurchaseEvaluator.infants(evaluation));
+        assertEquals(105, TicketPurchaseEvaluator.totalAmount(evaluation)); // (3 * £25) + (2 * £15)
+        assertEquals(5, TicketPurchaseEvaluator.totalSeats(evaluation));
+    }
+
+    @Test
+    @DisplayName("Should agree with the calculation utils")
+    void shouldAgreeWithCalculationUtils() {
+        TicketTypeRequest[] requests = {
+            new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 4),
+            new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 7),
+            new TicketTypeRequest(TicketTypeRequest.Type.INFANT, 4)
+        };
+
+        long evaluation = TicketPurchaseEvaluator.evaluate(1L, requests);
+
+        assertEquals(TicketCalculationUtils.calculateTotalAmount(requests), TicketPurchaseEvaluator.totalAmount(evaluation));
+        assertEquals(TicketCalculationUtils.calculateTotalSeats(requests), TicketPurchaseEvaluator.totalSeats(evaluation));
+    }
+
+    @Test
+    @DisplayName("Should reject requests whose combined size overflows an int")
+    void shouldRejectOverflowingRequests() {
+        InvalidPurchaseException exception = assertThrows(InvalidPurchaseException.class,
+            () -> TicketPurchaseEvaluator.evaluate(1L,
+                new TicketTypeRequest(TicketTypeRequest.Type.ADULT, Integer.MAX_VALUE),
+                new TicketTypeRequest(TicketTypeRequest.Type.ADULT, Integer.MAX_VALUE)));
+        assertTrue(exception.getMessage().contains(String.valueOf(TicketingConfig.getMaxTickets())));
+    }
+
+    @Test
+    @DisplayName("Should evaluate counts per type the same way as request objects")
+    void shouldEvaluateCountsLikeRequests() {
+        long fromCounts = TicketPurchaseEvaluator.evaluate(1L, 3, 2, 1);
+        long fromRequests = TicketPurchaseEvaluator.evaluate(1L,
+            new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 3),
+            new TicketTypeRequest(TicketTypeRequest.Type.CHILD, 2),
+            new TicketTypeRequest(TicketTypeRequest.Type.INFANT, 1));
+
+        assertEquals(fromRequests, fromCounts);
+    }
+
+    @Test
+    @DisplayName("Should reject negative and all-zero counts")
+    void shouldRejectNegativeAndZeroCounts() {
+        InvalidPurchaseException negative = assertThrows(InvalidPurchaseException.class,
+            () -> TicketPurchaseEvaluator.evaluate(1L, 1, 0, -1));
+        assertTrue(negative.getMessage().contains("Invalid ticket request"));
+
+        InvalidPurchaseException none = assertThrows(InvalidPurchaseException.class,
+            () -> TicketPurchaseEvaluator.evaluate(1L, 0, 0, 0));
+        assertTrue(none.getMessage().contains("No tickets requested"));
+    }
+}
@@ -3,6 +3,7 @@ package uk.gov.dwp.uc.pairtest.util;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
 import uk.gov.dwp.uc.pairtest.domain.TicketTypeRequest;
 import uk.gov.dwp.uc.pairtest.exception.InvalidPurchaseException;
 
@@ -110,4 +111,44 @@ class TicketPurchaseValidatorTest {
             assertTrue(exception.getMessage().contains("Number of infants cannot exceed number of adults"));
         }
     }
+
+    @Nested
+    @DisplayName("Outcome Check Tests")
+    class OutcomeCheckTests {
+        @Test
+        @DisplayName("Should return an outcome for every rule instead of throwing")
+        void shouldReturnOutcomeForEveryRule() {
+            TicketTypeRequest adult = new TicketTypeRequest(TicketTypeRequest.Type.ADULT, 1);
+            assertAll(
+                () -> assertEquals(PurchaseOutcome.ACCEPTED, TicketPurchaseValidator.check(1L, adult)),
+                () -> assertEquals(PurchaseOutcome.INVALID_ACCOUNT_ID, TicketPurchaseValidator.check(null, adult)),
+                () -> assertEquals(PurchaseOutcome.NO_TICKETS, TicketPurchaseValidator.check(1L)),
+                () -> assertEquals(PurchaseOutcome.INVALID_TICKET_REQUEST,
+                    TicketPurchaseValidator.check(1L, (TicketTypeRequest) null)),
+                () -> assertEquals(PurchaseOutcome.MAX_TICKETS_EXCEEDED,
+                    TicketPurchaseValidator.check(1L, TicketingConfig.getMaxTickets() + 1, 0, 0)),
+                () -> assertEquals(PurchaseOutcome.ADULT_REQUIRED, TicketPurchaseValidator.check(1L, 0, 1, 0)),
+                () -> assertEquals(PurchaseOutcome.INFANT_EXCEEDS_ADULT, TicketPurchaseValidator.check(1L, 1, 0, 2))
+            );
+        }
+
+        @Test
+        @DisplayName("Should throw a stackless exception carrying the outcome and its message")
+        void shouldThrowStacklessExceptionWithOutcome() {
+            InvalidPurchaseException exception = assertThrows(InvalidPurchaseException.class,
+                () -> TicketPurchaseValidator.validate(1L, 1, 0, 2));
+
+            assertEquals(PurchaseOutcome.INFANT_EXCEEDS_ADULT, exception.getOutcome());
+            assertEquals(MessageProvider.getMessage("error.infant.exceeds.adult"), exception.getMessage());
+            assertEquals(0, exception.getStackTrace().length);
+        }
+
+        @Test
+        @DisplayName("Should format the maximum ticket message with the configured limit")
+        void shouldFormatMaxTicketMessage() {
+            int max = TicketingConfig.getMaxTickets();
+            assertEquals(MessageProvider.getMessage("error.max.tickets", max),
+                MessageProvider.getRejectionMessage(PurchaseOutcome.MAX_TICKETS_EXCEEDED));
+        }
+    }
 }
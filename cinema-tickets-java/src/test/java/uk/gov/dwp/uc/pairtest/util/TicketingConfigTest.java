@@ -0,0 +1,96 @@
+package uk.gov.dwp.uc.pairtest.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TicketingConfigTest {
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void restoreDefaults() {
+        System.clearProperty(TicketingConfig.OVERRIDE_FILE_PROPERTY);
+        TicketingConfig.reload();
+    }
+
+    @Test
+    @DisplayName("Should read max tickets from application.properties by default")
+    void shouldReadDefaults() {
+        assertEquals(25, TicketingConfig.getMaxTickets());
+        assertSame(TicketingConfig.current(), TicketingConfig.current());
+    }
+
+    @Test
+    @DisplayName("Should read the downstream service limits")
+    void shouldReadServiceSettings() throws Exception {
+        assertEquals(2000, TicketingConfig.current().getPaymentSettings().getTimeoutMillis());
+        assertEquals(64, TicketingConfig.current().getReservationSettings().getMaxConcurrentCalls());
+
+        Path overrideFile = tempDir.resolve("ticketing.properties");
+        Files.writeString(overrideFile, "payment.timeout.ms=250\npayment.circuit.failure.threshold=10\n");
+        System.setProperty(TicketingConfig.OVERRIDE_FILE_PROPERTY, overrideFile.toString());
+        TicketingConfig.Snapshot snapshot = TicketingConfig.reload();
+
+        assertEquals(250, snapshot.getPaymentSettings().getTimeoutMillis());
+        assertEquals(10, snapshot.getPaymentSettings().getFailureThreshold());
+        assertEquals(2000, snapshot.getReservationSettings().getTimeoutMillis());
+    }
+
+    @Test
+    @DisplayName("Should swap in a new snapshot from the override file on reload")
+    void shouldReloadFromOverrideFile() throws Exception {
+        Path overrideFile = tempDir.resolve("ticketing.properties");
+        Files.writeString(overrideFile, "max.tickets=40\n");
+        System.setProperty(TicketingConfig.OVERRIDE_FILE_PROPERTY, overrideFile.toString());
+
+        TicketingConfig.Snapshot before = TicketingConfig.current();
+        TicketingConfig.Snapshot after = TicketingConfig.reload();
+
+        assertNotSame(before, after);
+        assertEquals(40, after.getMaxTickets());
+        assertEquals(40, TicketingConfig.getMaxTickets());
+    }
+
+    @Test
+    @DisplayName("Should keep the current snapshot when the override file holds an invalid value")
+    void shouldKeepSnapshotOnInvalidValue() throws Exception {
+        Path overrideFile = tempDir.resolve("ticketing.properties");
+        Files.writeString(overrideFile, "max.tickets=lots\n");
+        System.setProperty(TicketingConfig.OVERRIDE_FILE_PROPERTY, overrideFile.toString());
+        TicketingConfig.Snapshot before = TicketingConfig.current();
+
+        assertThrows(IllegalArgumentException.class, TicketingConfig::reload);
+        Files.writeString(overrideFile, "max.tickets=0\n");
+        assertThrows(IllegalArgumentException.class, TicketingConfig::reload);
+
+        assertSame(before, TicketingConfig.current());
+    }
+
+    @Test
+    @DisplayName("Should reload automatically when the watched override file changes")
+    void shouldReloadWhenWatchedFileChanges() throws Exception {
+        Path overrideFile = tempDir.resolve("ticketing.properties");
+        Files.writeString(overrideFile, "max.tickets=30\n");
+        System.setProperty(TicketingConfig.OVERRIDE_FILE_PROPERTY, overrideFile.toString());
+        TicketingConfig.reload();
+
+        try (AutoCloseable ignored = TicketingConfig.watch()) {
+            Files.writeString(overrideFile, "max.tickets=12\n");
+
+            long deadline = System.nanoTime() + 20_000_000_000L;
+            while (TicketingConfig.getMaxTickets() != 12 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+        }
+
+        assertEquals(12, TicketingConfig.getMaxTickets());
+    }
+}
@@ -0,0 +1,142 @@
+package uk.gov.dwp.uc.pairtest.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.gov.dwp.uc.pairtest.domain.PurchaseOutcome;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValidationDecisionTableTest {
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void restoreDefaults() {
+        System.clearProperty(TicketingConfig.OVERRIDE_FILE_PROPERTY);
+        TicketingConfig.reload();
+    }
+
+    @Test
+    @DisplayName("Should agree with the rules for every combination of ticket counts")
+    void shouldAgreeWithRules() {
+        TicketingConfig.Snapshot config = TicketingConfig.current();
+        ValidationDecisionTable table = ValidationDecisionTable.compile(config);
+        int max = config.getMaxTickets();
+
+        assertTrue(table.isCompiled());
+        for (int adults = 0; adults <= max + 1; adults++) {
+            for (int children = 0; children <= max + 1; children++) {
+                for (int infants = 0; infants <= max + 1; infants++) {
+                    PurchaseOutcome expected = TicketPurchaseEvaluator.outcomeOf(
+                        TicketPurchaseEvaluator.checkRules(config, adults, children, infants));
+                    assertEquals(expected, table.outcome(adults, children, infants),
+                        adults + " adults, " + children + " children, " + infants + " infants");
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should answer counts outside the table without a lookup")
+    void shouldAnswerCountsOutsideTable() {
+        ValidationDecisionTable table = ValidationDecisionTable.current();
+
+        assertEquals(PurchaseOutcome.INVALID_TICKET_REQUEST, table.outcome(-1, 1, 0));
+        assertEquals(PurchaseOutcome.MAX_TICKETS_EXCEEDED, table.outcome(Integer.MAX_VALUE, 0, 0));
+        assertEquals(PurchaseOutcome.ACCEPTED, table.outcome(2, 1, 1));
+    }
+
+    @Test
+    @DisplayName("Should give the same evaluations with the table as without it")
+    void shouldEvaluateTheSameWithTable() throws Exception {
+        assertFalse(TicketingConfig.current().isDecisionTableEnabled());
+        long[] withoutTable = evaluations();
+
+        Path overrideFile = tempDir.resolve("ticketing.properties");
+        Files.writeString(overrideFile, "validation.decision.table=true\n");
+        System.setProperty(TicketingConfig.OVERRIDE_FILE_PROPERTY, overrideFile.toString());
+        assertTrue(TicketingConfig.reload().isDecisionTableEnabled());
+
+        assertArrayEquals(withoutTable, evaluations());
+    }
+
+    @Test
+    @DisplayName("Should rebuild the table when the configuration is reloaded")
+    void shouldRebuildOnReload() throws Exception {
+        ValidationDecisionTable before = ValidationDecisionTable.current();
+        assertSame(before, ValidationDecisionTable.current());
+        assertEquals(PurchaseOutcome.MAX_TICKETS_EXCEEDED, before.outcome(20, 10, 0));
+
+        Path overrideFile = tempDir.resolve("ticketing.properties");
+        Files.writeString(overrideFile, "max.tickets=40\nvalidation.decision.table=true\n");
+        System.setProperty(TicketingConfig.OVERRIDE_FILE_PROPERTY, overrideFile.toString());
+        TicketingConfig.Snapshot snapshot = TicketingConfig.reload();
+
+        // Built by the reload itself, not by the first purchase to see the new snapshot
+        ValidationDecisionTable after = ValidationDecisionTable.forConfig(snapshot);
+        assertNotNull(after);
+        assertSame(after, ValidationDecisionTable.current());
+        assertNotSame(before, after);
+        assertSame(snapshot, after.getConfig());
+        assertEquals(PurchaseOutcome.ACCEPTED, after.outcome(20, 10, 0));
+        assertTrue(TicketPurchaseEvaluator.isAccepted(TicketPurchaseEvaluator.tryEvaluate(1L, 20, 10, 0)));
+    }
+
+    @Test
+    @DisplayName("Should fall back to the rules when the table would be too large")
+    void shouldFallBackForHugeMaximum() throws Exception {
+        Path overrideFile = tempDir.resolve("ticketing.properties");
+        Files.writeString(overrideFile, "max.tickets=100000\n");
+        System.setProperty(TicketingConfig.OVERRIDE_FILE_PROPERTY, overrideFile.toString());
+        TicketingConfig.reload();
+
+        ValidationDecisionTable table = ValidationDecisionTable.current();
+        assertFalse(table.isCompiled());
+        assertEquals(PurchaseOutcome.ACCEPTED, table.outcome(50000, 40000, 10000));
+        assertEquals(PurchaseOutcome.INFANT_EXCEEDS_ADULT, table.outcome(1, 0, 2));
+        assertEquals(PurchaseOutcome.MAX_TICKETS_EXCEEDED, table.outcome(50000, 50000, 1));
+    }
+
+    @Test
+    @DisplayName("Should skip the table, without overflowing its size, at the highest configurable maximum")
+    void shouldSkipTableAtHighestMaximum() throws Exception {
+        Path overrideFile = tempDir.resolve("ticketing.properties");
+        Files.writeString(overrideFile, "max.tickets=" + TicketingConfig.Snapshot.MAX_TICKETS_LIMIT + "\n");
+        System.setProperty(TicketingConfig.OVERRIDE_FILE_PROPERTY, overrideFile.toString());
+        TicketingConfig.reload();
+
+        ValidationDecisionTable table = ValidationDecisionTable.current();
+        assertFalse(table.isCompiled());
+        assertEquals(PurchaseOutcome.ACCEPTED, table.outcome(2, 1, 1));
+    }
+
+    @Test
+    @DisplayName("Should reject a setting that is not true or false")
+    void shouldRejectInvalidSetting() throws Exception {
+        Path overrideFile = tempDir.resolve("ticketing.properties");
+        Files.writeString(overrideFile, "validation.decision.table=yes\n");
+        System.setProperty(TicketingConfig.OVERRIDE_FILE_PROPERTY, overrideFile.toString());
+
+        assertThrows(IllegalArgumentException.class, TicketingConfig::reload);
+    }
+
+    private static long[] evaluations() {
+        int max = TicketingConfig.getMaxTickets();
+        long[] evaluations = new long[(max + 2) * (max + 2) * (max + 2)];
+        int index = 0;
+        for (int adults = 0; adults <= max + 1; adults++) {
+            for (int children = 0; children <= max + 1; children++) {
+                for (int infants = 0; infants <= max + 1; infants++) {
+                    evaluations[index++] = TicketPurchaseEvaluator.tryEvaluate(1L, adults, children, infants);
+                }
+            }
+        }
+        return evaluations;
+    }
+}